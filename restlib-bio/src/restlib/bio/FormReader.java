@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.bio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the fields of an x-www-form-urlencoded form from a stream of bytes, percent decoding
+ * each key and value as its bytes arrive. Fields are split, trimmed and validated as by 
+ * {@link restlib.data.Form#parse(CharSequence)}, except that only ASCII white space is trimmed.
+ */
+final class FormReader {
+    private static final int BUFFER_SIZE = 4096;
+    
+    // Values of escape when not decoding a percent encoded byte, and after reading '%'.
+    private static final int NO_ESCAPE = -1;
+    private static final int PERCENT = -2;
+    
+    private static void checkForm(final boolean expression, final String message) throws IOException {
+        if (!expression) {
+            throw new IOException(message);
+        }
+    }
+    
+    private static int hexValue(final int b) {
+        if ((b >= '0') && (b <= '9')) {
+            return b - '0';
+        } else if ((b >= 'A') && (b <= 'F')) {
+            return b - 'A' + 10;
+        } else if ((b >= 'a') && (b <= 'f')) {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+    
+    private static boolean isWhitespace(final int b) {
+        return (b == ' ') || ((b >= '\t') && (b <= '\r'));
+    }
+    
+    private final Charset charset;
+    private final FormFieldHandler handler;
+    private final int maxFields;
+    private final int maxKeyLength;
+    private final int maxValueLength;
+    
+    // The decoded bytes of the current field. The key ends at keyEnd, or -1 if '=' has not been read.
+    private byte[] field = new byte[64];
+    private int size = 0;
+    private int keyEnd = -1;
+    
+    // True once the current field has any content other than leading white space.
+    private boolean started = false;
+    
+    // The number of unencoded white space bytes at the end of the current field.
+    private int trailingWhitespace = 0;
+    
+    // NO_ESCAPE, PERCENT or the value of the first hex digit of a percent encoded byte.
+    private int escape = NO_ESCAPE;
+    
+    private int fields = 0;
+    
+    FormReader(
+            final Charset charset, 
+            final int maxFields, final int maxKeyLength, final int maxValueLength,
+            final FormFieldHandler handler) {
+        this.charset = charset;
+        this.handler = handler;
+        this.maxFields = maxFields;
+        this.maxKeyLength = maxKeyLength;
+        this.maxValueLength = maxValueLength;
+    }
+    
+    private void append(final int b) throws IOException {
+        if ((this.keyEnd < 0) && (this.size >= this.maxKeyLength)) {
+            throw new IOException(
+                    "Form field key exceeds the maximum length of " + this.maxKeyLength + " bytes.");
+        } else if ((this.keyEnd >= 0) && (this.size - this.keyEnd >= this.maxValueLength)) {
+            throw new IOException(
+                    "Form field value exceeds the maximum length of " + this.maxValueLength + " bytes.");
+        }
+        
+        if (this.size == this.field.length) {
+            this.field = Arrays.copyOf(this.field, this.size * 2);
+        }
+        this.field[this.size] = (byte) b;
+        this.size++;
+    }
+    
+    private void endField() throws IOException {
+        checkForm(this.escape == NO_ESCAPE, "Invalid form: truncated percent encoding.");
+        if (this.started) {
+            final int end = this.size - this.trailingWhitespace;
+            final int keyEnd = (this.keyEnd < 0) ? end : this.keyEnd;
+            final int valueStart = (this.keyEnd < 0) ? end : this.keyEnd;
+            checkForm(keyEnd > 0, "Invalid form: empty key.");
+            
+            this.fields++;
+            if (this.fields > this.maxFields) {
+                throw new IOException("Form exceeds the maximum of " + this.maxFields + " fields.");
+            }
+            
+            this.handler.field(
+                    new String(this.field, 0, keyEnd, this.charset), 
+                    new String(this.field, valueStart, end - valueStart, this.charset));
+        }
+        
+        this.size = 0;
+        this.keyEnd = -1;
+        this.started = false;
+        this.trailingWhitespace = 0;
+    }
+    
+    /**
+     * Reads the fields in {@code is} until the end of the stream, and returns the number of fields read.
+     * @throws IOException if the form is not validly encoded, exceeds a limit, or 
+     * {@code is} cannot be read.
+     */
+    int read(final InputStream is) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+            for (int i = 0; i < read; i++) {
+                update(buffer[i] & 0xFF);
+            }
+        }
+        endField();
+        return this.fields;
+    }
+    
+    private void update(final int b) throws IOException {
+        if (this.escape != NO_ESCAPE) {
+            final int hex = hexValue(b);
+            checkForm(hex >= 0, "Invalid form: invalid percent encoding.");
+            if (this.escape == PERCENT) {
+                this.escape = hex;
+            } else {
+                append((this.escape << 4) | hex);
+                this.escape = NO_ESCAPE;
+            }
+            return;
+        }
+        
+        switch (b) {
+        case '&':
+            endField();
+            return;
+        case '=':
+            this.started = true;
+            if (this.keyEnd < 0) {
+                this.keyEnd = this.size;
+            } else {
+                append(b);
+            }
+            break;
+        case '%':
+            this.started = true;
+            this.escape = PERCENT;
+            break;
+        case '+':
+            this.started = true;
+            append(' ');
+            break;
+        default:
+            if (isWhitespace(b)) {
+                if (this.started) {
+                    append(b);
+                    this.trailingWhitespace++;
+                }
+                return;
+            }
+            this.started = true;
+            append(b);
+        }
+        this.trailingWhitespace = 0;
+    }
+}
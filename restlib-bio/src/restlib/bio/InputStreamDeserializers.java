@@ -6,6 +6,8 @@ import java.io.InputStreamReader;
 
 import restlib.bio.multipart.BioMultiPartInput;
 import restlib.data.Charset;
+import restlib.data.Form;
+import restlib.data.FormBuilder;
 
 import com.google.common.base.Preconditions;
 import com.google.common.io.CharStreams;
@@ -13,6 +15,72 @@ import com.google.common.io.CharStreams;
 public final class InputStreamDeserializers {
     private InputStreamDeserializers(){}
 
+    /**
+     * Returns an {@code InputStreamDeserializer} which reads an x-www-form-urlencoded form,
+     * percent decoding each field as it is read rather than first reading the
+     * entire stream into a String. Limits are applied to the decoded bytes of each field.
+     * The returned deserializer throws {@code IOException} if the form is not
+     * parseable by {@link Form#parse(CharSequence)} or exceeds a limit.
+     * @param charset the charset used to decode percent encoded keys and values.
+     * @param maxFields the maximum number of fields in the form.
+     * @param maxKeyLength the maximum length of a key in bytes.
+     * @param maxValueLength the maximum length of a value in bytes.
+     * @throws NullPointerException if {@code charset} is null.
+     * @throws IllegalArgumentException if any limit is negative.
+     */
+    public static InputStreamDeserializer<Form> formDeserializer(
+            final Charset charset, final int maxFields, final int maxKeyLength, final int maxValueLength) {
+        Preconditions.checkNotNull(charset);
+        checkFormLimits(maxFields, maxKeyLength, maxValueLength);
+        
+        return new InputStreamDeserializer<Form>() {
+            @Override
+            public Form read(final InputStream is) throws IOException {
+                Preconditions.checkNotNull(is);
+                final FormBuilder builder = Form.builder();
+                new FormReader(charset.toNioCharset(), maxFields, maxKeyLength, maxValueLength, 
+                        new FormFieldHandler() {
+                            @Override
+                            public void field(final String key, final String value) {
+                                builder.put(key, value);
+                            }
+                        }).read(is);
+                return builder.build();
+            }        
+        };
+    }
+    
+    /**
+     * Returns an {@code InputStreamDeserializer} which reads an x-www-form-urlencoded form 
+     * as {@link #formDeserializer(Charset, int, int, int)} does, but passes each field to
+     * {@code handler} instead of building a {@code Form}. The returned deserializer returns
+     * the number of fields read.
+     * @throws NullPointerException if {@code charset} or {@code handler} are null.
+     * @throws IllegalArgumentException if any limit is negative.
+     */
+    public static InputStreamDeserializer<Integer> formDeserializer(
+            final Charset charset, final int maxFields, final int maxKeyLength, final int maxValueLength, 
+            final FormFieldHandler handler) {
+        Preconditions.checkNotNull(charset);
+        Preconditions.checkNotNull(handler);
+        checkFormLimits(maxFields, maxKeyLength, maxValueLength);
+        
+        return new InputStreamDeserializer<Integer>() {
+            @Override
+            public Integer read(final InputStream is) throws IOException {
+                Preconditions.checkNotNull(is);
+                return new FormReader(charset.toNioCharset(), maxFields, maxKeyLength, maxValueLength, handler)
+                            .read(is);
+            }        
+        };
+    }
+    
+    private static void checkFormLimits(final int maxFields, final int maxKeyLength, final int maxValueLength) {
+        Preconditions.checkArgument(maxFields >= 0);
+        Preconditions.checkArgument(maxKeyLength >= 0);
+        Preconditions.checkArgument(maxValueLength >= 0);
+    }
+
     public static <T> InputStreamDeserializer<T> multiPartDeserializer(
             final String boundary, 
             final BioMultiPartInputDeserializer<T> deserializer) {
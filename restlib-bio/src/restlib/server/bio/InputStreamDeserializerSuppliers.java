@@ -5,6 +5,7 @@ import restlib.bio.BioMultiPartInputDeserializer;
 import restlib.bio.InputStreamDeserializer;
 import restlib.bio.InputStreamDeserializers;
 import restlib.data.Charset;
+import restlib.data.Form;
 import restlib.data.MediaRange;
 
 import com.google.common.base.Preconditions;
@@ -39,6 +40,42 @@ public final class InputStreamDeserializerSuppliers {
         };
     }
 
+    /**
+     * Returns a supplier of streaming x-www-form-urlencoded form deserializers, which decode
+     * the form using the charset parameter of the request's media range, or UTF-8 if absent.
+     * @see InputStreamDeserializers#formDeserializer(Charset, int, int, int)
+     * @throws NullPointerException if {@code mediaRange} is null.
+     * @throws IllegalArgumentException if any limit is negative.
+     */
+    public static InputStreamDeserializerSupplier<Form> formDeserializerSupplier(
+            final MediaRange mediaRange, final int maxFields, final int maxKeyLength, final int maxValueLength) {
+        Preconditions.checkNotNull(mediaRange);
+        Preconditions.checkArgument(maxFields >= 0);
+        Preconditions.checkArgument(maxKeyLength >= 0);
+        Preconditions.checkArgument(maxValueLength >= 0);
+
+        return new InputStreamDeserializerSupplier<Form>() {
+            @Override
+            public InputStreamDeserializer<Form> get(final Request request) {
+                Preconditions.checkNotNull(request);
+                
+                final Charset charset = 
+                        request.contentInfo()
+                            .mediaRange()
+                            .isPresent() ? 
+                                    request.contentInfo().mediaRange().get().charset().or(Charset.UTF_8) : 
+                                    Charset.UTF_8;
+
+                return InputStreamDeserializers.formDeserializer(charset, maxFields, maxKeyLength, maxValueLength);
+            }
+
+            @Override
+            public MediaRange mediaRange() {
+                return mediaRange;
+            }
+        };
+    }
+
     public static InputStreamDeserializerSupplier<String> stringDeserializerSupplier(
             final MediaRange mediaRange) {
         Preconditions.checkNotNull(mediaRange);
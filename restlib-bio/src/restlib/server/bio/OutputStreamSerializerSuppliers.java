@@ -8,7 +8,7 @@ import restlib.bio.OutputStreamSerializers;
 import restlib.data.Charset;
 import restlib.data.MediaRange;
 import restlib.data.MediaRanges;
-import restlib.data.Preference;
+import restlib.data.NegotiationIndex;
 
 import com.google.common.base.Preconditions;
 
@@ -17,6 +17,7 @@ public final class OutputStreamSerializerSuppliers {
 
     public static OutputStreamSerializerSupplier stringSerializerSupplier(
             final MediaRange mediaRange) {
+        final NegotiationIndex<Charset> charsets = NegotiationIndex.charsets(Charset.available());
         return new OutputStreamSerializerSupplier() {
             @Override
             public OutputStreamSerializer get(final Request request,
@@ -25,9 +26,8 @@ public final class OutputStreamSerializerSuppliers {
                 Preconditions.checkNotNull(response);
                 
                 final Charset charset = 
-                        Preference.<Charset> bestMatch(
-                                request.preferences().acceptedCharsets(), 
-                                Charset.available()).or(Charset.UTF_8);
+                        charsets.bestMatch(
+                                request.preferences().acceptedCharsets()).or(Charset.UTF_8);
                 final ContentInfo contentInfo = 
                         ContentInfo.builder()
                             .setMediaRange(mediaRange.withCharset(charset)).build();
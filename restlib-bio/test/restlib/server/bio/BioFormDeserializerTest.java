@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.bio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import restlib.ContentInfo;
+import restlib.Request;
+import restlib.bio.FormFieldHandler;
+import restlib.bio.InputStreamDeserializers;
+import restlib.data.Charset;
+import restlib.data.Form;
+import restlib.data.MediaRanges;
+import restlib.net.Uri;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public final class BioFormDeserializerTest {
+    private static InputStream toInputStream(final String form) {
+        return new ByteArrayInputStream(form.getBytes(Charset.UTF_8.toNioCharset()));
+    }
+    
+    private static Form read(final String form) throws IOException {
+        return InputStreamDeserializers.formDeserializer(Charset.UTF_8, 100, 100, 100).read(toInputStream(form));
+    }
+    
+    @Test
+    public void testFormDeserializer() throws IOException {
+        final List<String> tests = ImmutableList.of(
+                "", "&&", "a=b", " a = b &c=d&a=e", "q=a+b%26c&r%C3%A9sum%C3%A9=%E2%82%AC", "c==d&e+f=&g");
+        for (final String test : tests) {
+            assertEquals(Form.parse(test), read(test));
+        }
+    }
+    
+    @Test
+    public void testFormDeserializer_withHandler() throws IOException {
+        final List<String> fields = Lists.newArrayList();
+        final int count = 
+                InputStreamDeserializers.formDeserializer(Charset.UTF_8, 100, 100, 100, 
+                        new FormFieldHandler() {
+                            @Override
+                            public void field(final String key, final String value) {
+                                fields.add(key);
+                                fields.add(value);
+                            }
+                        }).read(toInputStream("a=1&b=2&a=3"));
+        assertEquals(3, count);
+        assertEquals(ImmutableList.of("a", "1", "b", "2", "a", "3"), fields);
+    }
+    
+    @Test
+    public void testFormDeserializer_withInvalid() throws IOException {
+        final List<String> tests = ImmutableList.of("=a", "a=b&=c", "a=%", "a=%2", "a=%zz");
+        for (final String test : tests) {
+            try {
+                read(test);
+                fail("expected IOException");
+            } catch (final IOException expected){}
+        }
+    }
+    
+    @Test
+    public void testFormDeserializer_withLimits() throws IOException {
+        assertEquals(Form.of("ab", "cd"), 
+                InputStreamDeserializers.formDeserializer(Charset.UTF_8, 1, 2, 2).read(toInputStream("ab=%63d")));
+        
+        final List<String> tests = ImmutableList.of("a=b&c=d", "abc=d", "a=bcd", "a=%62%63%64");
+        for (final String test : tests) {
+            try {
+                InputStreamDeserializers.formDeserializer(Charset.UTF_8, 1, 2, 2).read(toInputStream(test));
+                fail("expected IOException");
+            } catch (final IOException expected){}
+        }
+    }
+    
+    @Test
+    public void testFormDeserializerSupplier() throws IOException {
+        final Request request = 
+                Request.builder()
+                    .setUri(Uri.parse("http://www.example.com"))
+                    .setContentInfo(
+                            ContentInfo.builder()
+                                .setMediaRange(MediaRanges.APPLICATION_WWW_FORM.withCharset(Charset.ISO_8859_1))
+                                .build())
+                    .build();
+        final Form form = 
+                InputStreamDeserializerSuppliers.formDeserializerSupplier(MediaRanges.APPLICATION_WWW_FORM, 10, 10, 10)
+                    .get(request)
+                    .read(new ByteArrayInputStream("r%E9sum%E9=a".getBytes(Charset.US_ASCII.toNioCharset())));
+        assertEquals(Form.of("résumé", "a"), form);
+    }
+}
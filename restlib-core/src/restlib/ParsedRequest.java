@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib;
+
+import static restlib.data.HttpHeaders.ACCEPT;
+import static restlib.data.HttpHeaders.ACCEPT_CHARSET;
+import static restlib.data.HttpHeaders.ACCEPT_ENCODING;
+import static restlib.data.HttpHeaders.ACCEPT_LANGUAGE;
+import static restlib.data.HttpHeaders.AUTHORIZATION;
+import static restlib.data.HttpHeaders.CACHE_CONTROL;
+import static restlib.data.HttpHeaders.CONNECTION;
+import static restlib.data.HttpHeaders.CONTENT_ENCODING;
+import static restlib.data.HttpHeaders.CONTENT_LANGUAGE;
+import static restlib.data.HttpHeaders.CONTENT_LENGTH;
+import static restlib.data.HttpHeaders.CONTENT_LOCATION;
+import static restlib.data.HttpHeaders.CONTENT_TYPE;
+import static restlib.data.HttpHeaders.EXPECT;
+import static restlib.data.HttpHeaders.FROM;
+import static restlib.data.HttpHeaders.HOST;
+import static restlib.data.HttpHeaders.IF_MATCH;
+import static restlib.data.HttpHeaders.IF_MODIFIED_SINCE;
+import static restlib.data.HttpHeaders.IF_NONE_MATCH;
+import static restlib.data.HttpHeaders.IF_RANGE;
+import static restlib.data.HttpHeaders.IF_UNMODIFIED_SINCE;
+import static restlib.data.HttpHeaders.MAX_FORWARDS;
+import static restlib.data.HttpHeaders.PRAGMA;
+import static restlib.data.HttpHeaders.PROXY_AUTHORIZATION;
+import static restlib.data.HttpHeaders.RANGE;
+import static restlib.data.HttpHeaders.REFERER;
+import static restlib.data.HttpHeaders.TE;
+import static restlib.data.HttpHeaders.TRAILER;
+import static restlib.data.HttpHeaders.TRANSFER_ENCODING;
+import static restlib.data.HttpHeaders.UPGRADE;
+import static restlib.data.HttpHeaders.USER_AGENT;
+import static restlib.data.HttpHeaders.VIA;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import restlib.data.CacheDirective;
+import restlib.data.ChallengeMessage;
+import restlib.data.Expectation;
+import restlib.data.Header;
+import restlib.data.HttpHeaders;
+import restlib.data.Method;
+import restlib.data.UserAgent;
+import restlib.net.EmailAddress;
+import restlib.net.Uri;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+
+/**
+ * A Request parsed from its raw header fields. Header field values may be any
+ * CharSequence, such as a view of the encoded header bytes. The header fields are only
+ * collected by header ordinal and checked for uniqueness when the Request is created. Each group
+ * of header fields is parsed the first time the corresponding accessor is called
+ * and memoized, so an instance may be shared between threads.
+ */
+final class ParsedRequest extends Request {
+    private static final int HOST_ORDINAL = HttpHeaders.ordinalOf(HOST);
+    private static final long PARSED_HEADERS =
+            bits(
+                    ACCEPT, ACCEPT_CHARSET, ACCEPT_ENCODING, ACCEPT_LANGUAGE, AUTHORIZATION,
+                    CACHE_CONTROL, CONNECTION, CONTENT_ENCODING, CONTENT_LANGUAGE, CONTENT_LENGTH,
+                    CONTENT_LOCATION, CONTENT_TYPE, EXPECT, FROM, IF_MATCH, IF_MODIFIED_SINCE,
+                    IF_NONE_MATCH, IF_RANGE, IF_UNMODIFIED_SINCE, MAX_FORWARDS, PRAGMA,
+                    PROXY_AUTHORIZATION, RANGE, REFERER, TE, TRAILER, TRANSFER_ENCODING, UPGRADE,
+                    USER_AGENT, VIA);
+    private static final long UNIQUE_HEADERS =
+            bits(
+                    AUTHORIZATION, CONTENT_LENGTH, CONTENT_LOCATION, CONTENT_TYPE,
+                    FROM, HOST, IF_MODIFIED_SINCE, IF_RANGE, IF_UNMODIFIED_SINCE,
+                    MAX_FORWARDS, PROXY_AUTHORIZATION, RANGE, REFERER, USER_AGENT);
+
+    /**
+     * Returns a bitset of the ordinals of {@code headers}.
+     */
+    private static long bits(final Header... headers) {
+        Preconditions.checkState(HttpHeaders.standardHeaderCount() <= Long.SIZE);
+        long retval = 0;
+        for (final Header header : headers) {
+            retval |= 1L << HttpHeaders.ordinalOf(header);
+        }
+        return retval;
+    }
+
+    /**
+     * Collects the header fields of a request without parsing their values.
+     * @throws NullPointerException if any argument is null. Also if any entry
+     * in {@code headers} is null or contains null key/values.
+     * @throws IllegalArgumentException if a unique header is included more than once,
+     * if the request target is not absolute and no host header is included, or if the
+     * request target is absolute and a host header is included.
+     */
+    static ParsedRequest collect(
+            final String uriScheme,
+            final Method method,
+            final Uri requestTarget,
+            final Iterable<? extends Entry<Header, ? extends CharSequence>> headers) {
+        Preconditions.checkNotNull(uriScheme);
+        Preconditions.checkNotNull(method);
+        Preconditions.checkNotNull(requestTarget);
+        Preconditions.checkNotNull(headers);
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final List<CharSequence>[] fields = new List[HttpHeaders.standardHeaderCount()];
+        final ImmutableListMultimap.Builder<Header, String> customHeaders = ImmutableListMultimap.builder();
+        long includedHeaders = 0;
+        String host = "";
+
+        for (final Entry<Header, ? extends CharSequence> header : headers) {
+            Preconditions.checkNotNull(header);
+
+            final Header fieldName = Preconditions.checkNotNull(header.getKey());
+            final CharSequence fieldValue = Preconditions.checkNotNull(header.getValue());
+            final int ordinal = HttpHeaders.ordinalOf(fieldName);
+
+            if (ordinal < 0) {
+                customHeaders.put(fieldName, fieldValue.toString());
+                continue;
+            }
+
+            final long bit = 1L << ordinal;
+            Preconditions.checkArgument(((UNIQUE_HEADERS & bit) == 0) || ((includedHeaders & bit) == 0),
+                    "Request may not include the header " + fieldName.toString() + " more than once.");
+            includedHeaders |= bit;
+
+            if (ordinal == HOST_ORDINAL) {
+                host = fieldValue.toString();
+            } else {
+                // Standard headers which are not request headers are rejected.
+                Preconditions.checkArgument((PARSED_HEADERS & bit) != 0);
+                if (fields[ordinal] == null) {
+                    fields[ordinal] = Lists.newArrayListWithCapacity(1);
+                }
+                fields[ordinal].add(fieldValue);
+            }
+        }
+
+        final Uri uri;
+        if (!requestTarget.isAbsolute()) {
+            Preconditions.checkArgument(
+                    !host.isEmpty(), "Uri is not absolute, and does not include a host field.");
+            uri = Uri.builder()
+                    .setScheme(uriScheme)
+                    .setAuthority(host)
+                    .setPath(requestTarget.path())
+                    .setQuery(requestTarget.query())
+                    .build();
+        } else {
+            Preconditions.checkArgument(host.equals(""), "Host header present when request target is an absolute URI.");
+            uri = requestTarget;
+        }
+
+        return new ParsedRequest(method, uri, fields, customHeaders.build());
+    }
+
+    private final Method method;
+    private final Uri uri;
+    // Header field values indexed by header ordinal.
+    private final List<CharSequence>[] fields;
+    private final ListMultimap<Header, String> customHeaders;
+
+    // Memoized header values. Racing threads may each parse a value,
+    // but they always produce equal results.
+    private volatile Optional<ChallengeMessage> authorizationCredentials;
+    private volatile Set<CacheDirective> cacheDirectives;
+    private volatile ConnectionInfo connectionInfo;
+    private volatile ContentInfo contentInfo;
+    private volatile Set<Expectation> expectations;
+    private volatile Optional<EmailAddress> from;
+    private volatile Optional<Integer> maxForwards;
+    private volatile Set<CacheDirective> pragmaCacheDirectives;
+    private volatile RequestPreconditions preconditions;
+    private volatile ClientPreferences preferences;
+    private volatile Optional<ChallengeMessage> proxyAuthorizationCredentials;
+    private volatile Optional<Uri> referrer;
+    private volatile Optional<UserAgent> userAgent;
+
+    private ParsedRequest(
+            final Method method,
+            final Uri uri,
+            final List<CharSequence>[] fields,
+            final ListMultimap<Header, String> customHeaders) {
+        this.method = method;
+        this.uri = uri;
+        this.fields = fields;
+        this.customHeaders = customHeaders;
+    }
+
+    private List<CharSequence> fields(final Header header) {
+        final List<CharSequence> retval = this.fields[HttpHeaders.ordinalOf(header)];
+        return (retval != null) ? retval : ImmutableList.<CharSequence> of();
+    }
+
+    /**
+     * Parses all header fields, returning this instance.
+     * @throws IllegalArgumentException if any header field value can not be parsed.
+     */
+    ParsedRequest parseAll() {
+        this.authorizationCredentials();
+        this.cacheDirectives();
+        this.connectionInfo();
+        this.contentInfo();
+        this.expectations();
+        this.from();
+        this.maxForwards();
+        this.pragmaCacheDirectives();
+        this.preconditions();
+        this.preferences();
+        this.proxyAuthorizationCredentials();
+        this.referrer();
+        this.userAgent();
+        return this;
+    }
+
+    @Override
+    public Optional<ChallengeMessage> authorizationCredentials() {
+        Optional<ChallengeMessage> retval = this.authorizationCredentials;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(AUTHORIZATION)) {
+                builder.setAuthorizationCredentials(HttpHeaders.parsetAuthorization(value));
+            }
+            retval = builder.authorizationCredentials;
+            this.authorizationCredentials = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Set<CacheDirective> cacheDirectives() {
+        Set<CacheDirective> retval = this.cacheDirectives;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(CACHE_CONTROL)) {
+                builder.addCacheDirectives(HttpHeaders.parseCacheControl(value));
+            }
+            retval = builder.cacheDirectives.build();
+            this.cacheDirectives = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public ConnectionInfo connectionInfo() {
+        ConnectionInfo retval = this.connectionInfo;
+        if (retval == null) {
+            final ConnectionInfoBuilder builder = ConnectionInfo.builder();
+            for (final CharSequence value : fields(CONNECTION)) {
+                builder.addConnectionOptions(HttpHeaders.parseConnection(value));
+            }
+            for (final CharSequence value : fields(TRAILER)) {
+                builder.addTrailerHeaders(HttpHeaders.parseTrailer(value));
+            }
+            for (final CharSequence value : fields(TRANSFER_ENCODING)) {
+                builder.addTransferEncodings(HttpHeaders.parseTransferEncoding(value));
+            }
+            for (final CharSequence value : fields(UPGRADE)) {
+                builder.addUpgradeProtocols(HttpHeaders.parseUpgrade(value));
+            }
+            for (final CharSequence value : fields(VIA)) {
+                builder.addVias(HttpHeaders.parseVia(value));
+            }
+            retval = builder.build();
+            this.connectionInfo = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public ContentInfo contentInfo() {
+        ContentInfo retval = this.contentInfo;
+        if (retval == null) {
+            final ContentInfoBuilder builder = ContentInfo.builder();
+            for (final CharSequence value : fields(CONTENT_ENCODING)) {
+                builder.addEncodings(HttpHeaders.parseContentEncoding(value));
+            }
+            for (final CharSequence value : fields(CONTENT_LANGUAGE)) {
+                builder.addLanguages(HttpHeaders.parseContentLanguage(value));
+            }
+            for (final CharSequence value : fields(CONTENT_LENGTH)) {
+                builder.setLength(HttpHeaders.parseContentLength(value));
+            }
+            for (final CharSequence value : fields(CONTENT_LOCATION)) {
+                builder.setLocation(HttpHeaders.parseContentLocation(value));
+            }
+            for (final CharSequence value : fields(CONTENT_TYPE)) {
+                builder.setMediaRange(HttpHeaders.parseContentType(value));
+            }
+            retval = builder.build();
+            this.contentInfo = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public ListMultimap<Header, String> customHeaders() {
+        return this.customHeaders;
+    }
+
+    @Override
+    public Optional<Object> entity() {
+        return Optional.absent();
+    }
+
+    @Override
+    public Set<Expectation> expectations() {
+        Set<Expectation> retval = this.expectations;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(EXPECT)) {
+                builder.addExpectations(HttpHeaders.parseExpect(value));
+            }
+            retval = builder.expecations.build();
+            this.expectations = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Optional<EmailAddress> from() {
+        Optional<EmailAddress> retval = this.from;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(FROM)) {
+                builder.setFrom(HttpHeaders.parseFrom(value));
+            }
+            retval = builder.from;
+            this.from = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Optional<Integer> maxForwards() {
+        Optional<Integer> retval = this.maxForwards;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(MAX_FORWARDS)) {
+                builder.setMaxForwards(HttpHeaders.parseMaxForwards(value));
+            }
+            retval = builder.maxForwards;
+            this.maxForwards = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Method method() {
+        return this.method;
+    }
+
+    @Override
+    public Set<CacheDirective> pragmaCacheDirectives() {
+        Set<CacheDirective> retval = this.pragmaCacheDirectives;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(PRAGMA)) {
+                builder.addPragmaCacheDirectives(HttpHeaders.parsePragma(value));
+            }
+            retval = builder.pragmaCacheDirectives.build();
+            this.pragmaCacheDirectives = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public RequestPreconditions preconditions() {
+        RequestPreconditions retval = this.preconditions;
+        if (retval == null) {
+            final RequestPreconditionsBuilder builder = RequestPreconditions.builder();
+            for (final CharSequence value : fields(IF_MATCH)) {
+                builder.addIfMatchTags(HttpHeaders.parseIfMatch(value));
+            }
+            for (final CharSequence value : fields(IF_MODIFIED_SINCE)) {
+                builder.setIfModifiedSinceDate(HttpHeaders.parseIfModifiedSince(value));
+            }
+            for (final CharSequence value : fields(IF_NONE_MATCH)) {
+                builder.addIfNoneMatchTags(HttpHeaders.parseIfNoneMatch(value));
+            }
+            for (final CharSequence value : fields(IF_RANGE)) {
+                builder.setIfRange(HttpHeaders.parseIfRange(value));
+            }
+            for (final CharSequence value : fields(IF_UNMODIFIED_SINCE)) {
+                builder.setIfUnmodifiedSinceDate(HttpHeaders.parseIfUnmodifiedSince(value));
+            }
+            retval = builder.build();
+            this.preconditions = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public ClientPreferences preferences() {
+        ClientPreferences retval = this.preferences;
+        if (retval == null) {
+            final ClientPreferencesBuilder builder = ClientPreferences.builder();
+            for (final CharSequence value : fields(ACCEPT)) {
+                builder.addAcceptedMediaRanges(HttpHeaders.parseAccept(value));
+            }
+            for (final CharSequence value : fields(ACCEPT_CHARSET)) {
+                builder.addAcceptedCharsets(HttpHeaders.parseAcceptCharset(value));
+            }
+            for (final CharSequence value : fields(ACCEPT_ENCODING)) {
+                builder.addAcceptedEncodings(HttpHeaders.parseAcceptEncoding(value));
+            }
+            for (final CharSequence value : fields(ACCEPT_LANGUAGE)) {
+                builder.addAcceptedLanguages(HttpHeaders.parseAcceptLanguage(value));
+            }
+            for (final CharSequence value : fields(RANGE)) {
+                builder.setRange(HttpHeaders.parseRange(value));
+            }
+            for (final CharSequence value : fields(TE)) {
+                builder.addAcceptedTransferEncodings(HttpHeaders.parseTE(value));
+            }
+            retval = builder.build();
+            this.preferences = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Optional<ChallengeMessage> proxyAuthorizationCredentials() {
+        Optional<ChallengeMessage> retval = this.proxyAuthorizationCredentials;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(PROXY_AUTHORIZATION)) {
+                builder.setProxyAuthorizationCredentials(HttpHeaders.parseProxyAuthorization(value));
+            }
+            retval = builder.proxyAuthorizationCredentials;
+            this.proxyAuthorizationCredentials = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Optional<Uri> referrer() {
+        Optional<Uri> retval = this.referrer;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(REFERER)) {
+                builder.setReferrer(HttpHeaders.parseReferer(value));
+            }
+            retval = builder.referrer;
+            this.referrer = retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public Uri uri() {
+        return this.uri;
+    }
+
+    @Override
+    public Optional<UserAgent> userAgent() {
+        Optional<UserAgent> retval = this.userAgent;
+        if (retval == null) {
+            final RequestBuilder builder = Request.builder();
+            for (final CharSequence value : fields(USER_AGENT)) {
+                builder.setUserAgent(HttpHeaders.parseUserAgent(value));
+            }
+            retval = builder.userAgent;
+            this.userAgent = retval;
+        }
+        return retval;
+    }
+}
@@ -18,38 +18,9 @@
 package restlib;
 
 import static restlib.MessageHelpers.appendHeader;
-import static restlib.data.HttpHeaders.ACCEPT;
-import static restlib.data.HttpHeaders.ACCEPT_CHARSET;
-import static restlib.data.HttpHeaders.ACCEPT_ENCODING;
-import static restlib.data.HttpHeaders.ACCEPT_LANGUAGE;
-import static restlib.data.HttpHeaders.AUTHORIZATION;
-import static restlib.data.HttpHeaders.CACHE_CONTROL;
-import static restlib.data.HttpHeaders.CONNECTION;
-import static restlib.data.HttpHeaders.CONTENT_ENCODING;
-import static restlib.data.HttpHeaders.CONTENT_LANGUAGE;
-import static restlib.data.HttpHeaders.CONTENT_LENGTH;
-import static restlib.data.HttpHeaders.CONTENT_LOCATION;
-import static restlib.data.HttpHeaders.CONTENT_TYPE;
-import static restlib.data.HttpHeaders.EXPECT;
-import static restlib.data.HttpHeaders.FROM;
-import static restlib.data.HttpHeaders.HOST;
-import static restlib.data.HttpHeaders.IF_MATCH;
-import static restlib.data.HttpHeaders.IF_MODIFIED_SINCE;
-import static restlib.data.HttpHeaders.IF_NONE_MATCH;
-import static restlib.data.HttpHeaders.IF_RANGE;
-import static restlib.data.HttpHeaders.IF_UNMODIFIED_SINCE;
-import static restlib.data.HttpHeaders.MAX_FORWARDS;
-import static restlib.data.HttpHeaders.PRAGMA;
-import static restlib.data.HttpHeaders.PROXY_AUTHORIZATION;
-import static restlib.data.HttpHeaders.RANGE;
-import static restlib.data.HttpHeaders.REFERER;
-import static restlib.data.HttpHeaders.TE;
-import static restlib.data.HttpHeaders.TRAILER;
-import static restlib.data.HttpHeaders.TRANSFER_ENCODING;
-import static restlib.data.HttpHeaders.UPGRADE;
-import static restlib.data.HttpHeaders.USER_AGENT;
-import static restlib.data.HttpHeaders.VIA;
 
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -62,6 +33,7 @@ import restlib.data.Header;
 import restlib.data.HttpHeaders;
 import restlib.data.Method;
 import restlib.data.UserAgent;
+import restlib.impl.AsciiHeaderFields;
 import restlib.impl.ImmutableMapEntry;
 import restlib.net.EmailAddress;
 import restlib.net.Uri;
@@ -71,7 +43,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 /**
  * Object representation of an HTTP Request. 
  * Implementations must be immutable or effectively immutable.
@@ -99,170 +71,7 @@ public abstract class Request {
             final Method method, 
             final Uri requestTarget, 
             final Iterable<? extends Entry<Header, String>> headers) {	
-    	Preconditions.checkNotNull(uriScheme);
-    	Preconditions.checkNotNull(method);
-    	Preconditions.checkNotNull(requestTarget);
-    	Preconditions.checkNotNull(headers);
-    	
-        final RequestBuilder requestBuilder = Request.builder();
-        final ClientPreferencesBuilder preferencesBuilder = ClientPreferences.builder();
-        final ConnectionInfoBuilder connectionInfoBuilder = ConnectionInfo.builder();
-        final ContentInfoBuilder contentInfoBuilder = ContentInfo.builder();
-        final RequestPreconditionsBuilder preconditionsBuilder = RequestPreconditions.builder();
-        
-        String host = "";
-        
-        final Function<Header, Void> checkIfHeaderIsUnique = new Function<Header,Void>() {
-            final Set<Header> uniqueHeaders = Sets.newHashSet();
-            
-            @Override
-            public Void apply(final Header fieldName) {
-                Preconditions.checkArgument(!uniqueHeaders.contains(fieldName), 
-                        "Request may not include the header " + fieldName.toString() + " more than once.");
-                uniqueHeaders.add(fieldName);         
-                return null;
-            }           
-        };    
-        
-        for (final Entry<Header, String> header : headers) {
-            Preconditions.checkNotNull(header);
-            
-            final Header fieldName = header.getKey();
-            final String fieldValue = Preconditions.checkNotNull(header.getValue());
-            
-            if (fieldName.equals(ACCEPT)) {
-                preferencesBuilder.addAcceptedMediaRanges(
-                        HttpHeaders.parseAccept(fieldValue));
-            } else if (fieldName.equals(ACCEPT_CHARSET)) {  
-                preferencesBuilder.addAcceptedCharsets(
-                        HttpHeaders.parseAcceptCharset(fieldValue));
-            } else if (fieldName.equals(ACCEPT_ENCODING)) {   
-                preferencesBuilder.addAcceptedEncodings(
-                        HttpHeaders.parseAcceptEncoding(fieldValue));
-            } else if (fieldName.equals(ACCEPT_LANGUAGE)) {  
-                preferencesBuilder.addAcceptedLanguages(
-                        HttpHeaders.parseAcceptLanguage(fieldValue));  
-            } else if (fieldName.equals(AUTHORIZATION)) {
-                checkIfHeaderIsUnique.apply(fieldName);                
-                requestBuilder.setAuthorizationCredentials(
-                        HttpHeaders.parsetAuthorization(fieldValue));
-            } else if (fieldName.equals(CACHE_CONTROL)) {   
-                requestBuilder.addCacheDirectives(
-                        HttpHeaders.parseCacheControl(fieldValue));
-            } else if (fieldName.equals(CONNECTION)) {  
-                connectionInfoBuilder.addConnectionOptions(
-                        HttpHeaders.parseConnection(fieldValue));
-            } else if (fieldName.equals(CONTENT_ENCODING)) {
-                contentInfoBuilder.addEncodings(
-                        HttpHeaders.parseContentEncoding(fieldValue));
-            } else if (fieldName.equals(CONTENT_LANGUAGE)) {
-                contentInfoBuilder.addLanguages(
-                        HttpHeaders.parseContentLanguage(fieldValue));
-            } else if (fieldName.equals(CONTENT_LENGTH)) { 
-                checkIfHeaderIsUnique.apply(fieldName);                
-                contentInfoBuilder.setLength(
-                            HttpHeaders.parseContentLength(fieldValue));
-            } else if (fieldName.equals(CONTENT_LOCATION)) { 
-                checkIfHeaderIsUnique.apply(fieldName);               
-                contentInfoBuilder.setLocation(
-                        HttpHeaders.parseContentLocation(fieldValue));
-            } else if (fieldName.equals(CONTENT_TYPE)) { 
-                checkIfHeaderIsUnique.apply(fieldName);                
-                contentInfoBuilder.setMediaRange(
-                        HttpHeaders.parseContentType(fieldValue));
-            } else if (fieldName.equals(EXPECT)) {
-                requestBuilder.addExpectations(
-                        HttpHeaders.parseExpect(fieldValue));
-            } else if (fieldName.equals(FROM)) {  
-                checkIfHeaderIsUnique.apply(fieldName);               
-                requestBuilder.setFrom(HttpHeaders.parseFrom(fieldValue));
-            } else if (fieldName.equals(HOST)) {
-                checkIfHeaderIsUnique.apply(fieldName);             
-                host = fieldValue;
-            } else if (fieldName.equals(IF_MATCH)) {    
-                preconditionsBuilder.addIfMatchTags(
-                        HttpHeaders.parseIfMatch(fieldValue));
-            } else if (fieldName.equals(IF_MODIFIED_SINCE)) {  
-                checkIfHeaderIsUnique.apply(fieldName);              
-                preconditionsBuilder.setIfModifiedSinceDate(
-                        HttpHeaders.parseIfModifiedSince(fieldValue));
-            } else if (fieldName.equals(IF_NONE_MATCH)) { 
-                preconditionsBuilder.addIfNoneMatchTags(
-                        HttpHeaders.parseIfNoneMatch(fieldValue));
-            } else if (fieldName.equals(IF_RANGE)) {
-                checkIfHeaderIsUnique.apply(fieldName);                
-                final Object ifRange = 
-                        HttpHeaders.parseIfRange(fieldValue);
-                preconditionsBuilder.setIfRange(ifRange);
-            } else if (fieldName.equals(IF_UNMODIFIED_SINCE)) {  
-                checkIfHeaderIsUnique.apply(fieldName);               
-                preconditionsBuilder.setIfUnmodifiedSinceDate(
-                        HttpHeaders.parseIfUnmodifiedSince(fieldValue));
-            } else if (fieldName.equals(MAX_FORWARDS)) { 
-                checkIfHeaderIsUnique.apply(fieldName);              
-                requestBuilder.setMaxForwards(
-                        HttpHeaders.parseMaxForwards(fieldValue));
-            } else if (fieldName.equals(PRAGMA)) {  
-                requestBuilder.addPragmaCacheDirectives(
-                        HttpHeaders.parsePragma(fieldValue));
-            } else if (fieldName.equals(PROXY_AUTHORIZATION)) { 
-                checkIfHeaderIsUnique.apply(fieldName);       
-                requestBuilder.setProxyAuthorizationCredentials(
-                        HttpHeaders.parseProxyAuthorization(fieldValue));
-            } else if (fieldName.equals(RANGE)) {
-                checkIfHeaderIsUnique.apply(fieldName);               
-                preferencesBuilder.setRange(
-                        HttpHeaders.parseRange(fieldValue));
-            } else if (fieldName.equals(REFERER)) {  
-                checkIfHeaderIsUnique.apply(fieldName);         
-                requestBuilder.setReferrer(
-                        HttpHeaders.parseReferer(fieldValue));
-            } else if (fieldName.equals(TE)) { 
-                preferencesBuilder.addAcceptedTransferEncodings(
-                        HttpHeaders.parseTE(fieldValue));
-            } else if (fieldName.equals(TRAILER)) {  
-                connectionInfoBuilder.addTrailerHeaders(
-                        HttpHeaders.parseTrailer(fieldValue));
-            } else if (fieldName.equals(TRANSFER_ENCODING)) { 
-                connectionInfoBuilder.addTransferEncodings(
-                        HttpHeaders.parseTransferEncoding(fieldValue));
-            } else if (fieldName.equals(UPGRADE)) {
-                connectionInfoBuilder.addUpgradeProtocols(
-                        HttpHeaders.parseUpgrade(fieldValue));
-            } else if (fieldName.equals(USER_AGENT)) {  
-                checkIfHeaderIsUnique.apply(fieldName);          
-                requestBuilder.setUserAgent(
-                        HttpHeaders.parseUserAgent(fieldValue));
-            } else if (fieldName.equals(VIA)) { 
-                connectionInfoBuilder.addVias(
-                        HttpHeaders.parseVia(fieldValue));
-            } else {
-                requestBuilder.addCustomHeader(fieldName, fieldValue);
-            }    
-        }
-        
-        final Uri uri;
-        if (!requestTarget.isAbsolute()) {
-            Preconditions.checkArgument(
-                    !host.isEmpty(), "Uri is not absolute, and does not include a host field.");
-            uri = Uri.builder()
-                    .setScheme(uriScheme)
-                    .setAuthority(host)
-                    .setPath(requestTarget.path())
-                    .setQuery(requestTarget.query())
-                    .build();
-        } else {
-        	Preconditions.checkArgument(host.equals(""), "Host header present when request target is an absolute URI.");
-            uri = requestTarget;
-        }
-        
-        return requestBuilder
-                .setMethod(method)
-                .setUri(uri)
-                .setPreferences(preferencesBuilder.build())
-                .setConnectionInfo(connectionInfoBuilder.build())
-                .setContentInfo(contentInfoBuilder.build())
-                .setPreconditions(preconditionsBuilder.build()).build();
+        return ParsedRequest.collect(uriScheme, method, requestTarget, headers).parseAll();
     }
     
     /**
@@ -284,16 +93,116 @@ public abstract class Request {
         Preconditions.checkNotNull(requestTarget);
         Preconditions.checkNotNull(headers);
     	return parse(uriScheme, Method.forName(method), Uri.parse(requestTarget), 
-    			Iterables.transform(headers,
-    					new Function<Entry<String, String>, Entry<Header, String>>(){
-							@Override
-							public Entry<Header, String> apply(
-									final Entry<String, String> input) {
-								Preconditions.checkNotNull(input);
-								return ImmutableMapEntry.create(
-										Header.create(input.getKey()), input.getValue());
-							}    				
-    			}));
+    	        toHeaderEntries(headers));
+    }
+    
+    /**
+     * Parses a Request from the encoded header section of an HTTP/1.1 request.
+     * Header field values are parsed directly from the header bytes.
+     * @param uriScheme the URI scheme of the request. Usually http or https.
+     * @param method the request method.
+     * @param requestTarget the request target from the request line.
+     * @param headers a buffer positioned at the first header field line 
+     * following the request line. On return it is positioned following the header section.
+     * @throws NullPointerException if any argument is null.
+     * @throws IllegalArgumentException if the header section or any header field value can not be parsed.
+     * @see AsciiHeaderFields#parse(ByteBuffer)
+     */
+    public static Request parse(
+            final String uriScheme,
+            final Method method, 
+            final Uri requestTarget, 
+            final ByteBuffer headers) {  
+        return ParsedRequest.collect(uriScheme, method, requestTarget, toHeaderEntries(headers)).parseAll();
+    }
+    
+    /**
+     * Parses a Request from the String representation of its components, 
+     * deferring the parsing of each header field value until it is first 
+     * accessed. The returned Request is immutable and thread safe, however 
+     * its accessors throw an IllegalArgumentException if the underlying 
+     * header field values are malformed. Uniqueness of header fields and the 
+     * host header are validated eagerly, as in 
+     * {@link #parse(String, Method, Uri, Iterable)}.
+     * @param uriScheme the URI scheme of the request. Usually http or https.
+     * @param methodName the request method name from the request line.
+     * @param requestTarget the request target from the request line.
+     * @param headers an Iterable of the header field name/value pairs.
+     * @throws NullPointerException if any argument is null. Also if any entry 
+     * in {@code headers} is null or contains null key/values.
+     */
+    public static Request parseLazily(
+            final String uriScheme,
+            final Method method, 
+            final Uri requestTarget, 
+            final Iterable<? extends Entry<Header, String>> headers) {  
+        return ParsedRequest.collect(uriScheme, method, requestTarget, headers);
+    }
+    
+    /**
+     * Parses a Request from the String representation of its components, 
+     * deferring the parsing of each header field value until it is first 
+     * accessed.
+     * @see #parseLazily(String, Method, Uri, Iterable)
+     * @throws NullPointerException if any argument is null. Also if any entry 
+     * in {@code headers} is null or contains null key/values.
+     */
+    public static Request parseLazily(
+            final String uriScheme,
+            final String method, 
+            final String requestTarget, 
+            final Iterable<? extends Entry<String, String>> headers) {  
+        Preconditions.checkNotNull(uriScheme);
+        Preconditions.checkNotNull(method);
+        Preconditions.checkNotNull(requestTarget);
+        Preconditions.checkNotNull(headers);
+        return parseLazily(uriScheme, Method.forName(method), Uri.parse(requestTarget), 
+                toHeaderEntries(headers));
+    }
+    
+    /**
+     * Parses a Request from the encoded header section of an HTTP/1.1 request, 
+     * deferring the parsing of each header field value until it is first
+     * accessed. Only the values of custom headers and the host header are 
+     * decoded into Strings eagerly.
+     * @see #parse(String, Method, Uri, ByteBuffer)
+     * @see #parseLazily(String, Method, Uri, Iterable)
+     * @throws NullPointerException if any argument is null.
+     * @throws IllegalArgumentException if the header section can not be parsed.
+     */
+    public static Request parseLazily(
+            final String uriScheme,
+            final Method method, 
+            final Uri requestTarget, 
+            final ByteBuffer headers) {  
+        return ParsedRequest.collect(uriScheme, method, requestTarget, toHeaderEntries(headers));
+    }
+    
+    private static List<Entry<Header, CharSequence>> toHeaderEntries(final ByteBuffer headers) {
+        final AsciiHeaderFields fields = AsciiHeaderFields.parse(headers);
+        final List<Entry<Header, CharSequence>> retval = Lists.newArrayListWithCapacity(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            final CharSequence fieldName = fields.name(i);
+            final int ordinal = HttpHeaders.ordinalOf(fieldName);
+            final Header header = 
+                    (ordinal >= 0) ? HttpHeaders.standardHeader(ordinal) : Header.create(fieldName.toString());
+            retval.add(ImmutableMapEntry.<Header, CharSequence> create(header, fields.value(i)));
+        }
+        return retval;
+    }
+    
+    private static Iterable<Entry<Header, String>> toHeaderEntries(
+            final Iterable<? extends Entry<String, String>> headers) {
+        return Iterables.transform(headers,
+                new Function<Entry<String, String>, Entry<Header, String>>(){
+                    @Override
+                    public Entry<Header, String> apply(
+                            final Entry<String, String> input) {
+                        Preconditions.checkNotNull(input);
+                        return ImmutableMapEntry.create(
+                                Header.create(input.getKey()), input.getValue());
+                    }                   
+                });
     }
     
     Request(){}
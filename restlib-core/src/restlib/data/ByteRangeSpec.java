@@ -17,17 +17,10 @@
 
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.List;
-
-import restlib.impl.CommonParsers;
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 public abstract class ByteRangeSpec {
@@ -130,34 +123,36 @@ public abstract class ByteRangeSpec {
         }        
     }  
     
-    static final Parser<ByteRangeSpec> PARSER = new Parser<ByteRangeSpec>() {
+    static final CharSequenceParser<ByteRangeSpec> PARSER = new CharSequenceParser<ByteRangeSpec>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            final int firstEnd = CharSequenceParsers.scanDigits(in, pos);
+            final int lastStart = CharSequenceParsers.scanChar(in, firstEnd, '-');
+            if (lastStart == NO_MATCH) {
+                return NO_MATCH;
+            }
+            
+            final int lastEnd = CharSequenceParsers.scanDigits(in, lastStart);
+            return ((firstEnd == pos) && (lastEnd == lastStart)) ? NO_MATCH : lastEnd;
+        }
+
         @Override
-        public Optional<ByteRangeSpec> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
+        protected ByteRangeSpec doValue(final CharSequence in, final int start, final int end) {
+            final int firstEnd = CharSequenceParsers.scanDigits(in, start);
+            final long firstPos = CharSequenceParsers.parseUnsignedLong(in, start, firstEnd);
+            final long lastPos = CharSequenceParsers.parseUnsignedLong(in, firstEnd + 1, end);
             
-            final int startPos = buffer.position();
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .readOptional(Parsers.INTEGER_PARSER) // 0
-                        .read(Parsers.charParser('-')) // 1
-                        .read(Parsers.INTEGER_PARSER) // 2
-                        .tokens(); 
-            if (Optionals.isAbsent(tokens.get(0))) {
-                if (Optionals.isAbsent(tokens.get(2))) {
-                    buffer.position(startPos);
-                    return Optional.absent();
-                } else {
-                    final long suffix = CommonParsers.parseUnsignedLong(tokens.get(2).get().toString());
-                    return Optional.of(ByteRangeSpec.suffix(suffix));  
-                }
+            if (((firstPos < 0) && (firstEnd > start)) || ((lastPos < 0) && (end > firstEnd + 1))) {
+                // Overflow
+                return null;
+            } else if (firstPos < 0) {
+                return ByteRangeSpec.suffix(lastPos);
+            } else if (lastPos < 0) {
+                return ByteRangeSpec.startingAt(firstPos);
+            } else if (lastPos < firstPos) {
+                return null;
             } else {
-                final long firstPos = CommonParsers.parseUnsignedLong(tokens.get(0).get().toString());
-                if (Optionals.isAbsent(tokens.get(2))) {
-                    return Optional.of(ByteRangeSpec.startingAt(firstPos));
-                } else {
-                    final long lastPos = CommonParsers.parseUnsignedLong(tokens.get(2).get().toString());
-                    return Optional.of(ByteRangeSpec.range(firstPos, lastPos));
-                }
+                return ByteRangeSpec.range(firstPos, lastPos);
             }
         }        
     };
@@ -1,18 +1,15 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
-
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.CommonParsers;
-import restlib.impl.Parser;
-import restlib.impl.Registry;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
+import restlib.impl.Interner;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 
@@ -20,7 +17,7 @@ import com.google.common.collect.Iterables;
 public final class CacheDirective {
     private static final Joiner ITERABLE_JOINER = Joiner.on(", ");
     
-    private static final Registry<CacheDirective> _REGISTERED = new Registry<CacheDirective>();
+    private static final Interner<CacheDirective> _REGISTERED = Interner.create();
     
     private static final String MAX_AGE_NAME = "max-age";
     private static final String MAX_STALE_NAME = "max-stale";
@@ -45,25 +42,22 @@ public final class CacheDirective {
     public static final CacheDirective PROXY_REVALIDATE = register(create(PROXY_REVALIDATE_NAME));
     public static final CacheDirective PUBLIC = register(create(PUBLIC_NAME));
     
-    static final Parser<CacheDirective> PARSER = new Parser<CacheDirective>() {
+    static final CharSequenceParser<CacheDirective> PARSER = new CharSequenceParser<CacheDirective>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            return KeyValuePair.PARSER.scan(in, pos);
+        }
+
         @Override
-        public Optional<CacheDirective> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<KeyValuePair> entry = KeyValuePair.PARSER.parse(buffer);
-            if (entry.isPresent()) {
-                final KeyValuePair kv = entry.get();
-                final String value = kv.getValue(); 
-                
-                try {
-                    final long valueAsLong = CommonParsers.parseUnsignedLong(value);
-                    return Optional.of(CacheDirective.create(kv.getKey(), valueAsLong));
-                } catch (final IllegalArgumentException e) {}          
-                
-                // FIXME: Would probably be good to split , seperated tokens         
-                return Optional.of(CacheDirective.create(kv.getKey(), value));               
-            } else {
-                return Optional.absent();
-            }             
+        protected CacheDirective doValue(final CharSequence in, final int start, final int end) {
+            final KeyValuePair kv = KeyValuePair.PARSER.value(in, start, end);
+            final String value = kv.getValue();
+            final long valueAsLong = CharSequenceParsers.parseUnsignedLong(value, 0, value.length());
+            
+            // FIXME: Would probably be good to split , seperated tokens   
+            return (valueAsLong >= 0) ? 
+                    CacheDirective.create(kv.getKey(), valueAsLong) :
+                    CacheDirective.create(kv.getKey(), value);
         }    
     };
   
@@ -71,7 +65,7 @@ public final class CacheDirective {
         Preconditions.checkNotNull(token);
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(token));
         
-        return _REGISTERED.getIfPresent(new CacheDirective(CaseInsensitiveString.wrap(token), ""));
+        return _REGISTERED.intern(new CacheDirective(CaseInsensitiveString.wrap(token), ""));
     }
     
     public static CacheDirective create(final String token, final long value) {
@@ -1,5 +1,7 @@
 package restlib.data;
 
+import restlib.impl.CodePointMatcher;
+
 import com.google.common.base.CharMatcher;
 
 final class CharMatchers {
@@ -13,6 +15,7 @@ final class CharMatchers {
     static final CharMatcher QUOTED_PAIR_CHAR_MATCHER;
     static final CharMatcher REASON_PHRASE;
     static final CharMatcher TCHAR_MATCHER;
+    static final CodePointMatcher TCHAR_CODEPOINT_MATCHER;
     static final CharMatcher WHITE_SPACE_MATCHER;
     
     static {
@@ -25,6 +28,13 @@ final class CharMatchers {
                 .or(CharMatcher.inRange('0', '9'))
                 .or(CharMatcher.anyOf("!#$%&'*+-.^_`|~"));
         
+        TCHAR_CODEPOINT_MATCHER = 
+                CodePointMatcher.inRange('a', 'z')
+                    .or(CodePointMatcher.inRange('A', 'Z'))
+                    .or(CodePointMatcher.inRange('0', '9'))
+                    .or(CodePointMatcher.anyOf("!#$%&'*+-.^_`|~"))
+                    .precompute();
+        
         HOST_PORT = TCHAR_MATCHER.or(CharMatcher.is(':'));
         
         QUOTED_PAIR_CHAR_MATCHER = 
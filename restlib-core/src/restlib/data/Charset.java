@@ -1,39 +1,41 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
 import java.nio.charset.IllegalCharsetNameException;
 
 import javax.annotation.Nullable;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.Parser;
-import restlib.impl.Registry;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
+import restlib.impl.Interner;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Functions;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
  * Representation of an HTTP charset token.
  */
 public final class Charset implements Matcheable<Charset> {
-    private static final Registry<Charset> _REGISTERED = new Registry<Charset>();
+    private static final Interner<Charset> _REGISTERED = 
+            Interner.caseInsensitive(Functions.toStringFunction(), 256);
     
     public static final Charset ANY = register(create("*"));
     public static final Charset ISO_8859_1 = register(fromNioCharset(Charsets.ISO_8859_1));
     
-    static final Parser<Charset> PARSER = new Parser<Charset>() {
+    static final CharSequenceParser<Charset> PARSER = new CharSequenceParser<Charset>() {
         @Override
-        public Optional<Charset> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> token = Primitives.TOKEN_PARSER.parse(buffer);
-            if (token.isPresent()) {
-                return Optional.of(Charset.create(token.get()));
-            } else {
-                return Optional.absent();
-            }
-        }     
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanToken(in, pos);
+        }
+
+        @Override
+        protected Charset doValue(final CharSequence in, final int start, final int end) {
+            final Charset registered = _REGISTERED.getIfPresent(in, start, end);
+            return (registered != null) ? 
+                    registered : Charset.create(CharSequenceParsers.substring(in, start, end));
+        }
     };
     
     public static final Charset US_ASCII  = register(fromNioCharset(Charsets.US_ASCII));
@@ -48,15 +50,20 @@ public final class Charset implements Matcheable<Charset> {
     }
     
     /**
-     * Returns a new Charset.
+     * Returns a Charset, which is the canonical instance if {@code charset} is a registered charset.
      * @param charset a non-null HTTP token
      * @throws NullPointerException if {@code charset} is null.
      * @throws IllegalArgumentException if {@code charset} is not a valid HTTP token.
      */
     public static Charset create(final String charset)  {
-        Preconditions.checkNotNull(charset);        
+        Preconditions.checkNotNull(charset);
+        final Charset registered = _REGISTERED.getIfPresent(charset, 0, charset.length());
+        if (registered != null) {
+            return registered;
+        }
+        
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(charset));   
-        return _REGISTERED.getIfPresent(new Charset(CaseInsensitiveString.wrap(charset)));
+        return _REGISTERED.intern(new Charset(CaseInsensitiveString.wrap(charset)));
     }
     
     /**
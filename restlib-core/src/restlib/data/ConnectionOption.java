@@ -17,17 +17,16 @@
 
 package restlib.data;
 
-import java.nio.CharBuffer;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.Parser;
-import restlib.impl.Registry;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
+import restlib.impl.Interner;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -35,21 +34,20 @@ import com.google.common.base.Preconditions;
  */
 @Immutable
 public final class ConnectionOption {
-    private static final Registry<ConnectionOption> _REGISTERED = new Registry<ConnectionOption>();  
+    private static final Interner<ConnectionOption> _REGISTERED = Interner.create();  
     public static final ConnectionOption CLOSE = register(create("close"));
     public static final ConnectionOption KEEP_ALIVE = register(create("Keep-Alive"));
     
-    static Parser<ConnectionOption> PARSER = new Parser<ConnectionOption>() {
+    static CharSequenceParser<ConnectionOption> PARSER = new CharSequenceParser<ConnectionOption>() {
         @Override
-        public Optional<ConnectionOption> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> token = Primitives.TOKEN_PARSER.parse(buffer);
-            if (token.isPresent()) {
-                return Optional.of(ConnectionOption.create(token.get()));
-            } else {
-                return Optional.absent();
-            }
-        } 
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanToken(in, pos);
+        }
+
+        @Override
+        protected ConnectionOption doValue(final CharSequence in, final int start, final int end) {
+            return ConnectionOption.create(CharSequenceParsers.substring(in, start, end));
+        }
     };
     
     /**
@@ -62,7 +60,7 @@ public final class ConnectionOption {
         Preconditions.checkNotNull(connectionOption);   
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(connectionOption));
         
-        return _REGISTERED.getIfPresent(
+        return _REGISTERED.intern(
                 new ConnectionOption(CaseInsensitiveString.wrap(connectionOption)));
     }
     
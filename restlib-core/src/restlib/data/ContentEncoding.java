@@ -1,13 +1,11 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 
@@ -17,24 +15,21 @@ public final class ContentEncoding implements Matcheable<ContentEncoding> {
     public static final ContentEncoding DEFLATE = ContentEncoding.create("deflate");
     public static final ContentEncoding GZIP = ContentEncoding.create("gzip");
    
-    static final Parser<ContentEncoding> PARSER = new Parser<ContentEncoding>() {
+    static final CharSequenceParser<ContentEncoding> PARSER = new CharSequenceParser<ContentEncoding>() {
         @Override
-        public Optional<ContentEncoding> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> token = Primitives.TOKEN_PARSER.parse(buffer);
-            if (token.isPresent()) {
-                return Optional.of(ContentEncoding.create(token.get()));
-            } else {
-                return Optional.absent();
-            }
-        }      
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanToken(in, pos);
+        }
+
+        @Override
+        protected ContentEncoding doValue(final CharSequence in, final int start, final int end) {
+            return ContentEncoding.create(CharSequenceParsers.substring(in, start, end));
+        }
     };
     
-    static final Parser<Iterable<ContentEncoding>> LIST_PARSER =
-            Parsers.listParser(
-                    ContentEncoding.PARSER,
-                    Primitives.OWS_COMMA_OWS_PARSER,
-                    ContentEncoding.class);
+    static final CharSequenceParser<Iterable<ContentEncoding>> LIST_PARSER =
+            CharSequenceParsers.listParser(
+                    ContentEncoding.PARSER, Primitives.OWS_COMMA_OWS_PARSER);
     
     public static ContentEncoding create(final String in) {
         Preconditions.checkNotNull(in);
@@ -17,19 +17,14 @@
 
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -106,30 +101,25 @@ public abstract class EntityTag {
 
     private static final String _WEAK_TAG = "W/";
     
-    static final Parser<EntityTag> PARSER = new Parser<EntityTag>() {
-        final Parser<String> WEAK_TAG_PARSER = Parsers.stringParser(_WEAK_TAG);
+    static final CharSequenceParser<EntityTag> PARSER = new CharSequenceParser<EntityTag>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanQuotedString(in, tagStart(in, pos));
+        }
         
         @Override
-        public Optional<EntityTag> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .readOptional(WEAK_TAG_PARSER) // 0
-                        .read(Primitives.QUOTED_STRING_PARSER) // 1
-                        .tokens();
-            
-            final boolean isWeak = tokens.get(0).isPresent();          
-            if (Optionals.isAbsent(tokens.get(1))) {
-                buffer.position(startPos);
-                return Optional.absent();
-            } else {     
-                final String etag = Optionals.toString(tokens.get(1));  
-                return isWeak ? Optional.of(EntityTag.weakTag(etag)) : Optional.of(EntityTag.strongTag(etag));
-            }
-        }   
+        protected EntityTag doValue(final CharSequence in, final int start, final int end) {
+            final int tagStart = tagStart(in, start);
+            final String etag = Primitives.quotedStringValue(in, tagStart, end);
+            return (tagStart > start) ? EntityTag.weakTag(etag) : EntityTag.strongTag(etag);
+        }
     };
     
+    private static int tagStart(final CharSequence in, final int pos) {
+        final int end = CharSequenceParsers.scanString(in, pos, _WEAK_TAG);
+        return (end != CharSequenceParser.NO_MATCH) ? end : pos;
+    }
+    
     /**
      * Determines if two entity tags are equal using the strong compare algorithm defined
      * in the HTTP specification.
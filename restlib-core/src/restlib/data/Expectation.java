@@ -1,20 +1,15 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.GuavaCollectionHelpers;
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Tokenizer;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
@@ -32,25 +27,20 @@ public final class Expectation {
     public static final Expectation EXPECTS_100_CONTINUE = 
             Expectation.create(ImmutableMap.<String, String> of("100-continue","").entrySet());
     
-    static final Parser<Expectation> PARSER = new Parser<Expectation>() {
+    private static final CharSequenceParser<Iterable<KeyValuePair>> KEY_VALUE_PAIRS_PARSER =
+            CharSequenceParsers.listParser(KeyValuePair.PARSER, Primitives.OWS_SEMICOLON_OWS_PARSER);
+    
+    static final CharSequenceParser<Expectation> PARSER = new CharSequenceParser<Expectation>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            return KEY_VALUE_PAIRS_PARSER.scan(in, pos);
+        }
+        
         @Override
-        public Optional<Expectation> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                                .read(KeyValuePair.PARSER)
-                                .readWhileAvailable(
-                                        Primitives.OWS_SEMICOLON_OWS_PARSER, KeyValuePair.PARSER)
-                                .tokens();
-            
-            if (Optionals.isAbsent(tokens.get(0))) {
-                return Optional.absent();
-            } else {
-                return Optional.of(
-                    Expectation.create(
-                            Iterables.filter(Optional.presentInstances(tokens), KeyValuePair.class)));
-            }
-        }       
+        protected Expectation doValue(final CharSequence in, final int start, final int end) {
+            final Iterable<KeyValuePair> expectations = KEY_VALUE_PAIRS_PARSER.value(in, start, end);
+            return (expectations != null) ? Expectation.create(expectations) : null;
+        }
     };
     
     /**
@@ -37,7 +37,8 @@ public final class Form extends ForwardingMultimap<String, String>{
             CodePointMatcher.inRange('a', 'z')
                             .or(CodePointMatcher.inRange('A', 'Z'))
                             .or(CodePointMatcher.inRange('1', '9'))
-                            .or(CodePointMatcher.anyOf("*-._ "));
+                            .or(CodePointMatcher.anyOf("*-._ "))
+                            .precompute();
     
     private static final Form EMPTY = new Form(ImmutableMultimap.<String, String> of());
     
@@ -18,17 +18,17 @@ package restlib.data;
 
 
 
-import java.nio.CharBuffer;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.Parser;
-import restlib.impl.Registry;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
+import restlib.impl.Interner;
 
+import com.google.common.base.Functions;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -36,42 +36,60 @@ import com.google.common.base.Preconditions;
  */
 @Immutable
 public final class Header {
-    private static final Registry<Header> _REGISTERED = new Registry<Header>();
+    private static final Interner<Header> _REGISTERED = 
+            Interner.caseInsensitive(Functions.toStringFunction(), 1024);
     
-    static final Parser<Header> PARSER = new Parser<Header>() {
+    static final CharSequenceParser<Header> PARSER = new CharSequenceParser<Header>() {
         @Override
-        public Optional<Header> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> token = Primitives.TOKEN_PARSER.parse(buffer);
-            if (token.isPresent()) {
-                return Optional.of(Header.create(token.get()));
-            } else {
-                return Optional.absent();
-            }
-        }       
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanToken(in, pos);
+        }
+
+        @Override
+        protected Header doValue(final CharSequence in, final int start, final int end) {
+            final Header registered = _REGISTERED.getIfPresent(in, start, end);
+            return (registered != null) ? 
+                    registered : Header.create(CharSequenceParsers.substring(in, start, end));
+        }
     };
     
     /**
-     * Returns a new Header.
+     * Returns a Header, which is the canonical instance if {@code header} is a registered header.
      * @param header a non-null HTTP-token.
      * @throws NullPointerException if {@code header} is null.
      * @throws IllegalArgumentException if {@header} is not a valid HTTP-token.
      */
     public static Header create(final String header) {
         Preconditions.checkNotNull(header);
+        final Header registered = _REGISTERED.getIfPresent(header, 0, header.length());
+        if (registered != null) {
+            return registered;
+        }
+        
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(header));
-        final Header parsed = new Header(CaseInsensitiveString.wrap(header));    
-        return _REGISTERED.getIfPresent(parsed);
+        return _REGISTERED.intern(new Header(CaseInsensitiveString.wrap(header), -1));
     }
 
     static Header register(final Header header) {
         return _REGISTERED.register(header);  
     }
     
+    /**
+     * Registers a standard header with a dense ordinal, which is 
+     * used for table driven dispatch by {@link HttpHeaders#ordinalOf(Header)}.
+     */
+    static Header registerStandard(final String header, final int ordinal) {
+        Preconditions.checkArgument(Primitives.IS_TOKEN.apply(header));
+        Preconditions.checkArgument(ordinal >= 0);
+        return _REGISTERED.register(new Header(CaseInsensitiveString.wrap(header), ordinal));
+    }
+    
     private final CaseInsensitiveString header;
+    private final int ordinal;
 
-    private Header(final CaseInsensitiveString header) {
+    private Header(final CaseInsensitiveString header, final int ordinal) {
         this.header = header;
+        this.ordinal = ordinal;
     }
 
     @Override
@@ -85,6 +103,14 @@ public final class Header {
         return false;
     }
 
+    /**
+     * Returns the ordinal of this header if it is the registered instance 
+     * of a standard header, otherwise -1.
+     */
+    int ordinal() {
+        return this.ordinal;
+    }
+    
     @Override
     public int hashCode() {
         return Objects.hashCode(this.header);
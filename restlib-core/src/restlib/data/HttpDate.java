@@ -17,34 +17,35 @@
 
 package restlib.data;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.TimeZone;
+import java.util.Locale;
 
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParsers;
+
 import com.google.common.base.Preconditions;
 
 /**
  * Implementation of {@link DateTime} that provides methods to parse and serializers valid HTTP-date strings.
- * <p> Note: The current implementation only supports parsing and serializing RFC-1123 compliant date strings. Future revisions
- * may support rfc850 and asctime representations for parsing only.
+ * <p> HttpDates are serialized as IMF-fixdate strings. The obsolete RFC 850 and asctime
+ * formats are supported for parsing only.
  */
 @Immutable
 public final class HttpDate extends DateTime {
-    private static final ThreadLocal<DateFormat> FORMATTER = 
-            new ThreadLocal<DateFormat>(){
-                private static final String HTTP_FORMAT = "EEE, d MMM yyyy HH:mm:ss z";
-        
-                @Override
-                protected DateFormat initialValue() {
-                    final DateFormat df = new SimpleDateFormat(HTTP_FORMAT);
-                    df.setTimeZone(TimeZone.getTimeZone("GMT"));
-                    return df;
-                }
-            };
-    
+    private static final String[] DAY_NAMES = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+    private static final String[] LONG_DAY_NAMES =
+        { "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday" };
+    private static final String[] MONTH_NAMES =
+        { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+    private static final String GMT = "GMT";
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    // The length of an IMF-fixdate: "Sun, 06 Nov 1994 08:49:37 GMT"
+    private static final int IMF_FIXDATE_LENGTH = 29;
+
+    private static volatile HttpDate currentSecond = create(0);
+
     /**
      * Returns an instance of HttpDate that is equivalent to {@code date}.
      * @param date an instance of {@link DateTime}.
@@ -54,37 +55,268 @@ public final class HttpDate extends DateTime {
         Preconditions.checkNotNull(date);
         return (date instanceof HttpDate) ? (HttpDate) date : HttpDate.create(date.time());
     }
-    
+
     /**
      * Returns an instance of HttpDate wrapping the time specified by {@code date}.
      * @param date the number of milliseconds from 1970-01-01T00:00:00Z
      */
-    public static HttpDate create(final long date) {    
+    public static HttpDate create(final long date) {
         return new HttpDate(date);
     }
-    
+
+    /**
+     * Returns an instance of HttpDate for the current time truncated to the second,
+     * suitable for use as the value of the Date header. A single instance, including
+     * its string representation, is shared by all threads for the duration of each second.
+     */
+    public static HttpDate currentSecond() {
+        final long now = System.currentTimeMillis();
+        final HttpDate current = currentSecond;
+        if ((now >= current.time()) && (now - current.time() < MILLIS_PER_SECOND)) {
+            return current;
+        }
+
+        final HttpDate retval = create(now - (now % MILLIS_PER_SECOND));
+        // Render the string once, before the instance is shared.
+        retval.toString();
+        currentSecond = retval;
+        return retval;
+    }
+
     /**
      * Returns an instance of HttpDate using the exact current time.
      */
     public static HttpDate now() {
         return create(System.currentTimeMillis());
     }
-            
+
+    /**
+     * Parses an HTTP-date in the IMF-fixdate, RFC 850 or asctime format.
+     * @throws NullPointerException if {@code date} is null.
+     * @throws IllegalArgumentException if {@code date} is not a valid HTTP-date.
+     */
     static HttpDate parse(final CharSequence date)  {
         Preconditions.checkNotNull(date);
-        try {
-            return create(FORMATTER.get().parse(date.toString()).getTime());
-        } catch (final ParseException e) {
-            throw new IllegalArgumentException(e);
+        Preconditions.checkArgument(date.length() > 4);
+
+        final long seconds;
+        if (date.charAt(3) == ',') {
+            seconds = parseImfFixdate(date);
+        } else if (date.charAt(3) == ' ') {
+            seconds = parseAsctime(date);
+        } else {
+            seconds = parseRfc850(date);
+        }
+
+        Preconditions.checkArgument(seconds != Long.MIN_VALUE);
+        return create(seconds * MILLIS_PER_SECOND);
+    }
+
+    // Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+    private static long daysFromCivil(final int year, final int month, final int day) {
+        final int y = (month <= 2) ? year - 1 : year;
+        final int era = ((y >= 0) ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(final int year, final int month) {
+        if (month == 2) {
+            final boolean isLeapYear = (year % 4 == 0) && ((year % 100 != 0) || (year % 400 == 0));
+            return isLeapYear ? 29 : 28;
+        }
+        return ((month == 4) || (month == 6) || (month == 9) || (month == 11)) ? 30 : 31;
+    }
+
+    // Returns the index of the name in {@code names} which {@code in} contains at {@code pos}, or -1.
+    private static int indexOfName(final CharSequence in, final int pos, final String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (CharSequenceParsers.scanString(in, pos, names[i]) == pos + names[i].length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the value of the {@code length} digits at {@code pos}, or -1.
+    private static int parseDigits(final CharSequence in, final int pos, final int length) {
+        if (pos + length > in.length()) {
+            return -1;
+        }
+        return (int) CharSequenceParsers.parseUnsignedLong(in, pos, pos + length);
+    }
+
+    // IMF-fixdate = day-name "," SP date1 SP time-of-day SP GMT
+    // date1 = day SP month SP year ; e.g., 02 Jun 1982
+    private static long parseImfFixdate(final CharSequence in) {
+        if ((in.length() != IMF_FIXDATE_LENGTH) ||
+                (indexOfName(in, 0, DAY_NAMES) < 0) ||
+                (in.charAt(4) != ' ')) {
+            return Long.MIN_VALUE;
+        }
+        return parseDateTimeOfDayGmt(in, 5, ' ', 4);
+    }
+
+    // rfc850-date  = day-name-l "," SP date2 SP time-of-day SP GMT
+    // date2 = day "-" month "-" 2DIGIT ; e.g., 02-Jun-82
+    private static long parseRfc850(final CharSequence in) {
+        final int dayName = indexOfName(in, 0, LONG_DAY_NAMES);
+        if (dayName < 0) {
+            return Long.MIN_VALUE;
+        }
+
+        final int pos = LONG_DAY_NAMES[dayName].length();
+        if ((in.length() != pos + 24) || (in.charAt(pos) != ',') || (in.charAt(pos + 1) != ' ')) {
+            return Long.MIN_VALUE;
+        }
+        return parseDateTimeOfDayGmt(in, pos + 2, '-', 2);
+    }
+
+    private static long parseDateTimeOfDayGmt(
+            final CharSequence in, final int pos, final char separator, final int yearDigits) {
+        final int day = parseDigits(in, pos, 2);
+        final int month = indexOfName(in, pos + 3, MONTH_NAMES) + 1;
+        int year = parseDigits(in, pos + 7, yearDigits);
+        final int timeOfDay = pos + 8 + yearDigits;
+        if ((in.charAt(pos + 2) != separator) ||
+                (in.charAt(pos + 6) != separator) ||
+                (in.charAt(timeOfDay - 1) != ' ') ||
+                (year < 0) ||
+                (CharSequenceParsers.scanString(in, timeOfDay + 9, GMT) != in.length())) {
+            return Long.MIN_VALUE;
+        }
+
+        if (yearDigits == 2) {
+            // Recipients of a timestamp value in rfc850-date format, which uses a
+            // two-digit year, must interpret a timestamp that appears to be more
+            // than 50 years in the future as representing the most recent year in
+            // the past that had the same last two digits.
+            final int currentYear = 
+                    (int) (civilFromDays(System.currentTimeMillis() / MILLIS_PER_SECOND / SECONDS_PER_DAY) / 10000);
+            year += currentYear - (currentYear % 100);
+            if (year > currentYear + 50) {
+                year -= 100;
+            }
+        }
+
+        return parseTimeOfDay(in, timeOfDay, year, month, day);
+    }
+
+    // asctime-date = day-name SP date3 SP time-of-day SP year
+    // date3 = month SP ( 2DIGIT / ( SP 1DIGIT )) ; e.g., Jun  2
+    private static long parseAsctime(final CharSequence in) {
+        if ((in.length() != 24) || (indexOfName(in, 0, DAY_NAMES) < 0)) {
+            return Long.MIN_VALUE;
+        }
+
+        final int month = indexOfName(in, 4, MONTH_NAMES) + 1;
+        final int day = (in.charAt(8) == ' ') ? parseDigits(in, 9, 1) : parseDigits(in, 8, 2);
+        final int year = parseDigits(in, 20, 4);
+        if ((in.charAt(7) != ' ') || (in.charAt(10) != ' ') || (in.charAt(19) != ' ') || (year < 0)) {
+            return Long.MIN_VALUE;
         }
+
+        return parseTimeOfDay(in, 11, year, month, day);
     }
-    
+
+    // time-of-day = hour ":" minute ":" second, followed by SP
+    private static long parseTimeOfDay(
+            final CharSequence in, final int pos, final int year, final int month, final int day) {
+        final int hour = parseDigits(in, pos, 2);
+        final int minute = parseDigits(in, pos + 3, 2);
+        final int second = parseDigits(in, pos + 6, 2);
+
+        if ((month < 1) || (day < 1) || (day > daysInMonth(year, month)) ||
+                (hour < 0) || (hour > 23) ||
+                (minute < 0) || (minute > 59) ||
+                // Allow leap seconds
+                (second < 0) || (second > 60) ||
+                (in.charAt(pos + 2) != ':') || (in.charAt(pos + 5) != ':') || (in.charAt(pos + 8) != ' ')) {
+            return Long.MIN_VALUE;
+        }
+
+        return daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    // Returns the date of the day {@code days} from 1970-01-01, packed as
+    // year * 10000 + month * 100 + day. This is the inverse of daysFromCivil().
+    private static long civilFromDays(final long days) {
+        final long z = days + 719468;
+        final long era = ((z >= 0) ? z : z - 146096) / 146097;
+        final int dayOfEra = (int) (z - era * 146097);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int monthIndex = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        final int month = (monthIndex < 10) ? monthIndex + 3 : monthIndex - 9;
+        final long year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static void appendTwoDigits(final char[] chars, final int pos, final int value) {
+        chars[pos] = (char) ('0' + value / 10);
+        chars[pos + 1] = (char) ('0' + value % 10);
+    }
+
+    // Written once, without synchronization. Racing threads render equal Strings.
+    private String string;
+
     private HttpDate(final long date) {
         super(date);
     }
 
+    /**
+     * Returns this date as an IMF-fixdate, e.g., "Sun, 06 Nov 1994 08:49:37 GMT".
+     */
     @Override
     public String toString() {
-        return FORMATTER.get().format(this.time());
+        String retval = this.string;
+        if (retval == null) {
+            retval = format(this.time());
+            this.string = retval;
+        }
+        return retval;
+    }
+
+    private static String format(final long time) {
+        final long seconds = (time >= 0) ? time / MILLIS_PER_SECOND : (time - 999) / MILLIS_PER_SECOND;
+        final long days = (seconds >= 0) ? seconds / SECONDS_PER_DAY : (seconds - SECONDS_PER_DAY + 1) / SECONDS_PER_DAY;
+        final int secondOfDay = (int) (seconds - days * SECONDS_PER_DAY);
+
+        final long date = civilFromDays(days);
+        final long year = date / 10000;
+        final int month = (int) ((date / 100) % 100);
+        final int day = (int) (date % 100);
+        // 1970-01-01 was a Thursday.
+        final int dayOfWeek = (int) (((days % 7) + 7 + 3) % 7);
+
+        if ((year < 0) || (year > 9999)) {
+            // Not representable as an IMF-fixdate.
+            return String.format(Locale.ENGLISH, "%s, %02d %s %d %02d:%02d:%02d GMT", 
+                    DAY_NAMES[dayOfWeek], day, MONTH_NAMES[month - 1], year, 
+                    secondOfDay / 3600, (secondOfDay / 60) % 60, secondOfDay % 60);
+        }
+        
+        final char[] chars = new char[IMF_FIXDATE_LENGTH];
+        DAY_NAMES[dayOfWeek].getChars(0, 3, chars, 0);
+        chars[3] = ',';
+        chars[4] = ' ';
+        appendTwoDigits(chars, 5, day);
+        chars[7] = ' ';
+        MONTH_NAMES[month - 1].getChars(0, 3, chars, 8);
+        chars[11] = ' ';
+        appendTwoDigits(chars, 12, (int) (year / 100));
+        appendTwoDigits(chars, 14, (int) (year % 100));
+        chars[16] = ' ';
+        appendTwoDigits(chars, 17, secondOfDay / 3600);
+        chars[19] = ':';
+        appendTwoDigits(chars, 20, (secondOfDay / 60) % 60);
+        chars[22] = ':';
+        appendTwoDigits(chars, 23, secondOfDay % 60);
+        chars[25] = ' ';
+        GMT.getChars(0, 3, chars, 26);
+        return new String(chars);
     }
 }
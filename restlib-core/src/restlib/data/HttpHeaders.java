@@ -16,40 +16,62 @@
 
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.Collections;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
-import restlib.impl.Optionals;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.Parser;
 import restlib.impl.Parsers;
 import restlib.net.EmailAddress;
 import restlib.net.Uri;
 
-import com.google.common.base.Function;
-import com.google.common.base.Optional;
+import com.google.common.base.Ascii;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
  * Headers defined in the HTTP specification.
  */
 public final class HttpHeaders {
-    private static final Set<Header> _STANDARD_HEADERS = 
-            Collections.newSetFromMap(Maps.<Header, Boolean> newConcurrentMap());
+    // Only mutated during class initialization.
+    private static final List<Header> _STANDARD_HEADERS = Lists.newArrayList();
+    private static final Map<Header, Integer> _STANDARD_HEADER_ORDINALS = Maps.newHashMap();
+    
+    // Field values of these headers are highly repetitive, so their parsed values
+    // are cached. Each cache is bounded by the total length of its keys, and
+    // values longer than PARSE_CACHE_MAXIMUM_KEY_LENGTH are never cached, so
+    // that clients can not flush the caches with a few large unique values.
+    private static final int PARSE_CACHE_MAXIMUM_KEY_LENGTH = 512;
+    private static final long PARSE_CACHE_MAXIMUM_WEIGHT = 64 * 1024;
+    private static final Weigher<String, Object> PARSE_CACHE_WEIGHER = new Weigher<String, Object>() {
+        @Override
+        public int weigh(final String key, final Object value) {
+            // The parsed value is assumed to be proportional to the length of the field value.
+            return key.length();
+        }
+    };
+    private static final Cache<String, Iterable<Preference<MediaRange>>> ACCEPT_CACHE = newParseCache();
+    private static final Cache<String, Iterable<Preference<ContentEncoding>>> ACCEPT_ENCODING_CACHE = newParseCache();
+    private static final Cache<String, Iterable<Preference<Language>>> ACCEPT_LANGUAGE_CACHE = newParseCache();
+    private static final Cache<String, UserAgent> USER_AGENT_CACHE = newParseCache();
     
     public static final Header ACCEPT = register("Accept");   
-    private static final Parser<Iterable<Preference<MediaRange>>> ACCEPT_PARSER = 
+    private static final CharSequenceParser<Iterable<Preference<MediaRange>>> ACCEPT_PARSER = 
             parsePreferenceList(MediaRange.PARSER, Primitives.OWS_COMMA_OWS_PARSER, MediaRange.class);
     public static final Header ACCEPT_CHARSET = register("Accept-Charset");
-    private static final Parser<Iterable<Preference<Charset>>> ACCEPT_CHARSET_PARSER =
+    private static final CharSequenceParser<Iterable<Preference<Charset>>> ACCEPT_CHARSET_PARSER =
             parsePreferenceList(Charset.PARSER, Primitives.OWS_COMMA_OWS_PARSER, Charset.class);
     public static final Header ACCEPT_ENCODING = register("Accept-Encoding");
-    private static final Parser<Iterable<Preference<ContentEncoding>>> ACCEPT_ENCODING_PARSER =
+    private static final CharSequenceParser<Iterable<Preference<ContentEncoding>>> ACCEPT_ENCODING_PARSER =
             parsePreferenceList(ContentEncoding.PARSER, Primitives.OWS_COMMA_OWS_PARSER, ContentEncoding.class);   
     public static final Header ACCEPT_LANGUAGE = register("Accept-Language"); 
-    private static final Parser<Iterable<Preference<Language>>> ACCEPT_LANGUAGE_PARSER = 
+    private static final CharSequenceParser<Iterable<Preference<Language>>> ACCEPT_LANGUAGE_PARSER = 
             parsePreferenceList(Language.PARSER, Primitives.OWS_COMMA_OWS_PARSER, Language.class);
     public static final Header ACCEPT_RANGES = register("Accept-Ranges");
     public static final Header AGE = register("Age");
@@ -107,7 +129,7 @@ public final class HttpHeaders {
     public static final Header RETRY_AFTER = register("Retry-After");
     public static final Header SERVER = register("Server");
     public static final Header TE = register("TE");
-    private static final Parser<Iterable<Preference<TransferCoding>>> TE_PARSER = 
+    private static final CharSequenceParser<Iterable<Preference<TransferCoding>>> TE_PARSER = 
             parsePreferenceList(
                     TransferCoding.PARSER, Primitives.OWS_COMMA_OWS_PARSER, TransferCoding.class);
     public static final Header TRAILER = register("Trailer");
@@ -142,11 +164,63 @@ public final class HttpHeaders {
     private static Parser<Iterable<ChallengeMessage>> WWW_AUTHENTICATE_PARSER = PROXY_AUTHENTICATE_PARSER;
 
     public static boolean isStandardHeader(final Header header) {
-        return _STANDARD_HEADERS.contains(header);
+        return ordinalOf(header) >= 0;
+    }
+    
+    /**
+     * Returns the ordinal of {@code header} if it is a standard header, otherwise -1. 
+     * Ordinals are dense, ranging from 0 to {@link #standardHeaderCount()} exclusive, 
+     * so that they may be used to index arrays or bitsets. Registered header 
+     * instances, such as those returned by {@link Header#create(String)}, do not 
+     * require a hash lookup.
+     * @throws NullPointerException if {@code header} is null.
+     */
+    public static int ordinalOf(final Header header) {
+        final int ordinal = header.ordinal();
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        
+        // Header instances created before this class was initialized are not
+        // the registered instances.
+        final Integer registered = _STANDARD_HEADER_ORDINALS.get(header);
+        return (registered != null) ? registered : -1;
+    }
+    
+    /**
+     * Returns the ordinal of the standard header named {@code fieldName}, 
+     * compared ignoring case, otherwise -1. Unlike {@link Header#create(String)}, 
+     * no String is created for {@code fieldName}.
+     * @throws NullPointerException if {@code fieldName} is null.
+     */
+    public static int ordinalOf(final CharSequence fieldName) {
+        return StandardHeaderTable.lookup(fieldName);
+    }
+    
+    /**
+     * Returns the standard header with the given ordinal.
+     * @throws IndexOutOfBoundsException if {@code ordinal} is negative or 
+     * not less than {@link #standardHeaderCount()}.
+     */
+    public static Header standardHeader(final int ordinal) {
+        return _STANDARD_HEADERS.get(ordinal);
+    }
+    
+    /**
+     * Returns the number of standard headers.
+     */
+    public static int standardHeaderCount() {
+        return _STANDARD_HEADERS.size();
     }
     
     public static Iterable<Preference<MediaRange>> parseAccept(final CharSequence in) {
-        return Parsers.parseWithParser(in, ACCEPT_PARSER);
+        final String key = in.toString();
+        Iterable<Preference<MediaRange>> retval = ACCEPT_CACHE.getIfPresent(key);
+        if (retval == null) {
+            retval = Parsers.parseWithParser(key, ACCEPT_PARSER);
+            putInParseCache(ACCEPT_CACHE, key, retval);
+        }
+        return retval;
     }
     
     public static Iterable<Preference<Charset>> parseAcceptCharset(final CharSequence in) {
@@ -154,11 +228,23 @@ public final class HttpHeaders {
     }
     
     public static Iterable<Preference<ContentEncoding>> parseAcceptEncoding(final CharSequence in) {
-        return Parsers.parseWithParser(in, ACCEPT_ENCODING_PARSER);
+        final String key = in.toString();
+        Iterable<Preference<ContentEncoding>> retval = ACCEPT_ENCODING_CACHE.getIfPresent(key);
+        if (retval == null) {
+            retval = Parsers.parseWithParser(key, ACCEPT_ENCODING_PARSER);
+            putInParseCache(ACCEPT_ENCODING_CACHE, key, retval);
+        }
+        return retval;
     }
     
     public static Iterable<Preference<Language>> parseAcceptLanguage(final CharSequence in) {
-        return Parsers.parseWithParser(in, ACCEPT_LANGUAGE_PARSER);
+        final String key = in.toString();
+        Iterable<Preference<Language>> retval = ACCEPT_LANGUAGE_CACHE.getIfPresent(key);
+        if (retval == null) {
+            retval = Parsers.parseWithParser(key, ACCEPT_LANGUAGE_PARSER);
+            putInParseCache(ACCEPT_LANGUAGE_CACHE, key, retval);
+        }
+        return retval;
     }
     
     public static Iterable<RangeUnit> parseAcceptRanges(final CharSequence in) {
@@ -269,33 +355,11 @@ public final class HttpHeaders {
         return Parsers.parseWithParser(in, CACHE_CONTROL_PARSER);
     }
     
-    private static <T extends Matcheable<T>> Parser<Iterable<Preference<T>>> parsePreferenceList(
+    private static <T extends Matcheable<T>> CharSequenceParser<Iterable<Preference<T>>> parsePreferenceList(
             final Parser<T> itemParser, 
-            final Parser<?> seperatorParser, 
+            final CharSequenceParser<?> seperatorParser, 
             final Class<T> itemClass) {
-        final Function<Object,Preference<T>> cast =
-                new Function<Object,Preference<T>>() {
-                    @SuppressWarnings("unchecked")
-                    @Override
-                    public Preference<T> apply(final Object input) {
-                        return (Preference<T>) input;
-                    }                        
-                };
-    
-        final Parser<Iterable<?>> parser = 
-                Parsers.untypedListParser(Preference.parser(itemParser, itemClass), seperatorParser, Preference.class);
-            
-        return new Parser<Iterable<Preference<T>>>() {          
-            @Override
-            public Optional<Iterable<Preference<T>>> parse(final CharBuffer buffer) {
-                Preconditions.checkNotNull(buffer);
-                final Optional<Iterable<?>> parsed = parser.parse(buffer);
-                if (Optionals.isAbsent(parsed)) {
-                    return Optional.absent();
-                }
-                return Optional.of(Iterables.transform(parsed.get(), cast));
-            }      
-        };
+        return CharSequenceParsers.listParser(Preference.parser(itemParser, itemClass), seperatorParser);
     }
     
     public static Iterable<ChallengeMessage> parseProxyAuthenticate(final CharSequence in) {
@@ -344,7 +408,39 @@ public final class HttpHeaders {
     }
     
     public static UserAgent parseUserAgent(final CharSequence in) {
-        return UserAgent.parse(in);
+        final String key = in.toString();
+        UserAgent retval = USER_AGENT_CACHE.getIfPresent(key);
+        if (retval == null) {
+            retval = UserAgent.parse(key);
+            putInParseCache(USER_AGENT_CACHE, key, retval);
+        }
+        return retval;
+    }
+    
+    /**
+     * Returns the combined statistics of the caches used by {@link #parseAccept(CharSequence)}, 
+     * {@link #parseAcceptEncoding(CharSequence)}, {@link #parseAcceptLanguage(CharSequence)}
+     * and {@link #parseUserAgent(CharSequence)}.
+     */
+    public static CacheStats parseCacheStats() {
+        return ACCEPT_CACHE.stats()
+                .plus(ACCEPT_ENCODING_CACHE.stats())
+                .plus(ACCEPT_LANGUAGE_CACHE.stats())
+                .plus(USER_AGENT_CACHE.stats());
+    }
+    
+    private static <T> Cache<String, T> newParseCache() {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(PARSE_CACHE_MAXIMUM_WEIGHT)
+                .weigher(PARSE_CACHE_WEIGHER)
+                .recordStats()
+                .<String, T> build();
+    }
+    
+    private static <T> void putInParseCache(final Cache<String, T> cache, final String key, final T value) {
+        if (key.length() <= PARSE_CACHE_MAXIMUM_KEY_LENGTH) {
+            cache.put(key, value);
+        }
     }
     
     public static Iterable<Header> parseVary(final CharSequence in) {
@@ -363,9 +459,55 @@ public final class HttpHeaders {
         return Parsers.parseWithParser(in, WWW_AUTHENTICATE_PARSER);
     }
     
+    /**
+     * Open addressing hash table of the standard header ordinals, keyed by 
+     * the lower case header name. Initialized once all standard headers are registered.
+     */
+    private static final class StandardHeaderTable {
+        private static final String[] NAMES;
+        private static final int[] ORDINALS;
+        
+        static {
+            final int size = Integer.highestOneBit(standardHeaderCount() * 4 - 1);
+            NAMES = new String[size];
+            ORDINALS = new int[size];
+            
+            for (final Header header : _STANDARD_HEADERS) {
+                final String name = Ascii.toLowerCase(header.toString());
+                int i = hash(name) & (size - 1);
+                while (NAMES[i] != null) {
+                    i = (i + 1) & (size - 1);
+                }
+                NAMES[i] = name;
+                ORDINALS[i] = HttpHeaders.ordinalOf(header);
+            }
+        }
+        
+        private static int hash(final CharSequence in) {
+            int retval = 0;
+            for (int i = 0; i < in.length(); i++) {
+                retval = 31 * retval + Ascii.toLowerCase(in.charAt(i));
+            }
+            return retval ^ (retval >>> 16);
+        }
+        
+        static int lookup(final CharSequence fieldName) {
+            final int mask = NAMES.length - 1;
+            for (int i = hash(fieldName) & mask; NAMES[i] != null; i = (i + 1) & mask) {
+                if (CharSequenceParsers.equalsIgnoreCase(fieldName, 0, fieldName.length(), NAMES[i])) {
+                    return ORDINALS[i];
+                }
+            }
+            return -1;
+        }
+    }
+    
     private static Header register(final String header) {
-        final Header retval = Header.register(Header.create(header));   
+        final int ordinal = _STANDARD_HEADERS.size();
+        final Header retval = Header.registerStandard(header, ordinal);  
+        Preconditions.checkState(retval.ordinal() == ordinal);
         _STANDARD_HEADERS.add(retval);
+        _STANDARD_HEADER_ORDINALS.put(retval, ordinal);
         return retval;       
     }
 
@@ -1,19 +1,14 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.List;
 import java.util.Map.Entry;
 
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.ImmutableMapEntry;
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
 
 import com.google.common.base.Ascii;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ForwardingMapEntry;
 
@@ -27,60 +22,72 @@ class KeyValuePair extends ForwardingMapEntry<String,String> {
                 }      
     };
     
-    static final Parser<KeyValuePair> KEY_NOT_Q_PARSER  = new Parser<KeyValuePair>() {        
+    static final CharSequenceParser<KeyValuePair> KEY_NOT_Q_PARSER  = new CharSequenceParser<KeyValuePair>() {        
         @Override
-        public Optional<KeyValuePair> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-                    
-            final int startPos = buffer.position();
-            final Optional<KeyValuePair> kvOptional = PARSER.parse(buffer);
-            
-            if (kvOptional.isPresent()) {
-                final KeyValuePair kv = kvOptional.get();
-                if (Ascii.toLowerCase(kv.getKey()).equals("q")) {
-                    buffer.position(startPos);
-                    return Optional.absent();
-                } else {
-                    return kvOptional;
-                }
-            } else {
-                return Optional.absent();
+        protected int doScan(final CharSequence in, final int pos) {
+            final int end = scanKeyValuePair(in, pos);
+            if ((end != NO_MATCH) && isQ(in, pos)) {
+                return NO_MATCH;
             }
+            return end;
         } 
+        
+        @Override
+        protected KeyValuePair doValue(final CharSequence in, final int start, final int end) {
+            return keyValuePair(in, start, end);
+        }
     };
     
-    static final Parser<KeyValuePair> PARSER = new Parser<KeyValuePair>() {
-        final Parser<Character> EQUALS_CHAR_PARSER = Parsers.charParser('=');
-        
+    static final CharSequenceParser<KeyValuePair> PARSER = new CharSequenceParser<KeyValuePair>() {
         @Override
-        public Optional<KeyValuePair> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .read(Primitives.TOKEN_PARSER) // 0
-                        .readOptional(Primitives.WHITE_SPACE_PARSER) // 1
-                        .read(EQUALS_CHAR_PARSER) // 2
-                        .readOptional(Primitives.WHITE_SPACE_PARSER) // 3
-                        .read(Primitives.WORD_PARSER) // 4
-                        .tokens();
-            
-            if (tokens.get(0).isPresent()) {
-                final String key = Optionals.toString(tokens.get(0));
-                
-                if (tokens.get(2).isPresent() && tokens.get(4).isPresent()) {
-                     return Optional.of(KeyValuePair.create(key, Optionals.toString(tokens.get(4))));
-                } else if (Optionals.isAbsent(tokens.get(2)) && Optionals.isAbsent(tokens.get(4))) {
-                     return Optional.of(KeyValuePair.create(key,""));
-                }
-
-            } 
-            
-            buffer.position(startPos);
-            return Optional.absent();
+        protected int doScan(final CharSequence in, final int pos) {
+            return scanKeyValuePair(in, pos);
         } 
+        
+        @Override
+        protected KeyValuePair doValue(final CharSequence in, final int start, final int end) {
+            return keyValuePair(in, start, end);
+        }
     }; 
     
+    private static boolean isQ(final CharSequence in, final int pos) {
+        final char c = in.charAt(pos);
+        return ((c == 'q') || (c == 'Q')) && (Primitives.scanToken(in, pos) == pos + 1);
+    }
+    
+    /**
+     * Returns the value of a key value pair matched by {@link #scanKeyValuePair(CharSequence, int)}.
+     */
+    static KeyValuePair keyValuePair(final CharSequence in, final int start, final int end) {
+        final int keyEnd = Primitives.scanToken(in, start);
+        final String key = CharSequenceParsers.substring(in, start, keyEnd);
+        
+        final int equals = Primitives.scanOws(in, keyEnd);
+        if ((equals < end) && (in.charAt(equals) == '=')) {
+            final int valueStart = Primitives.scanOws(in, equals + 1);
+            
+            // The scanned key and value are known to be valid.
+            return new KeyValuePair(key, Primitives.wordValue(in, valueStart, end));
+        }
+        return new KeyValuePair(key, "");
+    }
+    
+    /**
+     * Returns the position following {@code token [OWS "=" OWS word]} at {@code pos}.
+     */
+    static int scanKeyValuePair(final CharSequence in, final int pos) {
+        final int keyEnd = Primitives.scanToken(in, pos);
+        if (keyEnd == CharSequenceParser.NO_MATCH) {
+            return CharSequenceParser.NO_MATCH;
+        }
+        
+        final int equals = CharSequenceParsers.scanChar(in, Primitives.scanOws(in, keyEnd), '=');
+        if (equals == CharSequenceParser.NO_MATCH) {
+            return keyEnd;
+        }
+        return Primitives.scanWord(in, Primitives.scanOws(in, equals));
+    }
+    
     static final Function<Entry<String,String>, Entry<String,String>> TO_LOWER_CASE_KEYS =
             new Function<Entry<String,String>, Entry<String,String>> () {
                 @Override
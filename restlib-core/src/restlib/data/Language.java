@@ -1,15 +1,14 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
 import java.util.Locale;
 
 import javax.annotation.Nullable;
 
 import restlib.impl.CaseInsensitiveString;
-import restlib.impl.Parser;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -21,16 +20,15 @@ public final class Language implements Matcheable<Language> {
      */
     public static final Language ANY = Language.create("*");
     
-    static final Parser<Language> PARSER = new Parser<Language>() {
+    static final CharSequenceParser<Language> PARSER = new CharSequenceParser<Language>() {
         @Override
-        public Optional<Language> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> token = Primitives.TOKEN_PARSER.parse(buffer);
-            if (token.isPresent()) {
-                return Optional.of(Language.create(token.get()));
-            } else {
-                return Optional.absent();
-            }
+        protected int doScan(final CharSequence in, final int pos) {
+            return Primitives.scanToken(in, pos);
+        }
+
+        @Override
+        protected Language doValue(final CharSequence in, final int start, final int end) {
+            return Language.create(CharSequenceParsers.substring(in, start, end));
         }
     };
     
@@ -1,25 +1,22 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
-import java.util.List;
-
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.GuavaCollectionHelpers;
 import restlib.impl.Optionals;
-import restlib.impl.Parser;
 import restlib.impl.Parsers;
-import restlib.impl.Registry;
-import restlib.impl.Tokenizer;
+import restlib.impl.Interner;
 
 import com.google.common.base.Ascii;
+import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 
 /**
@@ -28,63 +25,99 @@ import com.google.common.collect.Multimap;
  */
 @Immutable
 public final class MediaRange implements Matcheable<MediaRange>{  
-    private static final Registry<MediaRange> _REGISTERED = new Registry<MediaRange>();
+    private static final Interner<MediaRange> _REGISTERED = 
+            Interner.caseInsensitive(new Function<MediaRange, String>() {
+                // Only media ranges without parameters are indexed by their type and subtype.
+                @Override
+                public String apply(final MediaRange mediaRange) {
+                    return (mediaRange.charset.isPresent() || !mediaRange.parameters.isEmpty()) ? 
+                            null : mediaRange.type + "/" + mediaRange.subtype;
+                }
+            }, 1024);
     
     /**
      * The wildcard {@link MediaRange} "*&#47;*" that matches any {@link MediaRange}.
      */
     public static final MediaRange ANY = register(create("*","*"));
     
-    static final Parser<MediaRange> PARSER = new Parser<MediaRange>() {
+    static final CharSequenceParser<MediaRange> PARSER = new CharSequenceParser<MediaRange>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            final int typeEnd = Primitives.scanToken(in, pos);
+            if (typeEnd == NO_MATCH) {
+                return NO_MATCH;
+            }
+            
+            final int slash = CharSequenceParsers.scanChar(in, typeEnd, '/');
+            if (slash == NO_MATCH) {
+                return NO_MATCH;
+            }
+            
+            final int subtypeEnd = Primitives.scanToken(in, slash);
+            return (subtypeEnd != NO_MATCH) ? scanParameters(in, subtypeEnd) : NO_MATCH;
+        }
+        
         @Override
-        public Optional<MediaRange> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .read(Primitives.TOKEN_PARSER) // 0
-                        .read(Parsers.charParser('/')) // 1
-                        .read(Primitives.TOKEN_PARSER) // 2
-                        .readWhileAvailable(
-                                Primitives.OWS_SEMICOLON_OWS_PARSER, 
-                                KeyValuePair.KEY_NOT_Q_PARSER) // 3
-                        .tokens();
+        protected MediaRange doValue(final CharSequence in, final int start, final int end) {
+            final int typeEnd = Primitives.scanToken(in, start);
+            final int subtypeEnd = Primitives.scanToken(in, typeEnd + 1);
+            
+            if (subtypeEnd == end) {
+                final MediaRange registered = _REGISTERED.getIfPresent(in, start, end);
+                if (registered != null) {
+                    return registered;
+                }
+            }
             
-            if (Optionals.isAbsent(tokens.get(0)) || Optionals.isAbsent(tokens.get(2))) {
-                buffer.position(startPos);
-                return Optional.absent();
-            } else {           
-                final String type = Ascii.toLowerCase(tokens.get(0).get().toString());
-                final String subtype = Ascii.toLowerCase(tokens.get(2).get().toString());
-                Optional<Charset> charset = Optional.absent();
-                final ImmutableSetMultimap.Builder<String, String> parameters = ImmutableSetMultimap.builder();
-                for (final KeyValuePair kvp : Iterables.filter(Optional.presentInstances(tokens), KeyValuePair.class)) {
-                    if (Ascii.toLowerCase(kvp.getKey()).equals("charset")) {
-                        if (charset.isPresent()) {
-                            buffer.position(startPos);
-                            return Optional.absent();
-                        }
-                        
-                        try {
-                            charset = Optional.of(Charset.create(kvp.getValue()));
-                        } catch (final IllegalArgumentException e) {
-                            buffer.position(startPos);
-                            return Optional.absent();
-                        }
-                        
-                        if (charset.get().equals(Charset.ANY)) {
-                            buffer.position(startPos);
-                            return Optional.absent();
-                        }
-                        
-                        continue;
+            final String type = Ascii.toLowerCase(CharSequenceParsers.substring(in, start, typeEnd));
+            final String subtype = Ascii.toLowerCase(CharSequenceParsers.substring(in, typeEnd + 1, subtypeEnd));
+            Optional<Charset> charset = Optional.absent();
+            
+            final ImmutableSetMultimap.Builder<String, String> parameters = ImmutableSetMultimap.builder();
+            int pos = subtypeEnd;
+            while (pos < end) {
+                final int kvStart = Primitives.scanSeparator(in, pos, ';');
+                pos = KeyValuePair.scanKeyValuePair(in, kvStart);
+                
+                final KeyValuePair kvp = KeyValuePair.keyValuePair(in, kvStart, pos);
+                if (Ascii.toLowerCase(kvp.getKey()).equals("charset")) {
+                    if (charset.isPresent()) {
+                        return null;
+                    }
+                    
+                    try {
+                        charset = Optional.of(Charset.create(kvp.getValue()));
+                    } catch (final IllegalArgumentException e) {
+                        return null;
+                    }
+                    
+                    if (charset.get().equals(Charset.ANY)) {
+                        return null;
                     }
-                    parameters.put(KeyValuePair.TO_LOWER_CASE_KEYS.apply(kvp));
+                    
+                    continue;
                 }
-
-                return Optional.of(MediaRange.create(type, subtype, charset, parameters.build()));
+                parameters.put(KeyValuePair.TO_LOWER_CASE_KEYS.apply(kvp));
             }
-        }       
+            
+            return MediaRange.create(type, subtype, charset, parameters.build());
+        }
+        
+        private int scanParameters(final CharSequence in, final int pos) {
+            int end = pos;
+            while (true) {
+                final int separatorEnd = Primitives.scanSeparator(in, end, ';');
+                if (separatorEnd == NO_MATCH) {
+                    return end;
+                }
+                
+                final int parameterEnd = KeyValuePair.KEY_NOT_Q_PARSER.scan(in, separatorEnd);
+                if (parameterEnd == NO_MATCH) {
+                    return end;
+                }
+                end = parameterEnd;
+            }
+        }
     };
     
     /**
@@ -161,7 +194,7 @@ public final class MediaRange implements Matcheable<MediaRange>{
         Preconditions.checkNotNull(parameters);
         
         final MediaRange mr = new MediaRange(type, subtype, charset, parameters);   
-        return _REGISTERED.getIfPresent(mr);
+        return _REGISTERED.intern(mr);
     }    
     
     private static MediaRange create(
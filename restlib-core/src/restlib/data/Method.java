@@ -3,8 +3,9 @@ package restlib.data;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.Registry;
+import restlib.impl.Interner;
 
+import com.google.common.base.Functions;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
@@ -13,7 +14,8 @@ import com.google.common.base.Preconditions;
  */
 @Immutable
 public final class Method {
-    private static final Registry<Method> _REGISTERED = new Registry<Method>();
+    private static final Interner<Method> _REGISTERED = 
+            Interner.caseSensitive(Functions.toStringFunction(), 64);
     
     /**
      * @see <a href="http://tools.ietf.org/html/rfc3744#section-8.1">[RFC3744], Section 8.1</a>
@@ -207,12 +209,13 @@ public final class Method {
     
     private static Method register(final String methodName) {
         Preconditions.checkNotNull(methodName);
-        final Method method = Method.forName(methodName);
-        return _REGISTERED.register(method);
+        Preconditions.checkArgument(Primitives.IS_TOKEN.apply(methodName));
+        return _REGISTERED.register(new Method(methodName));
     }
     
     /**
-     * Returns an instance of Method for the given {@code methodName}.
+     * Returns an instance of Method for the given {@code methodName}, which is the
+     * canonical instance if {@code methodName} is a registered method.
      * @param methodName a non-null HTTP token.
      * @throws NullPointerException if {@code methodName} is null.
      * @throws IllegalArgumentException if {@code methodName} is not a valid 
@@ -221,8 +224,13 @@ public final class Method {
      */
     public static Method forName(final String methodName) {
         Preconditions.checkNotNull(methodName);
+        final Method registered = _REGISTERED.getIfPresent(methodName, 0, methodName.length());
+        if (registered != null) {
+            return registered;
+        }
+        
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(methodName));
-        return _REGISTERED.getIfPresent(new Method(methodName));
+        return _REGISTERED.intern(new Method(methodName));
     }
  
     private final String methodName;
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.data;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+/**
+ * An index of the values available to a resource, which is built once and used to
+ * choose the best match for a client's preferences. Available values are bucketed by
+ * the only values of a preference that can match them, so that {@link #bestMatch(Iterable)}
+ * takes time proportional to the number of preferences rather than the product of
+ * preferences and available values. The result is always equal to
+ * {@link Preference#bestMatch(Iterable, Iterable)} over the same available values.
+ * @param <T>
+ */
+@Immutable
+public final class NegotiationIndex<T extends Matcheable<T>> {
+    /**
+     * Computes the keys of the buckets of a NegotiationIndex.
+     */
+    private static abstract class Bucketer<T> {
+        /**
+         * Returns the keys of the buckets which {@code available} is added to.
+         */
+        abstract Iterable<?> keysOf(T available);
+
+        /**
+         * Returns the key of the bucket which contains every available value
+         * that {@code preferred} may match, or null if it may match any value.
+         */
+        @Nullable
+        abstract Object keyOf(T preferred);
+    }
+
+    private static final class WildcardBucketer<T> extends Bucketer<T> {
+        private final T any;
+
+        private WildcardBucketer(final T any) {
+            this.any = any;
+        }
+
+        @Override
+        Iterable<?> keysOf(final T available) {
+            return ImmutableList.of(available);
+        }
+
+        @Override
+        Object keyOf(final T preferred) {
+            return preferred.equals(this.any) ? null : preferred;
+        }
+    }
+
+    private static final Bucketer<MediaRange> MEDIA_RANGE_BUCKETER = new Bucketer<MediaRange>() {
+        @Override
+        Iterable<?> keysOf(final MediaRange available) {
+            return ImmutableList.of(
+                    available.type() + "/",
+                    available.type() + "/" + available.subtype());
+        }
+
+        @Override
+        Object keyOf(final MediaRange preferred) {
+            if (preferred.equals(MediaRange.ANY)) {
+                return null;
+            } else if (preferred.subtype().equals("*")) {
+                return preferred.type() + "/";
+            }
+            return preferred.type() + "/" + preferred.subtype();
+        }
+    };
+
+    /**
+     * Returns an index of the {@code available} charsets.
+     * @throws NullPointerException if {@code available} is null or contains null values.
+     */
+    public static NegotiationIndex<Charset> charsets(final Iterable<Charset> available) {
+        return new NegotiationIndex<Charset>(available, new WildcardBucketer<Charset>(Charset.ANY));
+    }
+
+    /**
+     * Returns an index of the {@code available} content encodings.
+     * @throws NullPointerException if {@code available} is null or contains null values.
+     */
+    public static NegotiationIndex<ContentEncoding> contentEncodings(final Iterable<ContentEncoding> available) {
+        return new NegotiationIndex<ContentEncoding>(
+                available, new WildcardBucketer<ContentEncoding>(ContentEncoding.ANY));
+    }
+
+    /**
+     * Returns an index of the {@code available} languages.
+     * @throws NullPointerException if {@code available} is null or contains null values.
+     */
+    public static NegotiationIndex<Language> languages(final Iterable<Language> available) {
+        return new NegotiationIndex<Language>(available, new WildcardBucketer<Language>(Language.ANY));
+    }
+
+    /**
+     * Returns an index of the {@code available} media ranges.
+     * @throws NullPointerException if {@code available} is null or contains null values.
+     */
+    public static NegotiationIndex<MediaRange> mediaRanges(final Iterable<MediaRange> available) {
+        return new NegotiationIndex<MediaRange>(available, MEDIA_RANGE_BUCKETER);
+    }
+
+    private final ImmutableList<T> available;
+    private final Bucketer<T> bucketer;
+
+    // Buckets preserve the order of the available values, which breaks ties between equal scores.
+    private final ImmutableListMultimap<Object, T> buckets;
+
+    private NegotiationIndex(final Iterable<T> available, final Bucketer<T> bucketer) {
+        this.available = ImmutableList.copyOf(available);
+        this.bucketer = bucketer;
+
+        final ImmutableListMultimap.Builder<Object, T> builder = ImmutableListMultimap.builder();
+        for (final T value : this.available) {
+            for (final Object key : bucketer.keysOf(value)) {
+                builder.put(key, value);
+            }
+        }
+        this.buckets = builder.build();
+    }
+
+    /**
+     * Returns the available values in this index.
+     */
+    public List<T> available() {
+        return this.available;
+    }
+
+    /**
+     * Returns the best match between the preferred list of preferences
+     * and the available values in this index.
+     * @throws NullPointerException if {@code preferred} is null.
+     */
+    public Optional<T> bestMatch(final Iterable<Preference<T>> preferred) {
+        Preconditions.checkNotNull(preferred);
+
+        int prefScore = 0;
+        T bestMatch = null;
+
+        for (final Preference<T> preference : preferred) {
+            final Object key = this.bucketer.keyOf(preference.value());
+            final List<T> candidates = (key != null) ? this.buckets.get(key) : this.available;
+
+            for (final T availableT : candidates) {
+                final int score =
+                        preference.value().match(availableT) * preference.qualityFactor() / 1000;
+                if (score > prefScore) {
+                    prefScore = score;
+                    bestMatch = availableT;
+                }
+            }
+        }
+
+        return Optional.fromNullable(bestMatch);
+    }
+
+    @Override
+    public String toString() {
+        return this.available.toString();
+    }
+}
@@ -1,27 +1,24 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
 import java.util.List;
 import java.util.Map.Entry;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.GuavaCollectionHelpers;
-import restlib.impl.Optionals;
 import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Range;
 
 /**
  * Wrapper around a Matcheable<T> which represents a clients preference for a given 
@@ -30,52 +27,12 @@ import com.google.common.collect.Range;
  */
 @Immutable
 public final class Preference<T extends Matcheable<T>> {   
-    private static final Parser<Character> EQUALS_CHAR_PARSER = Parsers.charParser('=');
-    
-    private static final Parser<Character> Q_CHAR_PARSER = 
-            Parsers.characterPredicateParser(CharMatcher.anyOf("qQ"));
-    
-    private static final Parser<Integer> QF_PARSER = new Parser<Integer>() {
-        final Parser<Character> PERIOD_PARSER = Parsers.charParser('.');
-        final Range<Integer> RANGE = Range.closed(0,1000);
-        
-        @Override
-        public Optional<Integer> parse(final CharBuffer buffer) {        
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            
-            final List<Optional<Object>> tokens =
-                    Tokenizer.create(buffer)
-                        .read(Parsers.DIGIT_PARSER) // 0
-                        .read(PERIOD_PARSER) // 1
-                        .read(Parsers.DIGIT_PARSER) // 2
-                        .read(Parsers.DIGIT_PARSER) // 3
-                        .read(Parsers.DIGIT_PARSER) // 4
-                        .tokens();
-            
-            if (Optionals.isAbsent(tokens.get(0)) ||
-                    (tokens.get(1).isPresent() && Optionals.isAbsent(tokens.get(2)))) {
-                buffer.position(startPos);
-                return Optional.absent();
-            } 
-            
-            final int retval = 
-                    ((Integer) tokens.get(0).get() * 1000) + 
-                    ((Integer) tokens.get(2).or(0) * 100) +
-                    ((Integer) tokens.get(3).or(0) * 10) +
-                    (Integer) tokens.get(4).or(0);
-            
-            if (RANGE.contains(retval)) {
-                return Optional.of(retval);
-            }
-            
-            return Optional.absent();
-        }        
-    };
+    private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
     
     /**
      * Returns the best match between the preferred list of preferences
      * and the available instances of T.
+     * @see NegotiationIndex
      * @param preferred
      * @param available
      * @return
@@ -141,55 +98,128 @@ public final class Preference<T extends Matcheable<T>> {
         return new Preference<T>(value, qualityFactor, ImmutableListMultimap.copyOf(parameters));
     }
     
-    static <T extends Matcheable<T>> Parser<Preference<T>> parser(
+    static <T extends Matcheable<T>> CharSequenceParser<Preference<T>> parser(
             final Parser<T> value, final Class<T> clss) {
         Preconditions.checkNotNull(value);
         Preconditions.checkNotNull(clss);
         
-        return new Parser<Preference<T>>() {
+        final CharSequenceParser<T> valueParser = CharSequenceParser.fromParser(value);
+        return new CharSequenceParser<Preference<T>>() {
             @Override
-            public Optional<Preference<T>> parse(final CharBuffer buffer) {
-                Preconditions.checkNotNull(buffer);
-                final int startPos = buffer.position();
-                final List<Optional<Object>> tokens = 
-                        Tokenizer.create(buffer)
-                            .read(value) // 0
-                            .read(Primitives.OWS_SEMICOLON_OWS_PARSER) // 1
-                            .read(Q_CHAR_PARSER) // 2
-                            .readOptional(Primitives.WHITE_SPACE_PARSER) // 3
-                            .read(EQUALS_CHAR_PARSER) // 4
-                            .readOptional(Primitives.WHITE_SPACE_PARSER) // 5
-                            .read(QF_PARSER) // 6
-                            .readOptional(Primitives.WHITE_SPACE_PARSER) // 7
-                            .readWhileAvailable(
-                                    Primitives.OWS_SEMICOLON_OWS_PARSER, KeyValuePair.PARSER) // 8
-                            .tokens();
+            protected int doScan(final CharSequence in, final int pos) {
+                final int valueEnd = valueParser.scan(in, pos);
+                if (valueEnd == NO_MATCH) {
+                    return NO_MATCH;
+                }
                 
-                if (Optionals.isAbsent(tokens.get(0))) {
-                    return Optional.absent();
-                } 
+                final int q = Primitives.scanSeparator(in, valueEnd, ';');
+                if ((q == NO_MATCH) || !isQ(in, q)) {
+                    return valueEnd;
+                }
                 
-                final T value = clss.cast(tokens.get(0).get());
-                if (Optionals.isAbsent(tokens.get(2))) {
-                    return Optional.of(Preference.create(value));
+                final int qualityFactorEnd = scanQualityFactor(in, scanQualityFactorStart(in, q));
+                if (qualityFactorEnd == NO_MATCH) {
+                    return NO_MATCH;
                 }
                 
-                if (Optionals.isAbsent(tokens.get(6))) {
-                    buffer.position(startPos);
-                    return Optional.absent();
+                int end = Primitives.scanOws(in, qualityFactorEnd);
+                while (true) {
+                    final int separatorEnd = Primitives.scanSeparator(in, end, ';');
+                    if (separatorEnd == NO_MATCH) {
+                        return end;
+                    }
+                    
+                    final int parameterEnd = KeyValuePair.scanKeyValuePair(in, separatorEnd);
+                    if (parameterEnd == NO_MATCH) {
+                        return end;
+                    }
+                    end = parameterEnd;
                 }
+            }
 
-                final int qualityFactor = (Integer) tokens.get(6).get();            
-                final Iterable<KeyValuePair> parameters = 
-                        FluentIterable
-                            .from(Optional.presentInstances(tokens))
-                            .skip(8)
-                            .filter(KeyValuePair.class);                
-                return Optional.of(Preference.create(value, qualityFactor, parameters));
+            @Override
+            protected Preference<T> doValue(final CharSequence in, final int start, final int end) {
+                final int valueEnd = valueParser.scan(in, start);
+                final T parsedValue = valueParser.value(in, start, valueEnd);
+                if (parsedValue == null) {
+                    return null;
+                } else if (valueEnd == end) {
+                    return Preference.create(parsedValue);
+                }
+                
+                final int q = Primitives.scanSeparator(in, valueEnd, ';');
+                final int qualityFactorStart = scanQualityFactorStart(in, q);
+                final int qualityFactorEnd = scanQualityFactor(in, qualityFactorStart);
+                final int qualityFactor = qualityFactor(in, qualityFactorStart, qualityFactorEnd);
+                
+                final List<KeyValuePair> parameters = Lists.newArrayList();
+                int pos = Primitives.scanOws(in, qualityFactorEnd);
+                while (pos < end) {
+                    final int parameterStart = Primitives.scanSeparator(in, pos, ';');
+                    pos = KeyValuePair.scanKeyValuePair(in, parameterStart);
+                    parameters.add(KeyValuePair.keyValuePair(in, parameterStart, pos));
+                }
+                
+                return Preference.create(parsedValue, qualityFactor, parameters);
             }           
         };
     }
     
+    private static boolean isQ(final CharSequence in, final int pos) {
+        if (pos >= in.length()) {
+            return false;
+        }
+        final char c = in.charAt(pos);
+        return (c == 'q') || (c == 'Q');
+    }
+    
+    /**
+     * Returns the position of the qvalue following {@code q OWS "=" OWS} at {@code pos}.
+     */
+    private static int scanQualityFactorStart(final CharSequence in, final int pos) {
+        final int equals = CharSequenceParsers.scanChar(in, Primitives.scanOws(in, pos + 1), '=');
+        return (equals != CharSequenceParser.NO_MATCH) ? 
+                Primitives.scanOws(in, equals) : CharSequenceParser.NO_MATCH;
+    }
+    
+    /**
+     * Returns the position following a qvalue, {@code DIGIT ["." 1*DIGIT]}, 
+     * at {@code pos} if its value is no greater than 1. RFC 2616 allows at most 
+     * three decimal places, but longer values are accepted and truncated.
+     */
+    private static int scanQualityFactor(final CharSequence in, final int pos) {
+        final int length = in.length();
+        if ((pos == CharSequenceParser.NO_MATCH) || 
+                (pos >= length) || !DIGITS.matches(in.charAt(pos))) {
+            return CharSequenceParser.NO_MATCH;
+        }
+        
+        int end = pos + 1;
+        if ((end < length) && (in.charAt(end) == '.')) {
+            final int fractionEnd = CharSequenceParsers.scanDigits(in, end + 1);
+            if (fractionEnd == end + 1) {
+                return CharSequenceParser.NO_MATCH;
+            }
+            end = fractionEnd;
+        }
+        
+        return (qualityFactor(in, pos, end) <= 1000) ? end : CharSequenceParser.NO_MATCH;
+    }
+    
+    /**
+     * Returns the value in thousandths of the qvalue between {@code start} and {@code end},
+     * ignoring any digits past the third decimal place.
+     */
+    private static int qualityFactor(final CharSequence in, final int start, final int end) {
+        int retval = (in.charAt(start) - '0') * 1000;
+        int scale = 100;
+        for (int i = start + 2; i < Math.min(end, start + 5); i++) {
+            retval += (in.charAt(i) - '0') * scale;
+            scale /= 10;
+        }
+        return retval;
+    }
+    
     private final ImmutableMultimap<String, String> parameters;
     private final int qualityFactor;
     private final T value;
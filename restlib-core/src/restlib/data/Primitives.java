@@ -5,18 +5,15 @@ package restlib.data;
 
 
 import java.nio.CharBuffer;
-import java.util.List;
 
-import restlib.impl.CharBuffers;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.CharSequences;
-import restlib.impl.Optionals;
 import restlib.impl.Parser;
 import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
 import restlib.net.HostPort;
 
 import com.google.common.base.CharMatcher;
-import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -83,117 +80,179 @@ final class Primitives {
             if (CharSequences.isEmpty(input)) {
                 return false;
             }
-            return CharMatchers.TCHAR_MATCHER.matchesAllOf(input);
+            return CharMatchers.TCHAR_CODEPOINT_MATCHER.matchesAllOf(input);
         }         
     };
     
     static final Predicate<CharSequence> IS_WORD =
             Predicates.<CharSequence> or(IS_TOKEN, IS_QUOTABLE);
  
-    static final Parser<String> OWS_COMMA_OWS_PARSER = new Parser<String>() {
-        final Joiner joiner = Joiner.on("");
-        
+    static final CharSequenceParser<String> OWS_COMMA_OWS_PARSER = separatorParser(',');
+    
+    static final CharSequenceParser<String> OWS_SEMICOLON_OWS_PARSER = separatorParser(';');
+    
+    static final CharSequenceParser<String> QUOTED_STRING_PARSER = new CharSequenceParser<String>() {
         @Override
-        public Optional<String> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                         .readOptional(WHITE_SPACE_PARSER) // 0
-                         .read(Parsers.charParser(',')) // 1
-                         .readOptional(WHITE_SPACE_PARSER) // 2
-                         .tokens();
-            
-            return Optional.of(joiner.join(Optional.presentInstances(tokens)));
+        protected int doScan(final CharSequence in, final int pos) {
+            return scanQuotedString(in, pos);
+        }
+
+        @Override
+        protected String doValue(final CharSequence in, final int start, final int end) {
+            return quotedStringValue(in, start, end);
         }    
     };
     
-    static final Parser<String> OWS_SEMICOLON_OWS_PARSER = new Parser<String>() {
-        final Joiner joiner = Joiner.on("");
-        
+    static final CharSequenceParser<String> TOKEN_PARSER = new CharSequenceParser<String>() {
         @Override
-        public Optional<String> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                         .readOptional(WHITE_SPACE_PARSER) // 0
-                         .read(Parsers.charParser(';'))         // 1
-                         .readOptional(WHITE_SPACE_PARSER) // 2
-                         .tokens();
-            
-            return Optional.of(joiner.join(Optional.presentInstances(tokens)));
-        }    
+        protected int doScan(final CharSequence in, final int pos) {
+            return scanToken(in, pos);
+        }
+
+        @Override
+        protected String doValue(final CharSequence in, final int start, final int end) {
+            return CharSequenceParsers.substring(in, start, end);
+        }
     };
     
-    static final Parser<String> QUOTED_STRING_PARSER = new Parser<String>() {
+    static final CharSequenceParser<String> WHITE_SPACE_PARSER = new CharSequenceParser<String>() {
         @Override
-        public Optional<String> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
+        protected int doScan(final CharSequence in, final int pos) {
+            final int end = scanOws(in, pos);
+            return (end > pos) ? end : NO_MATCH;
+        }
+
+        @Override
+        protected String doValue(final CharSequence in, final int start, final int end) {
+            return CharSequenceParsers.substring(in, start, end);
+        }
+    };
     
-            if (startPos >= buffer.capacity()) {
-                return Optional.absent();
-            }
-            
-            if (buffer.get() != DQUOTE_CHAR) {
-                CharBuffers.pushback(buffer);
-                return Optional.absent();
+    static final CharSequenceParser<String> WORD_PARSER = new CharSequenceParser<String>() {
+        @Override
+        protected int doScan(final CharSequence in, final int pos) {
+            return scanWord(in, pos);
+        }
+
+        @Override
+        protected String doValue(final CharSequence in, final int start, final int end) {
+            return wordValue(in, start, end);
+        }      
+    };
+    
+    static final Parser<?> HOST_PORT_OR_PSEUDONYM = 
+            Parsers.firstAvailableParser(
+                    Primitives.HOST_PORT_PARSER, Primitives.TOKEN_PARSER);
+    
+    /**
+     * Returns the position following optional white space at {@code pos}.
+     */
+    static int scanOws(final CharSequence in, final int pos) {
+        return CharSequenceParsers.scanWhile(in, pos, CharMatchers.WHITE_SPACE_MATCHER);
+    }
+    
+    /**
+     * Returns the position following a quoted-string at {@code pos}, including its closing quote.
+     */
+    static int scanQuotedString(final CharSequence in, final int pos) {
+        final int length = in.length();
+        if ((pos >= length) || (in.charAt(pos) != DQUOTE_CHAR)) {
+            return CharSequenceParser.NO_MATCH;
+        }
+        
+        int i = pos + 1;
+        while (i < length) {
+            final char c = in.charAt(i);
+            if (c == DQUOTE_CHAR) {
+                return i + 1;
+            } else if (c == ESCAPE_CHAR) {
+                if ((i + 1 >= length) || !CharMatchers.QUOTED_PAIR_CHAR_MATCHER.matches(in.charAt(i + 1))) {
+                    return CharSequenceParser.NO_MATCH;
+                }
+                i += 2;
+            } else if (CharMatchers.QD_TEXT_MATCHER.matches(c)) {
+                i++;
+            } else {
+                return CharSequenceParser.NO_MATCH;
             }
-            
-            final StringBuilder retval =
-                    new StringBuilder();
-            
-            while(buffer.position() < buffer.capacity()) {
-                final char c = buffer.get();
-                
-                if (CharMatchers.QD_TEXT_MATCHER.apply(c)) {
-                    retval.append(c);
-                } else if (c == ESCAPE_CHAR) {             
-                    if (buffer.position() >= buffer.capacity()) {
-                        buffer.position(startPos);
-                        return Optional.absent();
-                    }
-                            
-                    final char next = buffer.get();                
-                    if (CharMatchers.QUOTED_PAIR_CHAR_MATCHER.apply(next)) {
-                        retval.append(next);
+        }
+        return CharSequenceParser.NO_MATCH;
+    }
+    
+    /**
+     * Returns the position following {@code OWS separator OWS} at {@code pos}.
+     */
+    static int scanSeparator(final CharSequence in, final int pos, final char separator) {
+        final int end = CharSequenceParsers.scanChar(in, scanOws(in, pos), separator);
+        return (end != CharSequenceParser.NO_MATCH) ? scanOws(in, end) : CharSequenceParser.NO_MATCH;
+    }
+    
+    /**
+     * Returns the position following a non-empty token at {@code pos}.
+     */
+    static int scanToken(final CharSequence in, final int pos) {
+        if ((pos < 0) || (pos >= in.length())) {
+            return CharSequenceParser.NO_MATCH;
+        }
+        final int end = CharMatchers.TCHAR_CODEPOINT_MATCHER.indexOfFirstNonMatching(in, pos);
+        return (end > pos) ? end : CharSequenceParser.NO_MATCH;
+    }
+    
+    /**
+     * Returns the position following a token or quoted-string at {@code pos}.
+     */
+    static int scanWord(final CharSequence in, final int pos) {
+        final int end = scanToken(in, pos);
+        return (end != CharSequenceParser.NO_MATCH) ? end : scanQuotedString(in, pos);
+    }
+    
+    /**
+     * Returns the unescaped contents of the quoted-string between {@code start} and {@code end}.
+     */
+    static String quotedStringValue(final CharSequence in, final int start, final int end) {
+        final int contentEnd = end - 1;
+        for (int i = start + 1; i < contentEnd; i++) {
+            if (in.charAt(i) == ESCAPE_CHAR) {
+                final StringBuilder retval = new StringBuilder(contentEnd - start);
+                retval.append(in, start + 1, i);
+                for (int j = i; j < contentEnd; j++) {
+                    final char c = in.charAt(j);
+                    if (c == ESCAPE_CHAR) {
+                        j++;
+                        retval.append(in.charAt(j));
                     } else {
-                        buffer.position(startPos);
-                        return Optional.absent();
+                        retval.append(c);
                     }
-                } else if (c == DQUOTE_CHAR) {
-                    return Optional.of(retval.toString());
-                } else {
-                    buffer.position(startPos);
-                    return Optional.absent();
                 }
+                return retval.toString();
             }
-            
-            buffer.position(startPos);
-            return Optional.absent();
-        }    
-    };
-    
-    static final Parser<String> TOKEN_PARSER = Parsers.whileMatchesParser(CharMatchers.TCHAR_MATCHER);
+        }
+        
+        // Most quoted-strings do not include quoted-pairs.
+        return CharSequenceParsers.substring(in, start + 1, contentEnd);
+    }
     
-    static final Parser<String> WHITE_SPACE_PARSER = Parsers.whileMatchesParser(CharMatchers.WHITE_SPACE_MATCHER);
+    /**
+     * Returns the value of the token or quoted-string between {@code start} and {@code end}.
+     */
+    static String wordValue(final CharSequence in, final int start, final int end) {
+        return (in.charAt(start) == DQUOTE_CHAR) ?
+                quotedStringValue(in, start, end) : CharSequenceParsers.substring(in, start, end);
+    }
     
-    static final Parser<String> WORD_PARSER = new Parser<String>() {
-        final Parser<Object> parser = Parsers.firstAvailableParser(TOKEN_PARSER, QUOTED_STRING_PARSER);
-        @Override
-        public Optional<String> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<Object> result = parser.parse(buffer);
-            if (Optionals.isAbsent(result)) {
-                return Optional.absent();
-            } else {
-                return Optional.of((String) result.get());
+    private static CharSequenceParser<String> separatorParser(final char separator) {
+        return new CharSequenceParser<String>() {
+            @Override
+            protected int doScan(final CharSequence in, final int pos) {
+                return scanSeparator(in, pos, separator);
             }
-        }        
-    };
-    
-    static final Parser<?> HOST_PORT_OR_PSEUDONYM = 
-            Parsers.firstAvailableParser(
-                    Primitives.HOST_PORT_PARSER, Primitives.TOKEN_PARSER);
+
+            @Override
+            protected String doValue(final CharSequence in, final int start, final int end) {
+                return CharSequenceParsers.substring(in, start, end);
+            }
+        };
+    }
     
     static String encodeQuotedString(final String in) {
         Preconditions.checkNotNull(in);
@@ -18,20 +18,14 @@
 package restlib.data;
 
 
-import java.nio.CharBuffer;
-import java.util.List;
-
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Registry;
-import restlib.impl.Tokenizer;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
+import restlib.impl.Interner;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -39,7 +33,7 @@ import com.google.common.base.Preconditions;
  */
 @Immutable
 public final class Protocol {
-    private static final Registry<Protocol> _REGISTERED = new Registry<Protocol>();
+    private static final Interner<Protocol> _REGISTERED = Interner.create();
     
     /**
      * The HTTP/1.1 protocol.
@@ -56,30 +50,26 @@ public final class Protocol {
      */
     public static final Protocol HTTP_0_9 = register(create("HTTP", "0.9"));
     
-    static final Parser<Protocol> PARSER = new Parser<Protocol>() {
+    static final CharSequenceParser<Protocol> PARSER = new CharSequenceParser<Protocol>() {
         @Override
-        public Optional<Protocol> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .read(Primitives.TOKEN_PARSER) // 0
-                        .read(Parsers.charParser('/')) // 1
-                        .read(Primitives.TOKEN_PARSER) // 2      
-                        .tokens();
-            if (Optionals.isAbsent(tokens.get(0)) || 
-                    (tokens.get(1).isPresent() && Optionals.isAbsent(tokens.get(2)))) {
-                buffer.position(startPos);
-                return Optional.absent();
-            } else if (Optionals.isAbsent(tokens.get(2))) {
-                return Optional.of(Protocol.create(Optionals.toString(tokens.get(0)), ""));
-            } else {
-                return Optional.of(
-                        Protocol.create(
-                                Optionals.toString(tokens.get(0)), 
-                                Optionals.toString(tokens.get(2))));
+        protected int doScan(final CharSequence in, final int pos) {
+            final int nameEnd = Primitives.scanToken(in, pos);
+            if (nameEnd == NO_MATCH) {
+                return NO_MATCH;
             }
-        }     
+            
+            final int versionStart = CharSequenceParsers.scanChar(in, nameEnd, '/');
+            return (versionStart != NO_MATCH) ? Primitives.scanToken(in, versionStart) : nameEnd;
+        }
+        
+        @Override
+        protected Protocol doValue(final CharSequence in, final int start, final int end) {
+            final int nameEnd = Primitives.scanToken(in, start);
+            final String name = CharSequenceParsers.substring(in, start, nameEnd);
+            return (nameEnd == end) ? 
+                    Protocol.create(name, "") :
+                    Protocol.create(name, CharSequenceParsers.substring(in, nameEnd + 1, end));
+        }
     };
     
     /**
@@ -100,7 +90,7 @@ public final class Protocol {
                 Primitives.IS_TOKEN.apply(version));
         
         final Protocol retval = new Protocol(name, version);
-        return _REGISTERED.getIfPresent(retval);        
+        return _REGISTERED.intern(retval);        
     }
     
     private static Protocol register(final Protocol protocol) {
@@ -17,24 +17,19 @@
 
 package restlib.data;
 
-import java.nio.CharBuffer;
 import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
-import restlib.impl.Parsers;
-import restlib.impl.Tokenizer;
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 
 /**
  * Client requested sub-ranges of response representation data.
@@ -136,58 +131,47 @@ public abstract class Range {
     
     private static final CharMatcher ASCII_NOT_NULL = CharMatcher.ASCII.and(CharMatcher.is((char)0).negate());
     
-    static final Parser<Range> PARSER = new Parser<Range>() {
-        final Parser<String> ASCII_NOT_NULL_PARSER = Parsers.whileMatchesParser(ASCII_NOT_NULL);
-        final Parser<Character> EQUALS_CHAR_PARSER = Parsers.charParser('=');
-        
+    private static final CharSequenceParser<Iterable<ByteRangeSpec>> BYTE_RANGE_SET_PARSER =
+            CharSequenceParsers.listParser(ByteRangeSpec.PARSER, Primitives.OWS_COMMA_OWS_PARSER);
+    
+    static final CharSequenceParser<Range> PARSER = new CharSequenceParser<Range>() {
         @Override
-        public Optional<Range> parse(final CharBuffer buffer) { 
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();         
-            final Tokenizer tokenizer =        
-                    Tokenizer.create(buffer)
-                        .read(Primitives.TOKEN_PARSER) // 0
-                        .read(EQUALS_CHAR_PARSER); // 1
-            final List<Optional<Object>> tokens = tokenizer.tokens();
-            
-            if (Optionals.isAbsent(tokens.get(0))) {
-                return Optional.absent();
+        protected int doScan(final CharSequence in, final int pos) {
+            final int unitEnd = Primitives.scanToken(in, pos);
+            if (unitEnd == NO_MATCH) {
+                return NO_MATCH;
             }
             
-            final RangeUnit rangeUnit = RangeUnit.create(Optionals.toString(tokens.get(0)));
-            if (rangeUnit.equals(RangeUnit.BYTES)) {       
-                return readByteRangesSpecifiers(buffer);
-            } 
-            
-            tokenizer.read(ASCII_NOT_NULL_PARSER); // 2
-            if (Optionals.isAbsent(tokens.get(2))) {
-                buffer.position(startPos);
-                return Optional.absent();
-            } else {
-                final String rangeValue = Optionals.toString(tokens.get(2));
-                return Optional.<Range> of(Range.otherRange(rangeUnit, rangeValue));    
+            final int valueStart = CharSequenceParsers.scanChar(in, unitEnd, '=');
+            if (valueStart == NO_MATCH) {
+                return NO_MATCH;
+            } else if (isBytesUnit(in, pos, unitEnd)) {
+                return BYTE_RANGE_SET_PARSER.scan(in, valueStart);
             }
+            
+            final int end = CharSequenceParsers.scanWhile(in, valueStart, ASCII_NOT_NULL);
+            return (end > valueStart) ? end : NO_MATCH;
         }
 
-        private Optional<Range> readByteRangesSpecifiers(final CharBuffer buffer) {   
-            Preconditions.checkNotNull(buffer);
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .read(ByteRangeSpec.PARSER)
-                        .readWhileAvailable(
-                                Primitives.OWS_COMMA_OWS_PARSER, ByteRangeSpec.PARSER)
-                        .tokens();
-            if (Optionals.isAbsent(tokens.get(0))) {
-                return Optional.absent();
-            } else {         
-                return Optional.<Range> of(
-                    Range.byteRange(
-                            Iterables.filter(Optional.presentInstances(tokens), ByteRangeSpec.class)));                 
-        
+        @Override
+        protected Range doValue(final CharSequence in, final int start, final int end) {
+            final int unitEnd = Primitives.scanToken(in, start);
+            final int valueStart = unitEnd + 1;
+            if (isBytesUnit(in, start, unitEnd)) {
+                final Iterable<ByteRangeSpec> byteRangeSet = BYTE_RANGE_SET_PARSER.value(in, valueStart, end);
+                return (byteRangeSet != null) ? Range.byteRange(byteRangeSet) : null;
             }
+            
+            return Range.otherRange(
+                    RangeUnit.create(CharSequenceParsers.substring(in, start, unitEnd)), 
+                    CharSequenceParsers.substring(in, valueStart, end));
         }
     }; 
     
+    private static boolean isBytesUnit(final CharSequence in, final int start, final int end) {
+        return CharSequenceParsers.equalsIgnoreCase(in, start, end, "bytes");
+    }
+    
     /**
      * Creates a new {@code Range.Bytes} instance.
      * @param byteRangeSet a list of ByteRanges to include in the byte-range.
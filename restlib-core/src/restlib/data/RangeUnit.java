@@ -22,7 +22,7 @@ package restlib.data;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.Registry;
+import restlib.impl.Interner;
 
 import com.google.common.base.Ascii;
 import com.google.common.base.Objects;
@@ -34,7 +34,7 @@ import com.google.common.base.Preconditions;
  */
 @Immutable
 public final class RangeUnit {
-    private static final Registry<RangeUnit> _REGISTERED = new Registry<RangeUnit>();
+    private static final Interner<RangeUnit> _REGISTERED = Interner.create();
     
     /**
      * The range-unit used to indicate that a representation is broken 
@@ -52,7 +52,7 @@ public final class RangeUnit {
         Preconditions.checkNotNull(in);
         Preconditions.checkArgument(Primitives.IS_TOKEN.apply(in));
         final RangeUnit rangeUnit = new RangeUnit(Ascii.toLowerCase(in));
-        return _REGISTERED.getIfPresent(rangeUnit);
+        return _REGISTERED.intern(rangeUnit);
     }
     
     private static final RangeUnit register(final RangeUnit rangeUnit) {
@@ -1,26 +1,23 @@
 package restlib.data;
 
-import java.nio.CharBuffer;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParser;
+import restlib.impl.CharSequenceParsers;
 import restlib.impl.GuavaCollectionHelpers;
-import restlib.impl.Optionals;
-import restlib.impl.Parser;
 import restlib.impl.Parsers;
-import restlib.impl.Registry;
-import restlib.impl.Tokenizer;
+import restlib.impl.Interner;
 
 import com.google.common.base.Ascii;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 /**
@@ -29,7 +26,7 @@ import com.google.common.collect.Multimap;
  */
 @Immutable
 public final class TransferCoding implements Matcheable<TransferCoding> {
-    private static final Registry<TransferCoding> _REGISTERED = new Registry<TransferCoding>();
+    private static final Interner<TransferCoding> _REGISTERED = Interner.create();
               
     /**
      * The transfer-coding wildcard.
@@ -56,27 +53,40 @@ public final class TransferCoding implements Matcheable<TransferCoding> {
      */
     public static final TransferCoding GZIP = register(create("gzip")); 
     
-    static final Parser<TransferCoding> PARSER = new Parser<TransferCoding>() {
+    static final CharSequenceParser<TransferCoding> PARSER = new CharSequenceParser<TransferCoding>() {
         @Override
-        public Optional<TransferCoding> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            
-            final List<Optional<Object>> tokens = 
-                    Tokenizer.create(buffer)
-                        .read(Primitives.TOKEN_PARSER) // 0
-                        .readWhileAvailable(
-                                Primitives.OWS_SEMICOLON_OWS_PARSER, KeyValuePair.KEY_NOT_Q_PARSER) // 2
-                        .tokens();
+        protected int doScan(final CharSequence in, final int pos) {
+            int end = Primitives.scanToken(in, pos);
+            if (end == NO_MATCH) {
+                return NO_MATCH;
+            }
             
-            if (Optionals.isAbsent(tokens.get(0))) {
-                return Optional.absent();
-            } else {
-                final String token = Optionals.toString(tokens.get(0));
-                final Iterable<KeyValuePair> params = 
-                        Iterables.filter(Optional.presentInstances(tokens), KeyValuePair.class);
+            while (true) {
+                final int separatorEnd = Primitives.scanSeparator(in, end, ';');
+                if (separatorEnd == NO_MATCH) {
+                    return end;
+                }
+                
+                final int parameterEnd = KeyValuePair.KEY_NOT_Q_PARSER.scan(in, separatorEnd);
+                if (parameterEnd == NO_MATCH) {
+                    return end;
+                }
+                end = parameterEnd;
+            }
+        }
 
-                return Optional.of(TransferCoding.create(token, params));
+        @Override
+        protected TransferCoding doValue(final CharSequence in, final int start, final int end) {
+            final int tokenEnd = Primitives.scanToken(in, start);
+            final List<KeyValuePair> parameters = Lists.newArrayList();
+            int pos = tokenEnd;
+            while (pos < end) {
+                final int parameterStart = Primitives.scanSeparator(in, pos, ';');
+                pos = KeyValuePair.scanKeyValuePair(in, parameterStart);
+                parameters.add(KeyValuePair.keyValuePair(in, parameterStart, pos));
             }
+            
+            return TransferCoding.create(CharSequenceParsers.substring(in, start, tokenEnd), parameters);
         }    
     };
     
@@ -103,7 +113,7 @@ public final class TransferCoding implements Matcheable<TransferCoding> {
                         Ascii.toLowerCase(token), 
                         GuavaCollectionHelpers.immutableSetMultimapFromEntries(
                                 parameters, KeyValuePair.VALIDATE_TO_LOWER_CASE_KEY_VALUES_NOT_Q));   
-        return _REGISTERED.getIfPresent(transferCoding);
+        return _REGISTERED.intern(transferCoding);
     }    
     
     /**
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@code CharSequence} view of a range of ISO-8859-1 encoded bytes,
+ * which maps each byte to a single char without decoding the range into a String.
+ * The backing array must not be modified after the view is created.
+ */
+@Immutable
+public final class AsciiCharSequence implements CharSequence {
+    /**
+     * Returns a view of {@code length} bytes of {@code bytes} starting at {@code offset}.
+     * The array is not copied.
+     * @throws NullPointerException if {@code bytes} is null.
+     * @throws IndexOutOfBoundsException if the range is not within {@code bytes}.
+     */
+    public static AsciiCharSequence wrap(final byte[] bytes, final int offset, final int length) {
+        Preconditions.checkNotNull(bytes);
+        Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+        return new AsciiCharSequence(bytes, offset, length);
+    }
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private AsciiCharSequence(final byte[] bytes, final int offset, final int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        Preconditions.checkElementIndex(index, this.length);
+        return (char) (this.bytes[this.offset + index] & 0xFF);
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        Preconditions.checkPositionIndexes(start, end, this.length);
+        return new AsciiCharSequence(this.bytes, this.offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.bytes, this.offset, this.length, Charsets.ISO_8859_1);
+    }
+}
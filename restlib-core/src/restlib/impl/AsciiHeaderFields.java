@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The header fields of an HTTP/1.1 message, scanned directly from their
+ * encoded bytes. Field names and values are exposed as {@code CharSequence}
+ * views of a single copy of the header section, so Strings are only created
+ * for the values which are actually read.
+ */
+@Immutable
+public final class AsciiHeaderFields {
+    private static final byte TCHAR = 1;
+    private static final byte FIELD_VCHAR = 2;
+    private static final byte WHITE_SPACE = 4;
+    private static final byte[] CHAR_CLASSES = new byte[256];
+
+    static {
+        for (int c = 0x21; c < 0x7F; c++) {
+            CHAR_CLASSES[c] = FIELD_VCHAR;
+        }
+        for (int c = 0x80; c < 0x100; c++) {
+            // obs-text
+            CHAR_CLASSES[c] = FIELD_VCHAR;
+        }
+        for (final char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            CHAR_CLASSES[c] |= TCHAR;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] |= TCHAR;
+        }
+        for (int c = 'A'; c <= 'Z'; c++) {
+            CHAR_CLASSES[c] |= TCHAR;
+            CHAR_CLASSES[c + ('a' - 'A')] |= TCHAR;
+        }
+        CHAR_CLASSES[' '] = WHITE_SPACE;
+        CHAR_CLASSES['\t'] = WHITE_SPACE;
+    }
+
+    // Each field is described by 4 offsets: name start, name end, value start, value end.
+    private static final int FIELD_WIDTH = 4;
+
+    /**
+     * Returns the index following the empty line which terminates the header
+     * section starting at the position of {@code buffer}, or -1 if
+     * the remaining bytes do not include the end of the header section.
+     * Lines may be terminated by either CRLF or LF. The position of
+     * {@code buffer} is not changed.
+     * @throws NullPointerException if {@code buffer} is null.
+     */
+    public static int endOfHeaderSection(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        // The position is treated as if it followed a line feed.
+        int i = buffer.position() - 1;
+        while (i < limit) {
+            if ((i + 1 < limit) && (buffer.get(i + 1) == '\n')) {
+                return i + 2;
+            } else if ((i + 2 < limit) && (buffer.get(i + 1) == '\r') && (buffer.get(i + 2) == '\n')) {
+                return i + 3;
+            }
+
+            i++;
+            while ((i < limit) && (buffer.get(i) != '\n')) {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans the header fields in the remaining bytes of {@code buffer},
+     * up to and including the empty line which terminates the header section, or
+     * up to the limit of {@code buffer} if it does not include an empty line. On return the
+     * position of {@code buffer} follows the scanned bytes. Both heap and direct buffers
+     * are supported. The bytes are copied, so {@code buffer} may be reused by the caller.
+     * @throws NullPointerException if {@code buffer} is null.
+     * @throws IllegalArgumentException if a field line is not a valid HTTP/1.1
+     * header field. Obsolete line folding is not supported.
+     */
+    public static AsciiHeaderFields parse(final ByteBuffer buffer) {
+        final int endOfHeaderSection = endOfHeaderSection(buffer);
+        final int end = (endOfHeaderSection >= 0) ? endOfHeaderSection : buffer.limit();
+
+        final byte[] bytes = new byte[end - buffer.position()];
+        buffer.get(bytes);
+
+        int[] offsets = new int[FIELD_WIDTH * 16];
+        int size = 0;
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while ((lineEnd < bytes.length) && (bytes[lineEnd] != '\n')) {
+                lineEnd++;
+            }
+
+            int contentEnd = lineEnd;
+            if ((contentEnd > lineStart) && (bytes[contentEnd - 1] == '\r')) {
+                contentEnd--;
+            }
+
+            if (contentEnd == lineStart) {
+                break;
+            }
+
+            int nameEnd = lineStart;
+            while ((nameEnd < contentEnd) && ((CHAR_CLASSES[bytes[nameEnd] & 0xFF] & TCHAR) != 0)) {
+                nameEnd++;
+            }
+            if ((nameEnd == lineStart) || (nameEnd == contentEnd) || (bytes[nameEnd] != ':')) {
+                throw new IllegalArgumentException("Invalid header field at offset " + lineStart + ".");
+            }
+
+            int valueStart = nameEnd + 1;
+            while ((valueStart < contentEnd) && (CHAR_CLASSES[bytes[valueStart] & 0xFF] == WHITE_SPACE)) {
+                valueStart++;
+            }
+
+            int valueEnd = valueStart;
+            for (int i = valueStart; i < contentEnd; i++) {
+                final byte charClass = CHAR_CLASSES[bytes[i] & 0xFF];
+                if (charClass == 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid character in header field value at offset " + i + ".");
+                } else if (charClass != WHITE_SPACE) {
+                    valueEnd = i + 1;
+                }
+            }
+
+            if (offsets.length == size * FIELD_WIDTH) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            final int field = size * FIELD_WIDTH;
+            offsets[field] = lineStart;
+            offsets[field + 1] = nameEnd;
+            offsets[field + 2] = valueStart;
+            offsets[field + 3] = valueEnd;
+            size++;
+
+            lineStart = lineEnd + 1;
+        }
+
+        return new AsciiHeaderFields(bytes, offsets, size);
+    }
+
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int size;
+
+    private AsciiHeaderFields(final byte[] bytes, final int[] offsets, final int size) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Returns the name of the {@code index}th header field.
+     * @throws IndexOutOfBoundsException if {@code index} is not less than {@link #size()}.
+     */
+    public CharSequence name(final int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        return slice(index * FIELD_WIDTH);
+    }
+
+    /**
+     * Returns the number of header fields.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private CharSequence slice(final int offset) {
+        final int start = this.offsets[offset];
+        return AsciiCharSequence.wrap(this.bytes, start, this.offsets[offset + 1] - start);
+    }
+
+    /**
+     * Returns the value of the {@code index}th header field, excluding leading and trailing white space.
+     * @throws IndexOutOfBoundsException if {@code index} is not less than {@link #size()}.
+     */
+    public CharSequence value(final int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        return slice(index * FIELD_WIDTH + 2);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import java.nio.CharBuffer;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * A Parser which reads from a {@code CharSequence} at an explicit position.
+ *
+ * <p>Parsing is split into two steps. {@link #scan(CharSequence, int)} only
+ * returns the position following a match, or {@link #NO_MATCH}, so that
+ * composite parsers can validate their input without boxing or allocating
+ * intermediate results. {@link #value(CharSequence, int, int)} then creates
+ * the parsed object once the bounds of the match are known.</p>
+ *
+ * <p>CharSequenceParsers also implement the {@code Parser} interface,
+ * so they may be used by existing {@code Parser} combinators.</p>
+ */
+public abstract class CharSequenceParser<T> implements Parser<T> {
+    /**
+     * The position returned by {@link #scan(CharSequence, int)} when the input does not match.
+     */
+    public static final int NO_MATCH = -1;
+
+    /**
+     * Returns {@code parser} if it is a {@code CharSequenceParser},
+     * otherwise a CharSequenceParser which delegates to {@code parser}.
+     * The latter wraps the input in a {@code CharBuffer} and parses
+     * it twice, so it should only be used for compatibility.
+     * @throws NullPointerException if {@code parser} is null.
+     */
+    public static <T> CharSequenceParser<T> fromParser(final Parser<T> parser) {
+        Preconditions.checkNotNull(parser);
+        if (parser instanceof CharSequenceParser) {
+            return (CharSequenceParser<T>) parser;
+        }
+
+        return new CharSequenceParser<T>() {
+            @Override
+            protected int doScan(final CharSequence in, final int pos) {
+                final CharBuffer buffer = CharBuffer.wrap(in, pos, in.length());
+                return parser.parse(buffer).isPresent() ? buffer.position() : NO_MATCH;
+            }
+
+            @Override
+            protected T doValue(final CharSequence in, final int start, final int end) {
+                return parser.parse(CharBuffer.wrap(in, start, end)).orNull();
+            }
+        };
+    }
+
+    protected CharSequenceParser() {}
+
+    /**
+     * Returns the position following the longest match starting at {@code pos}.
+     * Implementations must not allocate.
+     * @param in the non-null input.
+     * @param pos a position between 0 and {@code in.length()} inclusive.
+     */
+    protected abstract int doScan(CharSequence in, int pos);
+
+    /**
+     * Returns the value of the match between {@code start} and {@code end},
+     * which were previously returned by {@link #doScan(CharSequence, int)},
+     * or null if the match is syntactically valid but is not a valid value.
+     */
+    @Nullable
+    protected abstract T doValue(CharSequence in, int start, int end);
+
+    /**
+     * Parses the contents of {@code buffer} from its current position.
+     * On success the position of {@code buffer} is advanced past the match,
+     * otherwise it is left unchanged.
+     * @throws NullPointerException if {@code buffer} is null.
+     */
+    @Override
+    public final Optional<T> parse(final CharBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+
+        // A CharBuffer's CharSequence view is relative to its position.
+        final int end = doScan(buffer, 0);
+        if (end == NO_MATCH) {
+            return Optional.absent();
+        }
+
+        final T value = doValue(buffer, 0, end);
+        if (value == null) {
+            return Optional.absent();
+        }
+
+        buffer.position(buffer.position() + end);
+        return Optional.of(value);
+    }
+
+    /**
+     * Parses the entire contents of {@code in}.
+     * @throws NullPointerException if {@code in} is null.
+     * @throws IllegalArgumentException if {@code in} can not be parsed.
+     */
+    public final T parseFully(final CharSequence in) {
+        Preconditions.checkNotNull(in);
+        final int end = doScan(in, 0);
+        Preconditions.checkArgument(end == in.length());
+
+        final T value = doValue(in, 0, end);
+        Preconditions.checkArgument(value != null);
+        return value;
+    }
+
+    /**
+     * Returns the position following the longest match starting at {@code pos},
+     * or {@link #NO_MATCH}.
+     * @throws NullPointerException if {@code in} is null.
+     * @throws IndexOutOfBoundsException if {@code pos} is not a valid position in {@code in}.
+     */
+    public final int scan(final CharSequence in, final int pos) {
+        Preconditions.checkPositionIndex(pos, in.length());
+        return doScan(in, pos);
+    }
+
+    /**
+     * Returns the value of the match between {@code start} and {@code end},
+     * as previously returned by {@link #scan(CharSequence, int)}, or null
+     * if the match does not describe a valid value.
+     * @throws NullPointerException if {@code in} is null.
+     * @throws IndexOutOfBoundsException if {@code start} and {@code end} are not a valid range in {@code in}.
+     */
+    @Nullable
+    public final T value(final CharSequence in, final int start, final int end) {
+        Preconditions.checkPositionIndexes(start, end, in.length());
+        return doValue(in, start, end);
+    }
+}
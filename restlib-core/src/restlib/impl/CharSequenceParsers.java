@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import static restlib.impl.CharSequenceParser.NO_MATCH;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Primitive scanning functions and combinators for {@link CharSequenceParser}.
+ * Scanning functions take the input and a position, and return the position
+ * following the match or {@link CharSequenceParser#NO_MATCH}.
+ */
+public final class CharSequenceParsers {
+    private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+    
+    /**
+     * Returns a parser for a list of items separated by {@code separator},
+     * which parses to an immutable list of the item values. As required of 
+     * recipients by RFC 2616 section 2.1, empty list elements are skipped, so 
+     * {@code "a,,b,"} parses to the same list as {@code "a,b"}. The list must
+     * contain at least one item.
+     * @throws NullPointerException if either argument is null.
+     */
+    public static <T> CharSequenceParser<Iterable<T>> listParser(
+            final CharSequenceParser<T> itemParser,
+            final CharSequenceParser<?> separatorParser) {
+        Preconditions.checkNotNull(itemParser);
+        Preconditions.checkNotNull(separatorParser);
+
+        return new CharSequenceParser<Iterable<T>>() {
+            @Override
+            protected int doScan(final CharSequence in, final int pos) {
+                int end = itemParser.doScan(in, scanSeparators(in, pos, separatorParser));
+                if (end == NO_MATCH) {
+                    return NO_MATCH;
+                }
+
+                while (true) {
+                    final int separatorEnd = scanSeparators(in, end, separatorParser);
+                    if (separatorEnd == end) {
+                        return end;
+                    }
+
+                    final int itemEnd = itemParser.doScan(in, separatorEnd);
+                    if (itemEnd == NO_MATCH) {
+                        // Trailing empty elements.
+                        return separatorEnd;
+                    }
+                    end = itemEnd;
+                }
+            }
+
+            @Override
+            protected Iterable<T> doValue(final CharSequence in, final int start, final int end) {
+                final ImmutableList.Builder<T> builder = ImmutableList.builder();
+                int pos = scanSeparators(in, start, separatorParser);
+                while (true) {
+                    final int itemEnd = itemParser.doScan(in, pos);
+                    final T item = itemParser.doValue(in, pos, itemEnd);
+                    if (item == null) {
+                        return null;
+                    }
+                    builder.add(item);
+
+                    pos = scanSeparators(in, itemEnd, separatorParser);
+                    if (pos == end) {
+                        return builder.build();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the position following any number of consecutive separators at
+     * {@code pos}, or {@code pos} if there are none. Never returns NO_MATCH.
+     */
+    private static int scanSeparators(
+            final CharSequence in, final int pos, final CharSequenceParser<?> separatorParser) {
+        int end = pos;
+        while (true) {
+            final int separatorEnd = separatorParser.doScan(in, end);
+            if ((separatorEnd == NO_MATCH) || (separatorEnd == end)) {
+                return end;
+            }
+            end = separatorEnd;
+        }
+    }
+
+    /**
+     * Returns true if the characters between {@code start} and {@code end}
+     * are equal to {@code lowerCase}, ignoring ASCII case.
+     * @param lowerCase a string containing no upper case ASCII characters.
+     */
+    public static boolean equalsIgnoreCase(
+            final CharSequence in, final int start, final int end, final String lowerCase) {
+        Preconditions.checkNotNull(in);
+        if ((end - start) != lowerCase.length()) {
+            return false;
+        }
+        
+        for (int i = start; i < end; i++) {
+            if (Ascii.toLowerCase(in.charAt(i)) != lowerCase.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of the unsigned decimal number between {@code start} and
+     * {@code end}, or -1 if the range is empty, contains characters other than
+     * ASCII digits, or overflows a long.
+     */
+    public static long parseUnsignedLong(final CharSequence in, final int start, final int end) {
+        Preconditions.checkNotNull(in);
+        if (start >= end) {
+            return -1;
+        }
+
+        long retval = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = in.charAt(i) - '0';
+            if ((digit < 0) || (digit > 9) || (retval > (Long.MAX_VALUE - digit) / 10)) {
+                return -1;
+            }
+            retval = (retval * 10) + digit;
+        }
+        return retval;
+    }
+
+    /**
+     * Returns {@code pos + 1} if the character at {@code pos} is {@code c}.
+     */
+    public static int scanChar(final CharSequence in, final int pos, final char c) {
+        return ((pos < in.length()) && (in.charAt(pos) == c)) ? pos + 1 : NO_MATCH;
+    }
+
+    /**
+     * Returns the position of the first character at or after {@code pos}
+     * which is not an ASCII digit. Never returns NO_MATCH.
+     */
+    public static int scanDigits(final CharSequence in, final int pos) {
+        return scanWhile(in, pos, DIGITS);
+    }
+
+    /**
+     * Returns the position following {@code str} if {@code in} contains {@code str} at {@code pos}.
+     */
+    public static int scanString(final CharSequence in, final int pos, final String str) {
+        final int end = pos + str.length();
+        if (end > in.length()) {
+            return NO_MATCH;
+        }
+
+        for (int i = 0; i < str.length(); i++) {
+            if (in.charAt(pos + i) != str.charAt(i)) {
+                return NO_MATCH;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the position of the first character at or after {@code pos}
+     * which does not match {@code matcher}. Never returns NO_MATCH.
+     */
+    public static int scanWhile(final CharSequence in, final int pos, final CharMatcher matcher) {
+        Preconditions.checkNotNull(matcher);
+        final int length = in.length();
+        int i = pos;
+        while ((i < length) && matcher.matches(in.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the characters between {@code start} and {@code end} as a String,
+     * without copying the characters more than once.
+     */
+    public static String substring(final CharSequence in, final int start, final int end) {
+        Preconditions.checkNotNull(in);
+        if (in instanceof String) {
+            return ((String) in).substring(start, end);
+        }
+        return new StringBuilder(end - start).append(in, start, end).toString();
+    }
+
+    private CharSequenceParsers() {}
+}
@@ -4,14 +4,14 @@ import java.util.Arrays;
 
 import javax.annotation.concurrent.Immutable;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Range;
 
 /**
  * A {@code Predicate} for determining the true or false value of any Java {@code Integer} code point value.
- *
+ * Code points are matched as primitive ints by {@link #matches(int)}, and matchers which are used 
+ * repeatedly should be {@link #precompute() precomputed} into a lookup table.
  */
 @Immutable
 public abstract class CodePointMatcher implements Predicate<Integer> {
@@ -26,8 +26,14 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         }
         
         @Override
-        public boolean apply(final Integer input) {
-            Preconditions.checkNotNull(input);
+        public int indexOfFirstNonMatching(final CharSequence in, final int from) {
+            Preconditions.checkNotNull(in);
+            Preconditions.checkPositionIndex(from, in.length());
+            return in.length();
+        }
+        
+        @Override
+        public boolean matches(final int codePoint) {
             return true;
         }        
         
@@ -53,6 +59,11 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         public CodePointMatcher negate() {
             return NONE;
         }
+        
+        @Override
+        public CodePointMatcher precompute() {
+            return this;
+        }
     };
     
     /**
@@ -66,8 +77,14 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         }
         
         @Override
-        public boolean apply(final Integer input) {
-            Preconditions.checkNotNull(input);
+        public int indexOfFirstNonMatching(final CharSequence in, final int from) {
+            Preconditions.checkNotNull(in);
+            Preconditions.checkPositionIndex(from, in.length());
+            return from;
+        }
+        
+        @Override
+        public boolean matches(final int codePoint) {
             return false;
         }        
         
@@ -93,6 +110,11 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         public CodePointMatcher negate() {
             return ANY;
         }
+        
+        @Override
+        public CodePointMatcher precompute() {
+            return this;
+        }
     };
     
     /**
@@ -107,14 +129,19 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
             return NONE;
         }
         
-        final Integer[] codepoints = 
-                Iterables.toArray(CharSequences.codePoints(sequence), Integer.class);
-        Arrays.sort(codepoints);
+        final int[] codepoints = new int[sequence.length()];
+        int size = 0;
+        for (int i = 0; i < sequence.length(); size++) {
+            codepoints[size] = Character.codePointAt(sequence, i);
+            i += Character.charCount(codepoints[size]);
+        }
+        Arrays.sort(codepoints, 0, size);
+        final int[] sorted = Arrays.copyOf(codepoints, size);
         
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                return Arrays.binarySearch(codepoints, input) >= 0;
+            public boolean matches(final int codePoint) {
+                return Arrays.binarySearch(sorted, codePoint) >= 0;
             }      
         };
     }
@@ -128,16 +155,45 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
     public static CodePointMatcher fromCharacterPredicate(final Predicate<Character> predicate) {
         Preconditions.checkNotNull(predicate);
         
+        if (predicate instanceof CharMatcher) {
+            final CharMatcher matcher = (CharMatcher) predicate;
+            return new CodePointMatcher() {
+                @Override
+                public boolean matches(final int codePoint) {
+                    return (codePoint >= 0) && (codePoint <= Character.MAX_VALUE) && matcher.matches((char) codePoint);
+                }     
+            };
+        }
+        
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                Preconditions.checkNotNull(input);
-                
-                if (input > Character.MAX_VALUE) {
+            public boolean matches(final int codePoint) {
+                if ((codePoint < 0) || (codePoint > Character.MAX_VALUE)) {
                     return false;
                 }
 
-                return predicate.apply(Character.valueOf((char) input.intValue()));
+                return predicate.apply(Character.valueOf((char) codePoint));
+            }     
+        };
+    }
+    
+    /**
+     * Returns {@code predicate} if it is a {@code CodePointMatcher}, otherwise a {@code CodePointMatcher} 
+     * which delegates to {@code predicate}.
+     * @param predicate a non-null {@code Predicate<Integer>}
+     * @throws NullPointerException if {@code predicate} is null.
+     */
+    public static CodePointMatcher forPredicate(final Predicate<Integer> predicate) {
+        Preconditions.checkNotNull(predicate);
+        
+        if (predicate instanceof CodePointMatcher) {
+            return (CodePointMatcher) predicate;
+        }
+        
+        return new CodePointMatcher() {
+            @Override
+            public boolean matches(final int codePoint) {
+                return predicate.apply(codePoint);
             }     
         };
     }
@@ -164,12 +220,12 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
     public static CodePointMatcher inRange(final int start, final int finish) {
         Preconditions.checkArgument(
                 Character.isValidCodePoint(start) && Character.isValidCodePoint(finish));
+        Preconditions.checkArgument(start <= finish);
         
-        final Range<Integer> range = Range.closed(start, finish);
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                return range.contains(input);
+            public boolean matches(final int codePoint) {
+                return (codePoint >= start) && (codePoint <= finish);
             }      
         };
     }
@@ -197,14 +253,55 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         final CodePointMatcher self = this;
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                return self.apply(input) && other.apply(input);
+            public boolean matches(final int codePoint) {
+                return self.matches(codePoint) && other.matches(codePoint);
             }
         };
     }
     
+    /**
+     * Returns the result of {@link #matches(int)}.
+     * @throws NullPointerException if {@code input} is null.
+     */
     @Override
-    public abstract boolean apply(final Integer input);
+    public final boolean apply(final Integer input) {
+        return this.matches(input.intValue());
+    }
+    
+    /**
+     * Returns the index of the first code point at or after {@code from} which 
+     * is not matched by this matcher, or the length of {@code in} if every code point 
+     * is matched. Unpaired surrogates are matched as single code points.
+     * @param in a non-null {@code CharSequence}
+     * @throws NullPointerException if {@code in} is null.
+     * @throws IndexOutOfBoundsException if {@code from} is negative or greater than the length of {@code in}.
+     */
+    public int indexOfFirstNonMatching(final CharSequence in, final int from) {
+        Preconditions.checkNotNull(in);
+        final int length = in.length();
+        Preconditions.checkPositionIndex(from, length);
+        
+        int i = from;
+        while (i < length) {
+            final char c = in.charAt(i);
+            if (Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(in.charAt(i + 1))) {
+                if (!this.matches(Character.toCodePoint(c, in.charAt(i + 1)))) {
+                    return i;
+                }
+                i += 2;
+            } else if (this.matches(c)) {
+                i++;
+            } else {
+                return i;
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Returns true if {@code codePoint} is matched by this matcher.
+     */
+    public abstract boolean matches(final int codePoint);
     
     /**
      * Return a {@code Predicate<CharSequence>} that returns true if 
@@ -229,12 +326,7 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
      */
     public boolean matchesAllOf(final CharSequence in) {
         Preconditions.checkNotNull(in);
-        for (final int cp : CharSequences.codePoints(in)) {
-            if (!this.apply(cp)) {
-                return false;
-            }
-        }
-        return true;
+        return this.indexOfFirstNonMatching(in, 0) == in.length();
     }
     
     /**
@@ -260,10 +352,12 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
      */
     public boolean matchesNoneOf(final CharSequence in) {
         Preconditions.checkNotNull(in);
-        for (final int cp : CharSequences.codePoints(in)) {
-            if (this.apply(cp)) {
+        for (int i = 0; i < in.length();) {
+            final int codePoint = Character.codePointAt(in, i);
+            if (this.matches(codePoint)) {
                 return false;
             }
+            i += Character.charCount(codePoint);
         }
         return true;
     }
@@ -275,8 +369,8 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         final CodePointMatcher self = this;
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                return !self.apply(input);
+            public boolean matches(final int codePoint) {
+                return !self.matches(codePoint);
             }
         };
     }
@@ -292,8 +386,39 @@ public abstract class CodePointMatcher implements Predicate<Integer> {
         final CodePointMatcher self = this;
         return new CodePointMatcher() {
             @Override
-            public boolean apply(final Integer input) {
-                return self.apply(input) || other.apply(input);
+            public boolean matches(final int codePoint) {
+                return self.matches(codePoint) || other.matches(codePoint);
+            }
+        };
+    }
+    
+    /**
+     * Returns a matcher equivalent to this matcher, which matches characters in the 
+     * Basic Multilingual Plane with a single lookup in a precomputed bit set. Supplementary 
+     * code points are matched by this matcher. Precomputing evaluates this matcher for 
+     * every BMP character, so it should only be used for matchers which are retained.
+     */
+    public CodePointMatcher precompute() {
+        final CodePointMatcher self = this;
+        final long[] bmp = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            if (self.matches(c)) {
+                bmp[c >>> 6] |= 1L << c;
+            }
+        }
+        
+        return new CodePointMatcher() {
+            @Override
+            public boolean matches(final int codePoint) {
+                if ((codePoint & ~Character.MAX_VALUE) == 0) {
+                    return (bmp[codePoint >>> 6] & (1L << codePoint)) != 0;
+                }
+                return self.matches(codePoint);
+            }
+            
+            @Override
+            public CodePointMatcher precompute() {
+                return this;
             }
         };
     }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A registry of canonical instances of an immutable value type.
+ *
+ * <p> Values are registered into a permanent tier, which is published as an immutable
+ * snapshot on each registration, so lookups never block. Registered values may optionally
+ * be indexed by a String key, allowing them to be looked up by a range of characters
+ * without first creating a candidate instance. An optional bounded tier interns values which
+ * are not registered, so that frequently seen values also share a single instance.
+ */
+@ThreadSafe
+public final class Interner<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Returns a new Interner which only interns registered values.
+     */
+    public static <T> Interner<T> create() {
+        return new Interner<T>(null, false, 0);
+    }
+
+    /**
+     * Returns a new Interner whose registered values are indexed by their case-sensitive key.
+     * @param keyFunction a function which returns the key of a value, or null if the value
+     * should not be indexed. Values with equal keys must be equal.
+     * @param maximumDynamicSize the maximum number of unregistered values to intern, or 0.
+     * @throws NullPointerException if {@code keyFunction} is null.
+     * @throws IllegalArgumentException if {@code maximumDynamicSize} is negative.
+     */
+    public static <T> Interner<T> caseSensitive(
+            final Function<? super T, String> keyFunction, final int maximumDynamicSize) {
+        Preconditions.checkNotNull(keyFunction);
+        Preconditions.checkArgument(maximumDynamicSize >= 0);
+        return new Interner<T>(keyFunction, false, maximumDynamicSize);
+    }
+
+    /**
+     * Returns a new Interner whose registered values are indexed by their key, ignoring ASCII case.
+     * @param keyFunction a function which returns the key of a value, or null if the value
+     * should not be indexed. Values with keys that are equal ignoring ASCII case must be equal.
+     * @param maximumDynamicSize the maximum number of unregistered values to intern, or 0.
+     * @throws NullPointerException if {@code keyFunction} is null.
+     * @throws IllegalArgumentException if {@code maximumDynamicSize} is negative.
+     */
+    public static <T> Interner<T> caseInsensitive(
+            final Function<? super T, String> keyFunction, final int maximumDynamicSize) {
+        Preconditions.checkNotNull(keyFunction);
+        Preconditions.checkArgument(maximumDynamicSize >= 0);
+        return new Interner<T>(keyFunction, true, maximumDynamicSize);
+    }
+
+    // Spreads the low bits of a hash code, as the tables are indexed by a mask.
+    private static int smear(final int hashCode) {
+        final int h = hashCode ^ (hashCode >>> 20) ^ (hashCode >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    @Nullable
+    private final Function<? super T, String> keyFunction;
+    private final boolean ignoreCase;
+
+    @Nullable
+    private final ConcurrentMap<T, T> dynamic;
+
+    // Replaced, never mutated, by register() while holding the lock on this.
+    private volatile Snapshot snapshot = new Snapshot(new Object[0], new String[0], new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY]);
+
+    private Interner(
+            @Nullable final Function<? super T, String> keyFunction,
+            final boolean ignoreCase,
+            final int maximumDynamicSize) {
+        this.keyFunction = keyFunction;
+        this.ignoreCase = ignoreCase;
+        this.dynamic = (maximumDynamicSize > 0) ?
+                CacheBuilder.newBuilder().maximumSize(maximumDynamicSize).<T, T> build().asMap() : null;
+    }
+
+    /**
+     * Returns the registered value whose key is equal to the characters between
+     * {@code start} and {@code end} of {@code in}, or null if there is no such value.
+     * Unregistered values interned by {@link #intern(Object)} are not included.
+     * @throws NullPointerException if {@code in} is null.
+     * @throws IndexOutOfBoundsException if {@code start} or {@code end} are out of range.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T getIfPresent(final CharSequence in, final int start, final int end) {
+        Preconditions.checkNotNull(in);
+        Preconditions.checkPositionIndexes(start, end, in.length());
+
+        final Snapshot snapshot = this.snapshot;
+        final int index = indexOfKey(snapshot.byKey, snapshot.keys, in, start, end);
+        return (index >= 0) ? (T) snapshot.values[index] : null;
+    }
+
+    /**
+     * Returns the canonical instance of {@code item}. This is the registered value equal to
+     * {@code item} if one exists, otherwise a previously interned unregistered value if
+     * this Interner has a dynamic tier, otherwise {@code item}.
+     * @throws NullPointerException if {@code item} is null.
+     */
+    public T intern(final T item) {
+        Preconditions.checkNotNull(item);
+        final T registered = this.snapshot.get(item);
+        if (registered != null) {
+            return registered;
+        } else if (this.dynamic == null) {
+            return item;
+        }
+
+        final T interned = this.dynamic.putIfAbsent(item, item);
+        return (interned != null) ? interned : item;
+    }
+
+    /**
+     * Registers {@code item} as a canonical instance, and returns it,
+     * or returns the previously registered value equal to {@code item}.
+     * @throws NullPointerException if {@code item} is null.
+     */
+    public synchronized T register(final T item) {
+        Preconditions.checkNotNull(item);
+        final T registered = this.snapshot.get(item);
+        if (registered != null) {
+            return registered;
+        }
+
+        final String key = (this.keyFunction != null) ? this.keyFunction.apply(item) : null;
+        this.snapshot = this.snapshot.add(item, key);
+        if (this.dynamic != null) {
+            this.dynamic.remove(item);
+        }
+        return item;
+    }
+
+    /**
+     * Returns the registered values in the order they were registered.
+     */
+    public Iterable<T> registered() {
+        return this.snapshot.registered();
+    }
+
+    // Returns the index of the value with the given key, or -1.
+    private int indexOfKey(
+            final int[] byKey, final String[] keys, final CharSequence in, final int start, final int end) {
+        final int mask = byKey.length - 1;
+        for (int i = hashKey(in, start, end) & mask;; i = (i + 1) & mask) {
+            final int index = byKey[i] - 1;
+            if ((index < 0) || keyEquals(keys[index], in, start, end)) {
+                return index;
+            }
+        }
+    }
+
+    private boolean keyEquals(final String key, final CharSequence in, final int start, final int end) {
+        if (key.length() != (end - start)) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            final char c = in.charAt(i);
+            final char k = key.charAt(i - start);
+            if ((c != k) &&
+                    (!this.ignoreCase || (Ascii.toLowerCase(c) != Ascii.toLowerCase(k)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hashKey(final CharSequence in, final int start, final int end) {
+        int hashCode = 0;
+        for (int i = start; i < end; i++) {
+            final char c = in.charAt(i);
+            hashCode = 31 * hashCode + (this.ignoreCase ? Ascii.toLowerCase(c) : c);
+        }
+        return smear(hashCode);
+    }
+
+    /*
+     * An immutable set of registered values. The values and their keys are stored in
+     * registration order, and indexed by open addressing hash tables of (index + 1),
+     * where 0 marks an empty slot. The tables are at most half full.
+     */
+    @Immutable
+    private final class Snapshot {
+        private final Object[] values;
+        private final String[] keys;
+        private final int[] byValue;
+        private final int[] byKey;
+
+        // Computed on first use. Racing threads create equal lists.
+        private ImmutableList<T> registered;
+
+        private Snapshot(final Object[] values, final String[] keys, final int[] byValue, final int[] byKey) {
+            this.values = values;
+            this.keys = keys;
+            this.byValue = byValue;
+            this.byKey = byKey;
+        }
+
+        private Snapshot add(final T item, @Nullable final String key) {
+            final int size = this.values.length;
+            final Object[] values = Arrays.copyOf(this.values, size + 1);
+            final String[] keys = Arrays.copyOf(this.keys, size + 1);
+            values[size] = item;
+            keys[size] = key;
+
+            if ((size + 1) * 2 > this.byValue.length) {
+                final int[] byValue = new int[this.byValue.length * 2];
+                final int[] byKey = new int[this.byKey.length * 2];
+                for (int i = 0; i <= size; i++) {
+                    index(values, keys, i, byValue, byKey);
+                }
+                return new Snapshot(values, keys, byValue, byKey);
+            }
+
+            final int[] byValue = this.byValue.clone();
+            final int[] byKey = this.byKey.clone();
+            index(values, keys, size, byValue, byKey);
+            return new Snapshot(values, keys, byValue, byKey);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable
+        private T get(final T item) {
+            final int mask = this.byValue.length - 1;
+            for (int i = smear(item.hashCode()) & mask;; i = (i + 1) & mask) {
+                final int index = this.byValue[i] - 1;
+                if (index < 0) {
+                    return null;
+                } else if (this.values[index].equals(item)) {
+                    return (T) this.values[index];
+                }
+            }
+        }
+
+        private void index(
+                final Object[] values, final String[] keys, final int index,
+                final int[] byValue, final int[] byKey) {
+            int mask = byValue.length - 1;
+            int i = smear(values[index].hashCode()) & mask;
+            while (byValue[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            byValue[i] = index + 1;
+
+            final String key = keys[index];
+            if ((key != null) && (indexOfKey(byKey, keys, key, 0, key.length()) < 0)) {
+                mask = byKey.length - 1;
+                i = hashKey(key, 0, key.length()) & mask;
+                while (byKey[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                byKey[i] = index + 1;
+            }
+        }
+
+        private ImmutableList<T> registered() {
+            ImmutableList<T> retval = this.registered;
+            if (retval == null) {
+                final ImmutableList.Builder<T> builder = ImmutableList.builder();
+                for (final Object value : this.values) {
+                    @SuppressWarnings("unchecked")
+                    final T item = (T) value;
+                    builder.add(item);
+                }
+                retval = builder.build();
+                this.registered = retval;
+            }
+            return retval;
+        }
+    }
+}
@@ -9,62 +9,60 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Range;
 
 /**
  * Static Factory for obtaining {@code Parser} instances.
  */
 public final class Parsers {
-    public static final Parser<Integer> DIGIT_PARSER = new Parser<Integer>() {
-        final Range<Character> DIGIT_RANGE = Range.closed('0', '9');
- 
+    private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+    private static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+    
+    public static final Parser<Integer> DIGIT_PARSER = new CharSequenceParser<Integer>() {
         @Override
-        public Optional<Integer> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final int startPos = buffer.position();
-            if (!buffer.hasRemaining()) {
-                return Optional.absent();
-            }
-            
-            final char c = buffer.get();
-            if (DIGIT_RANGE.contains(c)) {
-                return Optional.of((int)c - (int)'0');
-            } else {
-                buffer.position(startPos);
-                return Optional.absent();
-            }           
+        protected int doScan(final CharSequence in, final int pos) {
+            return ((pos < in.length()) && DIGITS.matches(in.charAt(pos))) ? pos + 1 : NO_MATCH;
+        }
+
+        @Override
+        protected Integer doValue(final CharSequence in, final int start, final int end) {
+            return in.charAt(start) - '0';
         }
-        
     };
 
-    public static final Parser<Integer> INTEGER_PARSER = new Parser<Integer>() {
-        final Parser<String> parser = Parsers.whileMatchesParser(CharMatcher.inRange('0','9'));
-        
+    public static final Parser<Integer> INTEGER_PARSER = new CharSequenceParser<Integer>() {
         @Override
-        public Optional<Integer> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> integer = parser.parse(buffer);
-            if (integer.isPresent()) {
-                return Optional.of(CommonParsers.parseUnsignedInteger(integer.get()));
-            } else {
-                return Optional.absent();
+        protected int doScan(final CharSequence in, final int pos) {
+            final int end = CharSequenceParsers.scanWhile(in, pos, DIGITS);
+            return (end > pos) ? end : NO_MATCH;
+        }
+
+        @Override
+        protected Integer doValue(final CharSequence in, final int start, final int end) {
+            final long value = CharSequenceParsers.parseUnsignedLong(in, start, end);
+            if ((value < 0) || (value > MAX_UNSIGNED_INT)) {
+                throw new NumberFormatException(
+                        "Too large for unsigned int: " + CharSequenceParsers.substring(in, start, end));
             }
-        }        
+            return (int) value;
+        }
     };
     
-    public static final Parser<Long> LONG_PARSER = new Parser<Long>() {
-        final Parser<String> parser = Parsers.whileMatchesParser(CharMatcher.inRange('0','9'));
-        
+    public static final Parser<Long> LONG_PARSER = new CharSequenceParser<Long>() {
         @Override
-        public Optional<Long> parse(final CharBuffer buffer) {
-            Preconditions.checkNotNull(buffer);
-            final Optional<String> longStr = parser.parse(buffer);
-            if (longStr.isPresent()) {
-                return Optional.of(CommonParsers.parseUnsignedLong(longStr.get()));
-            } else {
-                return Optional.absent();
+        protected int doScan(final CharSequence in, final int pos) {
+            final int end = CharSequenceParsers.scanWhile(in, pos, DIGITS);
+            return (end > pos) ? end : NO_MATCH;
+        }
+
+        @Override
+        protected Long doValue(final CharSequence in, final int start, final int end) {
+            final long value = CharSequenceParsers.parseUnsignedLong(in, start, end);
+            if (value < 0) {
+                throw new NumberFormatException(
+                        "Too large for unsigned long: " + CharSequenceParsers.substring(in, start, end));
             }
-        }        
+            return value;
+        }
     };
     
     public static Parser<Character> characterPredicateParser(final Predicate<Character> predicate) {
@@ -90,19 +88,15 @@ public final class Parsers {
     }
     
     public static Parser<Character> charParser(final char c) {
-        return new Parser<Character> () {
+        return new CharSequenceParser<Character> () {
             @Override
-            public Optional<Character> parse(final CharBuffer buffer) {
-                Preconditions.checkNotNull(buffer);
-                
-                if (!buffer.hasRemaining()) {
-                    return Optional.absent();
-                } else if (buffer.get() == c) {
-                    return Optional.<Character> of(c);
-                } else {
-                    CharBuffers.pushback(buffer);
-                    return Optional.absent();
-                }
+            protected int doScan(final CharSequence in, final int pos) {
+                return CharSequenceParsers.scanChar(in, pos, c);
+            }
+
+            @Override
+            protected Character doValue(final CharSequence in, final int start, final int end) {
+                return c;
             }          
         };
     }
@@ -143,6 +137,11 @@ public final class Parsers {
         Preconditions.checkNotNull(seperatorParser);
         Preconditions.checkNotNull(itemClass);
         
+        if ((itemParser instanceof CharSequenceParser) && (seperatorParser instanceof CharSequenceParser)) {
+            return CharSequenceParsers.listParser(
+                    (CharSequenceParser<T>) itemParser, (CharSequenceParser<?>) seperatorParser);
+        }
+        
         return new Parser<Iterable<T>>() {
             final Function<Object,T> cast =
                     new Function<Object,T>() {
@@ -170,6 +169,10 @@ public final class Parsers {
         Preconditions.checkNotNull(in);
         Preconditions.checkNotNull(parser);
         
+        if (parser instanceof CharSequenceParser) {
+            return ((CharSequenceParser<T>) parser).parseFully(in);
+        }
+        
         final CharBuffer buffer = CharBuffer.wrap(in);
         final Optional<T> retval = parser.parse(buffer);
         
@@ -182,23 +185,15 @@ public final class Parsers {
     public static Parser<String> stringParser(final String in) {
         Preconditions.checkNotNull(in);
         
-        return new Parser<String>() {
+        return new CharSequenceParser<String>() {
             @Override
-            public Optional<String> parse(final CharBuffer buffer) {
-                Preconditions.checkNotNull(buffer);
-                
-                final int startPos = buffer.position();
-                
-                for (final char c : CharSequences.characters(in)) {
-                    if (buffer.hasRemaining() &&
-                            (buffer.get() == c)) {
-                        continue;
-                    } else {
-                        buffer.position(startPos);
-                        return Optional.absent();
-                    }                   
-                }
-                return Optional.of(in);
+            protected int doScan(final CharSequence input, final int pos) {
+                return CharSequenceParsers.scanString(input, pos, in);
+            }
+
+            @Override
+            protected String doValue(final CharSequence input, final int start, final int end) {
+                return in;
             }          
         };
     }
@@ -232,28 +227,19 @@ public final class Parsers {
     
     public static Parser<String> whileMatchesParser(final Predicate<Character> matcher) {
         Preconditions.checkNotNull(matcher);
+        final CharMatcher charMatcher = 
+                (matcher instanceof CharMatcher) ? (CharMatcher) matcher : CharMatcher.forPredicate(matcher);
         
-        return new Parser<String>() {
+        return new CharSequenceParser<String>() {
             @Override
-            public Optional<String> parse(final CharBuffer buffer) {
-                Preconditions.checkNotNull(buffer);
-                final StringBuilder builder = new StringBuilder();
-                
-                while (buffer.hasRemaining()) {
-                    final char c = buffer.get();
-                    if (matcher.apply(c)) {
-                        builder.append(c);
-                    } else {
-                        CharBuffers.pushback(buffer);
-                        break;
-                    }
-                }     
-                
-                if (CharSequences.isEmpty(builder)) {
-                    return Optional.absent();
-                }
-                
-                return Optional.of(builder.toString());
+            protected int doScan(final CharSequence in, final int pos) {
+                final int end = CharSequenceParsers.scanWhile(in, pos, charMatcher);
+                return (end > pos) ? end : NO_MATCH;
+            }
+
+            @Override
+            protected String doValue(final CharSequence in, final int start, final int end) {
+                return CharSequenceParsers.substring(in, start, end);
             }           
         };
     }
@@ -2,12 +2,11 @@ package restlib.net;
 
 import java.net.IDN;
 import java.net.InetAddress;
-import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import restlib.impl.CommonParsers;
+import restlib.impl.CharSequenceParsers;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
@@ -83,11 +82,20 @@ public final class HostPort {
     public static HostPort parse(final CharSequence hostPort) {
         Preconditions.checkNotNull(hostPort);
         
-        final List<String> parts = NetParserImpl.parseAuthority(hostPort);
-        Preconditions.checkArgument(parts.get(0).isEmpty());      
+        final int[] offsets = NetParserImpl.scanAuthority(hostPort);
+        Preconditions.checkArgument(offsets[NetParserImpl.USERINFO] == offsets[NetParserImpl.USERINFO + 1]);      
         
-        return create(parts.get(1), 
-                parts.get(2).isEmpty() ? -1 : CommonParsers.parseUnsignedInteger(parts.get(2)));
+        final String host = 
+                hostPort.subSequence(offsets[NetParserImpl.HOST], offsets[NetParserImpl.HOST + 1]).toString();
+        if (offsets[NetParserImpl.PORT] < 0) {
+            return create(host, -1);
+        }
+        
+        final long port = 
+                CharSequenceParsers.parseUnsignedLong(
+                        hostPort, offsets[NetParserImpl.PORT], offsets[NetParserImpl.PORT + 1]);
+        Preconditions.checkArgument((port >= 0) && (port <= Integer.MAX_VALUE));
+        return create(host, (int) port);
     }
     
     private final String host;
@@ -17,14 +17,23 @@
 
 package restlib.net;
 
+import static restlib.net.NetParserImpl.FRAGMENT;
+import static restlib.net.NetParserImpl.HOST;
+import static restlib.net.NetParserImpl.PATH;
+import static restlib.net.NetParserImpl.PORT;
+import static restlib.net.NetParserImpl.QUERY;
+import static restlib.net.NetParserImpl.SCHEME;
+import static restlib.net.NetParserImpl.USERINFO;
+
 import java.net.IDN;
-import java.util.List;
+import java.nio.CharBuffer;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import restlib.impl.CharSequenceParsers;
+
 import com.google.common.base.Ascii;
-import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
@@ -52,31 +61,72 @@ public class IRI {
         
     static IRI parse(final CharSequence iri, final IRIBuilder builder) {
         Preconditions.checkNotNull(iri);
+        Preconditions.checkNotNull(builder);
 
-        final List<String> parts = NetParserImpl.parseIRI(iri);
+        final String string = iri.toString();
+        final int[] offsets = NetParserImpl.scanIRI(string);
 
-        final String scheme = parts.get(0);
-        final String userinfo = parts.get(1);
-        final String host = parts.get(2);
-        final String port = parts.get(3);
-        final String path = parts.get(4);
-        final String query = parts.get(5);
-        final String fragment = parts.get(6);
+        Preconditions.checkArgument(
+                isEmpty(offsets, SCHEME) || IRIPredicates.IS_SCHEME.apply(slice(string, offsets, SCHEME)),
+                "Invalid IRI: " + string);
+        Preconditions.checkArgument(
+                builder.isUserinfo(slice(string, offsets, USERINFO)), "Invalid IRI: " + string);
+        if (!isEmpty(offsets, HOST)) {
+            builder.setHost(string.substring(offsets[HOST], offsets[HOST + 1]));
+        }
 
-        if (!port.isEmpty()) {
-            builder.setPort(Integer.parseInt(port));
+        Optional<Integer> port = Optional.absent();
+        if (offsets[PORT] >= 0) {
+            final long value = CharSequenceParsers.parseUnsignedLong(string, offsets[PORT], offsets[PORT + 1]);
+            Preconditions.checkArgument((value > 0) && (value < 65536), "Invalid IRI: " + string);
+            port = Optional.of((int) value);
         }
-        
+
+        Preconditions.checkArgument(
+                builder.isPath(slice(string, offsets, PATH)) &&
+                builder.isQuery(slice(string, offsets, QUERY)) &&
+                builder.isFragment(slice(string, offsets, FRAGMENT)),
+                "Invalid IRI: " + string);
+
+        final IRI retval = builder.newIRI(string, offsets, port);
+        Preconditions.checkArgument(retval.isValid(), "Invalid IRI: " + string);
+        if (isRendered(string, offsets)) {
+            return retval;
+        }
+
+        // The input includes empty delimited components, or a port with leading zeros,
+        // which are omitted from the String representation.
         return builder
-                    .setScheme(scheme)
-                    .setUserinfo(userinfo)
-                    .setHost(host)       
-                    .setPath(path)
-                    .setQuery(query)
-                    .setFragment(fragment)                   
+                    .setScheme(retval.scheme())
+                    .setUserinfo(retval.userinfo())
+                    .setHost(retval.host())
+                    .setPort(retval.port())
+                    .setPath(retval.path())
+                    .setQuery(retval.query())
+                    .setFragment(retval.fragment())
                     .build();
     }
     
+    private static boolean isEmpty(final int[] offsets, final int component) {
+        return offsets[component] == offsets[component + 1];
+    }
+    
+    // Returns true if the delimiters of the scanned components are exactly those of the String representation.
+    private static boolean isRendered(final String string, final int[] offsets) {
+        final boolean hasAuthority = 
+                !isEmpty(offsets, USERINFO) || !isEmpty(offsets, HOST) || (offsets[PORT] >= 0);
+        return ((offsets[USERINFO] < 0) || !isEmpty(offsets, USERINFO)) &&
+                ((offsets[HOST] < 0) || hasAuthority) &&
+                ((offsets[PORT] < 0) || (string.charAt(offsets[PORT]) != '0')) &&
+                ((offsets[QUERY] < 0) || !isEmpty(offsets, QUERY)) &&
+                ((offsets[FRAGMENT] < 0) || !isEmpty(offsets, FRAGMENT));
+    }
+    
+    private static CharSequence slice(final String string, final int[] offsets, final int component) {
+        final int start = offsets[component];
+        return (start < 0) ? "" : CharBuffer.wrap(string, start, offsets[component + 1]);
+    }
+    
     /**
      * Returns the results of performing the reference resolution 
      * of {@code relative} against {@code base} per the rules defined in
@@ -96,82 +146,128 @@ public class IRI {
         Preconditions.checkNotNull(builder);
         Preconditions.checkArgument(base.isAbsolute(), "Base IRI must be an absolute IRI");
         
-        if (!relative.scheme.isEmpty()) {
-            builder.setScheme(relative.scheme)
-                .setUserinfo(relative.userinfo)
-                .setHost(relative.host)
-                .setPort(relative.port)
-                .setPath(relative.path.removeDotSegments())
-                .setQuery(relative.query);
+        if (!relative.scheme().isEmpty()) {
+            builder.setScheme(relative.scheme())
+                .setUserinfo(relative.userinfo())
+                .setHost(relative.host())
+                .setPort(relative.port())
+                .setPath(relative.path().removeDotSegments())
+                .setQuery(relative.query());
         } else {
-            builder.setScheme(base.scheme);
+            builder.setScheme(base.scheme());
 
             if (!relative.authority().isEmpty()) {
-                builder.setHost(relative.host)
-                        .setPort(relative.port)
-                        .setUserinfo(relative.userinfo)
-                        .setPath(relative.path.removeDotSegments())
-                        .setQuery(relative.query);
+                builder.setHost(relative.host())
+                        .setPort(relative.port())
+                        .setUserinfo(relative.userinfo())
+                        .setPath(relative.path().removeDotSegments())
+                        .setQuery(relative.query());
             } else {
-                builder.setHost(base.host).setPort(base.port).setUserinfo(base.userinfo);
+                builder.setHost(base.host()).setPort(base.port()).setUserinfo(base.userinfo());
 
-                if (relative.path.isEmpty()) {
-                    builder.setPath(base.path);
+                if (relative.path().isEmpty()) {
+                    builder.setPath(base.path());
 
-                    if (!relative.query.equals("")) {
-                        builder.setQuery(relative.query);
+                    if (!relative.query().equals("")) {
+                        builder.setQuery(relative.query());
                     } else {
-                        builder.setQuery(base.query);
+                        builder.setQuery(base.query());
                     }
                 } else {
-                    if (relative.path.startsWithSlash()) {
-                        builder.setPath(relative.path.removeDotSegments());
+                    if (relative.path().startsWithSlash()) {
+                        builder.setPath(relative.path().removeDotSegments());
                     } else {
                         builder.setPath(Path.merge(base, relative).removeDotSegments());
                     }
                    
-                    builder.setQuery(relative.query);
+                    builder.setQuery(relative.query());
                 }
             }
         }
-        builder.setFragment(relative.fragment);
+        builder.setFragment(relative.fragment());
         return builder.build();
     }
 
-    private final String fragment;
-    private final String host;
-    private final Path path;
+    // The String representation of this IRI, and the offsets of its non-empty components.
+    private final String string;
+    private final int[] offsets;
     private final Optional<Integer> port;
-    private final String query;
-    private final String scheme;
-    private final String userinfo;
+    
+    // Created on first use. Racing threads create equal values.
+    private IRI canonical;
+    private String fragment;
+    private String host;
+    private Path path;
+    private String query;
+    private String scheme;
+    private String userinfo;
 
     IRI(final IRIBuilder builder) {
+        final StringBuilder buffer = new StringBuilder();
+        final int[] offsets = NetParserImpl.newOffsets();
+        
+        if (!builder.scheme.isEmpty()) {
+            append(buffer, offsets, SCHEME, builder.scheme).append(':');
+        }
+        
+        if (!builder.userinfo.isEmpty() || !builder.host.isEmpty() || builder.port.isPresent()) {
+            buffer.append("//");
+            if (!builder.userinfo.isEmpty()) {
+                append(buffer, offsets, USERINFO, builder.userinfo).append('@');
+            }
+            append(buffer, offsets, HOST, builder.host);
+            if (builder.port.isPresent()) {
+                append(buffer.append(':'), offsets, PORT, builder.port.get().toString());
+            }
+        }
+        
+        append(buffer, offsets, PATH, builder.path.toString());
+        
+        if (!builder.query.isEmpty()) {
+            append(buffer.append('?'), offsets, QUERY, builder.query);
+        }
+        
+        if (!builder.fragment.isEmpty()) {
+            append(buffer.append('#'), offsets, FRAGMENT, builder.fragment);
+        }
+        
+        this.string = buffer.toString();
+        this.offsets = offsets;
+        this.port = builder.port;
+        
         this.fragment = builder.fragment;
         this.host = builder.host;
         this.path = builder.path;
-        this.port = builder.port;
         this.query = builder.query;
         this.scheme = builder.scheme;
         this.userinfo = builder.userinfo;
     }
     
+    IRI(final String string, final int[] offsets, final Optional<Integer> port) {
+        this.string = string;
+        this.offsets = offsets;
+        this.port = port;
+    }
+    
+    private static StringBuilder append(
+            final StringBuilder buffer, final int[] offsets, final int component, final String value) {
+        offsets[component] = buffer.length();
+        buffer.append(value);
+        offsets[component + 1] = buffer.length();
+        return buffer;
+    }
+    
     /**
      * Returns the authority component of the IRI or the empty string if absent.
      */
     public final String authority() {
-        final StringBuilder builder = new StringBuilder();
-        if (!this.userinfo.isEmpty()) {
-            builder.append(this.userinfo).append("@");
+        final int start = (offsets[USERINFO] >= 0) ? offsets[USERINFO] : offsets[HOST];
+        if (start < 0) {
+            return "";
         }
         
-        builder.append(host());
-        
-        if (port.isPresent()) {
-            builder.append(":" + this.port.get());
-        }
-
-        return builder.toString();
+        final int end = (offsets[PORT] >= 0) ? offsets[PORT + 1] : offsets[HOST + 1];
+        return this.string.substring(start, end);
     }
     
     /**
@@ -185,22 +281,35 @@ public class IRI {
     
     IRI canonicalize(final IRIBuilder builder) {  
         Preconditions.checkNotNull(builder);
-        if (this.scheme.isEmpty()) {
+        if (this.scheme().isEmpty()) {
             return this;
         }
-
-        final IRI normalized = this.normalize();    
-        final Path path = normalized.path.canonicalize();
-             
-        return builder
-                    .setScheme(normalized.scheme)
-                    .setUserinfo(normalized.userinfo)
-                    .setHost(normalized.host)
-                    .setPort(normalized.port)
-                    .setPath(path)
-                    .setQuery(normalized.query)
-                    .setFragment(normalized.fragment)
-                    .build(); 
+        
+        IRI retval = this.canonical;
+        if (retval == null) {
+            final IRI normalized = this.normalize();    
+            final Path path = normalized.path().canonicalize();
+            
+            retval = builder
+                        .setScheme(normalized.scheme())
+                        .setUserinfo(normalized.userinfo())
+                        .setHost(normalized.host())
+                        .setPort(normalized.port)
+                        .setPath(path)
+                        .setQuery(normalized.query())
+                        .setFragment(normalized.fragment())
+                        .build();
+            if (retval.equals(this)) {
+                retval = this;
+            }
+            this.canonical = retval;
+        }
+        return retval;
+    }
+    
+    private String component(final int component) {
+        final int start = this.offsets[component];
+        return (start < 0) ? "" : this.string.substring(start, this.offsets[component + 1]);
     }
     
     @Override
@@ -209,13 +318,7 @@ public class IRI {
             return true;
         } else if (obj instanceof IRI) {
             final IRI that = (IRI) obj;
-            return this.fragment.equals(that.fragment) &&
-                    this.host.equals(that.host) && 
-                    this.path.equals(that.path) && 
-                    this.port.equals(that.port) &&
-                    this.query.equals(that.query) && 
-                    this.scheme.equals(that.scheme) && 
-                    this.userinfo.equals(that.userinfo);
+            return this.string.equals(that.string);
         }
         return false;
     }
@@ -224,54 +327,63 @@ public class IRI {
      * Returns the fragment component of the IRI or the empty string if absent.
      */
     public final String fragment() {
-        return this.fragment;
+        String retval = this.fragment;
+        if (retval == null) {
+            retval = component(FRAGMENT);
+            this.fragment = retval;
+        }
+        return retval;
     }
     
     @Override
     public final int hashCode() {
-        return Objects.hashCode(
-                this.fragment, 
-                this.host, 
-                this.path, 
-                this.port, 
-                this.query, 
-                this.scheme, 
-                this.userinfo);
+        return this.string.hashCode();
     }
     
     /**
      * Returns the host component of the IRI or the empty string if absent.
      */
     public final String host() {
-        return this.host;
+        String retval = this.host;
+        if (retval == null) {
+            retval = component(HOST);
+            this.host = retval;
+        }
+        return retval;
     }
     
     /**
      * Returns true if the IRI instance is an absolute IRI.
      */
     public final boolean isAbsolute() {
-        return !this.scheme.isEmpty() && fragment.isEmpty();
+        return (this.offsets[SCHEME] >= 0) && (this.offsets[FRAGMENT] < 0);
+    }
+    
+    private boolean isEmpty(final int component) {
+        return isEmpty(this.offsets, component);
     }
     
     final boolean isValid() {             
         // Validate the authority component
-        if (host.isEmpty() && (!userinfo.isEmpty() || port.isPresent())) {
+        if (isEmpty(HOST) && (!isEmpty(USERINFO) || port.isPresent())) {
             return false;
         }
         
-        final String authority = authority();
-
+        final boolean hasAuthority = !isEmpty(USERINFO) || !isEmpty(HOST) || port.isPresent();
+        final int pathStart = this.offsets[PATH];
+        final int pathEnd = this.offsets[PATH + 1];
+        
         // http://tools.ietf.org/html/rfc3986#section-3.3
         // If a URI contains an authority component, then the path component
         // must either be empty or begin with a slash ("/") character. 
-        if (!authority.isEmpty() && !path.isPathAbEmpty()) {
+        if (hasAuthority && (pathStart < pathEnd) && (this.string.charAt(pathStart) != '/')) {
             return false;
         } 
         
         // http://tools.ietf.org/html/rfc3986#section-3.3
         // If a URI does not contain an authority component, 
         // then the path cannot begin with two slash characters ("//").  
-        else if (authority.isEmpty() && path.startsWithDoubleSlash()) {
+        else if (!hasAuthority && (pathEnd - pathStart >= 2) && this.string.startsWith("//", pathStart)) {
             return false;
         } 
         
@@ -279,11 +391,14 @@ public class IRI {
         // A path segment that contains a colon character (e.g., "this:that")
         // cannot be used as the first segment of a relative-path reference, as
         // it would be mistaken for a scheme name.
-        else if(scheme.isEmpty() && authority.isEmpty() && !path.isPathNoScheme()) {
-            return false;       
-        } else {
-            return true;
+        else if (isEmpty(SCHEME) && !hasAuthority) {
+            for (int i = pathStart; (i < pathEnd) && (this.string.charAt(i) != '/'); i++) {
+                if (this.string.charAt(i) == ':') {
+                    return false;
+                }
+            }
         }
+        return true;
     }  
     
     /**
@@ -296,19 +411,19 @@ public class IRI {
      * </ul>
      */
     IRI normalize() {
-        if (this.scheme.isEmpty()) {
+        if (this.scheme().isEmpty()) {
             return this;
         }
              
         return builder()
-                    .setScheme(Ascii.toLowerCase(this.scheme))
-                    .setUserinfo(UriEncoding.UTF8_DECODE_IUSER_INFO.apply(this.userinfo).toString())
+                    .setScheme(Ascii.toLowerCase(this.scheme()))
+                    .setUserinfo(UriEncoding.UTF8_DECODE_IUSER_INFO.apply(this.userinfo()).toString())
                     .setHost(
-                            IDN.toUnicode(Ascii.toLowerCase(IDN.toASCII(this.host))))
+                            IDN.toUnicode(Ascii.toLowerCase(IDN.toASCII(this.host()))))
                     .setPort(this.port)
-                    .setPath(path.toIRIPath().removeDotSegments())
-                    .setQuery(UriEncoding.UTF8_DECODE_IQUERY.apply(this.query).toString())
-                    .setFragment(UriEncoding.UTF8_DECODE_IFRAGMENT.apply(this.fragment).toString())
+                    .setPath(path().toIRIPath().removeDotSegments())
+                    .setQuery(UriEncoding.UTF8_DECODE_IQUERY.apply(this.query()).toString())
+                    .setFragment(UriEncoding.UTF8_DECODE_IFRAGMENT.apply(this.fragment()).toString())
                     .build();            
     }
     
@@ -316,7 +431,12 @@ public class IRI {
      * Returns the path component of the IRI.
      */
     public final Path path() {
-        return path;
+        Path retval = this.path;
+        if (retval == null) {
+            retval = Path.parse(component(PATH));
+            this.path = retval;
+        }
+        return retval;
     }
     
     /**
@@ -330,14 +450,24 @@ public class IRI {
      * Returns the query component of the IRI or the empty string if absent.
      */
     public String query() {
-        return this.query;
-    };
+        String retval = this.query;
+        if (retval == null) {
+            retval = component(QUERY);
+            this.query = retval;
+        }
+        return retval;
+    }
     
     /**
      * Returns the scheme component of the IRI or the empty string if absent.
      */
     public final String scheme() {
-        return this.scheme;
+        String retval = this.scheme;
+        if (retval == null) {
+            retval = component(SCHEME);
+            this.scheme = retval;
+        }
+        return retval;
     }
     
     /**
@@ -347,13 +477,13 @@ public class IRI {
     public final IRI toIRI() {
         if(this instanceof Uri) {            
             return builder()
-                    .setScheme(this.scheme)
-                    .setUserinfo(UriEncoding.UTF8_DECODE_IUSER_INFO.apply(this.userinfo).toString())
-                    .setHost(IDN.toUnicode(this.host))
+                    .setScheme(this.scheme())
+                    .setUserinfo(UriEncoding.UTF8_DECODE_IUSER_INFO.apply(this.userinfo()).toString())
+                    .setHost(IDN.toUnicode(this.host()))
                     .setPort(this.port)
                     .setPath(path().toIRIPath())
-                    .setQuery(UriEncoding.UTF8_DECODE_IQUERY.apply(this.query).toString())
-                    .setFragment(UriEncoding.UTF8_DECODE_IFRAGMENT.apply(this.fragment).toString())
+                    .setQuery(UriEncoding.UTF8_DECODE_IQUERY.apply(this.query()).toString())
+                    .setFragment(UriEncoding.UTF8_DECODE_IFRAGMENT.apply(this.fragment()).toString())
                     .build(); 
         } else {
             return this;
@@ -362,28 +492,7 @@ public class IRI {
     
     @Override
     public final String toString() {
-        final StringBuilder builder = new StringBuilder();
-        final String authority = authority();
-        
-        if (!this.scheme.isEmpty()) {
-            builder.append(this.scheme).append(":");
-        }
-        
-        if (!authority.isEmpty()) {
-            builder.append("//").append(authority);
-        }
-        
-        builder.append(this.path());       
-        
-        if (!this.query.isEmpty()) {
-            builder.append("?").append(this.query);
-        }
-
-        if (!this.fragment.isEmpty()) {
-            builder.append("#").append(this.fragment);
-        }
-        
-        return builder.toString();
+        return this.string;
     }
     
     /**
@@ -394,14 +503,14 @@ public class IRI {
             return (Uri) this;
         } else {
             return Uri.builder()
-                    .setScheme(this.scheme)
+                    .setScheme(this.scheme())
                     .setUserinfo(
-                            UriEncoding.UTF8_ENCODE_USER_INFO.apply(this.userinfo))                  
-                    .setHost(IDN.toASCII(this.host))
+                            UriEncoding.UTF8_ENCODE_USER_INFO.apply(this.userinfo()))                  
+                    .setHost(IDN.toASCII(this.host()))
                     .setPort(this.port)
                     .setPath(path().toUriPath())
-                    .setQuery(UriEncoding.UTF8_ENCODE_QUERY.apply(this.query))
-                    .setFragment(UriEncoding.UTF8_ENCODE_FRAGMENT.apply(this.fragment))
+                    .setQuery(UriEncoding.UTF8_ENCODE_QUERY.apply(this.query()))
+                    .setFragment(UriEncoding.UTF8_ENCODE_FRAGMENT.apply(this.fragment()))
                     .build();                
         }
     }
@@ -410,6 +519,11 @@ public class IRI {
      * Returns the userinfo component of the IRI or the empty string if absent.
      */
     public final String userinfo() {
-        return this.userinfo;
+        String retval = this.userinfo;
+        if (retval == null) {
+            retval = component(USERINFO);
+            this.userinfo = retval;
+        }
+        return retval;
     }
 }
@@ -18,7 +18,6 @@
 package restlib.net;
 
 import java.net.InetAddress;
-import java.util.List;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -45,6 +44,28 @@ public class IRIBuilder {
     
     IRIBuilder(){}
     
+    // Validation of components, which UriBuilder restricts to URI characters.
+    boolean isFragment(final CharSequence fragment) {
+        return IRIPredicates.IS_IFRAGMENT.apply(fragment);
+    }
+    
+    boolean isPath(final CharSequence path) {
+        return IRIPredicates.IS_IPATH.apply(path);
+    }
+    
+    boolean isQuery(final CharSequence query) {
+        return IRIPredicates.IS_IQUERY.apply(query);
+    }
+    
+    boolean isUserinfo(final CharSequence userinfo) {
+        return IRIPredicates.IS_IUSERINFO.apply(userinfo);
+    }
+    
+    // Creates the IRI parsed from string, whose components have been validated by this builder.
+    IRI newIRI(final String string, final int[] offsets, final Optional<Integer> port) {
+        return new IRI(string, offsets, port);
+    }
+    
     /**
      * Returns a new {@code IRI} instance.
      * @throws IllegalStateException If the IRI instance that would be generated by this 
@@ -66,11 +87,11 @@ public class IRIBuilder {
      */
     public IRIBuilder setAuthority(final String authority) {
         Preconditions.checkNotNull(authority);
-        final List<String> parts = NetParserImpl.parseAuthority(authority);
+        final int[] offsets = NetParserImpl.scanAuthority(authority);
         
-        final String userinfo = parts.get(0);
-        final String host = parts.get(1);
-        final String portStr = parts.get(2);
+        final String userinfo = component(authority, offsets, NetParserImpl.USERINFO);
+        final String host = component(authority, offsets, NetParserImpl.HOST);
+        final String portStr = component(authority, offsets, NetParserImpl.PORT);
 
         // Make sure the authority component is actually valid
         Preconditions.checkArgument(
@@ -82,6 +103,11 @@ public class IRIBuilder {
                             Optional.of(CommonParsers.parseUnsignedInteger(portStr)));        
     }
     
+    private static String component(final String in, final int[] offsets, final int component) {
+        final int start = offsets[component];
+        return (start < 0) ? "" : in.substring(start, offsets[component + 1]);
+    }
+    
     /**
      * Sets the fragment component of the {@code IRIBuilder}.
      * @param fragment a valid IRI fragment string.
@@ -92,8 +118,7 @@ public class IRIBuilder {
      */
     public IRIBuilder setFragment(final String fragment) {
         Preconditions.checkNotNull(fragment);
-        Preconditions.checkArgument(
-            IRIPredicates.IS_IFRAGMENT.apply(fragment));
+        Preconditions.checkArgument(isFragment(fragment));
         this.fragment = fragment;
         return this;
     }
@@ -206,8 +231,7 @@ public class IRIBuilder {
      */
     public IRIBuilder setQuery(final String query) {
         Preconditions.checkNotNull(query);
-        Preconditions.checkArgument(
-            IRIPredicates.IS_IQUERY.apply(query));
+        Preconditions.checkArgument(isQuery(query));
         this.query = query;
         return this;
     }
@@ -239,7 +263,7 @@ public class IRIBuilder {
      */
     public IRIBuilder setUserinfo(final String userinfo) {
         Preconditions.checkNotNull(userinfo);
-        Preconditions.checkArgument(IRIPredicates.IS_IUSERINFO.apply(userinfo));
+        Preconditions.checkArgument(isUserinfo(userinfo));
         this.userinfo = userinfo;
         return this;
     }   
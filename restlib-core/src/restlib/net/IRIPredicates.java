@@ -19,11 +19,13 @@ final class IRIPredicates {
      
     static final Predicate<CharSequence> IS_FRAGMENT;
     static final Predicate<CharSequence> IS_IFRAGMENT;
+    static final Predicate<CharSequence> IS_IPATH;
     static final Predicate<CharSequence> IS_IQUERY;
     static final Predicate<CharSequence> IS_ISEGMENT;
     static final Predicate<CharSequence> IS_IUNRESERVED;
     static final Predicate<Integer> IS_IUNRESERVED_CODEPOINT;
     static final Predicate<CharSequence> IS_IUSERINFO;
+    static final Predicate<CharSequence> IS_PATH;
     static final Predicate<CharSequence> IS_QUERY;
     static final Predicate<CharSequence> IS_SCHEME;
     static final Predicate<CharSequence> IS_SEGMENT;
@@ -37,6 +39,11 @@ final class IRIPredicates {
     static final CharMatcher USER_INFO_SAFE_CHAR;
     static final CharMatcher FRAGMENT_SAFE_CHAR;
     
+    static final CodePointMatcher QUERY_SAFE_CODEPOINT;
+    static final CodePointMatcher SEGMENT_SAFE_CODEPOINT;
+    static final CodePointMatcher USER_INFO_SAFE_CODEPOINT;
+    static final CodePointMatcher FRAGMENT_SAFE_CODEPOINT;
+    
     static final CodePointMatcher IQUERY_SAFE_CODEPOINT;
     static final CodePointMatcher ISEGMENT_SAFE_CODEPOINT;
     static final CodePointMatcher IUSER_INFO_SAFE_CODEPOINT;
@@ -53,16 +60,22 @@ final class IRIPredicates {
                                             .or(CharMatcher.anyOf("-._~"));
         
         final CharMatcher pchar = unreserved.or(percentEncoded).or(subDelims).or(CharMatcher.anyOf(":@"));
-        FRAGMENT_SAFE_CHAR = pchar.or(CharMatcher.anyOf("/?"));
+        FRAGMENT_SAFE_CHAR = pchar.or(CharMatcher.anyOf("/?")).precomputed();
         QUERY_SAFE_CHAR = FRAGMENT_SAFE_CHAR;
-        SEGMENT_SAFE_CHAR = pchar;
-        USER_INFO_SAFE_CHAR = unreserved.or(percentEncoded).or(subDelims).or (CharMatcher.is(':'));
+        SEGMENT_SAFE_CHAR = pchar.precomputed();
+        USER_INFO_SAFE_CHAR = unreserved.or(percentEncoded).or(subDelims).or (CharMatcher.is(':')).precomputed();
+        
+        FRAGMENT_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(FRAGMENT_SAFE_CHAR).precompute();
+        QUERY_SAFE_CODEPOINT = FRAGMENT_SAFE_CODEPOINT;
+        SEGMENT_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(SEGMENT_SAFE_CHAR).precompute();
+        USER_INFO_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(USER_INFO_SAFE_CHAR).precompute();
         
         IS_FRAGMENT = matchesAll(FRAGMENT_SAFE_CHAR);
         IS_QUERY = matchesAll(QUERY_SAFE_CHAR);
         IS_UNRESERVED = matchesAll(unreserved);    
         IS_UNRESERVED_CHARACTER = unreserved;
         IS_SEGMENT = matchesAll(SEGMENT_SAFE_CHAR);
+        IS_PATH = matchesAll(SEGMENT_SAFE_CHAR.or(CharMatcher.is('/')).precomputed());
         IS_URI_CHARS = matchesAll(percentEncoded.or(reserved).or(unreserved));
         IS_USER_INFO = matchesAll(USER_INFO_SAFE_CHAR);
         
@@ -94,16 +107,17 @@ final class IRIPredicates {
                     .or(inRange("\uDB80\uDC00","\uDBBF\uDFFD"))
                     .or(inRange("\uDBC0\uDC00","\uDBFF\uDFFD"));
         
-        final CodePointMatcher iunreserved = CodePointMatcher.fromCharacterPredicate(unreserved).or(uschar);
-        final CodePointMatcher ipchar = CodePointMatcher.fromCharacterPredicate(pchar).or(iunreserved);
-        IFRAGMENT_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(FRAGMENT_SAFE_CHAR).or(ipchar);
-        IQUERY_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(QUERY_SAFE_CHAR).or(ipchar).or(iprivate);
+        final CodePointMatcher iunreserved = CodePointMatcher.fromCharacterPredicate(unreserved).or(uschar).precompute();
+        final CodePointMatcher ipchar = CodePointMatcher.fromCharacterPredicate(pchar).or(iunreserved).precompute();
+        IFRAGMENT_SAFE_CODEPOINT = FRAGMENT_SAFE_CODEPOINT.or(ipchar).precompute();
+        IQUERY_SAFE_CODEPOINT = QUERY_SAFE_CODEPOINT.or(ipchar).or(iprivate).precompute();
         ISEGMENT_SAFE_CODEPOINT = ipchar;       
-        IUSER_INFO_SAFE_CODEPOINT = CodePointMatcher.fromCharacterPredicate(USER_INFO_SAFE_CHAR).or(iunreserved);
+        IUSER_INFO_SAFE_CODEPOINT = USER_INFO_SAFE_CODEPOINT.or(iunreserved).precompute();
 
         IS_IFRAGMENT = IFRAGMENT_SAFE_CODEPOINT.matchesAllOf();
         IS_IQUERY = IQUERY_SAFE_CODEPOINT.matchesAllOf();
         IS_ISEGMENT = ISEGMENT_SAFE_CODEPOINT.matchesAllOf();
+        IS_IPATH = ISEGMENT_SAFE_CODEPOINT.or(CodePointMatcher.anyOf("/")).precompute().matchesAllOf();
         IS_IUNRESERVED = iunreserved.matchesAllOf();
         IS_IUNRESERVED_CODEPOINT = iunreserved;
         IS_IUSERINFO = IUSER_INFO_SAFE_CODEPOINT.matchesAllOf();
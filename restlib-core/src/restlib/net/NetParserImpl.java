@@ -1,92 +1,160 @@
 package restlib.net;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 
+/**
+ * Hand written scanners for IRIs and their parts. The IRI scanner makes a single pass
+ * over its input, recording the start and end offsets of each component rather than
+ * creating substrings. Components are identified by the generic syntax of
+ * <a href="http://tools.ietf.org/html/rfc3986#appendix-B">appendix B of RFC3986</a>,
+ * and are validated by the caller.
+ */
 final class NetParserImpl {
-    private static final Pattern emailPattern;
-    private static final Pattern iAuthorityPattern;  
-    private static final Pattern iriPattern;
-    
-    static {        
-        final String authority = "((^.+)?@)?(.*?)(:(\\d+$))?";
-        
-        final String iri = 
-                "^(([^:/?#]+):)?" + // Scheme
-                "(//([^/?#]*))?" + // Authority
-                "([^?#]*)" + // Path
-                "(\\?([^#]*))?" + // Query
-                "(#(.*))?"; // Fragment  
-        
-        final String email = "(.+)@([^@]+$)";
-        
-        emailPattern = Pattern.compile(email);
-        iAuthorityPattern = Pattern.compile(authority);
-        iriPattern = Pattern.compile(iri);
-    }
-    
+    // Offsets of the start of each component in the array returned by scanIRI.
+    // The end of a component follows its start. Both are -1 if the component's delimiter is absent.
+    static final int SCHEME = 0;
+    static final int USERINFO = 2;
+    static final int HOST = 4;
+    static final int PORT = 6;
+    static final int PATH = 8;
+    static final int QUERY = 10;
+    static final int FRAGMENT = 12;
+    static final int OFFSETS_LENGTH = 14;
+
     static List<String> parseEmail(final CharSequence email) {
         Preconditions.checkNotNull(email);
-        
-        final Matcher matcher = emailPattern.matcher(email);
-        Preconditions.checkArgument(matcher.matches(), "Invalid Email Address: " + email);
-        
-        return ImmutableList.of(matcher.group(1), matcher.group(2));      
+
+        final int at = lastIndexOf(email, '@', 0, email.length());
+        Preconditions.checkArgument(
+                (at > 0) && (at < email.length() - 1), "Invalid Email Address: " + email);
+
+        final String str = email.toString();
+        return ImmutableList.of(str.substring(0, at), str.substring(at + 1));
     }
 
-    static List<String> parseIRI(final CharSequence iri) {
-        final ImmutableList.Builder<String> builder = ImmutableList.builder();
-        
-        final Matcher matcher = iriPattern.matcher(iri);
-        Preconditions.checkArgument(matcher.matches(), "Invalid IRI: " + iri);
-        
-        final Matcher authorityMatcher = iAuthorityPattern.matcher(Strings.nullToEmpty(matcher.group(4)));
-        Preconditions.checkArgument(authorityMatcher.matches(), "Invalid IRI: " + iri);
-
-        // Scheme
-        builder.add(Strings.nullToEmpty(matcher.group(2)));
-
-        // UserInfo
-        builder.add(Strings.nullToEmpty(authorityMatcher.group(2)));
-        
-        // IP or Regname
-        builder.add(Strings.nullToEmpty(authorityMatcher.group(3)));
-        
-        // Port
-        builder.add(Strings.nullToEmpty(authorityMatcher.group(5)));
-        
+    /**
+     * Scans the authority component between {@code start} and {@code end} of {@code in}
+     * into the USERINFO, HOST and PORT offsets of {@code offsets}. The userinfo extends
+     * to the last '@', and the port is the trailing run of digits following the last ':',
+     * if there is one, so that IPv6 literals are not split.
+     */
+    private static void scanAuthority(final CharSequence in, final int start, final int end, final int[] offsets) {
+        int hostStart = start;
+        final int at = lastIndexOf(in, '@', start, end);
+        if (at >= 0) {
+            offsets[USERINFO] = start;
+            offsets[USERINFO + 1] = at;
+            hostStart = at + 1;
+        }
+
+        int hostEnd = end;
+        final int colon = lastIndexOf(in, ':', hostStart, end);
+        if ((colon >= 0) && (colon < end - 1) && isDigits(in, colon + 1, end)) {
+            offsets[PORT] = colon + 1;
+            offsets[PORT + 1] = end;
+            hostEnd = colon;
+        }
+
+        offsets[HOST] = hostStart;
+        offsets[HOST + 1] = hostEnd;
+    }
+
+    static int[] scanAuthority(final CharSequence authority) {
+        Preconditions.checkNotNull(authority);
+        final int[] offsets = newOffsets();
+        scanAuthority(authority, 0, authority.length(), offsets);
+        return offsets;
+    }
+
+    static int[] scanIRI(final CharSequence iri) {
+        Preconditions.checkNotNull(iri);
+        final int length = iri.length();
+        final int[] offsets = newOffsets();
+
+        // Scheme, which is terminated by the first ':' if it precedes any other delimiter.
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = iri.charAt(i);
+            if (c == ':') {
+                if (i > 0) {
+                    offsets[SCHEME] = 0;
+                    offsets[SCHEME + 1] = i;
+                    pos = i + 1;
+                }
+                break;
+            } else if (isPathDelimiter(c)) {
+                break;
+            }
+        }
+
+        // Authority
+        if ((pos + 1 < length) && (iri.charAt(pos) == '/') && (iri.charAt(pos + 1) == '/')) {
+            final int authorityStart = pos + 2;
+            pos = authorityStart;
+            while ((pos < length) && !isPathDelimiter(iri.charAt(pos))) {
+                pos++;
+            }
+            scanAuthority(iri, authorityStart, pos, offsets);
+        }
+
         // Path
-        builder.add(Strings.nullToEmpty(matcher.group(5)));
-        
+        offsets[PATH] = pos;
+        while ((pos < length) && (iri.charAt(pos) != '?') && (iri.charAt(pos) != '#')) {
+            pos++;
+        }
+        offsets[PATH + 1] = pos;
+
         // Query
-        builder.add(Strings.nullToEmpty(matcher.group(7)));
-        
+        if ((pos < length) && (iri.charAt(pos) == '?')) {
+            pos++;
+            offsets[QUERY] = pos;
+            while ((pos < length) && (iri.charAt(pos) != '#')) {
+                pos++;
+            }
+            offsets[QUERY + 1] = pos;
+        }
+
         // Fragment
-        builder.add(Strings.nullToEmpty(matcher.group(9)));
-        
-        return builder.build();
+        if (pos < length) {
+            offsets[FRAGMENT] = pos + 1;
+            offsets[FRAGMENT + 1] = length;
+        }
+
+        return offsets;
     }
 
-    static List<String> parseAuthority(final CharSequence authority) {
-        Preconditions.checkNotNull(authority);
-        final ImmutableList.Builder<String> builder = ImmutableList.builder();
-        final Matcher matcher = iAuthorityPattern.matcher(authority);
-        Preconditions.checkArgument(matcher.matches());
-
-        // Userinfo
-        builder.add(Strings.nullToEmpty(matcher.group(2)));
-        
-        // Host
-        builder.add(Strings.nullToEmpty(matcher.group(3)));
-        
-        // Port
-        builder.add(Strings.nullToEmpty(matcher.group(5)));
-
-        return builder.build();
+    private static boolean isDigits(final CharSequence in, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = in.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPathDelimiter(final char c) {
+        return (c == '/') || (c == '?') || (c == '#');
+    }
+
+    private static int lastIndexOf(final CharSequence in, final char c, final int start, final int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (in.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
     }
+
+    static int[] newOffsets() {
+        final int[] offsets = new int[OFFSETS_LENGTH];
+        Arrays.fill(offsets, -1);
+        return offsets;
+    }
+
+    private NetParserImpl() {}
 }
@@ -20,14 +20,13 @@ package restlib.net;
 import java.util.List;
 import java.util.ListIterator;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import com.google.common.base.Functions;
-import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ForwardingList;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -38,11 +37,9 @@ import com.google.common.collect.Lists;
  */
 @Immutable
 public final class Path extends ForwardingList<String> {
-    private static final Path EMPTY = new Path(ImmutableList.<String> of());    
+    private static final Path EMPTY = new Path("", new int[0], ImmutableList.<String> of());    
     private static final Path FORWARD_SLASH_PATH = Path.copyOf(ImmutableList.of("",""));
     private static final Predicate<String> IS_EMPTY = Predicates.equalTo("");
-    private static final Joiner PATH_JOINER = Joiner.on('/');   
-    private static final Splitter PATH_SPLITTER = Splitter.on('/');
     
     /**
      * Return a new {@code Path} instance containing the given segments.
@@ -56,10 +53,19 @@ public final class Path extends ForwardingList<String> {
             return EMPTY;
         }
         
-        for (final String segment : segments) {
-            Preconditions.checkArgument(!segment.contains("/"));
+        final ImmutableList<String> list = ImmutableList.copyOf(segments);
+        final int[] starts = new int[list.size()];
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < starts.length; i++) {
+            final String segment = list.get(i);
+            Preconditions.checkArgument(segment.indexOf('/') < 0);
+            if (i > 0) {
+                builder.append('/');
+            }
+            starts[i] = builder.length();
+            builder.append(segment);
         }
-        return new Path(ImmutableList.copyOf(segments));
+        return new Path(builder.toString(), starts, list);
     }
     
     static Path merge(final IRI base, final IRI relative) {
@@ -67,16 +73,16 @@ public final class Path extends ForwardingList<String> {
         Preconditions.checkNotNull(relative);
         Preconditions.checkArgument(base.isAbsolute(), "Base IRI must be an absolute IRI");
 
-        if (!base.authority().isEmpty() && base.path().segments.isEmpty()) {
+        if (!base.authority().isEmpty() && base.path().isEmpty()) {
             return Path.copyOf(
                         ImmutableList.<String> builder()
-                            .add("").addAll(relative.path().segments).build());        
+                            .add("").addAll(relative.path().delegate()).build());        
         } else {
             return Path.copyOf(
                     ImmutableList.<String> builder()
-                                .addAll(base.path().segments.subList(
-                                            0, base.path().segments.size() - 1))
-                                .addAll(relative.path().segments)
+                                .addAll(base.path().delegate().subList(
+                                            0, base.path().size() - 1))
+                                .addAll(relative.path().delegate())
                                 .build());
         }
     }
@@ -182,13 +188,33 @@ public final class Path extends ForwardingList<String> {
         Preconditions.checkNotNull(path);
         if (path.isEmpty()) {
             return EMPTY;
-        }   
-        return new Path(ImmutableList.copyOf(PATH_SPLITTER.split(path))); 
+        }
+        
+        int size = 1;
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            size++;
+        }
+        
+        final int[] starts = new int[size];
+        for (int i = 1, slash = path.indexOf('/'); i < size; i++, slash = path.indexOf('/', slash + 1)) {
+            starts[i] = slash + 1;
+        }
+        return new Path(path, starts, null);
     }
     
-    private final List<String> segments;
+    // The segments joined by '/', and the index of the first character of each segment in it.
+    private final String string;
+    private final int[] starts;
     
-    private Path(final List<String> segments) {
+    // Created on first use. Racing threads create equal values.
+    private Path canonical;
+    private Path iriPath;
+    private ImmutableList<String> segments;
+    private Path uriPath;
+    
+    private Path(final String string, final int[] starts, final ImmutableList<String> segments) {
+        this.string = string;
+        this.starts = starts;
         this.segments = segments;
     }
     
@@ -200,20 +226,33 @@ public final class Path extends ForwardingList<String> {
      * @return The canonicalized path segments
      */
     public Path canonicalize() {
-        final Path canonical = this.doCanonicalize();
-        if (this.equals(canonical)) {
-            return this;
-        } else {
-            return canonical;
+        Path retval = this.canonical;
+        if (retval == null) {
+            retval = this.isCanonical() ? this : this.doCanonicalize();
+            if (this.equals(retval)) {
+                retval = this;
+            }
+            this.canonical = retval;
         }
+        return retval;
     }
     
     @Override
     protected List<String> delegate() {
-        return segments;
+        ImmutableList<String> retval = this.segments;
+        if (retval == null) {
+            final ImmutableList.Builder<String> builder = ImmutableList.builder();
+            for (int i = 0; i < this.starts.length; i++) {
+                builder.add(this.string.substring(this.starts[i], end(i)));
+            }
+            retval = builder.build();
+            this.segments = retval;
+        }
+        return retval;
     }
      
     private Path doCanonicalize() {
+        final List<String> segments = delegate();
         if (segments.isEmpty()) {
             return FORWARD_SLASH_PATH;
         }
@@ -239,7 +278,7 @@ public final class Path extends ForwardingList<String> {
                 }
             }
             
-            if (buffer.equals(FORWARD_SLASH_PATH.segments)) {
+            if (buffer.equals(FORWARD_SLASH_PATH.delegate())) {
                 return FORWARD_SLASH_PATH;
             }
             
@@ -251,7 +290,7 @@ public final class Path extends ForwardingList<String> {
     }
 
     Path doRemoveDotSegments() { 
-        final List<String> buffer = Lists.newLinkedList(segments);
+        final List<String> buffer = Lists.newLinkedList(delegate());
         final ListIterator<String> itr = buffer.listIterator();
         
         while(itr.hasNext()) {
@@ -282,48 +321,119 @@ public final class Path extends ForwardingList<String> {
         return Path.copyOf(buffer);
     }
     
+    // Returns the index following the last character of the segment at index.
+    private int end(final int index) {
+        return (index + 1 < this.starts.length) ? this.starts[index + 1] - 1 : this.string.length();
+    }
+    
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof Path) {
+            final Path that = (Path) obj;
+            return (this.starts.length == that.starts.length) && this.string.equals(that.string);
+        }
+        return super.equals(obj);
+    }
+    
+    @Override
+    public String get(final int index) {
+        return delegate().get(index);
+    }
+    
+    @Override
+    public int hashCode() {
+        // Equal to the hash code of the list of segments, without creating them.
+        int retval = 1;
+        for (int i = 0; i < this.starts.length; i++) {
+            int segmentHashCode = 0;
+            for (int j = this.starts[i]; j < end(i); j++) {
+                segmentHashCode = 31 * segmentHashCode + this.string.charAt(j);
+            }
+            retval = 31 * retval + segmentHashCode;
+        }
+        return retval;
+    }
+    
+    /**
+     * Returns true if {@link #canonicalize()} would return a Path equal to this one, 
+     * without allocating a copy of the segments.
+     */
+    private boolean isCanonical() {
+        final int size = this.starts.length;
+        if (size == 0) {
+            return false;
+        } else if (size == 1) {
+            return !isEmpty(0);
+        } else if ((size == 2) && isEmpty(0) && isEmpty(1)) {
+            return true;
+        } else if (isEmpty(size - 1)) {
+            return false;
+        }
+        
+        for (int i = 1; i < size - 1; i++) {
+            if (isEmpty(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return this.starts.length == 0;
+    }
+    
+    // Returns true if the segment at index is the empty string.
+    private boolean isEmpty(final int index) {
+        return this.starts[index] == end(index);
+    }
+    
     /**
      * Returns true if all segments in this Path are valid IRI isegments.
      */
     public boolean isIRIPath() {
-        return Iterables.all(segments, IRIPredicates.IS_ISEGMENT);
+        return IRIPredicates.IS_IPATH.apply(this.string);
     }
     
     boolean isNormalized() {
+        final List<String> segments = delegate();
         return !segments.contains("..") && !segments.contains(".");
     }
     
     boolean isPathAbEmpty() {
-        if (segments.isEmpty()) {
-            return true;
-        } else {
-            return segments.get(0).isEmpty();          
-        } 
+        return isEmpty() || isEmpty(0);
     }
     
     boolean isPathAbsolute() {
-        if (segments.isEmpty()) {
+        if (isEmpty()) {
             return false;
-        } else if (segments.size() <= 2) {
-            return segments.get(0).isEmpty();
+        } else if (size() <= 2) {
+            return isEmpty(0);
         } else {
-            return segments.get(0).isEmpty() && (!segments.get(1).isEmpty());
+            return isEmpty(0) && !isEmpty(1);
         }
     }
     
     boolean isPathNoScheme() {
-        return segments.isEmpty() ? true : !segments.get(0).contains(":");
+        if (isEmpty()) {
+            return true;
+        }
+        
+        final int colon = this.string.indexOf(':');
+        return (colon < 0) || (colon >= end(0));
     }
     
     /**
      * Returns true if all segments in this Path are valid Uri segments.
      */
     public boolean isUriPath() {
-        return Iterables.all(segments, IRIPredicates.IS_SEGMENT);
+        return IRIPredicates.IS_PATH.apply(this.string);
     }
     
     Path removeDotSegments() {
-        if (segments.isEmpty()) {
+        if (isEmpty()) {
             return this;
         } 
         
@@ -339,16 +449,21 @@ public final class Path extends ForwardingList<String> {
      * Returns the segments composing this Path. The returned {@code Iterable} is unmodifiable.
      */
     public Iterable<String> segments() {
-        return this.segments;
+        return delegate();
+    }
+    
+    @Override
+    public int size() {
+        return this.starts.length;
     }
     
     boolean startsWithDoubleSlash() {
         // A double slash path looks like ["", "", *]    
-        return (segments.size() > 2) && Iterables.all(segments.subList(0, 2), IS_EMPTY);
+        return (size() > 2) && isEmpty(0) && isEmpty(1);
     }
     
     boolean startsWithSlash() {
-        return (segments.size() > 0) && segments.get(0).equals("");
+        return !isEmpty() && isEmpty(0);
     }
     
     /**
@@ -356,16 +471,24 @@ public final class Path extends ForwardingList<String> {
      * IRI isegments.
      */
     public Path toIRIPath() {
-        return Path.copyOf(
-                Iterables.transform(segments, 
-                        Functions.compose(
-                                UriEncoding.UTF8_ENCODE_PATH_ISEGMENT,
-                                UriEncoding.UTF8_DECODE_PATH_ISEGMENT)));
+        Path retval = this.iriPath;
+        if (retval == null) {
+            retval = Path.copyOf(
+                    Iterables.transform(delegate(), 
+                            Functions.compose(
+                                    UriEncoding.UTF8_ENCODE_PATH_ISEGMENT,
+                                    UriEncoding.UTF8_DECODE_PATH_ISEGMENT)));
+            if (this.equals(retval)) {
+                retval = this;
+            }
+            this.iriPath = retval;
+        }
+        return retval;
     }
 
     @Override
     public String toString() {
-        return PATH_JOINER.join(this.segments);
+        return this.string;
     }
 
     /**
@@ -373,10 +496,18 @@ public final class Path extends ForwardingList<String> {
      * Uri segments.
      */
     public Path toUriPath() {
-        return Path.copyOf(
-                Iterables.transform(segments, 
-                        Functions.compose(
-                            UriEncoding.UTF8_ENCODE_PATH_SEGMENT,
-                            UriEncoding.UTF8_DECODE_PATH_SEGMENT)));
+        Path retval = this.uriPath;
+        if (retval == null) {
+            retval = Path.copyOf(
+                    Iterables.transform(delegate(), 
+                            Functions.compose(
+                                UriEncoding.UTF8_ENCODE_PATH_SEGMENT,
+                                UriEncoding.UTF8_DECODE_PATH_SEGMENT)));
+            if (this.equals(retval)) {
+                retval = this;
+            }
+            this.uriPath = retval;
+        }
+        return retval;
     }   
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.net;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A read only view of the parameters of an x-www-form-urlencoded query component.
+ * The query is scanned once to index the offsets of its parameters. Keys and values
+ * are only percent decoded, using UTF-8, when they are looked up, so reading a
+ * few parameters of a long query does not decode the rest of it. Parameters are parsed
+ * as by {@link restlib.data.Form#parse(CharSequence)}.
+ */
+@Immutable
+public final class QueryParameters {
+    private static final QueryParameters EMPTY = new QueryParameters("", new int[0], 0);
+
+    // Each parameter is described by 4 offsets: key start, key end, value start, value end.
+    private static final int PARAMETER_WIDTH = 4;
+
+    /**
+     * Returns a view of the parameters of {@code query}.
+     * @throws NullPointerException if {@code query} is null.
+     * @throws IllegalArgumentException if a parameter of {@code query} has an empty key.
+     */
+    public static QueryParameters parse(final CharSequence query) {
+        Preconditions.checkNotNull(query);
+        if (query.length() == 0) {
+            return EMPTY;
+        }
+
+        final String string = query.toString();
+        final int length = string.length();
+        int[] offsets = new int[PARAMETER_WIDTH * 8];
+        int size = 0;
+
+        for (int start = 0; start <= length;) {
+            int end = string.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            final int next = end + 1;
+            while ((start < end) && CharMatcher.WHITESPACE.matches(string.charAt(start))) {
+                start++;
+            }
+            while ((end > start) && CharMatcher.WHITESPACE.matches(string.charAt(end - 1))) {
+                end--;
+            }
+
+            if (start < end) {
+                int equals = string.indexOf('=', start);
+                if ((equals < 0) || (equals > end)) {
+                    equals = end;
+                }
+                Preconditions.checkArgument(equals > start, "Invalid query: " + string);
+
+                if (offsets.length == size * PARAMETER_WIDTH) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                final int parameter = size * PARAMETER_WIDTH;
+                offsets[parameter] = start;
+                offsets[parameter + 1] = equals;
+                offsets[parameter + 2] = Math.min(equals + 1, end);
+                offsets[parameter + 3] = end;
+                size++;
+            }
+
+            start = next;
+        }
+
+        return new QueryParameters(string, offsets, size);
+    }
+
+    private static boolean isEncoded(final String string, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = string.charAt(i);
+            if ((c == '%') || (c == '+')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final String query;
+    private final int[] offsets;
+    private final int size;
+
+    // Decoded keys and values, created on first use. Racing threads create equal values.
+    private final String[] keys;
+    private final String[] values;
+
+    private QueryParameters(final String query, final int[] offsets, final int size) {
+        this.query = query;
+        this.offsets = offsets;
+        this.size = size;
+        this.keys = new String[size];
+        this.values = new String[size];
+    }
+
+    /**
+     * Returns true if this query includes a parameter named {@code key}.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalArgumentException if a key of this query is not validly percent encoded.
+     */
+    public boolean containsKey(final String key) {
+        return indexOf(key, 0) >= 0;
+    }
+
+    private String decode(final int start, final int end) {
+        if (!isEncoded(this.query, start, end)) {
+            return this.query.substring(start, end);
+        }
+        return UriEncoding.UTF8_DECODE.apply(this.query.substring(start, end).replace("+", "%20"));
+    }
+
+    /**
+     * Returns the values of every parameter named {@code key}, in order.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalArgumentException if a key or a returned value of this query
+     * is not validly percent encoded.
+     */
+    public List<String> getAll(final String key) {
+        int index = indexOf(key, 0);
+        if (index < 0) {
+            return ImmutableList.of();
+        }
+
+        final ImmutableList.Builder<String> builder = ImmutableList.builder();
+        do {
+            builder.add(value(index));
+            index = indexOf(key, index + 1);
+        } while (index >= 0);
+        return builder.build();
+    }
+
+    /**
+     * Returns the value of the first parameter named {@code key} if present.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalArgumentException if a key or the returned value of this query
+     * is not validly percent encoded.
+     */
+    public Optional<String> getFirst(final String key) {
+        final int index = indexOf(key, 0);
+        return (index >= 0) ? Optional.of(value(index)) : Optional.<String> absent();
+    }
+
+    /**
+     * Returns the value of the first parameter named {@code key} as an int,
+     * or {@code defaultValue} if there is no such parameter.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalArgumentException if the value is not a decimal int, or if a key
+     * or the value is not validly percent encoded.
+     */
+    public int getInt(final String key, final int defaultValue) {
+        final int index = indexOf(key, 0);
+        return (index >= 0) ? Integer.parseInt(value(index)) : defaultValue;
+    }
+
+    /**
+     * Returns the value of the first parameter named {@code key} as a long,
+     * or {@code defaultValue} if there is no such parameter.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalArgumentException if the value is not a decimal long, or if a key
+     * or the value is not validly percent encoded.
+     */
+    public long getLong(final String key, final long defaultValue) {
+        final int index = indexOf(key, 0);
+        return (index >= 0) ? Long.parseLong(value(index)) : defaultValue;
+    }
+
+    // Returns the index of the first parameter named key at or after from, or -1.
+    private int indexOf(final String key, final int from) {
+        Preconditions.checkNotNull(key);
+        for (int i = from; i < this.size; i++) {
+            final int start = this.offsets[i * PARAMETER_WIDTH];
+            final int end = this.offsets[i * PARAMETER_WIDTH + 1];
+
+            String decoded = this.keys[i];
+            if ((decoded == null) && isEncoded(this.query, start, end)) {
+                decoded = decode(start, end);
+                this.keys[i] = decoded;
+            }
+
+            if ((decoded != null) ?
+                    decoded.equals(key) :
+                    ((end - start) == key.length()) && this.query.regionMatches(start, key, 0, key.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if this query has no parameters.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the number of parameters in this query, including repeated keys.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the query component this view was parsed from.
+     */
+    @Override
+    public String toString() {
+        return this.query;
+    }
+
+    private String value(final int index) {
+        String retval = this.values[index];
+        if (retval == null) {
+            retval = decode(
+                    this.offsets[index * PARAMETER_WIDTH + 2],
+                    this.offsets[index * PARAMETER_WIDTH + 3]);
+            this.values[index] = retval;
+        }
+        return retval;
+    }
+}
@@ -20,6 +20,7 @@ package restlib.net;
 import javax.annotation.concurrent.Immutable;
 
 import com.google.common.base.Ascii;
+import com.google.common.base.Optional;
 
 /**
  * A representation of an Uniform Resource Identifier as defined in 
@@ -63,14 +64,34 @@ public final class Uri extends IRI {
         return (Uri) relativeReference(base, relative, builder());
     }
     
+    // Created on first use. Racing threads create equivalent views.
+    private QueryParameters queryParameters;
+    
     Uri (final UriBuilder builder) {
         super(builder);
     }
     
+    Uri(final String string, final int[] offsets, final Optional<Integer> port) {
+        super(string, offsets, port);
+    }
+    
     public Uri canonicalize() {
         return (Uri) canonicalize(builder());
     }
     
+    /**
+     * Returns a view of the query component as x-www-form-urlencoded parameters.
+     * @throws IllegalArgumentException if a parameter of the query component has an empty key.
+     */
+    public QueryParameters queryParameters() {
+        QueryParameters retval = this.queryParameters;
+        if (retval == null) {
+            retval = QueryParameters.parse(this.query());
+            this.queryParameters = retval;
+        }
+        return retval;
+    }
+    
     Uri normalize() {
         if (this.scheme().isEmpty()) {
             return this;
@@ -33,6 +33,31 @@ import com.google.common.net.InternetDomainName;
 @NotThreadSafe
 public final class UriBuilder extends IRIBuilder {
     UriBuilder(){}
+    
+    @Override
+    boolean isFragment(final CharSequence fragment) {
+        return IRIPredicates.IS_FRAGMENT.apply(fragment);
+    }
+    
+    @Override
+    boolean isPath(final CharSequence path) {
+        return IRIPredicates.IS_PATH.apply(path);
+    }
+    
+    @Override
+    boolean isQuery(final CharSequence query) {
+        return IRIPredicates.IS_QUERY.apply(query);
+    }
+    
+    @Override
+    boolean isUserinfo(final CharSequence userinfo) {
+        return IRIPredicates.IS_USER_INFO.apply(userinfo);
+    }
+    
+    @Override
+    Uri newIRI(final String string, final int[] offsets, final Optional<Integer> port) {
+        return new Uri(string, offsets, port);
+    }
 
     /**
      * Returns a new {@code Uri} instance.
@@ -70,9 +95,7 @@ public final class UriBuilder extends IRIBuilder {
      */
     @Override
     public UriBuilder setFragment(final String fragment) {
-        Preconditions.checkNotNull(fragment);
-        Preconditions.checkArgument(IRIPredicates.IS_FRAGMENT.apply(fragment));
-        this.fragment = fragment;
+        super.setFragment(fragment);
         return this;
     }
 
@@ -171,9 +194,7 @@ public final class UriBuilder extends IRIBuilder {
      */
     @Override
     public UriBuilder setQuery(final String query) {
-        Preconditions.checkNotNull(query);
-        Preconditions.checkArgument(IRIPredicates.IS_QUERY.apply(query));
-        this.query = query;
+        super.setQuery(query);
         return this;
     }
 
@@ -201,9 +222,7 @@ public final class UriBuilder extends IRIBuilder {
      */
     @Override
     public UriBuilder setUserinfo(final String userinfo) {
-        Preconditions.checkNotNull(userinfo);
-        Preconditions.checkArgument(IRIPredicates.IS_USER_INFO.apply(userinfo));
-        this.userinfo = userinfo;
+        super.setUserinfo(userinfo);
         return this;
     }
 }
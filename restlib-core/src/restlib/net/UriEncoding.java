@@ -7,7 +7,6 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 
-import restlib.impl.CharSequences;
 import restlib.impl.CodePointMatcher;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -16,22 +15,43 @@ import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.primitives.UnsignedBytes;
 
 /**
- * Factory for generating {@code Function}s that can be used to 
+ * Factory for generating {@code Function}s that can be used to
  * encode and decode URI encoded strings.
  */
-public final class UriEncoding {    
-    
+public final class UriEncoding {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < HEX_VALUES.length; i++) {
+            HEX_VALUES[i] = -1;
+        }
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    // Scratch space for the UTF-8 encoders and decoders, which is reused by each thread
+    // unless a single value requires more than MAXIMUM_SCRATCH_LENGTH chars.
+    private static final int MAXIMUM_SCRATCH_LENGTH = 4096;
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[256];
+        }
+    };
+
     /**
      * A {@code Function} that decodes a URI encoded String using the UTF-8 charset.
      */
-    public static final Function<CharSequence, String> UTF8_DECODE = 
+    public static final Function<CharSequence, String> UTF8_DECODE =
             decoderUsingCharset(Charsets.UTF_8);
     static final Function<CharSequence, String> UTF8_DECODE_FRAGMENT =
-            utf8DecoderCharsOnly(IRIPredicates.FRAGMENT_SAFE_CHAR);
+            utf8Decoder(IRIPredicates.FRAGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_IFRAGMENT =
             utf8Decoder(IRIPredicates.IFRAGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_IQUERY =
@@ -39,15 +59,15 @@ public final class UriEncoding {
     static final Function<CharSequence, String> UTF8_DECODE_IUSER_INFO =
             utf8Decoder(IRIPredicates.IUSER_INFO_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_PATH_ISEGMENT =
-            utf8Decoder(IRIPredicates.ISEGMENT_SAFE_CODEPOINT);   
+            utf8Decoder(IRIPredicates.ISEGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_PATH_SEGMENT =
-            utf8DecoderCharsOnly(IRIPredicates.SEGMENT_SAFE_CHAR);
+            utf8Decoder(IRIPredicates.SEGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_QUERY =
-            utf8DecoderCharsOnly(IRIPredicates.QUERY_SAFE_CHAR);
+            utf8Decoder(IRIPredicates.QUERY_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_DECODE_USER_INFO =
-            utf8DecoderCharsOnly(IRIPredicates.USER_INFO_SAFE_CHAR); 
+            utf8Decoder(IRIPredicates.USER_INFO_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_FRAGMENT =
-            utf8EncoderWithSafeChars(IRIPredicates.FRAGMENT_SAFE_CHAR);
+            utf8Encoder(IRIPredicates.FRAGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_IFRAGMENT =
             utf8Encoder(IRIPredicates.IFRAGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_IQUERY =
@@ -57,16 +77,16 @@ public final class UriEncoding {
     static final Function<CharSequence, String> UTF8_ENCODE_PATH_ISEGMENT =
             utf8Encoder(IRIPredicates.ISEGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_PATH_SEGMENT =
-            utf8EncoderWithSafeChars(IRIPredicates.SEGMENT_SAFE_CHAR);
+            utf8Encoder(IRIPredicates.SEGMENT_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_QUERY =
-            utf8EncoderWithSafeChars(IRIPredicates.QUERY_SAFE_CHAR);
+            utf8Encoder(IRIPredicates.QUERY_SAFE_CODEPOINT);
     static final Function<CharSequence, String> UTF8_ENCODE_USER_INFO =
-            utf8EncoderWithSafeChars(IRIPredicates.USER_INFO_SAFE_CHAR);
-    
+            utf8Encoder(IRIPredicates.USER_INFO_SAFE_CODEPOINT);
+
     @VisibleForTesting
     static Function<CharSequence, String> charsetPercentDecoder(final Charset charset) {
         Preconditions.checkNotNull(charset);
-        
+
         final ThreadLocal<CharsetDecoder> decoder = new ThreadLocal<CharsetDecoder>() {
             @Override
             protected CharsetDecoder initialValue() {
@@ -75,37 +95,27 @@ public final class UriEncoding {
                         .onMalformedInput(CodingErrorAction.REPORT);
             }
         };
-        
+
         return new Function<CharSequence, String>() {
             @Override
             public String apply(final CharSequence in) {
                 Preconditions.checkNotNull(in);
-                
-                final ByteBuffer buffer = ByteBuffer.allocate(in.length() / 3);              
-                for (int i = 0; i < in.length(); i+=3) { 
-                    Preconditions.checkArgument(in.charAt(i) == '%', in);
-                    Preconditions.checkArgument(in.length() > (i + 2), "Invalid URI encoded string: " + in);
-      
-                    final int byteVal;
-                    try {
-                        byteVal = Integer.parseInt(in.subSequence(i+1, i+3).toString(), 16); 
-                    } catch (final NumberFormatException e) {
-                        throw new IllegalArgumentException(e);
-                    }          
-                   
-                    buffer.put((byte) byteVal);
+
+                final ByteBuffer buffer = ByteBuffer.allocate(in.length() / 3);
+                for (int i = 0; i < in.length(); i+=3) {
+                    buffer.put((byte) percentEncodedByte(in, i));
                 }
-                
+
                 try {
                     buffer.rewind();
-                    return decoder.get().decode(buffer.asReadOnlyBuffer()).toString();
+                    return decoder.get().decode(buffer).toString();
                 } catch (final CharacterCodingException e) {
                     throw new IllegalArgumentException(e);
-                }               
-            }            
+                }
+            }
         };
     }
-    
+
     @VisibleForTesting
     static Function<Integer, String> charsetPercentEncoder(final Charset charset) {
         Preconditions.checkNotNull(charset);
@@ -113,29 +123,25 @@ public final class UriEncoding {
             @Override
             public String apply(final Integer codePoint) {
                 Preconditions.checkNotNull(codePoint);
-                
+
                 final StringBuilder encoded = new StringBuilder();
-                final byte[] bytes = charset.encode(CharBuffer.wrap(Character.toChars(codePoint))).array();
-                
-                for (final byte b : bytes) {
-                    final int value = UnsignedBytes.toInt(b);
+                final ByteBuffer bytes = charset.encode(CharBuffer.wrap(Character.toChars(codePoint)));
+
+                while (bytes.hasRemaining()) {
+                    final int value = UnsignedBytes.toInt(bytes.get());
                     if (value != 0) {
-                        final String hex = Integer.toHexString(value).toUpperCase();
-                        
-                        encoded.append("%");  
-                        if (hex.length()  == 1) {
-                            encoded.append('0');
-                        }
-                        encoded.append(hex);
-                    }    
+                        encoded.append('%')
+                            .append(HEX_DIGITS[value >>> 4])
+                            .append(HEX_DIGITS[value & 0xF]);
+                    }
                 }
                 return encoded.toString();
-            }           
+            }
         };
     }
-    
+
     /**
-     * Returns a {@code Function} that decodes only the code points that 
+     * Returns a {@code Function} that decodes only the code points that
      * match {@code codePointsToDecode} using the Charset {@code charset}.
      * @param codePointsToDecode a {@code Predicate} matching all the codepoints that should be decoded by the decoder.
      * @param charset any non-null {@code Charset}
@@ -144,27 +150,32 @@ public final class UriEncoding {
     public static Function<CharSequence, String> decoder(final Predicate<Integer> codePointsToDecode, final Charset charset) {
         Preconditions.checkNotNull(codePointsToDecode);
         Preconditions.checkNotNull(charset);
+
+        if (charset.equals(Charsets.UTF_8)) {
+            return new Utf8Decoder(CodePointMatcher.forPredicate(codePointsToDecode));
+        }
+
         return decoderBase(
                 Functions.compose(
-                        UriEncoding.encoder(codePointsToDecode, charset), 
+                        UriEncoding.encoder(codePointsToDecode, charset),
                         UriEncoding.charsetPercentDecoder(charset)));
     }
-    
-    private static Function<CharSequence, String> decoderBase(final Function<CharSequence, String> percentDecoder) {   
+
+    private static Function<CharSequence, String> decoderBase(final Function<CharSequence, String> percentDecoder) {
         Preconditions.checkNotNull(percentDecoder);
-        
+
         return new Function<CharSequence, String>() {
             @Override
             public String apply(final CharSequence in) {
                 Preconditions.checkNotNull(in);
-                
-                final StringBuilder builder = new StringBuilder(in.length());                
+
+                final StringBuilder builder = new StringBuilder(in.length());
                 for (int i = 0; i < in.length();) {
                     final char c = in.charAt(i);
 
                     if (c == '%') {
                         final int start = i;
-                        for (; (i < in.length()) && (in.charAt(i) == '%'); i+=3) { 
+                        for (; (i < in.length()) && (in.charAt(i) == '%'); i+=3) {
                             Preconditions.checkArgument(in.length() > (i + 2), "Invalid URI encoded string: " + in);
                         }
                         builder.append(percentDecoder.apply(in.subSequence(start, i)));
@@ -174,52 +185,97 @@ public final class UriEncoding {
                     }
                 }
                 return builder.toString();
-            }        
+            }
         };
     }
-    
+
     /**
      * Returns a {@code Function} that decodes a URI encoded string using the Charset {@code charset}.
      * @param charset any non-null {@code Charset}
      * @throws NullPointerException if {@code charset} is null.
      */
     public static Function<CharSequence, String> decoderUsingCharset(final Charset charset) {
-        return decoder(Predicates.<Integer> alwaysTrue(), charset);
+        return decoder(CodePointMatcher.ANY, charset);
     }
-    
+
     /**
-     * Returns a {@code Function} that URI encodes all code points in the inputs string except 
+     * Returns a {@code Function} that URI encodes all code points in the inputs string except
      * those matching {@code safeCodePoints} using the Charset {@code charset}.
      * @param safeCodePoints a {@code Predicate} matching all the code points that should not be encoded.
      * @param charset any non-null {@code Charset}
      * @throws NullPointerException if {@code safeCodePoints} or {@code charset} are null.
      */
     public static Function<CharSequence, String> encoder(
-            final Predicate<Integer> safeCodePoints, 
+            final Predicate<Integer> safeCodePoints,
             final Charset charset) {
+        Preconditions.checkNotNull(safeCodePoints);
+        Preconditions.checkNotNull(charset);
+
+        if (charset.equals(Charsets.UTF_8)) {
+            return new Utf8Encoder(CodePointMatcher.forPredicate(safeCodePoints));
+        }
         return encoderBase(safeCodePoints, charsetPercentEncoder(charset));
     }
-    
+
     private static Function<CharSequence, String> encoderBase(
-            final Predicate<Integer> safeCodePoints, 
+            final Predicate<Integer> safeCodePoints,
             final Function<Integer, String> percentEncoder) {
         Preconditions.checkNotNull(safeCodePoints);
         Preconditions.checkNotNull(percentEncoder);
-        
+
+        final CodePointMatcher safeCodePointMatcher = CodePointMatcher.forPredicate(safeCodePoints);
         return new Function<CharSequence, String>() {
             @Override
             public String apply(final CharSequence in) {
-                Preconditions.checkNotNull(in);     
-                final StringBuilder encoded = new StringBuilder(in.length() * 3);
+                Preconditions.checkNotNull(in);
 
-                for (final Integer cp : CharSequences.codePoints(in)) {
-                    encoded.append(safeCodePoints.apply(cp) ? CharSequences.fromCodepoint(cp) : percentEncoder.apply(cp));
-                }                 
-                return encoded.toString();
+                int end = safeCodePointMatcher.indexOfFirstNonMatching(in, 0);
+                if (end == in.length()) {
+                    return in.toString();
+                }
+
+                final StringBuilder encoded = new StringBuilder(in.length() * 3);
+                int start = 0;
+                while (end < in.length()) {
+                    final int cp = Character.codePointAt(in, end);
+                    encoded.append(in, start, end).append(percentEncoder.apply(cp));
+                    start = end + Character.charCount(cp);
+                    end = safeCodePointMatcher.indexOfFirstNonMatching(in, start);
+                }
+                return encoded.append(in, start, end).toString();
             }
-        };    
+        };
+    }
+
+    // Returns the value of the percent encoded byte at pos.
+    private static int percentEncodedByte(final CharSequence in, final int pos) {
+        if ((pos + 2 >= in.length()) || (in.charAt(pos) != '%')) {
+            throw new IllegalArgumentException("Invalid URI encoded string: " + in);
+        }
+
+        final char high = in.charAt(pos + 1);
+        final char low = in.charAt(pos + 2);
+        final int retval = ((high < 128) && (low < 128)) ?
+                (HEX_VALUES[high] << 4) | HEX_VALUES[low] : -1;
+        if (retval < 0) {
+            throw new IllegalArgumentException("Invalid URI encoded string: " + in);
+        }
+        return retval;
+    }
+
+    private static char[] scratch(final int length) {
+        final char[] scratch = SCRATCH.get();
+        if (scratch.length >= length) {
+            return scratch;
+        } else if (length > MAXIMUM_SCRATCH_LENGTH) {
+            return new char[length];
+        }
+
+        final char[] retval = new char[Math.max(length, scratch.length * 2)];
+        SCRATCH.set(retval);
+        return retval;
     }
-    
+
     /**
      * Returns a {@code Function} that decodes only the code points that match {@code codePointsToDecode} using the UTF-8 charset.
      * @param codePointsToDecode a {@code Predicate} matching all the codepoints that should be decoded by the decoder.
@@ -228,7 +284,7 @@ public final class UriEncoding {
     public static Function<CharSequence, String> utf8Decoder(final Predicate<Integer> codePointsToDecode) {
         return decoder(codePointsToDecode, Charsets.UTF_8);
     }
-    
+
     /**
      * Returns a {@code Function} that decodes only the characters that match {@code charsToDecode} using the UTF-8 charset.
      * @param charsToDecode a {@code Predicate} matching all the character that should be decoded by the decoder.
@@ -239,7 +295,7 @@ public final class UriEncoding {
     }
 
     /**
-     * Returns a {@code Function} that URI encodes all code points in the inputs string except 
+     * Returns a {@code Function} that URI encodes all code points in the inputs string except
      * those matching {@code safeCodePoints} using the UTF-8 charset.
      * @param safeCodePoints a {@code Predicate} matching all the code points that should not be encoded.
      * @throws NullPointerException if {@code safeCodePoints} is null.
@@ -247,9 +303,9 @@ public final class UriEncoding {
     public static Function<CharSequence, String> utf8Encoder(final Predicate<Integer> safeCodePoints) {
         return encoder(safeCodePoints, Charsets.UTF_8);
     }
-    
+
     /**
-     * Returns a {@code Function} that URI encodes all characters in the inputs string except 
+     * Returns a {@code Function} that URI encodes all characters in the inputs string except
      * those matching {@code safeChars} using the UTF-8 charset.
      * @param safeChars a {@code Predicate} matching all the code points that should not be encoded.
      * @throws NullPointerException if {@code safeChars} is null.
@@ -257,6 +313,170 @@ public final class UriEncoding {
     public static Function<CharSequence, String> utf8EncoderWithSafeChars(final Predicate<Character> safeChars) {
         return encoder(CodePointMatcher.fromCharacterPredicate(safeChars), Charsets.UTF_8);
     }
-    
+
+    /*
+     * Decodes percent encoded UTF-8 sequences in a single pass. Code points which are
+     * not decoded are written as their percent encoded bytes, using upper case hex digits.
+     */
+    private static final class Utf8Decoder implements Function<CharSequence, String> {
+        private final CodePointMatcher codePointsToDecode;
+
+        private Utf8Decoder(final CodePointMatcher codePointsToDecode) {
+            this.codePointsToDecode = codePointsToDecode;
+        }
+
+        @Override
+        public String apply(final CharSequence in) {
+            Preconditions.checkNotNull(in);
+
+            final int length = in.length();
+            int i = 0;
+            while ((i < length) && (in.charAt(i) != '%')) {
+                i++;
+            }
+            if (i == length) {
+                return in.toString();
+            }
+
+            // The decoded string is never longer than the encoded string.
+            final char[] out = scratch(length);
+            int size = 0;
+            for (int j = 0; j < i; j++) {
+                out[size++] = in.charAt(j);
+            }
+
+            while (i < length) {
+                final char c = in.charAt(i);
+                if (c != '%') {
+                    out[size++] = c;
+                    i++;
+                    continue;
+                }
+
+                final int start = i;
+                final int b0 = percentEncodedByte(in, i);
+                final int codePoint;
+                if (b0 < 0x80) {
+                    codePoint = b0;
+                    i += 3;
+                } else if ((b0 >= 0xC2) && (b0 <= 0xDF)) {
+                    codePoint = ((b0 & 0x1F) << 6) | continuation(in, i + 3, 0x80, 0xBF);
+                    i += 6;
+                } else if ((b0 >= 0xE0) && (b0 <= 0xEF)) {
+                    // Reject overlong encodings and surrogates
+                    final int b1 = continuation(in, i + 3,
+                            (b0 == 0xE0) ? 0xA0 : 0x80, (b0 == 0xED) ? 0x9F : 0xBF);
+                    codePoint = ((b0 & 0x0F) << 12) | (b1 << 6) | continuation(in, i + 6, 0x80, 0xBF);
+                    i += 9;
+                } else if ((b0 >= 0xF0) && (b0 <= 0xF4)) {
+                    // Reject overlong encodings and code points greater than U+10FFFF
+                    final int b1 = continuation(in, i + 3,
+                            (b0 == 0xF0) ? 0x90 : 0x80, (b0 == 0xF4) ? 0x8F : 0xBF);
+                    final int b2 = continuation(in, i + 6, 0x80, 0xBF);
+                    codePoint = ((b0 & 0x07) << 18) | (b1 << 12) | (b2 << 6) | continuation(in, i + 9, 0x80, 0xBF);
+                    i += 12;
+                } else {
+                    throw new IllegalArgumentException("Invalid URI encoded string: " + in);
+                }
+
+                if (this.codePointsToDecode.matches(codePoint)) {
+                    size += Character.toChars(codePoint, out, size);
+                } else {
+                    for (int j = start; j < i; j += 3) {
+                        final int b = percentEncodedByte(in, j);
+                        out[size++] = '%';
+                        out[size++] = HEX_DIGITS[b >>> 4];
+                        out[size++] = HEX_DIGITS[b & 0xF];
+                    }
+                }
+            }
+            return new String(out, 0, size);
+        }
+
+        // Returns the low 6 bits of the percent encoded continuation byte at pos,
+        // if the byte is between min and max inclusive.
+        private static int continuation(final CharSequence in, final int pos, final int min, final int max) {
+            final int b = percentEncodedByte(in, pos);
+            if ((b < min) || (b > max)) {
+                throw new IllegalArgumentException("Invalid URI encoded string: " + in);
+            }
+            return b & 0x3F;
+        }
+    }
+
+    /*
+     * Percent encodes the UTF-8 bytes of unsafe code points in a single pass,
+     * returning the input String if every code point is safe. Unpaired surrogates
+     * are encoded as "?", matching the replacement used by the UTF-8 charset encoder.
+     */
+    private static final class Utf8Encoder implements Function<CharSequence, String> {
+        // The longest encoding of a single char: 3 UTF-8 bytes, each encoded as 3 chars.
+        private static final int MAXIMUM_ENCODED_CHAR_LENGTH = 9;
+
+        private final CodePointMatcher safeCodePoints;
+
+        private Utf8Encoder(final CodePointMatcher safeCodePoints) {
+            this.safeCodePoints = safeCodePoints;
+        }
+
+        @Override
+        public String apply(final CharSequence in) {
+            Preconditions.checkNotNull(in);
+
+            final int length = in.length();
+            int i = this.safeCodePoints.indexOfFirstNonMatching(in, 0);
+            if (i == length) {
+                return in.toString();
+            }
+
+            final char[] out = scratch(i + (length - i) * MAXIMUM_ENCODED_CHAR_LENGTH);
+            int size = 0;
+            for (int j = 0; j < i; j++) {
+                out[size++] = in.charAt(j);
+            }
+
+            while (i < length) {
+                final char c = in.charAt(i);
+                int codePoint = c;
+                int charCount = 1;
+                if (Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(in.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, in.charAt(i + 1));
+                    charCount = 2;
+                }
+
+                if (this.safeCodePoints.matches(codePoint)) {
+                    for (int j = 0; j < charCount; j++) {
+                        out[size++] = in.charAt(i + j);
+                    }
+                } else if (Character.isSurrogate(c) && (charCount == 1)) {
+                    size = appendPercentEncoded(out, size, '?');
+                } else if (codePoint < 0x80) {
+                    size = appendPercentEncoded(out, size, codePoint);
+                } else if (codePoint < 0x800) {
+                    size = appendPercentEncoded(out, size, 0xC0 | (codePoint >>> 6));
+                    size = appendPercentEncoded(out, size, 0x80 | (codePoint & 0x3F));
+                } else if (codePoint < 0x10000) {
+                    size = appendPercentEncoded(out, size, 0xE0 | (codePoint >>> 12));
+                    size = appendPercentEncoded(out, size, 0x80 | ((codePoint >>> 6) & 0x3F));
+                    size = appendPercentEncoded(out, size, 0x80 | (codePoint & 0x3F));
+                } else {
+                    size = appendPercentEncoded(out, size, 0xF0 | (codePoint >>> 18));
+                    size = appendPercentEncoded(out, size, 0x80 | ((codePoint >>> 12) & 0x3F));
+                    size = appendPercentEncoded(out, size, 0x80 | ((codePoint >>> 6) & 0x3F));
+                    size = appendPercentEncoded(out, size, 0x80 | (codePoint & 0x3F));
+                }
+                i += charCount;
+            }
+            return new String(out, 0, size);
+        }
+
+        private static int appendPercentEncoded(final char[] out, final int pos, final int b) {
+            out[pos] = '%';
+            out[pos + 1] = HEX_DIGITS[b >>> 4];
+            out[pos + 2] = HEX_DIGITS[b & 0xF];
+            return pos + 3;
+        }
+    }
+
     private UriEncoding(){}
 }
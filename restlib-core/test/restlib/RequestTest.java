@@ -18,6 +18,8 @@
 package restlib;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static restlib.data.HttpHeaders.ACCEPT;
 import static restlib.data.HttpHeaders.ACCEPT_CHARSET;
 import static restlib.data.HttpHeaders.ACCEPT_ENCODING;
@@ -50,6 +52,7 @@ import static restlib.data.HttpHeaders.UPGRADE;
 import static restlib.data.HttpHeaders.USER_AGENT;
 import static restlib.data.HttpHeaders.VIA;
 
+import java.nio.ByteBuffer;
 import java.util.Locale;
 import java.util.Map.Entry;
 
@@ -80,6 +83,7 @@ import restlib.net.EmailAddress;
 import restlib.net.Uri;
 import restlib.test.WrapperTester;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
@@ -201,58 +205,52 @@ public final class RequestTest {
         tester.testAllPublicStaticMethods(Request.class);
     }
     
-    @Test
-    public void testParse() {
-        final String uriScheme = "http";
-        final String method = Method.POST.toString();
-        final String requestTarget = "/a/b/c";
-        final Iterable<Entry<String, String>> headers = 
-                Iterables.transform(
-                        ImmutableMultimap.<Object, Object> builder()
-                            .put(ACCEPT, MediaRanges.APPLICATION_ATOM)
-                            .put(ACCEPT_CHARSET, Charset.UTF_8)
-                            .put(ACCEPT_ENCODING, ContentEncoding.GZIP)
-                            .put(ACCEPT_LANGUAGE, Language.forLocale(Locale.ENGLISH))
-                            .put(AUTHORIZATION, ChallengeMessage.base64ChallengeMessage("Basic", "ABC"))
-                            .put(CACHE_CONTROL, CacheDirective.MAX_STALE)
-                            .put(CONNECTION, ConnectionOption.KEEP_ALIVE)
-                            .put(CONTENT_ENCODING, ContentEncoding.GZIP)
-                            .put(CONTENT_LANGUAGE, Language.forLocale(Locale.ENGLISH))
-                            .put(CONTENT_LENGTH, "100")
-                            .put(CONTENT_LOCATION, "http://www.example.com")
-                            .put(CONTENT_TYPE, MediaRanges.APPLICATION_ATOM)
-                            .put(EXPECT, Expectation.EXPECTS_100_CONTINUE)
-                            .put(FROM, "test@example.com")
-                            .put(HOST, "www.example.com")
-                            .put(IF_MATCH, EntityTag.weakTag("abc"))
-                            .put(IF_MODIFIED_SINCE, HttpDate.create(0))
-                            .put(IF_NONE_MATCH, EntityTag.weakTag("abc"))
-                            .put(IF_RANGE, HttpDate.create(0))
-                            .put(IF_UNMODIFIED_SINCE, HttpDate.create(0))
-                            .put(MAX_FORWARDS, "10")
-                            .put(PRAGMA, CacheDirective.NO_CACHE)
-                            .put(PROXY_AUTHORIZATION, ChallengeMessage.base64ChallengeMessage("Basic", "ABC"))
-                            .put(RANGE, Range.byteRange(ImmutableList.of(ByteRangeSpec.range(0, 100))))
-                            .put(REFERER, "http://www.example.com")
-                            .put(TE, TransferCoding.CHUNKED)
-                            .put(TRAILER, HttpHeaders.ACCEPT)
-                            .put(TRANSFER_ENCODING, TransferCoding.CHUNKED)
-                            .put(UPGRADE, Protocol.HTTP_1_1)
-                            .put(USER_AGENT, RESTLIB)
-                            .put(VIA, Via.create(Protocol.HTTP_0_9, "www.example.com"))   
-                            .put("X-Test", "")
-                            .build().entries(), 
-                        new Function<Entry<Object,Object>, Entry<String,String>>() {
-                            @Override
-                            public Entry<String, String> apply(
-                                    final Entry<Object, Object> entry) {
-                                return ImmutableMapEntry.create(entry.getKey().toString(), entry.getValue().toString());
-                            }                           
-                        });
-
-        final Request request = 
-                Request.parse(uriScheme, method, requestTarget, headers);
-        
+    private static Iterable<Entry<String, String>> parseTestHeaders() {
+        return Iterables.transform(
+                ImmutableMultimap.<Object, Object> builder()
+                    .put(ACCEPT, MediaRanges.APPLICATION_ATOM)
+                    .put(ACCEPT_CHARSET, Charset.UTF_8)
+                    .put(ACCEPT_ENCODING, ContentEncoding.GZIP)
+                    .put(ACCEPT_LANGUAGE, Language.forLocale(Locale.ENGLISH))
+                    .put(AUTHORIZATION, ChallengeMessage.base64ChallengeMessage("Basic", "ABC"))
+                    .put(CACHE_CONTROL, CacheDirective.MAX_STALE)
+                    .put(CONNECTION, ConnectionOption.KEEP_ALIVE)
+                    .put(CONTENT_ENCODING, ContentEncoding.GZIP)
+                    .put(CONTENT_LANGUAGE, Language.forLocale(Locale.ENGLISH))
+                    .put(CONTENT_LENGTH, "100")
+                    .put(CONTENT_LOCATION, "http://www.example.com")
+                    .put(CONTENT_TYPE, MediaRanges.APPLICATION_ATOM)
+                    .put(EXPECT, Expectation.EXPECTS_100_CONTINUE)
+                    .put(FROM, "test@example.com")
+                    .put(HOST, "www.example.com")
+                    .put(IF_MATCH, EntityTag.weakTag("abc"))
+                    .put(IF_MODIFIED_SINCE, HttpDate.create(0))
+                    .put(IF_NONE_MATCH, EntityTag.weakTag("abc"))
+                    .put(IF_RANGE, HttpDate.create(0))
+                    .put(IF_UNMODIFIED_SINCE, HttpDate.create(0))
+                    .put(MAX_FORWARDS, "10")
+                    .put(PRAGMA, CacheDirective.NO_CACHE)
+                    .put(PROXY_AUTHORIZATION, ChallengeMessage.base64ChallengeMessage("Basic", "ABC"))
+                    .put(RANGE, Range.byteRange(ImmutableList.of(ByteRangeSpec.range(0, 100))))
+                    .put(REFERER, "http://www.example.com")
+                    .put(TE, TransferCoding.CHUNKED)
+                    .put(TRAILER, HttpHeaders.ACCEPT)
+                    .put(TRANSFER_ENCODING, TransferCoding.CHUNKED)
+                    .put(UPGRADE, Protocol.HTTP_1_1)
+                    .put(USER_AGENT, RESTLIB)
+                    .put(VIA, Via.create(Protocol.HTTP_0_9, "www.example.com"))   
+                    .put("X-Test", "")
+                    .build().entries(), 
+                new Function<Entry<Object,Object>, Entry<String,String>>() {
+                    @Override
+                    public Entry<String, String> apply(
+                            final Entry<Object, Object> entry) {
+                        return ImmutableMapEntry.create(entry.getKey().toString(), entry.getValue().toString());
+                    }                           
+                });
+    }
+    
+    private static void assertParsedTestRequest(final Request request) {
         assertEquals(request.authorizationCredentials().get(), ChallengeMessage.base64ChallengeMessage("Basic", "ABC"));
         assertEquals(request.cacheDirectives(), ImmutableSet.of(CacheDirective.MAX_STALE));
         assertEquals(request.connectionInfo().options(), ImmutableSet.of(ConnectionOption.KEEP_ALIVE));
@@ -283,6 +281,13 @@ public final class RequestTest {
         assertEquals(request.referrer().get(), Uri.parse("http://www.example.com"));
         assertEquals(request.uri(), Uri.parse("http://www.example.com/a/b/c"));
         assertEquals(request.userAgent().get(), RESTLIB);
+    }
+    
+    @Test
+    public void testParse() {
+        final Request request = 
+                Request.parse("http", Method.POST.toString(), "/a/b/c", parseTestHeaders());
+        assertParsedTestRequest(request);
         
         assertEquals(
                 Request.parse("http", "GET", "https://www.example.com/absolute?query", ImmutableMap.<String,String> of().entrySet()).uri(),
@@ -308,6 +313,54 @@ public final class RequestTest {
         }
     }
     
+    @Test
+    public void testParse$byteBuffer() {
+        final StringBuilder headers = new StringBuilder();
+        for (final Entry<String, String> header : parseTestHeaders()) {
+            headers.append(header.getKey().toLowerCase(Locale.ENGLISH))
+                .append(":\t")
+                .append(header.getValue())
+                .append(" \r\n");
+        }
+        headers.append("\r\nentity");
+        final byte[] bytes = headers.toString().getBytes(Charsets.ISO_8859_1);
+        
+        final ByteBuffer heapBuffer = ByteBuffer.wrap(bytes);
+        assertParsedTestRequest(Request.parse("http", Method.POST, Uri.parse("/a/b/c"), heapBuffer));
+        assertEquals(bytes.length - "entity".length(), heapBuffer.position());
+        
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+        assertParsedTestRequest(Request.parseLazily("http", Method.POST, Uri.parse("/a/b/c"), directBuffer));
+        assertEquals(bytes.length - "entity".length(), directBuffer.position());
+    }
+    
+    @Test
+    public void testParseLazily() {
+        final Request request = 
+                Request.parseLazily("http", Method.POST.toString(), "/a/b/c", parseTestHeaders());
+        assertParsedTestRequest(request);
+        assertSame(request.preferences(), request.preferences());
+        
+        final Request malformed = 
+                Request.parseLazily(
+                        "http", "GET", "http://www.example.com", 
+                        ImmutableMultimap.of(MAX_FORWARDS.toString(), "abc").entries());
+        assertEquals(malformed.uri(), Uri.parse("http://www.example.com"));
+        assertEquals(malformed.userAgent(), Optional.absent());
+        try {
+            malformed.maxForwards();
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected){}
+        
+        try {
+            Request.parseLazily(
+                    "http", "GET", "http://www.example.com", 
+                    ImmutableMultimap.of(USER_AGENT.toString(), "", USER_AGENT.toString(), "").entries());
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected){}
+    }
+    
     @Test
     public void testWrapper() {
         final RequestBuilder builder = Request.builder();
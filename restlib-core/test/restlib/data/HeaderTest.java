@@ -2,11 +2,22 @@ package restlib.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.nio.CharBuffer;
+import java.util.Locale;
+import java.util.Set;
 
 import org.junit.Test;
 
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 import com.google.common.testing.EqualsTester;
 import com.google.common.testing.NullPointerTester;
 
@@ -35,4 +46,91 @@ public final class HeaderTest {
         
         assertFalse(Header.PARSER.parse(CharBuffer.wrap("@X-test")).isPresent());
     }
+    
+    @Test
+    public void testCreate$canonicalInstances() {
+        assertSame(HttpHeaders.CONTENT_TYPE, Header.create("content-type"));
+        assertSame(HttpHeaders.CONTENT_TYPE, Header.PARSER.parseFully("CONTENT-TYPE"));
+        assertSame(Header.create("X-Interned"), Header.create("x-interned"));
+    }
+    
+    @Test
+    public void testHttpHeaders$ordinalOf() {
+        assertEquals(-1, HttpHeaders.ordinalOf(Header.create("X-Fake")));
+        assertEquals(
+                HttpHeaders.ordinalOf(HttpHeaders.ACCEPT), 
+                HttpHeaders.ordinalOf(Header.create("accept")));
+        
+        final Set<Integer> ordinals = Sets.newHashSet();
+        for (final Header header : 
+                ImmutableList.of(HttpHeaders.ACCEPT, HttpHeaders.HOST, HttpHeaders.WWW_AUTHENTICATE)) {
+            final int ordinal = HttpHeaders.ordinalOf(header);
+            assertTrue(ordinal >= 0 && ordinal < HttpHeaders.standardHeaderCount());
+            assertTrue(ordinals.add(ordinal));
+        }
+    }
+    
+    @Test
+    public void testHttpHeaders$ordinalOf_withFieldName() {
+        for (int i = 0; i < HttpHeaders.standardHeaderCount(); i++) {
+            final Header header = HttpHeaders.standardHeader(i);
+            assertEquals(i, HttpHeaders.ordinalOf(header));
+            assertEquals(i, HttpHeaders.ordinalOf(header.toString()));
+            assertEquals(i, HttpHeaders.ordinalOf(header.toString().toUpperCase(Locale.ENGLISH)));
+        }
+        assertEquals(-1, HttpHeaders.ordinalOf("X-Fake"));
+        assertEquals(-1, HttpHeaders.ordinalOf("Accep"));
+        assertEquals(-1, HttpHeaders.ordinalOf(""));
+    }
+    
+    @Test
+    public void testHttpHeaders$parseCache() {
+        final String accept = "text/html, application/xhtml+xml;q=0.9, */*;q=0.8";
+        final CacheStats before = HttpHeaders.parseCacheStats();
+        final Iterable<Preference<MediaRange>> parsed = HttpHeaders.parseAccept(accept);
+        assertSame(parsed, HttpHeaders.parseAccept(new StringBuilder(accept)));
+        assertEquals(1, HttpHeaders.parseCacheStats().minus(before).hitCount());
+        
+        final String userAgent = "restlib/1.0 (test)";
+        assertSame(HttpHeaders.parseUserAgent(userAgent), HttpHeaders.parseUserAgent(userAgent));
+        
+        final String longAccept = "text/html;a=" + Strings.repeat("b", 1024);
+        assertEquals(HttpHeaders.parseAccept(longAccept), HttpHeaders.parseAccept(longAccept));
+        assertNotSame(HttpHeaders.parseAccept(longAccept), HttpHeaders.parseAccept(longAccept));
+    }
+    
+    @Test
+    public void testHttpHeaders$parseAccept_withEmptyElements() {
+        assertEquals(
+                ImmutableList.of(
+                        Preference.create(MediaRange.parse("text/html")), 
+                        Preference.create(MediaRange.parse("text/plain"))),
+                ImmutableList.copyOf(HttpHeaders.parseAccept("text/html,,text/plain")));
+        assertEquals(2, Iterables.size(HttpHeaders.parseAccept("text/html , , text/plain,")));
+    }
+    
+    @Test
+    public void testHttpHeaders$parseAccept_withLongQualityFactor() {
+        assertEquals(
+                ImmutableList.of(Preference.create(MediaRange.parse("text/html"), 123)),
+                ImmutableList.copyOf(HttpHeaders.parseAccept("text/html;q=0.1234")));
+    }
+    
+    @Test
+    public void testHttpHeaders$parseContentLength() {
+        assertEquals(Long.MAX_VALUE, HttpHeaders.parseContentLength("9223372036854775807"));
+        try {
+            HttpHeaders.parseContentLength("99999999999999999999");
+            fail("expected NumberFormatException");
+        } catch (final NumberFormatException expected){}
+    }
+    
+    @Test
+    public void testHttpHeaders$parseContentType_withParameterMissingSeparator() {
+        // Parameters must be preceded by ';'. Earlier versions parsed "a/b c" as "a/b; c".
+        try {
+            HttpHeaders.parseContentType("a/b c");
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected){}
+    }
 }
@@ -2,6 +2,7 @@ package restlib.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -10,10 +11,10 @@ import org.junit.Test;
 import com.google.common.testing.NullPointerTester;
 
 public final class HttpDateTest {
-    private static void doTestParse_valieObsoleteUnsupported(final String test) {
+    private static void doTestParse_invalid(final String test) {
         try {
             HttpDate.parse(test);
-            fail ("Though valie, expected IlleglArgumentException.");
+            fail ("Expected IlleglArgumentException.");
         } catch (final IllegalArgumentException expected){}
     }
     
@@ -33,6 +34,19 @@ public final class HttpDateTest {
         assertEquals(test2, HttpDate.copyOf(test2));
     }
     
+    @Test
+    public void testCurrentSecond() {
+        final HttpDate test = HttpDate.currentSecond();
+        assertEquals(0, test.time() % 1000);
+        assertTrue(System.currentTimeMillis() - test.time() < 2000);
+        
+        final HttpDate next = HttpDate.currentSecond();
+        assertTrue(next.time() >= test.time());
+        if (next.time() == test.time()) {
+            assertSame(test, next);
+        }
+    }
+    
     @Test
     public void testNow() {
         final HttpDate start = HttpDate.now();
@@ -51,7 +65,33 @@ public final class HttpDateTest {
     @Test
     public void testParse() {
         assertEquals(HttpDate.create(784887151000L), HttpDate.parse("Tue, 15 Nov 1994 08:12:31 GMT"));
+        assertEquals(HttpDate.create(784111777000L), HttpDate.parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals(HttpDate.create(784111777000L), HttpDate.parse("Sunday, 06-Nov-94 08:49:37 GMT"));
+        assertEquals(HttpDate.create(784111777000L), HttpDate.parse("Sun Nov  6 08:49:37 1994"));
+        assertEquals(HttpDate.create(951782400000L), HttpDate.parse("Tue, 29 Feb 2000 00:00:00 GMT"));
+        
+        doTestParse_invalid("");
+        doTestParse_invalid("Sun, 06 Nov 1994 08:49:37");
+        doTestParse_invalid("Sun, 06 Nov 1994 08:49:37 UTC");
+        doTestParse_invalid("Sun, 06 nov 1994 08:49:37 GMT");
+        doTestParse_invalid("Sun, 6 Nov 1994 08:49:37 GMT");
+        doTestParse_invalid("Sun, 32 Oct 1994 08:49:37 GMT");
+        doTestParse_invalid("Mon, 29 Feb 1900 08:49:37 GMT");
+        doTestParse_invalid("Sun, 06 Nov 1994 24:49:37 GMT");
+        doTestParse_invalid("Sun, 06 Nov 1994 08:60:37 GMT");
+        doTestParse_invalid("Sunday, 06-Nov-1994 08:49:37 GMT");
+        doTestParse_invalid("Sun Nov 06 08:49:37 94");
+    }
+    
+    @Test
+    public void testToString() {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.create(784111777000L).toString());
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.create(784111777999L).toString());
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", HttpDate.create(0).toString());
+        assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", HttpDate.create(-1).toString());
+        assertEquals("Tue, 29 Feb 2000 00:00:00 GMT", HttpDate.create(951782400000L).toString());
         
-        doTestParse_valieObsoleteUnsupported("Sun Sep 16 01:03:52 1973");
+        final HttpDate test = HttpDate.create(1350000000000L);
+        assertEquals(test, HttpDate.parse(test.toString()));
     }
 }
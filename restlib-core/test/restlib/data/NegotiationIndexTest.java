@@ -0,0 +1,85 @@
+package restlib.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.NullPointerTester;
+
+public final class NegotiationIndexTest {
+    private static final List<MediaRange> MEDIA_RANGES = ImmutableList.of(
+            MediaRanges.TEXT_HTML, MediaRanges.TEXT_HTML_ENTRY, MediaRanges.TEXT_PLAIN,
+            MediaRanges.APPLICATION_JSON, MediaRanges.APPLICATION_JSON_ENTRY, MediaRanges.APPLICATION_ANY);
+
+    private static final List<MediaRange> PREFERRED_MEDIA_RANGES = ImmutableList.of(
+            MediaRange.ANY, MediaRanges.TEXT_ANY, MediaRanges.TEXT_HTML, MediaRanges.TEXT_HTML_ENTRY,
+            MediaRanges.APPLICATION_ANY, MediaRanges.APPLICATION_JSON, MediaRanges.APPLICATION_XML,
+            MediaRange.create("image", "*"));
+
+    @Test
+    public void testBestMatch_withCharsets() {
+        final NegotiationIndex<Charset> index = NegotiationIndex.charsets(Charset.available());
+        final List<Charset> preferred = ImmutableList.of(
+                Charset.ANY, Charset.UTF_8, Charset.US_ASCII, Charset.create("x-unknown"));
+        for (final Charset first : preferred) {
+            for (final Charset second : preferred) {
+                final List<Preference<Charset>> preferences = ImmutableList.of(
+                        Preference.create(first, 500), Preference.create(second));
+                assertEquals(
+                        Preference.bestMatch(preferences, Charset.available()),
+                        index.bestMatch(preferences));
+            }
+        }
+        assertEquals(Optional.of(Charset.UTF_8), 
+                index.bestMatch(ImmutableList.of(Preference.create(Charset.ANY, 500), Preference.create(Charset.UTF_8))));
+    }
+
+    @Test
+    public void testBestMatch_withContentEncodings() {
+        final NegotiationIndex<ContentEncoding> index = 
+                NegotiationIndex.contentEncodings(ImmutableList.of(ContentEncoding.GZIP));
+        assertEquals(Optional.of(ContentEncoding.GZIP), 
+                index.bestMatch(ImmutableList.of(Preference.create(ContentEncoding.ANY))));
+        assertEquals(Optional.<ContentEncoding> absent(), 
+                index.bestMatch(ImmutableList.of(Preference.create(ContentEncoding.DEFLATE))));
+        assertEquals(Optional.<ContentEncoding> absent(), 
+                index.bestMatch(ImmutableList.of(Preference.create(ContentEncoding.GZIP, 0))));
+    }
+
+    @Test
+    public void testBestMatch_withLanguages() {
+        final List<Language> available = ImmutableList.of(Language.create("en-US"), Language.create("fr"));
+        final NegotiationIndex<Language> index = NegotiationIndex.languages(available);
+        assertEquals(Optional.of(Language.create("fr")), 
+                index.bestMatch(ImmutableList.of(Preference.create(Language.create("FR")))));
+        assertEquals(Optional.of(Language.create("en-US")), 
+                index.bestMatch(ImmutableList.of(Preference.create(Language.ANY))));
+        assertEquals(Optional.<Language> absent(), 
+                index.bestMatch(ImmutableList.of(Preference.create(Language.create("en")))));
+    }
+
+    @Test
+    public void testBestMatch_withMediaRanges() {
+        final NegotiationIndex<MediaRange> index = NegotiationIndex.mediaRanges(MEDIA_RANGES);
+        for (final MediaRange first : PREFERRED_MEDIA_RANGES) {
+            for (final MediaRange second : PREFERRED_MEDIA_RANGES) {
+                final List<Preference<MediaRange>> preferences = ImmutableList.of(
+                        Preference.create(first, 800), Preference.create(second));
+                assertEquals(
+                        Preference.bestMatch(preferences, MEDIA_RANGES),
+                        index.bestMatch(preferences));
+            }
+        }
+    }
+
+    @Test
+    public void testNulls() {
+        final NullPointerTester tester = new NullPointerTester();
+        tester.testAllPublicStaticMethods(NegotiationIndex.class);
+        tester.testAllPublicInstanceMethods(NegotiationIndex.charsets(Charset.available()));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public final class AsciiHeaderFieldsTest {
+    private static ByteBuffer buffer(final String in) {
+        return ByteBuffer.wrap(in.getBytes(Charsets.ISO_8859_1));
+    }
+    
+    @Test
+    public void testEndOfHeaderSection() {
+        assertEquals(-1, AsciiHeaderFields.endOfHeaderSection(buffer("")));
+        assertEquals(2, AsciiHeaderFields.endOfHeaderSection(buffer("\r\nabc")));
+        assertEquals(-1, AsciiHeaderFields.endOfHeaderSection(buffer("a: b\r\n")));
+        assertEquals(8, AsciiHeaderFields.endOfHeaderSection(buffer("a: b\r\n\r\nc: d\r\n\r\n")));
+        assertEquals(6, AsciiHeaderFields.endOfHeaderSection(buffer("a: b\n\nc")));
+        
+        final ByteBuffer buffer = buffer("GET / HTTP/1.1\r\na: b\r\n\r\n");
+        buffer.position(16);
+        assertEquals(24, AsciiHeaderFields.endOfHeaderSection(buffer));
+        assertEquals(16, buffer.position());
+    }
+    
+    @Test
+    public void testParse() {
+        final ByteBuffer buffer = buffer("Host: www.example.com\r\nX-Empty:\r\nAccept:\t text/html ,é \r\n\r\nentity");
+        final AsciiHeaderFields fields = AsciiHeaderFields.parse(buffer);
+        
+        assertEquals(3, fields.size());
+        assertEquals("Host", fields.name(0).toString());
+        assertEquals("www.example.com", fields.value(0).toString());
+        assertEquals("X-Empty", fields.name(1).toString());
+        assertEquals("", fields.value(1).toString());
+        assertEquals("Accept", fields.name(2).toString());
+        assertEquals("text/html ,é", fields.value(2).toString());
+        assertEquals('é', fields.value(2).charAt(11));
+        assertEquals(buffer.limit() - "entity".length(), buffer.position());
+    }
+    
+    @Test
+    public void testParse_withoutEmptyLine() {
+        final ByteBuffer buffer = buffer("a: b\r\nc: d");
+        final AsciiHeaderFields fields = AsciiHeaderFields.parse(buffer);
+        assertEquals(2, fields.size());
+        assertEquals("d", fields.value(1).toString());
+        assertEquals(buffer.limit(), buffer.position());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withObsoleteLineFolding() {
+        AsciiHeaderFields.parse(buffer("a: b\r\n c\r\n\r\n"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withWhiteSpaceBeforeColon() {
+        AsciiHeaderFields.parse(buffer("a : b\r\n\r\n"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withControlCharacter() {
+        AsciiHeaderFields.parse(buffer("a: b\u0000\r\n\r\n"));
+    }
+}
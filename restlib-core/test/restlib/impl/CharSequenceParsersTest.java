@@ -0,0 +1,80 @@
+package restlib.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.NullPointerTester;
+
+public final class CharSequenceParsersTest {
+    private static final CharSequenceParser<Iterable<Long>> LONG_LIST_PARSER =
+            CharSequenceParsers.listParser(
+                    CharSequenceParser.fromParser(Parsers.LONG_PARSER),
+                    CharSequenceParser.fromParser(Parsers.charParser(',')));
+
+    @Test
+    public void testNulls() {
+        final NullPointerTester tester = 
+                new NullPointerTester()
+                    .setDefault(CharSequenceParser.class, LONG_LIST_PARSER);
+        tester.testAllPublicStaticMethods(CharSequenceParsers.class);
+        tester.testAllPublicInstanceMethods(LONG_LIST_PARSER);
+    }
+
+    @Test
+    public void testListParser() {
+        assertEquals(ImmutableList.of(1L, 22L, 333L), LONG_LIST_PARSER.parseFully("1,22,333"));
+        assertEquals(5, LONG_LIST_PARSER.scan("1,22,a", 0));
+        assertEquals(CharSequenceParser.NO_MATCH, LONG_LIST_PARSER.scan("a,1", 0));
+        assertEquals(CharSequenceParser.NO_MATCH, LONG_LIST_PARSER.scan(",,", 0));
+    }
+
+    @Test
+    public void testListParser$parseFully_withEmptyElements() {
+        assertEquals(ImmutableList.of(1L, 2L), LONG_LIST_PARSER.parseFully("1,,2"));
+        assertEquals(ImmutableList.of(1L, 2L), LONG_LIST_PARSER.parseFully(",1,2"));
+        assertEquals(ImmutableList.of(1L, 2L), LONG_LIST_PARSER.parseFully("1,2,,"));
+    }
+
+    @Test
+    public void testListParser$parse() {
+        final CharBuffer buffer = CharBuffer.wrap("1,2;3");
+        assertEquals(ImmutableList.of(1L, 2L), LONG_LIST_PARSER.parse(buffer).get());
+        assertEquals(3, buffer.position());
+
+        buffer.position(4);
+        assertEquals(ImmutableList.of(3L), LONG_LIST_PARSER.parse(buffer).get());
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void testEqualsIgnoreCase() {
+        assertTrue(CharSequenceParsers.equalsIgnoreCase("a=BYTES", 2, 7, "bytes"));
+        assertFalse(CharSequenceParsers.equalsIgnoreCase("a=BYTE", 2, 6, "bytes"));
+    }
+
+    @Test
+    public void testParseUnsignedLong() {
+        assertEquals(1234L, CharSequenceParsers.parseUnsignedLong("a1234b", 1, 5));
+        assertEquals(Long.MAX_VALUE, CharSequenceParsers.parseUnsignedLong("9223372036854775807", 0, 19));
+        assertEquals(-1L, CharSequenceParsers.parseUnsignedLong("9223372036854775808", 0, 19));
+        assertEquals(-1L, CharSequenceParsers.parseUnsignedLong("+1", 0, 2));
+        assertEquals(-1L, CharSequenceParsers.parseUnsignedLong("1", 1, 1));
+    }
+
+    @Test
+    public void testScan() {
+        assertEquals(1, CharSequenceParsers.scanChar("ab", 0, 'a'));
+        assertEquals(CharSequenceParser.NO_MATCH, CharSequenceParsers.scanChar("ab", 2, 'a'));
+        assertEquals(3, CharSequenceParsers.scanDigits("a12b", 1));
+        assertEquals(4, CharSequenceParsers.scanString("W/\"a\"", 1, "/\"a"));
+        assertEquals(CharSequenceParser.NO_MATCH, CharSequenceParsers.scanString("W/", 1, "/\""));
+        assertEquals(1, CharSequenceParsers.scanWhile("a ", 1, CharMatcher.WHITESPACE.negate()));
+    }
+}
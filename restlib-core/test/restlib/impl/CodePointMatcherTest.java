@@ -176,6 +176,42 @@ public final class CodePointMatcherTest {
         }
     }
     
+    @Test
+    public void testIndexOfFirstNonMatching() {
+        final CodePointMatcher matcher = CodePointMatcher.inRange('a', 'z');
+        assertEquals(3, matcher.indexOfFirstNonMatching("abc-d", 0));
+        assertEquals(5, matcher.indexOfFirstNonMatching("abc-d", 4));
+        assertEquals(5, matcher.indexOfFirstNonMatching("abc-d", 5));
+        assertEquals(0, CodePointMatcher.NONE.indexOfFirstNonMatching("abc", 0));
+        assertEquals(3, CodePointMatcher.ANY.indexOfFirstNonMatching("abc", 1));
+        
+        final String supplementary = "a" + CharSequences.fromCodepoint(0x10400) + "b";
+        assertEquals(1, matcher.indexOfFirstNonMatching(supplementary, 0));
+        assertEquals(4, matcher.or(CodePointMatcher.inRange(0x10400, 0x10400))
+                .indexOfFirstNonMatching(supplementary, 0));
+        
+        try {
+            matcher.indexOfFirstNonMatching("abc", 4);
+            fail("expected IndexOutOfBoundsException");
+        } catch (final IndexOutOfBoundsException e) {}
+    }
+    
+    @Test
+    public void testPrecompute() {
+        final CodePointMatcher matcher = 
+                CodePointMatcher.inRange('a', 'z')
+                    .or(CodePointMatcher.anyOf("-_"))
+                    .or(CodePointMatcher.inRange(0x10400, 0x10500));
+        final CodePointMatcher precomputed = matcher.precompute();
+        
+        for (int i = Character.MIN_CODE_POINT; i <= Character.MAX_CODE_POINT; i++) {
+            assertEquals(matcher.matches(i), precomputed.matches(i));
+        }
+        assertFalse(precomputed.matches(-1));
+        assertTrue(precomputed == precomputed.precompute());
+        doTestNull(precomputed);
+    }
+    
     @Test
     public void testNONE() {
         assertFalseForAllCodePoints(CodePointMatcher.NONE);
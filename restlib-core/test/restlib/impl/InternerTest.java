@@ -0,0 +1,85 @@
+package restlib.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.NullPointerTester;
+
+public final class InternerTest {
+    @Test
+    public void testNulls() {
+        final NullPointerTester tester = new NullPointerTester();
+        tester.testAllPublicStaticMethods(Interner.class);
+        tester.testAllPublicInstanceMethods(Interner.create());
+    }
+
+    @Test
+    public void testGetIfPresent() {
+        final Interner<String> interner =
+                Interner.caseInsensitive(Functions.<String> identity(), 0);
+        final String test = interner.register("Content-Type");
+
+        assertSame(test, interner.getIfPresent("content-type", 0, 12));
+        assertSame(test, interner.getIfPresent("a:CONTENT-TYPE;", 2, 14));
+        assertNull(interner.getIfPresent("Content-Typ", 0, 11));
+        assertNull(Interner.create().getIfPresent("Content-Type", 0, 12));
+
+        final Interner<String> caseSensitive =
+                Interner.caseSensitive(Functions.<String> identity(), 0);
+        caseSensitive.register("GET");
+        assertSame("GET", caseSensitive.getIfPresent("GET", 0, 3));
+        assertNull(caseSensitive.getIfPresent("get", 0, 3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetIfPresent_withInvalidRange() {
+        Interner.create().getIfPresent("abc", 2, 4);
+    }
+
+    @Test
+    public void testIntern() {
+        final String registered = new String("a");
+        final Interner<String> interner = Interner.create();
+        assertSame(registered, interner.register(registered));
+        assertSame(registered, interner.register(new String("a")));
+        assertSame(registered, interner.intern(new String("a")));
+
+        final String unregistered = new String("b");
+        assertSame(unregistered, interner.intern(unregistered));
+        assertNotSame(unregistered, interner.intern(new String("b")));
+    }
+
+    @Test
+    public void testIntern_withDynamicTier() {
+        final Interner<String> interner =
+                Interner.caseSensitive(Functions.<String> identity(), 2);
+        final String test = new String("b");
+        assertSame(test, interner.intern(test));
+        assertSame(test, interner.intern(new String("b")));
+
+        // Unregistered values are not indexed by key.
+        assertNull(interner.getIfPresent("b", 0, 1));
+    }
+
+    @Test
+    public void testRegistered() {
+        final Interner<Integer> interner = Interner.create();
+        final ImmutableList.Builder<Integer> expected = ImmutableList.builder();
+        for (int i = 0; i < 100; i++) {
+            interner.register(i);
+            expected.add(i);
+        }
+        interner.register(50);
+
+        assertEquals(expected.build(), interner.registered());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), interner.intern(i));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package restlib.net;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.List;
 
@@ -169,6 +170,32 @@ public final class IRITest {
                 "", "", "", Optional.<Integer>absent(), "", "query", "fragment");
     }
     
+    @Test
+    public void testParse_withEmptyComponents() {
+        assertEquals("http://example.com/", IRI.parse("http://example.com/?#").toString());
+        assertEquals("http://example.com:80", IRI.parse("http://@example.com:080").toString());
+        assertEquals("/a", IRI.parse("///a").toString());
+        assertEquals(IRI.parse("http:a"), IRI.parse("http:a?"));
+        assertEquals(Optional.of(80), IRI.parse("http://example.com:080").port());
+    }
+    
+    @Test
+    public void testParse_withInvalid() {
+        final List<String> tests =
+                ImmutableList.of(
+                        "http://example.com:0",
+                        "http://example.com:65536",
+                        "http://user@:80",
+                        "a:b/c d",
+                        "1http://example.com");
+        for (final String test : tests) {
+            try {
+                IRI.parse(test);
+                fail("expected IllegalArgumentException");
+            } catch (final IllegalArgumentException expected){}
+        }
+    }
+    
     @Test
     public void testRelativeReference() {
         final String rfcTestsBase = "http://a/b/c/d;p?q";
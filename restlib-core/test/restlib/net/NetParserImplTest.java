@@ -0,0 +1,62 @@
+package restlib.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public final class NetParserImplTest {
+    private static void doTestScanIRI(final String test, final int... expected) {
+        assertArrayEquals(expected, NetParserImpl.scanIRI(test));
+    }
+
+    @Test
+    public void testParseEmail() {
+        assertEquals(ImmutableList.of("a@b", "example.com"), NetParserImpl.parseEmail("a@b@example.com"));
+    }
+
+    @Test
+    public void testParseEmail_withInvalid() {
+        final List<String> tests = ImmutableList.of("", "@example.com", "a@", "example.com");
+        for (final String test : tests) {
+            try {
+                NetParserImpl.parseEmail(test);
+                fail("expected IllegalArgumentException");
+            } catch (final IllegalArgumentException expected){}
+        }
+    }
+
+    @Test
+    public void testScanAuthority() {
+        assertArrayEquals(
+                new int[] { -1, -1, 0, 5, 6, 7, -1, -1, -1, -1, -1, -1, -1, -1 },
+                NetParserImpl.scanAuthority("a@b:c@d"));
+        assertArrayEquals(
+                new int[] { -1, -1, -1, -1, 0, 7, 8, 10, -1, -1, -1, -1, -1, -1 },
+                NetParserImpl.scanAuthority("[::1:2]:80"));
+        assertArrayEquals(
+                new int[] { -1, -1, -1, -1, 0, 7, -1, -1, -1, -1, -1, -1, -1, -1 },
+                NetParserImpl.scanAuthority("[::1:2]"));
+    }
+
+    @Test
+    public void testScanIRI() {
+        doTestScanIRI("scheme://userinfo@host:80/path?query#fragment",
+                0, 6, 9, 17, 18, 22, 23, 25, 25, 30, 31, 36, 37, 45);
+        doTestScanIRI("scheme:a",
+                0, 6, -1, -1, -1, -1, -1, -1, 7, 8, -1, -1, -1, -1);
+        doTestScanIRI("//",
+                -1, -1, -1, -1, 2, 2, -1, -1, 2, 2, -1, -1, -1, -1);
+        doTestScanIRI("a/b:c?#",
+                -1, -1, -1, -1, -1, -1, -1, -1, 0, 5, 6, 6, 7, 7);
+        doTestScanIRI(":a",
+                -1, -1, -1, -1, -1, -1, -1, -1, 0, 2, -1, -1, -1, -1);
+        doTestScanIRI("",
+                -1, -1, -1, -1, -1, -1, -1, -1, 0, 0, -1, -1, -1, -1);
+    }
+}
@@ -2,6 +2,7 @@ package restlib.net;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -65,6 +66,13 @@ public final class PathTest {
             .testEquals();                    
     }
     
+    @Test
+    public void testHashCode() {
+        assertEquals(ImmutableList.of("", "a", "b", "").hashCode(), Path.parse("/a/b/").hashCode());
+        assertEquals(ImmutableList.of("").hashCode(), Path.of("").hashCode());
+        assertEquals(ImmutableList.of().hashCode(), Path.of().hashCode());
+    }
+    
     @Test
     public void testIsNormalized() {
         assertTrue(Path.parse("/a/b/c").isNormalized());
@@ -179,6 +187,25 @@ public final class PathTest {
         assertFalse(Path.of().startsWithSlash());
     }
     
+    @Test
+    public void testSize() {
+        assertEquals(0, Path.parse("").size());
+        assertEquals(2, Path.parse("/").size());
+        assertEquals(3, Path.parse("a//").size());
+        assertEquals("", Path.parse("a//").get(2));
+    }
+    
+    @Test
+    public void testCanonicalize$memoized() {
+        final Path path = Path.parse("/a//b/");
+        assertSame(path.canonicalize(), path.canonicalize());
+        assertSame(path.canonicalize(), path.canonicalize().canonicalize());
+        
+        final Path uriPath = Path.parse("/a/b");
+        assertSame(uriPath, uriPath.toUriPath());
+        assertSame(uriPath, uriPath.toIRIPath());
+    }
+    
     @Test
     public void testToIRI() {
         doTestToIRI("/a/b/c", "/a/b/c");
@@ -0,0 +1,73 @@
+package restlib.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.NullPointerTester;
+
+public final class QueryParametersTest {
+    @Test
+    public void testGetAll() {
+        final QueryParameters parameters = QueryParameters.parse("a=1&b=2&a=3&a");
+        assertEquals(ImmutableList.of("1", "3", ""), parameters.getAll("a"));
+        assertEquals(ImmutableList.of(), parameters.getAll("c"));
+    }
+
+    @Test
+    public void testGetFirst() {
+        final QueryParameters parameters =
+                QueryParameters.parse("q=a+b%26c&r%C3%A9sum%C3%A9=%E2%82%AC&c==d&e+f=");
+        assertEquals(Optional.of("a b&c"), parameters.getFirst("q"));
+        assertEquals(Optional.of("€"), parameters.getFirst("résumé"));
+        assertEquals(Optional.of("=d"), parameters.getFirst("c"));
+        assertEquals(Optional.of(""), parameters.getFirst("e f"));
+        assertEquals(Optional.<String> absent(), parameters.getFirst("r"));
+        assertTrue(parameters.containsKey("c"));
+        assertFalse(parameters.containsKey("d"));
+    }
+
+    @Test
+    public void testGetInt() {
+        final QueryParameters parameters = QueryParameters.parse("page=2&offset=-10000000000");
+        assertEquals(2, parameters.getInt("page", 1));
+        assertEquals(1, parameters.getInt("size", 1));
+        assertEquals(-10000000000L, parameters.getLong("offset", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetInt_withInvalid() {
+        QueryParameters.parse("page=a").getInt("page", 1);
+    }
+
+    @Test
+    public void testNulls() {
+        final NullPointerTester tester = new NullPointerTester();
+        tester.testAllPublicStaticMethods(QueryParameters.class);
+        tester.testAllPublicInstanceMethods(QueryParameters.parse("a=b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withEmptyKey() {
+        QueryParameters.parse("a=b&=c");
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(0, QueryParameters.parse("").size());
+        assertEquals(2, QueryParameters.parse("&a=b&& c &").size());
+        assertTrue(QueryParameters.parse("&&").isEmpty());
+    }
+
+    @Test
+    public void testUri() {
+        final Uri uri = Uri.parse("http://example.com/search?q=test&page=3");
+        assertSame(uri.queryParameters(), uri.queryParameters());
+        assertEquals(3, uri.queryParameters().getInt("page", 1));
+    }
+}
@@ -1,6 +1,7 @@
 package restlib.net;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.Map.Entry;
@@ -76,6 +77,39 @@ public final class UriEncodingTest {
         }
     }
     
+    @Test
+    public void testDecoder_withCodePointsToDecode() {
+        assertEquals("a%2Fb%20c", UriEncoding.UTF8_DECODE_PATH_SEGMENT.apply("%61%2fb%20%63"));
+        assertEquals("\u0101%2F", UriEncoding.UTF8_DECODE_PATH_ISEGMENT.apply("%c4%81%2F"));
+        
+        final String test = "abc";
+        assertSame(test, UriEncoding.UTF8_DECODE.apply(test));
+    }
+    
+    @Test 
+    public void testDecoder_withInvalidUtf8() {
+        final ImmutableList<String> invalidTests = 
+                ImmutableList.of("%80", "%C0%AF", "%C4", "%C4a", "%E0%80%80", "%ED%A0%80", "%F4%90%80%80", "%FF");
+        for(final String test : invalidTests){
+            doTestApply_withInvalid(UriEncoding.UTF8_DECODE, test);
+        }
+    }
+    
+    @Test
+    public void testEncoder$roundTrip() {
+        final String test = "a/b c?\u0000\u00ae\u0101\u10a0\uD800\uDC00";
+        final Function<CharSequence, String> encoder = 
+                UriEncoding.utf8Encoder(CodePointMatcher.inRange('a', 'z'));
+        assertEquals("a%2Fb%20c%3F%00%C2%AE%C4%81%E1%82%A0%F0%90%80%80", encoder.apply(test));
+        assertEquals(test, UriEncoding.UTF8_DECODE.apply(encoder.apply(test)));
+        
+        // Unpaired surrogates are encoded using the replacement character
+        assertEquals("%3F", encoder.apply("\uD800"));
+        
+        final String safe = "abc";
+        assertSame(safe, encoder.apply(safe));
+    }
+    
     @Test
     public void testEncoder() {
         final String test = "Hello +%-_.!~*\'()@\u00ae\u0101\u10a0";
@@ -22,15 +22,12 @@ import java.util.TimerTask;
 
 import restlib.Request;
 import restlib.Response;
-import restlib.data.Form;
 import restlib.data.Status;
 import restlib.server.FutureResponses;
 import restlib.server.Resource;
 import restlib.server.Route;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
@@ -66,15 +63,14 @@ public final class ContinuationResource implements Resource {
 
     @Override
     public ListenableFuture<Response> handle(final Request request) {
-        final Multimap<String, String> form;
+        final boolean timeout;
         try {
-            form = Form.parse(request.uri().query());
+            timeout = Boolean.parseBoolean(
+                    request.uri().queryParameters().getFirst("timeout").or(""));
         } catch (final IllegalArgumentException e) {
             return FutureResponses.CLIENT_ERROR_BAD_REQUEST;
         }
         
-        final boolean timeout = 
-                Boolean.parseBoolean(Iterables.getFirst(form.get("timeout"), ""));
         final long waitTime = timeout ? 20000 : 500;
         
          return delayedResponse(Status.INFORMATIONAL_CONTINUE, waitTime);
@@ -147,7 +147,7 @@ public final class MessageEntryResource extends AtomEntryResource<MessageEntry>{
 
     @Override
     protected ListenableFuture<Response> put(final Request request, final MessageEntry message) {
-        final String id = this.route().getParameters(request.uri().path()).get("id");        
+        final String id = this.route().tryMatch(request.uri().path()).get("id").get();        
         final BlogEntry requestedBlogEntry = BlogEntryHelpers.fromMessageEntry(message, id);           
         
         if (this.blogStore.getEntry(requestedBlogEntry) != null) {
@@ -39,9 +39,9 @@ public final class DeserializerSuppliers {
             };
 
     private static InputStreamDeserializerSupplier<MessageFeed> formMessageEntryAsFeed() {
-        final InputStreamDeserializerSupplier<String> delegate = 
+        final InputStreamDeserializerSupplier<Form> delegate = 
                 InputStreamDeserializerSuppliers
-                    .stringDeserializerSupplier(MediaRanges.TEXT_ANY);
+                    .formDeserializerSupplier(MediaRanges.APPLICATION_WWW_FORM, 16, 64, 4096);
 
         return new InputStreamDeserializerSupplier<MessageFeed>() {
             @Override
@@ -51,13 +51,12 @@ public final class DeserializerSuppliers {
                     @Override
                     public MessageFeed read(final InputStream is)
                             throws IOException {
-                        final String form = delegate.get(request).read(is);
                         final MessageEntry.Builder builder = MessageEntry
                                 .builder();
 
                         try {
                             BeanUtils.populateObject(
-                                    Form.parse(form), builder);
+                                    delegate.get(request).read(is), builder);
                         } catch (final IllegalArgumentException e) {
                             throw new IOException(e);
                         }
@@ -9,7 +9,7 @@ import restlib.bio.OutputStreamSerializer;
 import restlib.data.Charset;
 import restlib.data.Language;
 import restlib.data.MediaRange;
-import restlib.data.Preference;
+import restlib.data.NegotiationIndex;
 import restlib.server.bio.OutputStreamSerializerSupplier;
 
 import com.google.common.base.Preconditions;
@@ -31,6 +31,7 @@ public final class TemplateServerSerializerSupplier {
         Preconditions.checkNotNull(template);
         Preconditions.checkNotNull(mediaRange);
         final Set<Language> langCopy = ImmutableSet.copyOf(languages);
+        final NegotiationIndex<Charset> charsets = NegotiationIndex.charsets(Charset.available());
         
         return new OutputStreamSerializerSupplier () {
             @Override
@@ -44,9 +45,8 @@ public final class TemplateServerSerializerSupplier {
                 Preconditions.checkNotNull(request);
                 Preconditions.checkNotNull(response);
                 final Charset charset = 
-                        Preference.<Charset> bestMatch(
-                                request.preferences().acceptedCharsets(), 
-                                Charset.available()).or(Charset.UTF_8);
+                        charsets.bestMatch(
+                                request.preferences().acceptedCharsets()).or(Charset.UTF_8);
                         
                 final ContentInfo contentInfo = 
                         ContentInfo.builder()
@@ -12,7 +12,7 @@ import restlib.bio.OutputStreamSerializer;
 import restlib.data.Charset;
 import restlib.data.Language;
 import restlib.data.MediaRange;
-import restlib.data.Preference;
+import restlib.data.NegotiationIndex;
 import restlib.server.bio.OutputStreamSerializerSupplier;
 
 import com.google.common.base.Preconditions;
@@ -45,15 +45,15 @@ public final class JsonServerSerializerSupplier {
         Preconditions.checkNotNull(writer);
         Preconditions.checkNotNull(mediaRange);
         final Set<Language> langCopy = ImmutableSet.copyOf(languages);
+        final NegotiationIndex<Charset> charsets = NegotiationIndex.charsets(Charset.available());
 
         return new OutputStreamSerializerSupplier() {
             @Override
             public OutputStreamSerializer get(final Request request,
                     final Response response) {
                 final Charset charset = 
-                        Preference.<Charset> bestMatch(
-                                request.preferences().acceptedCharsets(), 
-                                Charset.available()).or(Charset.UTF_8);
+                        charsets.bestMatch(
+                                request.preferences().acceptedCharsets()).or(Charset.UTF_8);
 
                 final ContentInfo contentInfo = 
                         ContentInfo.builder()
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.ext.netty;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+
+import restlib.Request;
+import restlib.server.bio.BioApplication;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An HTTP/1.1 connector for BioApplications built on Netty's NIO transport.
+ * Requests are decoded by Netty's HTTP codec and dispatched to the application on the
+ * connector's executor, which by default is the channel's I/O thread. Pending responses do 
+ * not hold a thread. Applications which block should provide an executor with
+ * {@link NettyConnectorBuilder#setExecutor(Executor)}.
+ *
+ * <p>Request entities are buffered up to a configured size before they are deserialized,
+ * and response entities are serialized into buffers allocated by the channel's buffer factory.
+ */
+public final class NettyConnector implements Closeable {
+    // Larger fixed length entities are delivered to the handler as chunks.
+    private static final int MAX_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Returns a new NettyConnectorBuilder.
+     */
+    public static NettyConnectorBuilder builder() {
+        return new NettyConnectorBuilder();
+    }
+
+    private final Function<Request, ? extends BioApplication> applicationSupplier;
+    private final SocketAddress address;
+    private final Executor executor;
+    private final int maxEntitySize;
+    private final int maxHeaderSize;
+    private final String uriScheme;
+    private final int workerCount;
+
+    private final ChannelGroup channels = new DefaultChannelGroup("restlib-netty");
+
+    // Guarded by this.
+    private ServerBootstrap bootstrap = null;
+    private Channel serverChannel = null;
+
+    NettyConnector(final NettyConnectorBuilder builder) {
+        this.applicationSupplier = builder.applicationSupplier;
+        this.address = builder.address;
+        this.executor = builder.executor;
+        this.maxEntitySize = builder.maxEntitySize;
+        this.maxHeaderSize = builder.maxHeaderSize;
+        this.uriScheme = builder.uriScheme;
+        this.workerCount = builder.workerCount;
+    }
+
+    Function<Request, ? extends BioApplication> applicationSupplier() {
+        return this.applicationSupplier;
+    }
+
+    ChannelGroup channels() {
+        return this.channels;
+    }
+
+    Executor executor() {
+        return this.executor;
+    }
+
+    /**
+     * Stops accepting connections, closes all open connections and releases the connector's threads.
+     * Does nothing if the connector is not started.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.serverChannel == null) {
+            return;
+        }
+
+        this.channels.close().awaitUninterruptibly();
+        this.bootstrap.releaseExternalResources();
+        this.serverChannel = null;
+        this.bootstrap = null;
+    }
+
+    /**
+     * Returns the address the connector is listening on.
+     * @throws IllegalStateException if the connector is not started.
+     */
+    public synchronized InetSocketAddress localAddress() {
+        Preconditions.checkState(this.serverChannel != null);
+        return (InetSocketAddress) this.serverChannel.getLocalAddress();
+    }
+
+    int maxEntitySize() {
+        return this.maxEntitySize;
+    }
+
+    /**
+     * Binds the connector's address and starts accepting connections.
+     * @throws IllegalStateException if the connector is already started.
+     * @throws org.jboss.netty.channel.ChannelException if the address can not be bound.
+     */
+    public synchronized NettyConnector start() {
+        Preconditions.checkState(this.serverChannel == null);
+
+        final ExecutorService boss =
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setNameFormat("restlib-netty-boss-%d").build());
+        final ExecutorService workers =
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setNameFormat("restlib-netty-worker-%d").build());
+
+        final ServerBootstrap bootstrap =
+                new ServerBootstrap(new NioServerSocketChannelFactory(boss, workers, this.workerCount));
+        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.setOption("reuseAddress", true);
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                final ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("decoder",
+                        new HttpRequestDecoder(maxHeaderSize, maxHeaderSize, MAX_CHUNK_SIZE));
+                pipeline.addLast("encoder", new HttpResponseEncoder());
+                pipeline.addLast("handler", new NettyConnectorHandler(NettyConnector.this));
+                return pipeline;
+            }
+        });
+
+        try {
+            this.serverChannel = bootstrap.bind(this.address);
+        } catch (final RuntimeException e) {
+            bootstrap.releaseExternalResources();
+            throw e;
+        }
+
+        this.channels.add(this.serverChannel);
+        this.bootstrap = bootstrap;
+        return this;
+    }
+
+    String uriScheme() {
+        return this.uriScheme;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.ext.netty;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+
+import restlib.Request;
+import restlib.net.UriSchemes;
+import restlib.server.bio.BioApplication;
+import restlib.server.connector.ConnectorExecutors;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public final class NettyConnectorBuilder {
+    Function<Request, ? extends BioApplication> applicationSupplier = null;
+    SocketAddress address = new InetSocketAddress(8080);
+    Executor executor = MoreExecutors.sameThreadExecutor();
+    int maxEntitySize = 8 * 1024 * 1024;
+    int maxHeaderSize = 16 * 1024;
+    String uriScheme = UriSchemes.HTTP;
+    int workerCount = 2 * Runtime.getRuntime().availableProcessors();
+
+    NettyConnectorBuilder() {}
+
+    /**
+     * Returns a new NettyConnector. The connector does not accept connections until it is started.
+     * @throws IllegalStateException if the application supplier has not been set.
+     */
+    public NettyConnector build() {
+        Preconditions.checkState(this.applicationSupplier != null);
+        return new NettyConnector(this);
+    }
+
+    /**
+     * Sets the address the connector listens on. The default is port 8080 of the wildcard address.
+     * @throws NullPointerException if {@code address} is null.
+     */
+    public NettyConnectorBuilder setAddress(final SocketAddress address) {
+        this.address = Preconditions.checkNotNull(address);
+        return this;
+    }
+
+    /**
+     * Sets the function used to choose the application which handles each request.
+     * @throws NullPointerException if {@code applicationSupplier} is null.
+     */
+    public NettyConnectorBuilder setApplicationSupplier(final Function<Request, ? extends BioApplication> applicationSupplier) {
+        this.applicationSupplier = Preconditions.checkNotNull(applicationSupplier);
+        return this;
+    }
+
+    /**
+     * Sets the executor which runs application code: request and response filters, resource
+     * handlers, deserializers and serializers. By default application code runs on the I/O thread
+     * of the connection's channel, so resources must not block. Applications which block should
+     * provide a thread pool, or {@link ConnectorExecutors#threadPerTask(int)}.
+     * @throws NullPointerException if {@code executor} is null.
+     */
+    public NettyConnectorBuilder setExecutor(final Executor executor) {
+        this.executor = Preconditions.checkNotNull(executor);
+        return this;
+    }
+
+    /**
+     * Sets the maximum size in bytes of a request entity. Requests with larger entities
+     * receive a 413 response. The default is 8 MiB.
+     * @throws IllegalArgumentException if {@code maxEntitySize} is negative.
+     */
+    public NettyConnectorBuilder setMaxEntitySize(final int maxEntitySize) {
+        Preconditions.checkArgument(maxEntitySize >= 0);
+        this.maxEntitySize = maxEntitySize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the request line and of the header section.
+     * Requests with larger headers are rejected. The default is 16 KiB.
+     * @throws IllegalArgumentException if {@code maxHeaderSize} is not positive.
+     */
+    public NettyConnectorBuilder setMaxHeaderSize(final int maxHeaderSize) {
+        Preconditions.checkArgument(maxHeaderSize > 0);
+        this.maxHeaderSize = maxHeaderSize;
+        return this;
+    }
+
+    /**
+     * Sets the URI scheme of requests received by the connector. The default is http.
+     * @throws NullPointerException if {@code uriScheme} is null.
+     */
+    public NettyConnectorBuilder setUriScheme(final String uriScheme) {
+        this.uriScheme = Preconditions.checkNotNull(uriScheme);
+        return this;
+    }
+
+    /**
+     * Sets the number of Netty I/O worker threads. The default is twice the number
+     * of available processors.
+     * @throws IllegalArgumentException if {@code workerCount} is not positive.
+     */
+    public NettyConnectorBuilder setWorkerCount(final int workerCount) {
+        Preconditions.checkArgument(workerCount > 0);
+        this.workerCount = workerCount;
+        return this;
+    }
+}
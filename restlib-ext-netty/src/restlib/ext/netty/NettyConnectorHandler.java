@@ -0,0 +1,518 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.ext.netty;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import restlib.ContentInfo;
+import restlib.ContentInfoWrapper;
+import restlib.Request;
+import restlib.Response;
+import restlib.ResponseWrapper;
+import restlib.bio.OutputStreamSerializer;
+import restlib.data.HttpDate;
+import restlib.data.HttpHeaders;
+import restlib.data.Method;
+import restlib.data.Status;
+import restlib.server.FutureResponses;
+import restlib.server.bio.BioApplication;
+import restlib.server.bio.BioResource;
+import restlib.server.connector.ConnectorHelpers;
+
+import com.google.common.base.Optional;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Processes the requests received on a single channel, one at a time. Netty delivers
+ * the channel's messages on its I/O thread, but resource futures may complete on any thread,
+ * so all state is guarded by this. Application code runs on the connector's executor, 
+ * and never while holding the lock.
+ */
+final class NettyConnectorHandler extends SimpleChannelUpstreamHandler {
+    private static final Logger logger = LoggerFactory.getLogger(NettyConnectorHandler.class);
+
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private static enum State {
+        // Waiting for a request.
+        IDLE,
+
+        // Waiting for the resource's response.
+        DISPATCHED,
+
+        // Reading the chunks of an accepted request entity.
+        READING_ENTITY,
+
+        // Writing the response.
+        WRITING,
+
+        CLOSED
+    }
+
+    private static boolean isEntityAllowed(final Request request, final Status status) {
+        return !request.method().equals(Method.HEAD) &&
+                !status.statusClass().equals(Status.Class.INFORMATIONAL) &&
+                !status.equals(Status.SUCCESS_NO_CONTENT) &&
+                !status.equals(Status.REDIRECTION_NOT_MODIFIED);
+    }
+
+    private final NettyConnector connector;
+
+    // Messages received while a request is being processed, for instance pipelined requests.
+    private final Queue<Object> pending = new ArrayDeque<Object>();
+
+    private State state = State.IDLE;
+    private Channel channel = null;
+
+    private HttpRequest nettyRequest = null;
+    private BioApplication application = null;
+    private Request request = null;
+    private BioResource<?> resource = null;
+    private ChannelBuffer entity = null;
+    private boolean entityRead = false;
+    private boolean keepAlive = false;
+
+    // Runs application code on the connector's executor, answering 503 when it is saturated.
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            try {
+                connector.executor().execute(task);
+            } catch (final RejectedExecutionException e) {
+                logger.debug("", e);
+                respondWithError(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+    };
+
+    private final FutureCallback<Response> respond = new FutureCallback<Response>() {
+        @Override
+        public void onFailure(final Throwable cause) {
+            logger.error("", cause);
+            respondWithError(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        @Override
+        public void onSuccess(final Response response) {
+            respond(response);
+        }
+    };
+
+    NettyConnectorHandler(final NettyConnector connector) {
+        this.connector = connector;
+    }
+
+    private void accept(final Request request, final BioResource<?> resource, final ChannelBuffer entity) {
+        ListenableFuture<Response> response;
+        try {
+            final Object message =
+                    resource.getRequestEntityDeserializer(request).read(new ChannelBufferInputStream(entity));
+            response = resource.acceptMessage(request, message);
+        } catch (final IOException e) {
+            response = FutureResponses.CLIENT_ERROR_BAD_REQUEST;
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            response = FutureResponses.SERVER_ERROR_INTERNAL;
+        }
+
+        Futures.addCallback(response, this.respond, this.executor);
+    }
+
+    /**
+     * Returns the task which deserializes the request entity and passes it to the resource.
+     * Called with the lock held.
+     */
+    private Runnable acceptEntity() {
+        this.state = State.DISPATCHED;
+        this.entityRead = true;
+        this.channel.setReadable(false);
+
+        final Request request = this.request;
+        final BioResource<?> resource = this.resource;
+        final ChannelBuffer entity = this.entity;
+        this.entity = null;
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                accept(request, resource, entity);
+            }
+        };
+    }
+
+    @Override
+    public void channelOpen(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+        this.connector.channels().add(e.getChannel());
+    }
+
+    @Override
+    public synchronized void channelClosed(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+        this.state = State.CLOSED;
+        this.pending.clear();
+        this.entity = null;
+    }
+
+    /**
+     * Returns the task which passes {@code nettyRequest} to the application, or null if the
+     * request is malformed. Called with the lock held.
+     */
+    private Runnable dispatch(final HttpRequest nettyRequest) {
+        final Request request;
+        try {
+            request = Request.parse(
+                    this.connector.uriScheme(),
+                    nettyRequest.getMethod().getName(),
+                    nettyRequest.getUri(),
+                    nettyRequest.getHeaders());
+        } catch (final IllegalArgumentException e) {
+            this.respondWithError(HttpResponseStatus.BAD_REQUEST);
+            return null;
+        }
+
+        this.nettyRequest = nettyRequest;
+        this.request = request;
+        this.entityRead = false;
+        this.keepAlive =
+                nettyRequest.getProtocolVersion().isKeepAliveDefault() &&
+                ConnectorHelpers.isKeepAlive(request);
+        this.state = State.DISPATCHED;
+
+        // Stop reading until the resource asks for the entity or the response is written.
+        this.channel.setReadable(false);
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                handle(request);
+            }
+        };
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final ExceptionEvent e) {
+        if (e.getCause() instanceof TooLongFrameException) {
+            synchronized (this) {
+                if (this.state == State.IDLE) {
+                    this.channel = e.getChannel();
+                    this.respondWithError(HttpResponseStatus.BAD_REQUEST);
+                    return;
+                }
+            }
+        }
+
+        logger.debug("", e.getCause());
+        e.getChannel().close();
+    }
+
+    private void handle(final Request unfilteredRequest) {
+        final ListenableFuture<Response> response;
+        try {
+            final BioApplication application = this.connector.applicationSupplier().apply(unfilteredRequest);
+            final Request request = application.requestFilter().apply(unfilteredRequest);
+            final BioResource<?> resource = application.getResource(request);
+            synchronized (this) {
+                this.application = application;
+                this.request = request;
+                this.resource = resource;
+            }
+            response = resource.handle(request);
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.respondWithError(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        Futures.addCallback(response, new FutureCallback<Response>() {
+            @Override
+            public void onFailure(final Throwable cause) {
+                respond.onFailure(cause);
+            }
+
+            @Override
+            public void onSuccess(final Response response) {
+                if (response.status().equals(Status.INFORMATIONAL_CONTINUE)) {
+                    startReadingEntity();
+                } else {
+                    respond(response);
+                }
+            }
+        }, this.executor);
+    }
+
+    @Override
+    public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) {
+        final Runnable task;
+        synchronized (this) {
+            this.channel = e.getChannel();
+            this.pending.add(e.getMessage());
+            task = this.processPending();
+        }
+        this.submit(task);
+    }
+
+    /**
+     * Returns the task which accepts the request entity if {@code chunk} is its last chunk,
+     * otherwise null. Called with the lock held.
+     */
+    private Runnable onChunk(final HttpChunk chunk) {
+        final ChannelBuffer content = chunk.getContent();
+        if (this.entity.readableBytes() + content.readableBytes() > this.connector.maxEntitySize()) {
+            this.respondWithError(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+            return null;
+        }
+
+        this.entity.writeBytes(content);
+        return chunk.isLast() ? this.acceptEntity() : null;
+    }
+
+    private void onResponseWritten() {
+        final Runnable task;
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return;
+            }
+
+            this.state = State.IDLE;
+            this.nettyRequest = null;
+            this.application = null;
+            this.request = null;
+            this.resource = null;
+
+            this.channel.setReadable(true);
+            task = this.processPending();
+        }
+        this.submit(task);
+    }
+
+    /**
+     * Processes the pending messages until one needs application code, and returns the
+     * task which runs it, or null if there is none. Called with the lock held.
+     */
+    private Runnable processPending() {
+        while (!this.pending.isEmpty()) {
+            final Object message = this.pending.peek();
+            Runnable task = null;
+            if (this.state == State.IDLE && message instanceof HttpRequest) {
+                this.pending.remove();
+                task = this.dispatch((HttpRequest) message);
+            } else if (this.state == State.READING_ENTITY && message instanceof HttpChunk) {
+                this.pending.remove();
+                task = this.onChunk((HttpChunk) message);
+            } else if (this.state == State.IDLE || this.state == State.CLOSED) {
+                // The remaining chunks of an entity which was not read.
+                this.pending.remove();
+            } else {
+                return null;
+            }
+
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Serializes {@code response} using the current resource and writes it. Called by the executor.
+     */
+    private void respond(final Response response) {
+        final BioApplication application;
+        final Request request;
+        final BioResource<?> resource;
+        final Channel channel;
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return;
+            }
+            application = this.application;
+            request = this.request;
+            resource = this.resource;
+            channel = this.channel;
+        }
+
+        final HttpResponse nettyResponse =
+                new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        try {
+            final Response filteredResponse = application.responseFilter().apply(response);
+            final OutputStreamSerializer serializer =
+                    resource.getResponseEntitySerializer(request, filteredResponse);
+            final ContentInfo contentInfo;
+
+            if (isEntityAllowed(request, filteredResponse.status())) {
+                final ChannelBuffer content =
+                        ChannelBuffers.dynamicBuffer(
+                                Ints.saturatedCast(
+                                        serializer.contentInfo().length().or((long) DEFAULT_BUFFER_SIZE)),
+                                channel.getConfig().getBufferFactory());
+                serializer.write(new ChannelBufferOutputStream(content));
+                nettyResponse.setContent(content);
+
+                contentInfo = new ContentInfoWrapper(serializer.contentInfo()) {
+                    @Override
+                    public Optional<Long> length() {
+                        return Optional.of((long) content.readableBytes());
+                    }
+                };
+            } else {
+                contentInfo = serializer.contentInfo();
+            }
+
+            NettyConnectorResponse.newInstance(nettyResponse).populate(
+                    new ResponseWrapper(filteredResponse) {
+                        @Override
+                        public ContentInfo contentInfo() {
+                            return contentInfo;
+                        }});
+
+            if (!filteredResponse.date().isPresent()) {
+                nettyResponse.setHeader(HttpHeaders.DATE.toString(), HttpDate.currentSecond().toString());
+            }
+        } catch (final IOException e) {
+            logger.error("", e);
+            this.respondWithError(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            return;
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.respondWithError(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return;
+            }
+
+            if (this.nettyRequest.isChunked() && !this.entityRead) {
+                // The rest of the request entity was not read, so the connection can not be reused.
+                this.keepAlive = false;
+            }
+
+            if (!this.keepAlive) {
+                nettyResponse.setHeader(HttpHeaders.CONNECTION.toString(), "close");
+            }
+
+            this.write(nettyResponse);
+        }
+    }
+
+    private void respondWithError(final HttpResponseStatus status) {
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return;
+            }
+            this.keepAlive = false;
+        }
+
+        final HttpResponse nettyResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        nettyResponse.setHeader(HttpHeaders.DATE.toString(), HttpDate.currentSecond().toString());
+        nettyResponse.setHeader(HttpHeaders.CONTENT_LENGTH.toString(), 0);
+        nettyResponse.setHeader(HttpHeaders.CONNECTION.toString(), "close");
+        this.write(nettyResponse);
+    }
+
+    private void startReadingEntity() {
+        final Runnable task;
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return;
+            }
+
+            final ChannelBuffer content = this.nettyRequest.getContent();
+            if (content.readableBytes() > this.connector.maxEntitySize()) {
+                this.respondWithError(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+                return;
+            }
+
+            this.entity = ChannelBuffers.dynamicBuffer(
+                    Math.max(content.readableBytes(), DEFAULT_BUFFER_SIZE),
+                    this.channel.getConfig().getBufferFactory());
+            this.entity.writeBytes(content);
+
+            if (!this.nettyRequest.isChunked()) {
+                // HttpRequestDecoder only delivers a request with its entity when the client 
+                // does not expect 100 Continue. Requests expecting it, and entities larger than
+                // the decoder's chunk size, are delivered as chunks, so their entity is read below.
+                task = this.acceptEntity();
+            } else {
+                this.state = State.READING_ENTITY;
+                if (ConnectorHelpers.isContinueExpected(this.request)) {
+                    this.channel.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+                }
+                this.channel.setReadable(true);
+                task = this.processPending();
+            }
+        }
+        this.submit(task);
+    }
+
+    private void submit(final Runnable task) {
+        if (task != null) {
+            this.executor.execute(task);
+        }
+    }
+
+    private synchronized void write(final HttpResponse nettyResponse) {
+        final boolean keepAlive = this.keepAlive;
+        this.state = keepAlive ? State.WRITING : State.CLOSED;
+
+        final ChannelFuture future = this.channel.write(nettyResponse);
+        if (keepAlive) {
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture future) {
+                    if (future.isSuccess()) {
+                        onResponseWritten();
+                    } else {
+                        future.getChannel().close();
+                    }
+                }
+            });
+        } else {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.ext.netty;
+
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+import restlib.data.Header;
+import restlib.data.Protocol;
+import restlib.data.Status;
+import restlib.server.connector.ConnectorResponse;
+
+final class NettyConnectorResponse extends ConnectorResponse {
+    static NettyConnectorResponse newInstance(final HttpResponse nettyResponse) {
+        return new NettyConnectorResponse(nettyResponse);
+    }
+
+    private final HttpResponse nettyResponse;
+
+    private NettyConnectorResponse(final HttpResponse nettyResponse) {
+        this.nettyResponse = nettyResponse;
+    }
+
+    @Override
+    public ConnectorResponse addHeader(final Header header, final Object value) {
+        this.nettyResponse.addHeader(header.toString(), value.toString());
+        return this;
+    }
+
+    @Override
+    public ConnectorResponse setStatus(final Status status) {
+        this.nettyResponse.setStatus(new HttpResponseStatus(status.code(), status.reason()));
+        return this;
+    }
+
+    @Override
+    public ConnectorResponse setProtocolVersion(final Protocol version) {
+        this.nettyResponse.setProtocolVersion(HttpVersion.valueOf(version.toString()));
+        return this;
+    }
+}
@@ -14,31 +14,41 @@
  * limitations under the License.
  */
 
-
 package restlib.ext.servlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.GenericServlet;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jetty.continuation.Continuation;
-import org.eclipse.jetty.continuation.ContinuationListener;
-import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import restlib.ContentInfo;
+import restlib.ContentInfoWrapper;
 import restlib.Request;
 import restlib.Response;
 import restlib.ResponseWrapper;
@@ -49,44 +59,498 @@ import restlib.net.UriSchemes;
 import restlib.server.FutureResponses;
 import restlib.server.bio.BioApplication;
 import restlib.server.bio.BioResource;
+import restlib.server.connector.ConnectorExecutors;
 
 import com.google.common.base.Function;
-import com.google.common.base.Preconditions;
+import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
+/**
+ * A servlet which dispatches requests to a BioApplication. Requests are processed
+ * asynchronously with {@link AsyncContext} when the servlet is declared async-supported,
+ * so no container thread is held while a response is pending. On Servlet 3.1 containers
+ * request entities are buffered with a {@link ReadListener} and response entities of up
+ * to 64 KiB are written with a {@link WriteListener}, so slow clients do not hold container
+ * threads during body I/O either. Larger response entities are streamed with blocking
+ * writes by the thread serializing them, the {@link #bioExecutor()} when one is provided,
+ * so they are never held in memory in full. On older containers, bodies are read and 
+ * written with blocking streams.
+ */
 @SuppressWarnings("serial")
 public abstract class ServletConnector extends GenericServlet { 
     private static final Logger logger = LoggerFactory.getLogger(ServletConnector.class);
-  
-    private static void sendResponse(
-            final Request request, 
-            final Response response, 
-            final HttpServletResponse servletResponse,
-            final BioResource<?> resource) {
+    
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_NON_BLOCKING_ENTITY_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_ENTITY_SIZE = 8 * 1024 * 1024;
+    
+    private static final class EntityOutputStream extends ByteArrayOutputStream {
+        private EntityOutputStream() {
+            super(BUFFER_SIZE);
+        }
         
-        try {
-            final OutputStreamSerializer serializer = 
-                    resource.getResponseEntitySerializer(request, response);
+        // Exposes the buffer without copying it.
+        private byte[] bytes() {
+            return this.buf;
+        }
+    }
+    
+    private enum State {
+        // No response has been started.
+        IDLE,
+        
+        // A thread is populating the response and may be writing its entity with blocking writes.
+        RESPONDING,
+        
+        // The entity is written by a WriteListener.
+        WRITING,
+        
+        COMPLETED
+    }
+    
+    private final class Exchange {
+        private final HttpServletRequest servletRequest;
+        private final HttpServletResponse servletResponse;
+        private final BioApplication application;
+        private final Request request;
+        private final BioResource<?> resource;
+        private final Executor executor;
+        
+        // Null when the request is processed synchronously.
+        private final AsyncContext asyncContext;
+        private final boolean nonBlocking;
+        
+        // Guarded by this. Only the thread which moves the state from IDLE to RESPONDING 
+        // writes to the response, so timeouts never race a response which is being written.
+        private State state = State.IDLE;
+        private final CountDownLatch completion = new CountDownLatch(1);
+        private volatile ListenableFuture<Response> pendingResponse = null;
+        
+        private final FutureCallback<Response> respond = new FutureCallback<Response>() {
+            @Override
+            public void onFailure(final Throwable exception) {
+                logger.error("", exception);
+                respond(Response.builder()
+                        .setStatus(Status.SERVER_ERROR_INTERNAL)
+                        .setEntity("The server failed while processing the request.")
+                        .build());
+            }
+
+            @Override
+            public void onSuccess(final Response response) {
+                respond(response);
+            }
+        };
+        
+        private Exchange(
+                final HttpServletRequest servletRequest, 
+                final HttpServletResponse servletResponse,
+                final BioApplication application,
+                final Request request,
+                final BioResource<?> resource) {
+            this.servletRequest = servletRequest;
+            this.servletResponse = servletResponse;
+            this.application = application;
+            this.request = request;
+            this.resource = resource;
+            final Executor bioExecutor = bioExecutor().or(MoreExecutors.sameThreadExecutor());
+            this.executor = new Executor() {
+                @Override
+                public void execute(final Runnable task) {
+                    try {
+                        bioExecutor.execute(task);
+                    } catch (final RejectedExecutionException e) {
+                        logger.debug("", e);
+                        respond(Status.SERVER_ERROR_SERVICE_UNAVAILABLE.toResponse());
+                    }
+                }
+            };
+            
+            if (servletRequest.isAsyncSupported()) {
+                this.asyncContext = servletRequest.startAsync(servletRequest, servletResponse);
+                this.asyncContext.setTimeout(continuationTimeout());
+                this.asyncContext.addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(final AsyncEvent event) {
+                        // Do Nothing
+                    }
+
+                    @Override
+                    public void onError(final AsyncEvent event) {
+                        logger.debug("", event.getThrowable());
+                        abort(null);
+                    }
+
+                    @Override
+                    public void onStartAsync(final AsyncEvent event) {
+                        // Do Nothing
+                    }
+
+                    @Override
+                    public void onTimeout(final AsyncEvent event) {
+                        final ListenableFuture<Response> pendingResponse = Exchange.this.pendingResponse;
+                        if (pendingResponse != null) {
+                            pendingResponse.cancel(false);
+                        }
+                        abort(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+                    }
+                });
+                this.nonBlocking = isNonBlockingIoSupported(servletRequest.getServletContext());
+            } else {
+                this.asyncContext = null;
+                this.nonBlocking = false;
+            }
+        }
+        
+        private void accept(final InputStream entity) {
+            ListenableFuture<Response> response;
+            try {
+                final Object message = this.resource.getRequestEntityDeserializer(this.request).read(entity);
+                response = this.resource.acceptMessage(this.request, message);
+            } catch (final IOException e) {
+                response = FutureResponses.CLIENT_ERROR_BAD_REQUEST;
+            } catch (final RuntimeException e) {
+                logger.error("", e);
+                response = FutureResponses.SERVER_ERROR_INTERNAL;
+            }
+            
+            this.pendingResponse = response;
+            Futures.addCallback(response, this.respond, this.executor);
+        }
+        
+        /**
+         * Completes the exchange on behalf of the container, responding with {@code status} 
+         * if no response has been started. Waits for a thread which is writing the response 
+         * to finish, so the response is never completed while it is being written. 
+         */
+        private void abort(final Status status) {
+            final boolean claimed;
+            synchronized (this) {
+                while (this.state == State.RESPONDING) {
+                    try {
+                        this.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                
+                if (this.state == State.COMPLETED) {
+                    return;
+                }
+                
+                claimed = (this.state == State.IDLE);
+                if (claimed) {
+                    this.state = State.RESPONDING;
+                }
+            }
+            
+            if (claimed && (status != null) && !this.servletResponse.isCommitted()) {
+                this.servletResponse.setStatus(status.code());
+            }
+            this.complete();
+        }
+        
+        private void awaitCompletion() throws InterruptedException {
+            this.completion.await();
+        }
+        
+        private void complete() {
+            synchronized (this) {
+                if (this.state == State.COMPLETED) {
+                    return;
+                }
+                this.state = State.COMPLETED;
+                this.notifyAll();
+            }
+            
+            try {
+                if (this.asyncContext != null) {
+                    this.asyncContext.complete();
+                } else {
+                    flushAndClose(this.servletResponse);
+                }
+            } finally {
+                this.completion.countDown();
+            }
+        }
+        
+        private void handle(final ListenableFuture<Response> response) {
+            this.pendingResponse = response;
+            Futures.addCallback(response, new FutureCallback<Response>() {
+                @Override
+                public void onFailure(final Throwable exception) {
+                    respond.onFailure(exception);
+                }
+
+                @Override
+                public void onSuccess(final Response response) {
+                    if (response.status().equals(Status.INFORMATIONAL_CONTINUE)) {
+                        readEntity();
+                    } else {
+                        respond(response);
+                    }
+                }   
+            }, this.executor);
+        }
+        
+        private void readEntity() {
+            if (!this.nonBlocking) {
+                try {
+                    this.accept(this.servletRequest.getInputStream());
+                } catch (final IOException e) {
+                    logger.debug("", e);
+                    this.complete();
+                }
+                return;
+            }
+            
+            final ServletInputStream in;
+            try {
+                in = this.servletRequest.getInputStream();
+            } catch (final IOException e) {
+                logger.debug("", e);
+                this.complete();
+                return;
+            }
+            
+            in.setReadListener(new ReadListener() {
+                private final byte[] buffer = new byte[BUFFER_SIZE];
+                private final EntityOutputStream entity = new EntityOutputStream();
+                private boolean rejected = false;
+                
+                @Override
+                public void onAllDataRead() {
+                    if (this.rejected) {
+                        return;
+                    }
+                    
+                    final ByteArrayInputStream entity = 
+                            new ByteArrayInputStream(this.entity.bytes(), 0, this.entity.size());
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            accept(entity);
+                        }
+                    });
+                }
+
+                @Override
+                public void onDataAvailable() {
+                    try {
+                        while (!this.rejected && in.isReady()) {
+                            final int read = in.read(this.buffer);
+                            if (read < 0) {
+                                return;
+                            }
+                            
+                            if (this.entity.size() + read > maxEntitySize()) {
+                                this.rejected = true;
+                                respond(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE.toResponse());
+                                return;
+                            }
+                            this.entity.write(this.buffer, 0, read);
+                        }
+                    } catch (final IOException e) {
+                        this.onError(e);
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable exception) {
+                    logger.debug("", exception);
+                    complete();
+                }
+            });
+        }
+        
+        private boolean isCompleted() {
+            synchronized (this) {
+                return this.state == State.COMPLETED;
+            }
+        }
+        
+        private void respond(final Response response) {
+            synchronized (this) {
+                if (this.state != State.IDLE) {
+                    return;
+                }
+                this.state = State.RESPONDING;
+            }
             
-            ServletConnectorResponse.newInstance(servletResponse).populate(
+            try {
+                final Response filteredResponse = this.application.responseFilter().apply(response);
+                final OutputStreamSerializer serializer = 
+                        this.resource.getResponseEntitySerializer(this.request, filteredResponse);
+                
+                if (!isEntityAllowed(this.request, filteredResponse.status())) {
+                    populate(filteredResponse, serializer.contentInfo());
+                    this.complete();
+                } else if (this.nonBlocking) {
+                    final ResponseEntityStream entityStream = 
+                            new ResponseEntityStream(filteredResponse, serializer.contentInfo());
+                    serializer.write(entityStream);
+                    
+                    final EntityOutputStream entity = entityStream.buffer;
+                    if (entity == null) {
+                        // The entity exceeded the buffer and was streamed with blocking writes.
+                        this.complete();
+                        return;
+                    }
+                    
+                    populate(filteredResponse, 
+                            new ContentInfoWrapper(serializer.contentInfo()) {
+                                @Override
+                                public Optional<Long> length() {
+                                    return Optional.of((long) entity.size());
+                                }
+                            });
+                    this.write(entity);
+                } else {
+                    populate(filteredResponse, serializer.contentInfo());
+                    serializer.write(this.servletResponse.getOutputStream());
+                    this.complete();
+                }
+            } catch (final IOException e) {
+                logger.error("", e);
+                this.complete();
+            } catch (final RuntimeException e) {
+                logger.error("", e);
+                if (!this.servletResponse.isCommitted()) {
+                    this.servletResponse.setStatus(Status.SERVER_ERROR_INTERNAL.code());
+                }
+                this.complete();
+            } finally {
+                // Any further writes are made by the WriteListener. Also releases
+                // timeouts waiting on a response which failed with an Error.
+                synchronized (this) {
+                    if (this.state == State.RESPONDING) {
+                        this.state = State.WRITING;
+                        this.notifyAll();
+                    }
+                }
+            }
+        }
+        
+        private void populate(final Response response, final ContentInfo contentInfo) {
+            ServletConnectorResponse.newInstance(this.servletResponse).populate(
                     new ResponseWrapper(response) {
                         @Override
                         public ContentInfo contentInfo() {
-                            return serializer.contentInfo();
+                            return contentInfo;
                         }});
+        }
+        
+        private void write(final EntityOutputStream entity) throws IOException {
+            final ServletOutputStream out = this.servletResponse.getOutputStream();
+            out.setWriteListener(new WriteListener() {
+                private int offset = 0;
+                
+                @Override
+                public void onError(final Throwable exception) {
+                    logger.debug("", exception);
+                    complete();
+                }
+
+                @Override
+                public void onWritePossible() {
+                    try {
+                        while (!isCompleted() && out.isReady()) {
+                            if (this.offset == entity.size()) {
+                                complete();
+                                return;
+                            }
+                            
+                            final int length = Math.min(BUFFER_SIZE, entity.size() - this.offset);
+                            out.write(entity.bytes(), this.offset, length);
+                            this.offset += length;
+                        }
+                    } catch (final IOException e) {
+                        this.onError(e);
+                    }
+                }
+            });
+        }
+        
+        /**
+         * Buffers the response entity up to MAX_NON_BLOCKING_ENTITY_SIZE bytes, so that it can
+         * be written with a WriteListener. Larger entities are written to the servlet's output 
+         * stream with blocking writes as they are serialized, after populating the response.
+         */
+        private final class ResponseEntityStream extends OutputStream {
+            private final Response response;
+            private final ContentInfo contentInfo;
+            
+            // Null once the entity is written to the servlet output stream.
+            private EntityOutputStream buffer = new EntityOutputStream();
+            private OutputStream out = null;
+            
+            private ResponseEntityStream(final Response response, final ContentInfo contentInfo) {
+                this.response = response;
+                this.contentInfo = contentInfo;
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                if (this.out != null) {
+                    this.out.flush();
+                }
+            }
+            
+            private void spill() throws IOException {
+                populate(this.response, this.contentInfo);
+                this.out = servletResponse.getOutputStream();
+                this.out.write(this.buffer.bytes(), 0, this.buffer.size());
+                this.buffer = null;
+            }
+            
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                if ((this.out == null) && (this.buffer.size() + length > MAX_NON_BLOCKING_ENTITY_SIZE)) {
+                    this.spill();
+                }
+                
+                if (this.out != null) {
+                    this.out.write(bytes, offset, length);
+                } else {
+                    this.buffer.write(bytes, offset, length);
+                }
+            }
             
-            if (!request.method().equals(Method.HEAD)) {
-                serializer.write(servletResponse.getOutputStream());
+            @Override
+            public void write(final int b) throws IOException {
+                this.write(new byte[] { (byte) b }, 0, 1);
             }
+        }
+    }
+    
+    private static void flushAndClose(final HttpServletResponse servletResponse) {
+        try {
+            servletResponse.getOutputStream().flush();
+            servletResponse.getOutputStream().close();
         } catch (final IOException e) {
             logger.error("", e);
         }
     }
     
+    private static boolean isEntityAllowed(final Request request, final Status status) {
+        return !request.method().equals(Method.HEAD) &&
+                !status.statusClass().equals(Status.Class.INFORMATIONAL) &&
+                !status.equals(Status.SUCCESS_NO_CONTENT) &&
+                !status.equals(Status.REDIRECTION_NOT_MODIFIED);
+    }
+    
+    // ReadListener and WriteListener were introduced in Servlet 3.1.
+    private static boolean isNonBlockingIoSupported(final ServletContext context) {
+        return context.getMajorVersion() > 3 || 
+                (context.getMajorVersion() == 3 && context.getMinorVersion() >= 1);
+    }
+    
     private static Iterable<Entry<String, String>> servletRequestHeaders(final HttpServletRequest servletRequest) {
         return  new Iterable<Entry<String,String>> () {
             @Override
@@ -155,100 +619,46 @@ public abstract class ServletConnector extends GenericServlet {
     }
 
     protected abstract Function<Request, BioApplication> applicationSupplier();
+
+    /**
+     * Returns the executor which runs application code once a response or request entity is
+     * available: deserializing the request entity, acceptMessage and serializing the response
+     * entity. When absent, the default, this code runs on the thread which completed the
+     * resource's future, or on the container thread which delivered the request entity.
+     * Requests whose tasks are rejected by the executor receive a 503 response.
+     * @see ConnectorExecutors#threadPerTask(int)
+     */
+    protected Optional<Executor> bioExecutor() {
+        return Optional.absent();
+    }
     
+    /**
+     * Returns the timeout in milliseconds of asynchronously processed requests. Requests
+     * which time out receive a 503 response, if the response has not been committed.
+     * A timeout of 0 or less disables the timeout. Defaults to -1.
+     * @see AsyncContext#setTimeout(long)
+     */
     protected long continuationTimeout() {
         return -1;
     }
     
-    private boolean handle(final HttpServletRequest servletRequest, final HttpServletResponse servletResponse) throws InterruptedException, ExecutionException {
-        final BioApplication application;
-        final Request request;
-        final BioResource<?> resource;
-        ListenableFuture<Response> response; 
-        
-        final Object requestAttribute = servletRequest.getAttribute("request");
-        if (requestAttribute == null) {
-            final Request unfilteredRequest = 
-                    Request.parse(
-                            this.uriScheme(), 
-                            servletRequest.getMethod(), 
-                            servletRequestTarget(servletRequest), 
-                            servletRequestHeaders(servletRequest));
-            application = this.applicationSupplier().apply(unfilteredRequest); 
-            request = application.requestFilter().apply(unfilteredRequest);
-            resource = application.getResource(request);
-            response = resource.handle(request);
-        } else { 
-            // Process the continuation
-            application = (BioApplication) Preconditions.checkNotNull(servletRequest.getAttribute("application"));
-            request = (Request) requestAttribute;
-            resource = (BioResource<?>) Preconditions.checkNotNull(servletRequest.getAttribute("resource"));
-            response = Futures.immediateFuture((Response) Preconditions.checkNotNull(servletRequest.getAttribute("response")));      
-        }  
-        
-        if (response.isDone() && response.get().status().equals(Status.INFORMATIONAL_CONTINUE)) {           
-            try {
-                // On jetty calling getInputStream() results in sending
-                // 100-continue to the client
-                final InputStream requestInputStream = servletRequest.getInputStream();
-                final Object message = resource.getRequestEntityDeserializer(request).read(requestInputStream);
-                response = resource.acceptMessage(request, message);
-            } catch (final IOException e) {
-                response = FutureResponses.CLIENT_ERROR_BAD_REQUEST;
-            }
-        }
-        
-        if (response.isDone()) {
-            Response finalResponse = application.responseFilter().apply(response.get());
-            sendResponse(request, finalResponse, servletResponse, resource);
-            return true;
-        } else {
-            final ListenableFuture<Response> futureResponse = response;
-            final Continuation continuation = ContinuationSupport.getContinuation(servletRequest);
-            continuation.suspend();
-            continuation.setTimeout(this.continuationTimeout());
-            continuation.setAttribute("application", application);
-            continuation.setAttribute("request", request);
-            continuation.setAttribute("resource", resource);
-            continuation.addContinuationListener(
-                    new ContinuationListener() {
-                        @Override
-                        public void onComplete(final Continuation jettyContinuation) {
-                            // Do Nothing
-                        }
-
-                        @Override
-                        public void onTimeout(final Continuation jettyContinuation) {
-                            futureResponse.cancel(false);
-                        }
-                    });
-            
-            final FutureCallback<Response> futureCallback = new FutureCallback<Response>() {
-                @Override
-                public void onFailure(final Throwable exception) {
-                    // FIXME: handle all the different cases.
-                    final Response response = 
-                            Response.builder()
-                                .setStatus(Status.SERVER_ERROR_INTERNAL)
-                                .setEntity("The server timed out while processing the request.")
-                                .build();
-                    resume(response);     
-                }
-
-                @Override
-                public void onSuccess(final Response response) {
-                    resume(response);             
-                }        
-                
-                private void resume (final Response response) {
-                    continuation.setAttribute("response", response);
-                    continuation.resume();  
-                }
-            };
-            
-            Futures.addCallback(response, futureCallback);
-            return false;
-        }
+    /**
+     * Returns the maximum size in bytes of request entities buffered by the connector.
+     * Requests with larger entities receive a 413 response. Defaults to 8 MiB.
+     */
+    protected int maxEntitySize() {
+        return DEFAULT_MAX_ENTITY_SIZE;
+    }
+    
+    /**
+     * Returns true if request header values should only be parsed when first 
+     * accessed by the application. Malformed header values then surface as 
+     * exceptions thrown by the Request accessors instead of failing the request 
+     * before it is dispatched. Defaults to false.
+     * @see Request#parseLazily(String, String, String, Iterable)
+     */
+    protected boolean parseHeadersLazily() {
+        return false;
     }
     
     protected boolean printExceptions() {
@@ -256,39 +666,47 @@ public abstract class ServletConnector extends GenericServlet {
     }
     
     private void service(final HttpServletRequest servletRequest, final HttpServletResponse servletResponse) {
-        boolean flushOutput = true;
+        final Exchange exchange;
+        final ListenableFuture<Response> response;
+        
         try {
-            flushOutput = this.handle(servletRequest, servletResponse);
+            final Request unfilteredRequest = this.parseHeadersLazily() ?
+                    Request.parseLazily(
+                            this.uriScheme(), 
+                            servletRequest.getMethod(), 
+                            servletRequestTarget(servletRequest), 
+                            servletRequestHeaders(servletRequest)) :
+                    Request.parse(
+                            this.uriScheme(), 
+                            servletRequest.getMethod(), 
+                            servletRequestTarget(servletRequest), 
+                            servletRequestHeaders(servletRequest));
+            final BioApplication application = this.applicationSupplier().apply(unfilteredRequest); 
+            final Request request = application.requestFilter().apply(unfilteredRequest);
+            final BioResource<?> resource = application.getResource(request);
+            
+            exchange = new Exchange(servletRequest, servletResponse, application, request, resource);
+            response = resource.handle(request);
         } catch (final Throwable e) {
             logger.error("", e);
-           /*
-            final BioApplication defaultApplication = defaultApplication();
-            final Response response;         
-            
-            if (this.printExceptions()) {
-                final StringWriter stringWriter = new StringWriter();
-                e.printStackTrace(new PrintWriter(stringWriter));
-                
-                response = Response.builder()
-                            .setStatus(Status.SERVER_ERROR_INTERNAL)
-                            .setEntity(stringWriter.toString()).build();
+            if (!servletResponse.isCommitted()) {
+                servletResponse.setStatus(Status.SERVER_ERROR_INTERNAL.code());
+            }
+            if (servletRequest.isAsyncStarted()) {
+                servletRequest.getAsyncContext().complete();
             } else {
-                response = Status.SERVER_ERROR_INTERNAL.toResponse();
-            }         
-            
-            final BioResource<?> defaultResource = defaultApplication.getResource(Request.NONE);
-            sendResponse(Request.NONE, defaultApplication.responseFilter().apply(response), 
-                    servletResponse, defaultResource);
-            */
-            flushOutput = true;
+                flushAndClose(servletResponse);
+            }
+            return;
         }
-
-        if (flushOutput) {
+        
+        exchange.handle(response);
+        
+        if (exchange.asyncContext == null) {
             try {
-                servletResponse.getOutputStream().flush();
-                servletResponse.getOutputStream().close();
-            } catch (final IOException e) {
-                logger.error("", e);
+                exchange.awaitCompletion();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import static java.util.Locale.ENGLISH;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The Java bean getters and setters of a class, resolved once per class
+ * and invoked through MethodHandles adapted to an erased signature.
+ * Property lookups are plain map lookups keyed by property name.
+ */
+final class BeanProperties {
+    private static final ClassValue<BeanProperties> CACHE = new ClassValue<BeanProperties>() {
+        @Override
+        protected BeanProperties computeValue(final Class<?> type) {
+            return new BeanProperties(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static enum Conversion {
+        STRING, BOOLEAN, INTEGER, LONG, FLOAT, DOUBLE, LIST, SET;
+
+        private static Conversion forClass(final Class<?> argClass) {
+            if (argClass.equals(String.class)) {
+                return STRING;
+            } else if (argClass.equals(Boolean.class) || argClass.equals(boolean.class)) {
+                return BOOLEAN;
+            } else if (argClass.equals(Integer.class) || argClass.equals(int.class)) {
+                return INTEGER;
+            } else if (argClass.equals(Long.class) || argClass.equals(long.class)) {
+                return LONG;
+            } else if (argClass.equals(Float.class) || argClass.equals(float.class)) {
+                return FLOAT;
+            } else if (argClass.equals(Double.class) || argClass.equals(double.class)) {
+                return DOUBLE;
+            } else if (argClass.isAssignableFrom(List.class)) {
+                return LIST;
+            } else if (argClass.isAssignableFrom(Set.class)) {
+                return SET;
+            }
+            return null;
+        }
+
+        private Object convert(final Iterable<String> value) {
+            switch (this) {
+            case STRING:
+                return Iterables.getFirst(value, "");
+            case BOOLEAN:
+                return Boolean.valueOf(Iterables.getFirst(value, "true"));
+            case INTEGER:
+                return Integer.valueOf(Iterables.getFirst(value, "0"));
+            case LONG:
+                return Long.valueOf(Iterables.getFirst(value, "0"));
+            case FLOAT:
+                return Float.valueOf(Iterables.getFirst(value, "0"));
+            case DOUBLE:
+                return Double.valueOf(Iterables.getFirst(value, "0"));
+            case LIST:
+                return Lists.newLinkedList(value);
+            case SET:
+                return Sets.newLinkedHashSet(value);
+            default:
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private static final class Setter {
+        private final Conversion conversion;
+        private final MethodHandle handle;
+
+        private Setter(final Conversion conversion, final MethodHandle handle) {
+            this.conversion = conversion;
+            this.handle = handle;
+        }
+    }
+
+    static BeanProperties forClass(final Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Registers {@code value} under both the capitalized and decapitalized
+     * forms of the property name so that lookups do not need to
+     * capitalize the requested property.
+     */
+    private static <T> void putProperty(final Map<String, T> map, final String suffix, final T value) {
+        if (!map.containsKey(suffix)) {
+            map.put(suffix, value);
+        }
+
+        final String decapitalized = suffix.substring(0, 1).toLowerCase(ENGLISH) + suffix.substring(1);
+        if (!map.containsKey(decapitalized)) {
+            map.put(decapitalized, value);
+        }
+    }
+
+    private static MethodHandle unreflect(final Method method, final MethodType type) {
+        try {
+            // Allows public methods declared by non-public classes to be invoked.
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(type);
+        } catch (final IllegalAccessException e) {
+            return null;
+        } catch (final SecurityException e) {
+            return null;
+        }
+    }
+
+    private final Map<String, MethodHandle> getters;
+    private final Map<String, Setter> setters;
+
+    private BeanProperties(final Class<?> type) {
+        final Map<String, MethodHandle> getters = Maps.newHashMap();
+        final Map<String, Setter> setters = Maps.newHashMap();
+
+        // FIXME: Boolean getter support
+        for (final Method method : type.getMethods()) {
+            final String name = method.getName();
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+
+            if (method.isBridge() || (name.length() <= 3)) {
+                continue;
+            } else if (name.startsWith("get") && (parameterTypes.length == 0)) {
+                final MethodHandle handle = unreflect(method, GETTER_TYPE);
+                if (handle != null) {
+                    putProperty(getters, name.substring(3), handle);
+                }
+            } else if (name.startsWith("set") && (parameterTypes.length == 1)) {
+                final Conversion conversion = Conversion.forClass(parameterTypes[0]);
+                final MethodHandle handle =
+                        (conversion != null) ? unreflect(method, SETTER_TYPE) : null;
+                if (handle != null) {
+                    putProperty(setters, name.substring(3), new Setter(conversion, handle));
+                }
+            }
+        }
+
+        this.getters = ImmutableMap.copyOf(getters);
+        this.setters = ImmutableMap.copyOf(setters);
+    }
+
+    /**
+     * Invokes the getter of {@code property} on {@code obj}.
+     * @throws NoSuchMethodException if {@code obj} has no getter for {@code property}.
+     * @throws InvocationTargetException if the getter throws an exception.
+     */
+    Object get(final Object obj, final String property)
+            throws NoSuchMethodException, InvocationTargetException {
+        final MethodHandle getter = getters.get(property);
+        if (getter == null) {
+            throw new NoSuchMethodException("get" + property);
+        }
+
+        try {
+            return (Object) getter.invokeExact(obj);
+        } catch (final Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Converts {@code value} to the argument type of the setter of 
+     * {@code property} and invokes the setter on {@code obj}.
+     * @throws NoSuchMethodException if {@code obj} has no usable setter for {@code property}.
+     * @throws InvocationTargetException if the setter throws an exception.
+     * @throws IllegalArgumentException if {@code value} cannot be converted.
+     */
+    void set(final Object obj, final String property, final Iterable<String> value)
+            throws NoSuchMethodException, InvocationTargetException {
+        final Setter setter = setters.get(property);
+        if (setter == null) {
+            throw new NoSuchMethodException("set" + property);
+        }
+
+        final Object arg = setter.conversion.convert(value);
+        try {
+            setter.handle.invokeExact(obj, arg);
+        } catch (final Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+}
@@ -17,33 +17,22 @@
 
 package restlib.impl;
 
-import static java.util.Locale.ENGLISH;
-
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 
 public final class BeanUtils {
-    // From java.beans.NameGenerator
-    private static String capitalize(final String name) {
-        if ((name == null) || (name.length() == 0)) {
-            return name;
-        }
-        return name.substring(0, 1).toUpperCase(ENGLISH) + name.substring(1);
-    }
-
+    /**
+     * Invokes the getter of {@code param} on {@code obj}. Getters are resolved
+     * once per class and cached.
+     */
     public static Object getProperty(final Object obj,
             final String param)
                             throws
@@ -52,19 +41,7 @@ public final class BeanUtils {
         Preconditions.checkNotNull(obj);
         Preconditions.checkNotNull(param);
 
-        final Method[] methods = obj.getClass().getMethods();
-
-        // FIXME: Boolean getter support
-        final String methodName = "get" + capitalize(param);
-        for (final Method method : methods) {
-            method.setAccessible(true);
-            if (method.getName().equals(methodName) &&
-                    (method.getParameterTypes().length == 0)) {
-                return method.invoke(obj);
-            }
-        }
-
-        throw new NoSuchMethodException();
+        return BeanProperties.forClass(obj.getClass()).get(obj, param);
     }
 
     public static Iterable<String> getPropertyAsIterable(final Object obj,
@@ -177,6 +154,10 @@ public final class BeanUtils {
         }
     }
 
+    /**
+     * Invokes the setter of {@code param} on {@code obj}, converting {@code value}
+     * to the setter's argument type. Setters are resolved once per class and cached.
+     */
     public static void setProperty(
             final Object obj,
             final String param,
@@ -187,67 +168,11 @@ public final class BeanUtils {
         Preconditions.checkNotNull(param);
         Preconditions.checkNotNull(value);
 
-        if (Iterables.size(value) == 0) {
+        if (Iterables.isEmpty(value)) {
             return;
         }
 
-        final Method[] methods = obj.getClass().getMethods();
-        final String methodName = "set" + capitalize(param);
-
-        // FIXME: Should we depend upon autoboxing?
-        for (final Method method : methods) {
-            method.setAccessible(true);
-            if (method.getName().equals(methodName) &&
-                    (method.getParameterTypes().length == 1)) {
-                final Class<?> argClass = method.getParameterTypes()[0];
-
-                if (argClass.equals(value.getClass())) {
-                    method.invoke(obj, value);
-                    return;
-                } else if (argClass.equals(String.class)) {
-                    method.invoke(obj, Iterables.getFirst(value, ""));
-                    return;
-                } else if (argClass.equals(Boolean.class) ||
-                    argClass.equals(boolean.class)) {
-                    method.invoke(obj,
-                            Boolean.getBoolean(
-                                    Iterables.getFirst(value, "true")));
-                    return;
-                } else if (argClass.equals(Integer.class) ||
-                    argClass.equals(int.class)) {
-                    method.invoke(obj,
-                            Integer.valueOf(
-                                    Iterables.getFirst(value, "0")));
-                    return;
-                } else if (argClass.equals(Long.class) ||
-                    argClass.equals(long.class)) {
-                    method.invoke(obj,
-                            Long.valueOf(
-                                    Iterables.getFirst(value, "0")));
-                    return;
-                } else if (argClass.equals(Float.class) ||
-                    argClass.equals(float.class)) {
-                    method.invoke(obj,
-                            Float.valueOf(
-                                    Iterables.getFirst(value, "0")));
-                    return;
-                } else if (argClass.equals(Double.class) ||
-                    argClass.equals(double.class)) {
-                    method.invoke(obj,
-                            Double.valueOf(
-                                    Iterables.getFirst(value, "0")));
-                    return;
-                } else if (argClass.isAssignableFrom(List.class)) {
-                    method.invoke(obj,
-                             Lists.newLinkedList(value));
-                } else if (argClass.isAssignableFrom(Set.class)) {
-                    method.invoke(obj,
-                            Sets.newLinkedHashSet(value));
-                }
-            }
-        }
-
-        throw new NoSuchMethodException();
+        BeanProperties.forClass(obj.getClass()).set(obj, param, value);
     }
 
     private BeanUtils() {
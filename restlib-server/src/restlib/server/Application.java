@@ -47,8 +47,9 @@ public interface Application {
     public Function<Response, Response> responseFilter();
     
     /**
-     * Retrieve the first resource which has a Route that matches the 
-     * Request's URI.
+     * Retrieve the resource whose Route most specifically matches the 
+     * Request's URI. Literal path segments take precedence over 
+     * parameter segments, which take precedence over glob segments.
      * @param request A filtered client Request.
      * @return The Resource to be used to handle the Request.
      */
@@ -36,6 +36,7 @@ public final class ApplicationBuilder {
         ImmutableList.builder(); 
     final ImmutableSet.Builder<Resource> resources = ImmutableSet.builder();
     Resource errorResource = Resources.NOT_FOUND;
+    boolean recordFilterStatistics = false;
     
     private ApplicationBuilder() {
     }
@@ -47,8 +48,6 @@ public final class ApplicationBuilder {
     }
     
     public ApplicationBuilder addResource(final Resource resource){
-        // FIXME: Should keep an internal set of resource routes and guarantee that
-        // the same route isn't added twice. 
         Preconditions.checkNotNull(resource);
         this.resources.add(resource);
         return this;
@@ -60,6 +59,13 @@ public final class ApplicationBuilder {
         return this;
     }
     
+    /**
+     * Builds a new Application, compiling the Routes of all added resources
+     * into a single routing table. The request and response filters are each
+     * composed into a single {@link FilterPipeline}, in the order they were added.
+     * @throws IllegalStateException if the Routes of two different resources 
+     * are ambiguous, for instance {@code /a/:b} and {@code /a/:c}.
+     */
     public Application build() {
         return new ApplicationImpl(this);
     } 
@@ -69,4 +75,13 @@ public final class ApplicationBuilder {
         this.errorResource = resource;
         return this;
     }
+    
+    /**
+     * Sets whether the request and response {@link FilterPipeline}s of built 
+     * Applications record the statistics of each filter. Disabled by default.
+     */
+    public ApplicationBuilder setRecordFilterStatistics(final boolean recordFilterStatistics) {
+        this.recordFilterStatistics = recordFilterStatistics;
+        return this;
+    }
 }
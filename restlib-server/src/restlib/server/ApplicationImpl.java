@@ -17,8 +17,6 @@
 
 package restlib.server;
 
-import java.util.List;
-
 import restlib.Request;
 import restlib.Response;
 
@@ -26,40 +24,26 @@ import com.google.common.base.Function;
 
 
 final class ApplicationImpl implements Application{
-    private final List<Function<Request,Request>> requestFilters;
-    private final List<Function<Response,Response>> responseFilters;
+    private final FilterPipeline<Request> requestFilter;
+    private final FilterPipeline<Response> responseFilter;
     private final Router router;
     
     ApplicationImpl(final ApplicationBuilder builder) {
         this.router = Router.of(builder.resources.build(), builder.errorResource);
-        this.requestFilters = builder.requestFiltersBuilder.build();
-        this.responseFilters = builder.responseFiltersBuilder.build();
+        this.requestFilter = FilterPipeline.of(
+                builder.requestFiltersBuilder.build(), builder.recordFilterStatistics);
+        this.responseFilter = FilterPipeline.of(
+                builder.responseFiltersBuilder.build(), builder.recordFilterStatistics);
     }
     
     @Override
-    public Function<Request, Request> requestFilter() {
-        return new Function<Request, Request>() {
-            @Override
-            public Request apply(Request request) {
-                for (final Function<Request,Request> requestFilter : requestFilters){
-                    request = requestFilter.apply(request);
-                }      
-                return request;
-            }
-        };
+    public FilterPipeline<Request> requestFilter() {
+        return this.requestFilter;
     }
     
     @Override
-    public Function<Response, Response> responseFilter() {
-        return new Function<Response, Response>() {
-            @Override
-            public Response apply(Response response) {
-                for (final Function<Response, Response> responseFilter : responseFilters){
-                    response = responseFilter.apply(response);
-                }
-                return response;
-            }
-        };
+    public FilterPipeline<Response> responseFilter() {
+        return this.responseFilter;
     }
     
     @Override
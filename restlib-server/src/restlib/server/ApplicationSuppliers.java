@@ -23,10 +23,14 @@ import restlib.Request;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.InternetDomainName;
 
 public final class ApplicationSuppliers {
+    private static final int DEFAULT_HOST_CACHE_SIZE = 1024;
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static <T extends Application> Function<Request, T> constant(final T application) {
@@ -34,26 +38,67 @@ public final class ApplicationSuppliers {
         return (Function) Functions.constant(application);
     }
 
+    /**
+     * Returns a Function which selects an Application based upon the host 
+     * of the Request URI, using a host cache with a default maximum size.
+     * @see #virtualHosts(Map, Application, int)
+     */
     public static <T extends Application> Function<Request, T> virtualHosts(
             final Map<InternetDomainName, T> hostMap, final T defaultApplication) {
+        return virtualHosts(hostMap, defaultApplication, DEFAULT_HOST_CACHE_SIZE);
+    }
+    
+    /**
+     * Returns a Function which selects an Application based upon the host 
+     * of the Request URI. 
+     * 
+     * <p>Hosts which exactly match the canonical form of a domain in 
+     * {@code hostMap} are resolved from a table built when this method is 
+     * called. Any other host is parsed once and its resolved Application,
+     * including {@code defaultApplication} for unknown or invalid hosts, is 
+     * kept in a concurrent cache bounded to {@code maximumCacheSize} entries.</p>
+     * 
+     * @throws NullPointerException if {@code hostMap} or {@code defaultApplication} are null.
+     * @throws IllegalArgumentException if {@code maximumCacheSize} is negative.
+     */
+    public static <T extends Application> Function<Request, T> virtualHosts(
+            final Map<InternetDomainName, T> hostMap, final T defaultApplication, final int maximumCacheSize) {
         Preconditions.checkNotNull(hostMap);
         Preconditions.checkNotNull(defaultApplication);
+        Preconditions.checkArgument(maximumCacheSize >= 0);
 
         final Function<InternetDomainName, T> applications = 
                 Functions.forMap(
                         ImmutableMap.copyOf(hostMap), defaultApplication);
+        
+        final ImmutableMap.Builder<String, T> exactMatchesBuilder = ImmutableMap.builder();
+        for (final Map.Entry<InternetDomainName, T> entry : hostMap.entrySet()) {
+            exactMatchesBuilder.put(entry.getKey().toString(), entry.getValue());
+        }
+        final Map<String, T> exactMatches = exactMatchesBuilder.build();
+        
+        final LoadingCache<String, T> hosts = 
+                CacheBuilder.newBuilder()
+                    .maximumSize(maximumCacheSize)
+                    .build(new CacheLoader<String, T>() {
+                        @Override
+                        public T load(final String host) {
+                            try {
+                                return applications.apply(InternetDomainName.from(host));
+                            } catch (final IllegalArgumentException e) {
+                                return defaultApplication;
+                            }
+                        }                   
+                    });
 
         return new Function<Request, T>() {
             @Override
             public T apply(final Request request) {
                 Preconditions.checkNotNull(request);
-                try {
-                    final InternetDomainName domain = 
-                            InternetDomainName.from(request.uri().host());
-                    return applications.apply(domain);
-                } catch (final IllegalArgumentException e) {
-                    return defaultApplication;
-                }
+                
+                final String host = request.uri().host();
+                final T application = exactMatches.get(host);
+                return (application != null) ? application : hosts.getUnchecked(host);
             }
         };
     }
@@ -17,10 +17,10 @@
 
 package restlib.server;
 
-import java.util.Map;
-
 import restlib.net.Path;
 
+import com.google.common.collect.ImmutableList;
+
 final class ComposableRoute extends Route {
     private final Route first;
     private final Route second;
@@ -31,13 +31,9 @@ final class ComposableRoute extends Route {
     }
 
     @Override
-    public Map<String, String> getParameters(final Path path) {
-        try {
-            return first.getParameters(path);
-        } catch (final IllegalArgumentException e) {
-        }
-
-        return second.getParameters(path);
+    void compile(final RouteTrie.Builder builder, final Resource resource, final ImmutableList<Route> exclusions) {
+        first.compile(builder, resource, exclusions);
+        second.compile(builder, resource, exclusions);
     }
 
     @Override
@@ -57,13 +53,8 @@ final class ComposableRoute extends Route {
     }
 
     @Override
-    public void populateObject(Path path, Object obj) {
-        try {
-            first.populateObject(path, obj);
-            return;
-        } catch (final IllegalArgumentException e) {
-        }
-
-        second.populateObject(path, obj);
+    public RouteMatch tryMatch(final Path path) {
+        final RouteMatch match = first.tryMatch(path);
+        return match.isMatch() ? match : second.tryMatch(path);
     }
 }
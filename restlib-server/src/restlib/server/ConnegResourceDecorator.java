@@ -17,7 +17,9 @@
 
 package restlib.server;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import restlib.Request;
 import restlib.Response;
@@ -26,26 +28,53 @@ import restlib.data.Header;
 import restlib.data.HttpHeaders;
 import restlib.data.MediaRange;
 import restlib.data.Method;
+import restlib.data.NegotiationIndex;
 import restlib.data.Preference;
 import restlib.data.Status;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
+/**
+ * A Resource decorator which negotiates the media range of request and response entities.
+ * Negotiation outcomes are cached per resource, keyed by the request's accepted media ranges 
+ * and content media range, so {@link #acceptedMediaRanges()} and {@link #supportedMediaRanges()} 
+ * must return the same values on every call.
+ */
 // FIXME: Support charset, language, etc. conneg.
 public abstract class ConnegResourceDecorator extends ResourceWrapper implements ConnegResource {
+    private static final int MAXIMUM_NEGOTIATION_CACHE_SIZE = 256;
+    
+    private static final Set<Header> VARY = ImmutableSet.of(HttpHeaders.ACCEPT);
+    
+    private static final Response NOT_ACCEPTABLE = 
+            Response.builder()
+                .setStatus(Status.CLIENT_ERROR_NOT_ACCEPTABLE)
+                .addVaryHeaders(VARY)
+                .build();
+    
+    private static final Response UNSUPPORTED_MEDIA_TYPE = 
+            Response.builder()
+                .setStatus(Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE)
+                .addVaryHeaders(VARY)
+                .build();
+    
     private static final class ConnegResponse extends ResponseWrapper {  
-        private final Set<Header> vary = 
-                ImmutableSet.<Header> builder()
-                    .addAll(super.vary())
-                    .add(HttpHeaders.ACCEPT)
-                    .build();
+        private final Set<Header> vary;
         
         private ConnegResponse(final Response delegate) {
             super(delegate);
+            
+            final Set<Header> delegateVary = delegate.vary();
+            this.vary = delegateVary.isEmpty() ? 
+                    VARY : ImmutableSet.copyOf(Sets.union(delegateVary, VARY));
         }
         
         @Override 
@@ -53,6 +82,56 @@ public abstract class ConnegResourceDecorator extends ResourceWrapper implements
             return this.vary;
         }
     }
+    
+    private static final class NegotiationKey {
+        // Ordered, since ties between equal quality preferences are broken
+        // by the order in which the client listed them.
+        private final List<Preference<MediaRange>> acceptedMediaRanges;
+        private final Optional<MediaRange> contentMediaRange;
+        
+        private NegotiationKey(final Request request) {
+            this.acceptedMediaRanges = 
+                    ImmutableList.copyOf(request.preferences().acceptedMediaRanges());
+            this.contentMediaRange = request.contentInfo().mediaRange();
+        }
+        
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof NegotiationKey) {
+                final NegotiationKey that = (NegotiationKey) obj;
+                return this.acceptedMediaRanges.equals(that.acceptedMediaRanges) &&
+                        this.contentMediaRange.equals(that.contentMediaRange);
+            }
+            return false;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.acceptedMediaRanges, this.contentMediaRange);
+        }
+    }
+    
+    private static final class Negotiation {
+        private final boolean messageSupported;
+        private final Optional<MediaRange> responseMediaRange;
+        
+        private Negotiation(final boolean messageSupported, final Optional<MediaRange> responseMediaRange) {
+            this.messageSupported = messageSupported;
+            this.responseMediaRange = responseMediaRange;
+        }
+    }
+    
+    private final ConcurrentMap<NegotiationKey, Negotiation> negotiations =
+            CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_NEGOTIATION_CACHE_SIZE)
+                .<NegotiationKey, Negotiation> build()
+                .asMap();
+    
+    // Created on first use. Racing threads create equal values.
+    private ImmutableList<MediaRange> acceptedMediaRangesCopy = null;
+    private NegotiationIndex<MediaRange> supportedMediaRangesIndex = null;
 
     protected ConnegResourceDecorator(final Resource delegate) {
         super(delegate);
@@ -86,26 +165,21 @@ public abstract class ConnegResourceDecorator extends ResourceWrapper implements
                             return response;
                         } 
                         
+                        final Negotiation negotiation = negotiate(request);
+                        
                         // Determine if the resource supports the request entity
-                        else if (
+                        if (
                                 (request.method().equals(Method.POST) || 
                                         request.method().equals(Method.PUT) ||
                                         request.method().equals(Method.PATCH)) &&
-                                !messageSupported(request)) {
-                            
-                            return Response.builder()
-                                    .setStatus(Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE)
-                                    .addVaryHeader(HttpHeaders.ACCEPT)
-                                    .build();
+                                !negotiation.messageSupported) {
+                            return UNSUPPORTED_MEDIA_TYPE;
                         } 
                       
                         // Determine if the resource supports a response content type supported
                         // by the client
-                        else if (!responseContentTypeSupported(request)) {
-                            return Response.builder()
-                                    .setStatus(Status.CLIENT_ERROR_NOT_ACCEPTABLE)
-                                    .addVaryHeader(HttpHeaders.ACCEPT)
-                                    .build();
+                        else if (!negotiation.responseMediaRange.isPresent()) {
+                            return NOT_ACCEPTABLE;
                         } else if (status.statusClass().equals(Status.Class.INFORMATIONAL)){
                             return response;
                         } else {
@@ -114,14 +188,23 @@ public abstract class ConnegResourceDecorator extends ResourceWrapper implements
                     }             
                 }); 
     }
-
+    
+    private ImmutableList<MediaRange> acceptedMediaRangesCopy() {
+        ImmutableList<MediaRange> retval = this.acceptedMediaRangesCopy;
+        if (retval == null) {
+            retval = ImmutableList.copyOf(this.acceptedMediaRanges());
+            this.acceptedMediaRangesCopy = retval;
+        }
+        return retval;
+    }
+    
     private boolean messageSupported(final Request request) {
         final Optional<MediaRange> contentMediaRange = request.contentInfo().mediaRange();
         
         if (contentMediaRange.isPresent()) {    
             // Find accepted MediaRange that has any level of match with 
             // the content MediaRange.
-            for (final MediaRange mediaRange : this.acceptedMediaRanges()) {
+            for (final MediaRange mediaRange : this.acceptedMediaRangesCopy()) {
                 if (mediaRange.match(contentMediaRange.get()) > 0) {
                     return true;
                 }
@@ -130,16 +213,44 @@ public abstract class ConnegResourceDecorator extends ResourceWrapper implements
         
         return false;
     }
-
-    private boolean responseContentTypeSupported(
-            final Request request) {
-        final Optional<MediaRange> mediaRange =
-                Preference.<MediaRange> bestMatch(
-                        request.preferences().acceptedMediaRanges(),
-                        this.supportedMediaRanges());
-
-        return mediaRange.isPresent(); 
+    
+    private Negotiation negotiate(final Request request) {
+        final NegotiationKey key = new NegotiationKey(request);
+        Negotiation retval = this.negotiations.get(key);
+        if (retval == null) {
+            retval = new Negotiation(
+                    messageSupported(request), 
+                    this.supportedMediaRangesIndex().bestMatch(
+                            request.preferences().acceptedMediaRanges()));
+            this.negotiations.put(key, retval);
+        }
+        return retval;
+    }
+    
+    /**
+     * Returns the supported media range which best matches the media ranges accepted
+     * by {@code request}, if any.
+     * @throws NullPointerException if {@code request} is null.
+     */
+    protected final Optional<MediaRange> responseMediaRange(final Request request) {
+        return negotiate(request).responseMediaRange;
     }
 
     public abstract Iterable<MediaRange> supportedMediaRanges();
+    
+    private NegotiationIndex<MediaRange> supportedMediaRangesIndex() {
+        NegotiationIndex<MediaRange> retval = this.supportedMediaRangesIndex;
+        if (retval == null) {
+            retval = NegotiationIndex.mediaRanges(this.supportedMediaRanges());
+            this.supportedMediaRangesIndex = retval;
+        }
+        return retval;
+    }
+    
+    /**
+     * Returns the headers added to the Vary header of negotiated responses.
+     */
+    public final Set<Header> vary() {
+        return VARY;
+    }
 }
@@ -17,10 +17,10 @@
 
 package restlib.server;
 
-import java.util.Map;
-
 import restlib.net.Path;
 
+import com.google.common.collect.ImmutableList;
+
 final class ExcludingRoute extends Route {
     private final Route delegate;
     private final Route excluded;
@@ -31,16 +31,23 @@ final class ExcludingRoute extends Route {
     }
 
     @Override
-    public Map<String, String> getParameters(final Path path) {
-        if (excluded.match(path)) {
-            throw new IllegalArgumentException();
-        }
-        
-        return delegate.getParameters(path);
+    void compile(final RouteTrie.Builder builder, final Resource resource, final ImmutableList<Route> exclusions) {
+        delegate.compile(builder, resource, 
+                ImmutableList.<Route> builder().addAll(exclusions).add(excluded).build());
+    }
+
+    @Override
+    public boolean match(final Path path) {
+        return !excluded.match(path) && delegate.match(path);
     }
 
     @Override
     public Path objectToPath(final Object obj) {
         return delegate.objectToPath(obj);
     }
+
+    @Override
+    public RouteMatch tryMatch(final Path path) {
+        return excluded.match(path) ? RouteMatch.NO_MATCH : delegate.tryMatch(path);
+    }
 }
@@ -31,7 +31,6 @@ import restlib.data.Preference;
 import restlib.net.Path;
 import restlib.net.Uri;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
@@ -57,7 +56,7 @@ import com.google.common.collect.Iterables;
  * of the request with the media range corresponding to the extension.
  *       
  */
-final class ExtensionRequestFilter implements Function<Request,Request> {
+final class ExtensionRequestFilter implements GuardedFilter<Request> {
     private static final ExtensionRequestFilter DEFAULT = ExtensionRequestFilter.newInstance(ExtensionMap.DEFAULT_EXTENSIONS);
 
     private static final Pattern EXT_PATTERN = Pattern.compile("(.*?)(\\.([^\\.]+$))?");
@@ -86,14 +85,20 @@ final class ExtensionRequestFilter implements Function<Request,Request> {
         this.extensionMap = extensionMap;
     }
 
+    @Override
+    public boolean appliesTo(final Request request) {
+        final Path path = request.uri().path();
+        return !path.isEmpty() && path.get(path.size() - 1).indexOf('.') >= 0;
+    }
+    
     /* (non-Javadoc)
      * @see restlib.RequestFilter#apply(restlib.Request)
      */
     public Request apply(final Request request) {
         final Uri uri = request.uri();
         final Path path = uri.path();
-        final int pathSize = Iterables.size(path.segments());
-        final String lastPathSegment = Iterables.getLast(path.segments(), "");
+        final int pathSize = path.size();
+        final String lastPathSegment = path.isEmpty() ? "" : path.get(pathSize - 1);
 
         
         final Matcher m = EXT_PATTERN.matcher(lastPathSegment);
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import com.google.common.base.Function;
+
+/**
+ * A request or response filter with a cheap test for whether it can change its input.
+ * A {@link FilterPipeline} only applies the filter to inputs for which
+ * {@link #appliesTo(Object)} returns true, and passes other inputs through unchanged.
+ */
+public interface GuardedFilter<T> extends Function<T, T> {
+    /**
+     * Returns false if applying this filter to {@code input} would return {@code input}
+     * unchanged. Implementations should be much cheaper than {@link #apply(Object)}.
+     */
+    public boolean appliesTo(T input);
+}
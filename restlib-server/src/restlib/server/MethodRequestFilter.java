@@ -5,20 +5,23 @@ import restlib.RequestWrapper;
 import restlib.data.ExtensionHeaders;
 import restlib.data.Method;
 
-import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 
-final class MethodRequestFilter implements Function<Request, Request> {
+final class MethodRequestFilter implements GuardedFilter<Request> {
 
     public MethodRequestFilter() {
     }
     
+    @Override
+    public boolean appliesTo(final Request request) {
+        // Method override is only allowed for POST
+        return request.method().equals(Method.POST) &&
+                request.customHeaders().containsKey(ExtensionHeaders.X_HTTP_METHOD_OVERRIDE);
+    }
+    
     @Override
     public Request apply(final Request request) {
-        if (!request.method().equals(Method.POST)) {
-            // Method override is only allowed for POST
-            return request;
-        } else if (!request.customHeaders().containsKey(ExtensionHeaders.X_HTTP_METHOD_OVERRIDE)) {
+        if (!this.appliesTo(request)) {
             return request;
         }
         
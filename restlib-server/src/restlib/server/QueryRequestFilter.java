@@ -56,7 +56,6 @@ import restlib.data.Via;
 import restlib.net.EmailAddress;
 import restlib.net.Uri;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -66,7 +65,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
-final class QueryRequestFilter implements Function<Request, Request> {       
+final class QueryRequestFilter implements GuardedFilter<Request> {       
     private static Request withHeaders(
     		final Request request, 
     		final Method method,
@@ -379,6 +378,11 @@ final class QueryRequestFilter implements Function<Request, Request> {
         this.allowedHeaders = allowedHeaders;
     }
     
+    @Override
+    public boolean appliesTo(final Request request) {
+        return !request.uri().query().isEmpty();
+    }
+    
     @Override
     public Request apply(final Request request) {
         Preconditions.checkNotNull(request);
@@ -414,6 +418,10 @@ final class QueryRequestFilter implements Function<Request, Request> {
             return request;
         }
         
+        if (headers.isEmpty()) {
+            return request;
+        }
+        
         // Special case for X_HTTP_METHOD_OVERRIDE
         final Method method;   
         if (headers.containsKey(ExtensionHeaders.X_HTTP_METHOD_OVERRIDE) && 
@@ -18,9 +18,6 @@
 package restlib.server;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import restlib.impl.BeanUtils;
@@ -29,15 +26,14 @@ import restlib.net.Path;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 final class RailsRoute extends Route {    
-    private static boolean isGlob(final String segment) {
+    static boolean isGlob(final String segment) {
         return segment.startsWith("*");
     }
     
-    private static boolean isParameter(final String segment) {
+    static boolean isParameter(final String segment) {
         return segment.startsWith(":");
     }
     
@@ -48,10 +44,29 @@ final class RailsRoute extends Route {
         return segment.substring(1, segment.length());
     }
     
+    /**
+     * Maps each named parameter in {@code route} to the index of its segment.
+     */
+    private static ImmutableMap<String, Integer> parameterIndexes(final Path route) {
+        final ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < route.size(); i++) {
+            final String segment = route.get(i);
+            if ((isParameter(segment) || isGlob(segment)) && !key(segment).isEmpty()) {
+                builder.put(key(segment), i);
+            }
+        }
+        return builder.build();
+    }
+    
+    // Returned by match when bounds are not recorded.
+    private static final int[] MATCHED = new int[0];
+    
     private final Path route;
+    private final ImmutableMap<String, Integer> parameterIndexes;
     
     RailsRoute(final Path route) {
         this.route = checkRoute(route);
+        this.parameterIndexes = parameterIndexes(route);
     }
 
     private Path checkRoute(final Path route) {
@@ -88,57 +103,71 @@ final class RailsRoute extends Route {
     }
     
     @Override
-    public Map<String, String> getParameters(final Path path) {
-        Preconditions.checkNotNull(path); 
-        final ImmutableMap.Builder<String,String> builder = ImmutableMap.builder();
-        
-        final Iterator<String> pathSegments = path.canonicalize().segments().iterator();
-        final Iterator<String> routeSegments = route.segments().iterator();
+    void compile(final RouteTrie.Builder builder, final Resource resource, final ImmutableList<Route> exclusions) {
+        builder.add(route.segments(), resource, exclusions);
+    }
+    
+    @Override
+    public boolean match(final Path path) {
+        Preconditions.checkNotNull(path);
+        return match(0, path.canonicalize(), 0, false) != null;
+    }
+    
+    /**
+     * Matches the route segments starting at {@code routeIndex} against the 
+     * path segments starting at {@code pathIndex}. Parameters match exactly one 
+     * path segment while globs match one or more path segments, preferring
+     * the shortest match. Returns null if the segments do not match. Otherwise
+     * when {@code recordBounds} is true, returns an array in which the start and 
+     * end path index of each route segment are recorded, or else an empty array.
+     */
+    private int[] match(final int routeIndex, final Path path, final int pathIndex, final boolean recordBounds) {
+        if (routeIndex == route.size()) {
+            if (pathIndex != path.size()) {
+                return null;
+            }
+            // Only allocated once the whole route has matched, so misses allocate nothing.
+            return recordBounds ? new int[2 * route.size()] : MATCHED;
+        } else if (pathIndex == path.size()) {
+            return null;
+        }
         
-        while(routeSegments.hasNext() && pathSegments.hasNext()) {
-            final String routeSegment = routeSegments.next();
-            final String pathSegment = pathSegments.next();
-            
-            if (isParameter(routeSegment)) {
-                builder.put(key(routeSegment), pathSegment);
-            } else if (isGlob(routeSegment)) {
-                String stopSegment = "";   
-                int parameterCount = 0;
-                
-                while(routeSegments.hasNext()) {
-                    final String nextRouteSegment = routeSegments.next();
-                    
-                    if (!isParameter(nextRouteSegment)) {
-                        stopSegment = nextRouteSegment;
-                        break;
-                    }
-                    
-                    parameterCount++;
-                }            
-                
-                final List<String> globSegments = 
-                        Lists.newArrayList();              
-                globSegments.add(".");
-                
-                while(pathSegments.hasNext()) {
-                    final String segment = pathSegments.next();
-                    if (segment.equals(stopSegment)) { break; }                 
-                    globSegments.add(segment);
-                }
-                
-                // Only add if the key is not empty
-                final String key = key(routeSegment);
-                if (!key.isEmpty()) {
-                    builder.put(key, 
-                        Path.copyOf(globSegments.subList(0, globSegments.size() - parameterCount)).toString());              
+        final String routeSegment = route.get(routeIndex);
+        if (isGlob(routeSegment)) {
+            for (int end = pathIndex + 1; end <= path.size(); end++) {
+                final int[] bounds = match(routeIndex + 1, path, end, recordBounds);
+                if (bounds != null) {
+                    return record(bounds, routeIndex, pathIndex, end);
                 }
-            } else {
-                Preconditions.checkArgument(routeSegment.equals(pathSegment));
+            }
+        } else if (isParameter(routeSegment) || routeSegment.equals(path.get(pathIndex))) {
+            final int[] bounds = match(routeIndex + 1, path, pathIndex + 1, recordBounds);
+            if (bounds != null) {
+                return record(bounds, routeIndex, pathIndex, pathIndex + 1);
             }
         }
         
-        Preconditions.checkArgument(!pathSegments.hasNext());  
-        return builder.build();
+        return null;
+    }
+    
+    private static int[] record(final int[] bounds, final int routeIndex, final int start, final int end) {
+        if (bounds.length > 0) {
+            bounds[2 * routeIndex] = start;
+            bounds[2 * routeIndex + 1] = end;
+        }
+        return bounds;
+    }
+    
+    @Override
+    public RouteMatch tryMatch(final Path path) {
+        Preconditions.checkNotNull(path); 
+        
+        final Path canonical = path.canonicalize();
+        final int[] bounds = match(0, canonical, 0, !parameterIndexes.isEmpty());
+        if (bounds == null) {
+            return RouteMatch.NO_MATCH;
+        }
+        return new RouteMatch(canonical, parameterIndexes, bounds);
     }
     
     @Override
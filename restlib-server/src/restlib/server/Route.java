@@ -23,16 +23,17 @@ import restlib.impl.BeanUtils;
 import restlib.net.Path;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 public abstract class Route {
     public static final Route NONE = new Route() {
-        public boolean equals(final Object obj) {
-            return this == obj;
+        @Override
+        void compile(final RouteTrie.Builder builder, final Resource resource, final ImmutableList<Route> exclusions) {
+            // Matches nothing
         }
         
-        @Override
-        public Map<String, String> getParameters(final Path path) {
-            throw new IllegalArgumentException("Path does not match route");
+        public boolean equals(final Object obj) {
+            return this == obj;
         }
         
         @Override
@@ -41,8 +42,8 @@ public abstract class Route {
         }
 
         @Override
-        public boolean match(final Path path) {
-            return false;
+        public RouteMatch tryMatch(final Path path) {
+            return RouteMatch.NO_MATCH;
         }
 
         @Override
@@ -82,6 +83,13 @@ public abstract class Route {
     
     Route(){}
     
+    /**
+     * Adds the path patterns matched by this Route to {@code builder}, 
+     * dispatching to {@code resource} unless one of {@code exclusions}
+     * also matches the request path.
+     */
+    abstract void compile(RouteTrie.Builder builder, Resource resource, ImmutableList<Route> exclusions);
+    
     public final Route exclude(final Route excluded) {
         return new ExcludingRoute(this, excluded);
     }
@@ -92,7 +100,11 @@ public abstract class Route {
      * @throws NullPointerException If {@code uri} is {@code null}.
      * @throws IllegalArgumentException if {@code uri} does not match this route.
      */
-    public abstract Map<String, String> getParameters(final Path path);
+    public Map<String, String> getParameters(final Path path) {
+        final RouteMatch match = tryMatch(path);
+        Preconditions.checkArgument(match.isMatch(), "Path does not match route");
+        return match.parameters();
+    }
     
     /**
      * Used to determine if this Route pattern matches the path in {@code uri}.
@@ -100,12 +112,7 @@ public abstract class Route {
      * @return True if this {@code Route} matches the URI path. Otherwise false.
      */
     public boolean match(final Path path) {
-        try {
-            getParameters(path);
-            return true;
-        } catch (final IllegalArgumentException e) {
-            return false;
-        }
+        return tryMatch(path).isMatch();
     }
     
     /**
@@ -115,6 +122,15 @@ public abstract class Route {
      */
     public abstract Path objectToPath(final Object obj);
     
+    /**
+     * Matches {@code path} against this Route without throwing an exception
+     * if the path does not match.
+     * @return The matched parameters, or {@link RouteMatch#NO_MATCH} if 
+     * {@code path} does not match this Route.
+     * @throws NullPointerException If {@code path} is {@code null}.
+     */
+    public abstract RouteMatch tryMatch(final Path path);
+    
     /**
      * Attempts to populate the object {@code obj} via reflection
      * with the parameters in the Uri Path using Java bean setXXX functions.
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import java.util.Map;
+
+import restlib.net.Path;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The result of matching a {@code Path} against a {@code Route}. Failed
+ * matches are represented by the {@link #NO_MATCH} singleton, so testing
+ * a Route which does not match a Path neither throws nor allocates.
+ *
+ * <p>A successful match only records the bounds of each parameter within the
+ * segments of the canonical path. Parameter values are not extracted until
+ * they are read.</p>
+ */
+public final class RouteMatch {
+    /**
+     * The result of matching a Path against a Route that does not match it.
+     */
+    public static final RouteMatch NO_MATCH =
+            new RouteMatch(Path.of(), ImmutableMap.<String, Integer> of(), new int[0]);
+
+    private final Path path;
+    private final Map<String, Integer> indexes;
+    private final int[] bounds;
+
+    /**
+     * @param path The canonical path that was matched.
+     * @param indexes Maps each parameter key to its index within {@code bounds}.
+     * @param bounds Pairs of start and end segment indexes within {@code path}.
+     */
+    RouteMatch(final Path path, final Map<String, Integer> indexes, final int[] bounds) {
+        this.path = path;
+        this.indexes = indexes;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Returns the value of the parameter {@code key} if present. Glob parameters
+     * which matched several path segments are returned joined by the '/' character.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalStateException if this is not a match.
+     */
+    public Optional<String> get(final String key) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkState(isMatch(), "Path does not match route");
+
+        final Integer index = indexes.get(key);
+        return (index != null) ? Optional.of(value(index)) : Optional.<String> absent();
+    }
+
+    /**
+     * Returns the value of the parameter {@code key} parsed as a decimal int.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalStateException if this is not a match.
+     * @throws IllegalArgumentException if the parameter is not present.
+     * @throws NumberFormatException if the parameter is not a parseable int.
+     */
+    public int getInt(final String key) {
+        return (int) parseLong(requiredIndex(key), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value of the parameter {@code key} parsed as a decimal long.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws IllegalStateException if this is not a match.
+     * @throws IllegalArgumentException if the parameter is not present.
+     * @throws NumberFormatException if the parameter is not a parseable long.
+     */
+    public long getLong(final String key) {
+        return parseLong(requiredIndex(key), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if the Path matched the Route.
+     */
+    public boolean isMatch() {
+        return this != NO_MATCH;
+    }
+
+    /**
+     * Returns the parameters encoded in the matched Path.
+     * @throws IllegalStateException if this is not a match.
+     */
+    public Map<String, String> parameters() {
+        Preconditions.checkState(isMatch(), "Path does not match route");
+
+        final ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        for (final Map.Entry<String, Integer> entry : indexes.entrySet()) {
+            builder.put(entry.getKey(), value(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses the decimal value of the parameter at {@code index} directly from the characters
+     * of its path segment. Values spanning several segments contain a '/' and are never numbers.
+     */
+    private long parseLong(final int index, final long min, final long max) {
+        final int start = bounds[2 * index];
+        final int end = bounds[2 * index + 1];
+        if (end - start != 1) {
+            throw new NumberFormatException("Not a number: " + value(index));
+        }
+
+        final String segment = path.get(start);
+        final int length = segment.length();
+        if (length == 0) {
+            throw new NumberFormatException("Empty parameter");
+        }
+
+        // Accumulate negatively, as the negative range is the larger one.
+        int i = 0;
+        final boolean negative = segment.charAt(0) == '-';
+        if (negative || segment.charAt(0) == '+') {
+            i++;
+            if (length == 1) {
+                throw new NumberFormatException("Not a number: " + segment);
+            }
+        }
+
+        final long limit = negative ? min : -max;
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            final int digit = Character.digit(segment.charAt(i), 10);
+            if (digit < 0 || result < multiplyLimit) {
+                throw new NumberFormatException("Not a number: " + segment);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("Not a number: " + segment);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private int requiredIndex(final String key) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkState(isMatch(), "Path does not match route");
+
+        final Integer index = indexes.get(key);
+        Preconditions.checkArgument(index != null, "Route does not include the parameter: %s", key);
+        return index;
+    }
+
+    private String value(final int index) {
+        final int start = bounds[2 * index];
+        final int end = bounds[2 * index + 1];
+
+        // Parameters and single segment globs reference the existing segment.
+        return (end - start == 1) ?
+                path.get(start) : Path.copyOf(path.subList(start, end)).toString();
+    }
+
+    @Override
+    public String toString() {
+        return isMatch() ? parameters().toString() : "NO_MATCH";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import java.util.List;
+import java.util.Map;
+
+import restlib.net.Path;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A segment trie compiled from the Routes of a set of Resources. At each
+ * level literal segments are tried first, followed by {@code :parameter}
+ * segments and finally {@code *glob} segments, so the cost of a lookup
+ * is proportional to the depth of the request path rather than the number
+ * of registered routes.
+ *
+ * <p>Nodes are only mutated by the {@code Builder}. Once built a RouteTrie
+ * is immutable and may be safely shared between threads.</p>
+ */
+final class RouteTrie {
+    static final class Builder {
+        private final Node root = new Node();
+
+        private Builder() {}
+
+        /**
+         * Adds the pattern described by {@code routeSegments} to the trie.
+         * @throws IllegalStateException if a different Resource has already
+         * been added with an equivalent pattern.
+         */
+        Builder add(
+                final Iterable<String> routeSegments,
+                final Resource resource,
+                final List<Route> exclusions) {
+            Preconditions.checkNotNull(routeSegments);
+            Preconditions.checkNotNull(resource);
+            Preconditions.checkNotNull(exclusions);
+
+            Node node = root;
+            for (final String segment : routeSegments) {
+                node = node.child(segment);
+            }
+
+            final String pattern = Path.copyOf(routeSegments).toString();
+            Preconditions.checkState(
+                    (node.resource == null) || node.resource.equals(resource),
+                    "Ambiguous routes: %s and %s", node.pattern, pattern);
+
+            node.resource = resource;
+            node.pattern = pattern;
+            node.exclusions.add(ImmutableList.copyOf(exclusions));
+            return this;
+        }
+
+        RouteTrie build() {
+            return new RouteTrie(root);
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = Maps.newHashMap();
+        private final List<List<Route>> exclusions = Lists.newArrayList();
+        private Node parameter = null;
+        private Node glob = null;
+        private Resource resource = null;
+        private String pattern = "";
+
+        private Node child(final String segment) {
+            if (RailsRoute.isParameter(segment)) {
+                if (parameter == null) {
+                    parameter = new Node();
+                }
+                return parameter;
+            } else if (RailsRoute.isGlob(segment)) {
+                if (glob == null) {
+                    glob = new Node();
+                }
+                return glob;
+            } else {
+                Node literal = literals.get(segment);
+                if (literal == null) {
+                    literal = new Node();
+                    literals.put(segment, literal);
+                }
+                return literal;
+            }
+        }
+
+        private Resource resource(final Path path) {
+            if (resource == null) {
+                return null;
+            }
+
+            for (final List<Route> excluded : exclusions) {
+                if (!anyMatch(excluded, path)) {
+                    return resource;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static boolean anyMatch(final List<Route> routes, final Path path) {
+        for (final Route route : routes) {
+            if (route.match(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    private static Resource find(final Node node, final Path path, final int index) {
+        if (index == path.size()) {
+            return node.resource(path);
+        }
+
+        final Node literal = node.literals.get(path.get(index));
+        if (literal != null) {
+            final Resource resource = find(literal, path, index + 1);
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        if (node.parameter != null) {
+            final Resource resource = find(node.parameter, path, index + 1);
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        // A glob consumes one or more segments, shortest match first.
+        if (node.glob != null) {
+            for (int next = index + 1; next <= path.size(); next++) {
+                final Resource resource = find(node.glob, path, next);
+                if (resource != null) {
+                    return resource;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private final Node root;
+
+    private RouteTrie(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the Resource whose Route most specifically matches {@code path}
+     * or null if no Route matches.
+     */
+    Resource find(final Path path) {
+        Preconditions.checkNotNull(path);
+        return find(root, path.canonicalize(), 0);
+    }
+}
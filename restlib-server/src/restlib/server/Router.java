@@ -17,38 +17,41 @@
 
 package restlib.server;
 
-import java.util.Set;
-
 import restlib.Request;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 final class Router {    
+    /**
+     * Compiles the Routes of {@code resources} into a segment trie.
+     * @throws IllegalStateException if two different resources have ambiguous routes.
+     */
     public static Router of(final Iterable<Resource> resources, final Resource defaultResource) {
         Preconditions.checkNotNull(resources);
         Preconditions.checkNotNull(defaultResource);
      
-        return new Router(resources, defaultResource);
+        final RouteTrie.Builder builder = RouteTrie.builder();
+        for (final Resource resource : ImmutableSet.copyOf(resources)) {
+            resource.route().compile(builder, resource, ImmutableList.<Route> of());
+        }
+        
+        return new Router(builder.build(), defaultResource);
     }
     
-    private final Set<Resource> resources;
+    private final RouteTrie routes;
     private final Resource defaultResource;
     
-    private Router(final Iterable<Resource> resources, final Resource defaultResource) {
-        this.resources = ImmutableSet.copyOf(resources);
+    private Router(final RouteTrie routes, final Resource defaultResource) {
+        this.routes = routes;
         this.defaultResource = defaultResource;
     } 
 
     public Resource getResource(final Request request) {
         Preconditions.checkNotNull(request);
         
-        for (final Resource handler : this.resources) {
-            if (handler.route().match(request.uri().path())) {
-                return handler;
-            }
-        }
-        
-        return this.defaultResource;
+        final Resource resource = this.routes.find(request.uri().path());
+        return (resource != null) ? resource : this.defaultResource;
     }
 }
@@ -17,20 +17,22 @@
 
 package restlib.server.bio;
 
+import java.util.Map;
+
 import restlib.Request;
 import restlib.Response;
 import restlib.bio.InputStreamDeserializer;
 import restlib.bio.OutputStreamSerializer;
 import restlib.data.MediaRange;
-import restlib.data.Preference;
 import restlib.server.ConnegResourceDecorator;
 import restlib.server.Resource;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 
 public abstract class BioConnegResourceDecorator<T> 
     extends ConnegResourceDecorator implements BioConnegResource<T> {
@@ -49,6 +51,9 @@ public abstract class BioConnegResourceDecorator<T>
                 }
             };          
 
+    // Created on first use. Racing threads create equal values.
+    private ImmutableMap<MediaRange, OutputStreamSerializerSupplier> outputStreamSerializerSuppliersByMediaRange = null;
+
     protected BioConnegResourceDecorator(final Resource delegate) {
         super(delegate);
     }
@@ -89,24 +94,36 @@ public abstract class BioConnegResourceDecorator<T>
     
     @Override
     public final OutputStreamSerializer getResponseEntitySerializer(final Request request, final Response response) {
-        final Optional<MediaRange> preferred =
-                Preference.<MediaRange> bestMatch(
-                        request.preferences().acceptedMediaRanges(),
-                        this.supportedMediaRanges());
+        final Optional<MediaRange> preferred = this.responseMediaRange(request);
         
         Preconditions.checkState(preferred.isPresent());
         
-        return Iterables.find(
-                this.outputStreamSerializerSuppliers(),          
-                new Predicate<OutputStreamSerializerSupplier>() {
-                    public boolean apply(final OutputStreamSerializerSupplier supplier) {
-                        return supplier.mediaRange().equals(preferred.get());
-                    }
-                }).get(request, response);
+        return this.outputStreamSerializerSuppliersByMediaRange().get(preferred.get()).get(request, response);
     }
     
+    /**
+     * Returns the serializer suppliers of this resource. The returned suppliers 
+     * must not change between calls, as they are indexed by media range on first use.
+     */
     protected abstract Iterable<OutputStreamSerializerSupplier> outputStreamSerializerSuppliers();
 
+    private ImmutableMap<MediaRange, OutputStreamSerializerSupplier> outputStreamSerializerSuppliersByMediaRange() {
+        ImmutableMap<MediaRange, OutputStreamSerializerSupplier> retval = 
+                this.outputStreamSerializerSuppliersByMediaRange;
+        if (retval == null) {
+            // The first supplier of each media range is chosen.
+            final Map<MediaRange, OutputStreamSerializerSupplier> suppliers = Maps.newLinkedHashMap();
+            for (final OutputStreamSerializerSupplier supplier : this.outputStreamSerializerSuppliers()) {
+                if (!suppliers.containsKey(supplier.mediaRange())) {
+                    suppliers.put(supplier.mediaRange(), supplier);
+                }
+            }
+            retval = ImmutableMap.copyOf(suppliers);
+            this.outputStreamSerializerSuppliersByMediaRange = retval;
+        }
+        return retval;
+    }
+
     @Override
     public final Iterable<MediaRange> supportedMediaRanges() {
         return Iterables.transform(this.outputStreamSerializerSuppliers(),
@@ -14,7 +14,7 @@ import restlib.Response;
 import restlib.bio.InputStreamDeserializer;
 import restlib.bio.OutputStreamSerializer;
 import restlib.data.ContentEncoding;
-import restlib.data.Preference;
+import restlib.data.NegotiationIndex;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -22,7 +22,8 @@ import com.google.common.collect.ImmutableList;
 
 final class BioContentEncodingResource<T> extends BioResourceWrapper<T> {
 
-    private final Iterable<ContentEncoding> AVAILABLE_ENCODINGS = ImmutableList.of(ContentEncoding.GZIP);
+    private static final NegotiationIndex<ContentEncoding> AVAILABLE_ENCODINGS = 
+            NegotiationIndex.contentEncodings(ImmutableList.of(ContentEncoding.GZIP));
     private final int bufSize;
     
     BioContentEncodingResource(final BioResource<T> resource, final int bufSize) {
@@ -51,9 +52,7 @@ final class BioContentEncodingResource<T> extends BioResourceWrapper<T> {
     @Override
     public OutputStreamSerializer getResponseEntitySerializer(final Request request, final Response response) {
         final Optional<ContentEncoding> bestMatch = 
-                    Preference.<ContentEncoding> bestMatch(
-                            request.preferences().acceptedEncodings(), 
-                            AVAILABLE_ENCODINGS);
+                    AVAILABLE_ENCODINGS.bestMatch(request.preferences().acceptedEncodings());
         
         if (bestMatch.isPresent() && bestMatch.get().equals(ContentEncoding.GZIP)) {   
             final OutputStreamSerializer delegate = super.getResponseEntitySerializer(request, response);
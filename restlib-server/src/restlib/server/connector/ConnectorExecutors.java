@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executors for the blocking phase of a request: reading the request entity with an
+ * InputStreamDeserializer, acceptMessage and writing the response entity with an
+ * OutputStreamSerializer. Running this phase off the connector's threads keeps slow
+ * clients from exhausting them.
+ */
+public final class ConnectorExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectorExecutors.class);
+
+    private static final int DEFAULT_MAX_QUEUED = 1024;
+
+    private static final class BoundedExecutor implements Executor {
+        private final Executor executor;
+        private final int maxConcurrency;
+        private final int maxQueued;
+
+        // Guarded by this.
+        private final Deque<Runnable> queue = new ArrayDeque<Runnable>();
+        private int running = 0;
+
+        private BoundedExecutor(final Executor executor, final int maxConcurrency, final int maxQueued) {
+            this.executor = executor;
+            this.maxConcurrency = maxConcurrency;
+            this.maxQueued = maxQueued;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            Preconditions.checkNotNull(task);
+
+            synchronized (this) {
+                if (this.running >= this.maxConcurrency) {
+                    if (this.queue.size() >= this.maxQueued) {
+                        throw new RejectedExecutionException("Too many queued tasks");
+                    }
+                    this.queue.add(task);
+                    return;
+                }
+                this.running++;
+            }
+
+            this.start(task);
+        }
+
+        // Runs task, followed by the tasks queued while the executor was at capacity.
+        private void runAll(final Runnable task) {
+            Runnable next = task;
+            try {
+                while (next != null) {
+                    try {
+                        next.run();
+                    } catch (final RuntimeException e) {
+                        logger.error("", e);
+                    }
+
+                    synchronized (this) {
+                        next = this.queue.poll();
+                        if (next == null) {
+                            this.running--;
+                        }
+                    }
+                }
+            } finally {
+                if (next != null) {
+                    // An Error escaped the task. Hand its slot to the next queued task.
+                    this.startNext();
+                }
+            }
+        }
+
+        // Runs task on the underlying executor, using a slot which has already been taken.
+        private void start(final Runnable task) {
+            try {
+                this.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runAll(task);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                synchronized (this) {
+                    this.running--;
+                }
+                throw e;
+            }
+        }
+
+        private void startNext() {
+            final Runnable next;
+            synchronized (this) {
+                next = this.queue.poll();
+                if (next == null) {
+                    this.running--;
+                    return;
+                }
+            }
+
+            try {
+                this.start(next);
+            } catch (final RejectedExecutionException e) {
+                // Keep the task at the head of the queue, where the next task
+                // to complete will run it, rather than dropping it.
+                logger.warn("", e);
+                synchronized (this) {
+                    this.queue.addFirst(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an executor which runs at most {@code maxConcurrency} tasks at once on
+     * {@code executor}, and queues at most 1024 further tasks.
+     * @throws NullPointerException if {@code executor} is null.
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive.
+     * @see #bounded(Executor, int, int)
+     */
+    public static Executor bounded(final Executor executor, final int maxConcurrency) {
+        return bounded(executor, maxConcurrency, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * Returns an executor which runs at most {@code maxConcurrency} tasks at once on
+     * {@code executor}. Further tasks are queued, without blocking the submitting thread,
+     * until a running task completes. Once {@code maxQueued} tasks are waiting, further 
+     * tasks are rejected with a {@link RejectedExecutionException}, which connectors 
+     * report to the client as 503 Service Unavailable.
+     * @throws NullPointerException if {@code executor} is null.
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     * or {@code maxQueued} is negative.
+     */
+    public static Executor bounded(final Executor executor, final int maxConcurrency, final int maxQueued) {
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(maxConcurrency > 0);
+        Preconditions.checkArgument(maxQueued >= 0);
+        return new BoundedExecutor(executor, maxConcurrency, maxQueued);
+    }
+
+    /**
+     * Returns an executor which runs each task on its own thread, at most
+     * {@code maxConcurrency} tasks at once, and queues at most 1024 further tasks.
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive.
+     * @see #threadPerTask(int, int)
+     */
+    public static Executor threadPerTask(final int maxConcurrency) {
+        return threadPerTask(maxConcurrency, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * Returns an executor which runs each task on its own thread, and at most
+     * {@code maxConcurrency} tasks at once. Up to {@code maxQueued} further tasks are 
+     * queued without holding a thread, after which tasks are rejected.
+     * Virtual threads are used when the runtime supports them, otherwise daemon threads
+     * which are cached for reuse.
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     * or {@code maxQueued} is negative.
+     */
+    public static Executor threadPerTask(final int maxConcurrency, final int maxQueued) {
+        return bounded(threadPerTaskExecutor(), maxConcurrency, maxQueued);
+    }
+
+    private static ExecutorService threadPerTaskExecutor() {
+        try {
+            final Method newVirtualThreadPerTaskExecutor =
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (final NoSuchMethodException e) {
+            // Virtual threads are not supported by this runtime.
+        } catch (final ReflectiveOperationException e) {
+            logger.debug("", e);
+        }
+
+        return Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder()
+                    .setNameFormat("restlib-bio-%d")
+                    .setDaemon(true)
+                    .build());
+    }
+
+    private ConnectorExecutors() {}
+}
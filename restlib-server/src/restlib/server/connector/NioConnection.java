@@ -0,0 +1,717 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import restlib.ContentInfo;
+import restlib.ContentInfoWrapper;
+import restlib.Request;
+import restlib.Response;
+import restlib.ResponseWrapper;
+import restlib.bio.OutputStreamSerializer;
+import restlib.data.HttpDate;
+import restlib.data.HttpHeaders;
+import restlib.data.Method;
+import restlib.data.Status;
+import restlib.impl.AsciiHeaderFields;
+import restlib.net.Uri;
+import restlib.server.bio.BioApplication;
+import restlib.server.bio.BioResource;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * The state of a single HTTP/1.1 connection. Network IO and state transitions are performed
+ * by the connection's event loop, while application code runs on the connector's executor.
+ * Requests on a connection are processed one at a time, in order. Bytes of pipelined requests
+ * are retained until the preceding response has been written.
+ */
+final class NioConnection {
+    private static final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(Charsets.ISO_8859_1);
+
+    // The maximum length of a chunk size line or a trailer field.
+    private static final int MAX_CHUNK_LINE_LENGTH = 1024;
+
+    private static enum State {
+        READING_HEADERS,
+        DISPATCHED,
+        READING_ENTITY,
+        WRITING,
+        CLOSED
+    }
+
+    private static enum EntityState {
+        FIXED,
+        CHUNK_SIZE,
+        CHUNK_DATA,
+        CHUNK_DATA_END,
+        TRAILERS
+    }
+
+    /**
+     * A ByteArrayOutputStream whose contents can be written without copying them.
+     */
+    private static final class EntityOutputStream extends ByteArrayOutputStream {
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(this.buf, 0, this.count);
+        }
+    }
+
+    private static boolean isEntityAllowed(final Request request, final Status status) {
+        return !request.method().equals(Method.HEAD) &&
+                !status.statusClass().equals(Status.Class.INFORMATIONAL) &&
+                !status.equals(Status.SUCCESS_NO_CONTENT) &&
+                !status.equals(Status.REDIRECTION_NOT_MODIFIED);
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final byte b) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private final NioConnector connector;
+    private final NioEventLoop eventLoop;
+    private final SocketChannel channel;
+    private SelectionKey key = null;
+
+    // Runs response callbacks on the connector's executor, answering 503 when it is saturated.
+    private final Executor callbackExecutor = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            try {
+                connector.executor().execute(task);
+            } catch (final RejectedExecutionException e) {
+                logger.debug("", e);
+                respondWithError(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            }
+        }
+    };
+
+    private State state = State.READING_HEADERS;
+    private long lastActivity = System.currentTimeMillis();
+
+    // Received bytes which have not been consumed, in read mode, or null if there are none.
+    private ByteBuffer input = null;
+    private final Deque<ByteBuffer> output = new ArrayDeque<ByteBuffer>(2);
+
+    // The current request. Written by the event loop before the request is dispatched.
+    private Request request = null;
+    private BioApplication application = null;
+    private BioResource<?> resource = null;
+    private boolean keepAlive = false;
+
+    // The entity of the current request.
+    private boolean hasEntity = false;
+    private boolean entityRead = false;
+    private EntityState entityState = EntityState.FIXED;
+    private byte[] entity = null;
+    private int entityLength = 0;
+    private long entityRemaining = 0;
+
+    NioConnection(final NioConnector connector, final NioEventLoop eventLoop, final SocketChannel channel) {
+        this.connector = connector;
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+    }
+
+    private void acceptEntity() {
+        final ListenableFuture<Response> response;
+        try {
+            final Object message =
+                    this.resource.getRequestEntityDeserializer(this.request).read(
+                            new ByteArrayInputStream(this.entity, 0, this.entityLength));
+            response = this.resource.acceptMessage(this.request, message);
+        } catch (final IOException e) {
+            this.respond(Status.CLIENT_ERROR_BAD_REQUEST.toResponse());
+            return;
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.respondWithError(Status.SERVER_ERROR_INTERNAL);
+            return;
+        }
+        this.onResponse(response, false);
+    }
+
+    private void appendInput(final ByteBuffer bytes) {
+        if (this.input == null) {
+            this.input = ByteBuffer.allocate(Math.max(bytes.remaining(), 1024));
+        } else {
+            this.input.compact();
+            if (this.input.remaining() < bytes.remaining()) {
+                final ByteBuffer grown =
+                        ByteBuffer.allocate(Math.max(this.input.capacity() * 2, this.input.position() + bytes.remaining()));
+                this.input.flip();
+                grown.put(this.input);
+                this.input = grown;
+            }
+        }
+        this.input.put(bytes);
+        this.input.flip();
+    }
+
+    void close() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.state = State.CLOSED;
+        this.input = null;
+        this.output.clear();
+        this.entity = null;
+
+        if (this.key != null) {
+            this.key.cancel();
+        }
+        try {
+            this.channel.close();
+        } catch (final IOException e) {
+            logger.debug("", e);
+        }
+    }
+
+    void closeIfIdle(final long now, final long idleTimeout) {
+        if ((this.state == State.READING_HEADERS || this.state == State.READING_ENTITY) &&
+                (now - this.lastActivity > idleTimeout)) {
+            this.close();
+        }
+    }
+
+    private void consumeInput(final int position) {
+        this.input.position(position);
+        if (!this.input.hasRemaining()) {
+            this.input = null;
+        }
+    }
+
+    private void dispatch(final Runnable task) {
+        this.state = State.DISPATCHED;
+        this.updateInterestOps();
+        try {
+            this.connector.executor().execute(task);
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.fail(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Stops reading from the connection and responds with {@code status}. Called by the event loop.
+     */
+    private void fail(final Status status) {
+        this.state = State.DISPATCHED;
+        this.input = null;
+        this.updateInterestOps();
+        this.respondWithError(status);
+    }
+
+    private void flush() {
+        try {
+            while (!this.output.isEmpty()) {
+                final ByteBuffer buffer = this.output.peekFirst();
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                this.output.removeFirst();
+            }
+        } catch (final IOException e) {
+            logger.debug("", e);
+            this.close();
+            return;
+        }
+
+        if (this.output.isEmpty() && (this.state == State.WRITING)) {
+            this.onResponseWritten();
+        } else {
+            this.updateInterestOps();
+        }
+    }
+
+    private void handle() {
+        final ListenableFuture<Response> response;
+        try {
+            this.application = this.connector.applicationSupplier().apply(this.request);
+            this.request = this.application.requestFilter().apply(this.request);
+            this.resource = this.application.getResource(this.request);
+            response = this.resource.handle(this.request);
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.respondWithError(Status.SERVER_ERROR_INTERNAL);
+            return;
+        }
+        this.onResponse(response, true);
+    }
+
+    private void onEntityRead() {
+        this.entityRead = true;
+        this.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                acceptEntity();
+            }
+        });
+    }
+
+    private void onHeadersRead(final Request request, final boolean http11) {
+        this.request = request;
+        this.application = null;
+        this.resource = null;
+        this.keepAlive = http11 && ConnectorHelpers.isKeepAlive(request);
+
+        final boolean chunked = ConnectorHelpers.isChunked(request);
+        final Optional<Long> length = request.contentInfo().length();
+        this.hasEntity = chunked || (length.isPresent() && (length.get() > 0));
+        this.entityState = chunked ? EntityState.CHUNK_SIZE : EntityState.FIXED;
+        this.entityRemaining = (!chunked && length.isPresent()) ? length.get() : 0;
+        this.entityRead = false;
+        this.entity = null;
+        this.entityLength = 0;
+
+        if (this.entityRemaining > this.connector.maxEntitySize()) {
+            this.fail(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+
+        this.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                handle();
+            }
+        });
+    }
+
+    void onReady(final SelectionKey key) {
+        if (key.isReadable()) {
+            this.read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            this.flush();
+        }
+    }
+
+    private void onResponse(final ListenableFuture<Response> response, final boolean continueAllowed) {
+        Futures.addCallback(response, new FutureCallback<Response>() {
+            @Override
+            public void onFailure(final Throwable cause) {
+                logger.error("", cause);
+                respond(Status.SERVER_ERROR_INTERNAL.toResponse());
+            }
+
+            @Override
+            public void onSuccess(final Response response) {
+                if (continueAllowed && response.status().equals(Status.INFORMATIONAL_CONTINUE)) {
+                    eventLoop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            startReadingEntity();
+                        }
+                    });
+                } else {
+                    respond(response);
+                }
+            }
+        }, this.callbackExecutor);
+    }
+
+    private void onResponseWritten() {
+        this.request = null;
+        this.application = null;
+        this.resource = null;
+        this.entity = null;
+
+        if (!this.keepAlive) {
+            this.close();
+            return;
+        }
+
+        this.state = State.READING_HEADERS;
+        this.lastActivity = System.currentTimeMillis();
+        this.process();
+    }
+
+    private void process() {
+        boolean progress = true;
+        while (progress && (this.input != null)) {
+            switch (this.state) {
+            case READING_HEADERS:
+                progress = this.readHeaders();
+                break;
+            case READING_ENTITY:
+                progress = this.readEntity();
+                break;
+            default:
+                progress = false;
+            }
+        }
+        this.updateInterestOps();
+    }
+
+    private void read() {
+        final ByteBuffer buffer = this.eventLoop.readBuffer();
+        buffer.clear();
+
+        final int read;
+        try {
+            read = this.channel.read(buffer);
+        } catch (final IOException e) {
+            logger.debug("", e);
+            this.close();
+            return;
+        }
+
+        if (read < 0) {
+            this.close();
+            return;
+        }
+
+        this.lastActivity = System.currentTimeMillis();
+        buffer.flip();
+        this.appendInput(buffer);
+        this.process();
+    }
+
+    private boolean readEntity() {
+        while (this.input != null) {
+            switch (this.entityState) {
+            case FIXED:
+            case CHUNK_DATA: {
+                final int length = (int) Math.min(this.entityRemaining, this.input.remaining());
+                if (this.entityLength + length > this.entity.length) {
+                    this.entity = Arrays.copyOf(this.entity, Math.max(this.entity.length * 2, this.entityLength + length));
+                }
+                this.input.get(this.entity, this.entityLength, length);
+                this.entityLength += length;
+                this.entityRemaining -= length;
+                this.consumeInput(this.input.position());
+
+                if (this.entityRemaining > 0) {
+                    return false;
+                } else if (this.entityState == EntityState.FIXED) {
+                    this.onEntityRead();
+                    return true;
+                }
+                this.entityState = EntityState.CHUNK_DATA_END;
+                break;
+            }
+
+            case CHUNK_SIZE:
+            case CHUNK_DATA_END:
+            case TRAILERS: {
+                final int lineFeed = indexOf(this.input, (byte) '\n');
+                if (lineFeed < 0) {
+                    if (this.input.remaining() > MAX_CHUNK_LINE_LENGTH) {
+                        this.fail(Status.CLIENT_ERROR_BAD_REQUEST);
+                    }
+                    return false;
+                }
+
+                final int lineStart = this.input.position();
+                int lineEnd = lineFeed;
+                if ((lineEnd > lineStart) && (this.input.get(lineEnd - 1) == '\r')) {
+                    lineEnd--;
+                }
+                this.consumeInput(lineFeed + 1);
+
+                if (this.entityState == EntityState.CHUNK_SIZE) {
+                    final long chunkSize = this.readChunkSize(lineStart, lineEnd);
+                    if ((chunkSize < 0) || (this.entityLength + chunkSize > this.connector.maxEntitySize())) {
+                        this.fail(
+                                (chunkSize < 0) ? Status.CLIENT_ERROR_BAD_REQUEST : Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE);
+                        return false;
+                    }
+                    this.entityRemaining = chunkSize;
+                    this.entityState = (chunkSize > 0) ? EntityState.CHUNK_DATA : EntityState.TRAILERS;
+                } else if (this.entityState == EntityState.CHUNK_DATA_END) {
+                    if (lineEnd != lineStart) {
+                        this.fail(Status.CLIENT_ERROR_BAD_REQUEST);
+                        return false;
+                    }
+                    this.entityState = EntityState.CHUNK_SIZE;
+                } else if (lineEnd == lineStart) {
+                    // Trailer fields are discarded.
+                    this.onEntityRead();
+                    return true;
+                }
+                break;
+            }
+            }
+
+            if (this.input == null) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Returns the size of the chunk size line between start and end, or -1 if it is invalid.
+    private long readChunkSize(final int start, final int end) {
+        long retval = 0;
+        int i = start;
+        for (; i < end; i++) {
+            final int digit = Character.digit((char) this.input.get(i), 16);
+            if ((digit < 0) || (i - start >= 15)) {
+                break;
+            }
+            retval = retval * 16 + digit;
+        }
+
+        // Chunk extensions are ignored.
+        if ((i == start) || ((i < end) && (this.input.get(i) != ';') && (this.input.get(i) != ' ') && (this.input.get(i) != '\t'))) {
+            return -1;
+        }
+        return retval;
+    }
+
+    private boolean readHeaders() {
+        // Empty lines preceding a request line are ignored.
+        while (this.input.hasRemaining() && ((this.input.get(this.input.position()) == '\r') ||
+                (this.input.get(this.input.position()) == '\n'))) {
+            this.input.position(this.input.position() + 1);
+        }
+        if (!this.input.hasRemaining()) {
+            this.input = null;
+            return false;
+        }
+
+        final int requestLineEnd = indexOf(this.input, (byte) '\n');
+        final int headersEnd;
+        if (requestLineEnd >= 0) {
+            final ByteBuffer headers = this.input.duplicate();
+            headers.position(requestLineEnd + 1);
+            headersEnd = AsciiHeaderFields.endOfHeaderSection(headers);
+        } else {
+            headersEnd = -1;
+        }
+
+        if (headersEnd < 0) {
+            if (this.input.remaining() > this.connector.maxHeaderSize()) {
+                this.fail(Status.CLIENT_ERROR_BAD_REQUEST);
+            }
+            return false;
+        } else if (headersEnd - this.input.position() > this.connector.maxHeaderSize()) {
+            this.fail(Status.CLIENT_ERROR_BAD_REQUEST);
+            return false;
+        }
+
+        final int requestLineStart = this.input.position();
+        int lineEnd = requestLineEnd;
+        if ((lineEnd > requestLineStart) && (this.input.get(lineEnd - 1) == '\r')) {
+            lineEnd--;
+        }
+        final byte[] requestLineBytes = new byte[lineEnd - requestLineStart];
+        this.input.get(requestLineBytes);
+        final String[] requestLine = new String(requestLineBytes, Charsets.ISO_8859_1).split(" ", -1);
+
+        final Request request;
+        final boolean http11;
+        try {
+            if ((requestLine.length != 3) || !requestLine[2].startsWith("HTTP/1.")) {
+                throw new IllegalArgumentException("Invalid request line.");
+            }
+            http11 = !requestLine[2].equals("HTTP/1.0");
+
+            final ByteBuffer headers = this.input.duplicate();
+            headers.position(requestLineEnd + 1);
+            headers.limit(headersEnd);
+            request = Request.parse(
+                    this.connector.uriScheme(),
+                    Method.forName(requestLine[0]),
+                    Uri.parse(requestLine[1]),
+                    headers);
+        } catch (final IllegalArgumentException e) {
+            this.fail(Status.CLIENT_ERROR_BAD_REQUEST);
+            return false;
+        }
+
+        this.consumeInput(headersEnd);
+        this.onHeadersRead(request, http11);
+        return true;
+    }
+
+    /**
+     * Serializes {@code response} using the current resource, and queues it to be written
+     * by the event loop. Called by the executor.
+     */
+    private void respond(final Response response) {
+        final ByteBuffer head;
+        final ByteBuffer body;
+        try {
+            final Response filteredResponse = this.application.responseFilter().apply(response);
+            final OutputStreamSerializer serializer =
+                    this.resource.getResponseEntitySerializer(this.request, filteredResponse);
+            final boolean entityAllowed = isEntityAllowed(this.request, filteredResponse.status());
+
+            final EntityOutputStream entity = new EntityOutputStream();
+            if (entityAllowed) {
+                serializer.write(entity);
+            }
+
+            final ContentInfo contentInfo =
+                    entityAllowed ?
+                            new ContentInfoWrapper(serializer.contentInfo()) {
+                                @Override
+                                public Optional<Long> length() {
+                                    return Optional.of((long) entity.size());
+                                }
+                            } :
+                            serializer.contentInfo();
+
+            final NioConnectorResponse connectorResponse = new NioConnectorResponse();
+            connectorResponse.populate(new ResponseWrapper(filteredResponse) {
+                @Override
+                public ContentInfo contentInfo() {
+                    return contentInfo;
+                }
+            });
+            this.addConnectionHeaders(connectorResponse, filteredResponse);
+
+            head = connectorResponse.toByteBuffer();
+            body = entity.toByteBuffer();
+        } catch (final IOException e) {
+            logger.error("", e);
+            this.respondWithError(Status.SERVER_ERROR_INTERNAL);
+            return;
+        } catch (final RuntimeException e) {
+            logger.error("", e);
+            this.respondWithError(Status.SERVER_ERROR_INTERNAL);
+            return;
+        }
+
+        this.eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(head, body);
+            }
+        });
+    }
+
+    private void addConnectionHeaders(final NioConnectorResponse connectorResponse, final Response response) {
+        if (!response.date().isPresent()) {
+            connectorResponse.addHeader(HttpHeaders.DATE, HttpDate.currentSecond());
+        }
+
+        if (this.hasEntity && !this.entityRead) {
+            // The request entity was not read, so the connection can not be reused.
+            this.keepAlive = false;
+        }
+
+        if (!this.keepAlive) {
+            connectorResponse.addHeader(HttpHeaders.CONNECTION, "close");
+        }
+    }
+
+    /**
+     * Writes a response with an empty entity and closes the connection. Called by either
+     * the executor or the event loop.
+     */
+    private void respondWithError(final Status status) {
+        this.keepAlive = false;
+
+        final NioConnectorResponse connectorResponse = new NioConnectorResponse();
+        connectorResponse.setStatus(status);
+        connectorResponse.addHeader(HttpHeaders.DATE, HttpDate.currentSecond());
+        connectorResponse.addHeader(HttpHeaders.CONTENT_LENGTH, 0);
+        connectorResponse.addHeader(HttpHeaders.CONNECTION, "close");
+
+        final ByteBuffer head = connectorResponse.toByteBuffer();
+        this.eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(head);
+            }
+        });
+    }
+
+    void setSelectionKey(final SelectionKey key) {
+        this.key = key;
+    }
+
+    private void startReadingEntity() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+
+        this.state = State.READING_ENTITY;
+        this.entity = new byte[(int) Math.min(Math.max(this.entityRemaining, 256), this.connector.maxEntitySize())];
+        this.entityLength = 0;
+        this.lastActivity = System.currentTimeMillis();
+
+        if (!this.hasEntity) {
+            this.onEntityRead();
+            return;
+        }
+
+        if (ConnectorHelpers.isContinueExpected(this.request)) {
+            this.output.addLast(ByteBuffer.wrap(CONTINUE));
+            this.flush();
+        }
+        this.process();
+    }
+
+    private void updateInterestOps() {
+        if ((this.state == State.CLOSED) || (this.key == null) || !this.key.isValid()) {
+            return;
+        }
+
+        int ops = 0;
+        if (this.state == State.READING_HEADERS || this.state == State.READING_ENTITY) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!this.output.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        this.key.interestOps(ops);
+    }
+
+    private void write(final ByteBuffer... buffers) {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+
+        this.state = State.WRITING;
+        for (final ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                this.output.addLast(buffer);
+            }
+        }
+        this.flush();
+    }
+}
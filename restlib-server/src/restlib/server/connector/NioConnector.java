@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import restlib.Request;
+import restlib.server.bio.BioApplication;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A standalone HTTP/1.1 connector for BioApplications built on non-blocking
+ * {@code java.nio} channels. Connections are spread across a fixed number of
+ * selector threads, and no thread is held by a connection while it is idle or while
+ * its response is pending. Connections between requests only retain the bytes of
+ * pipelined requests, so large numbers of idle keep-alive connections are cheap.
+ *
+ * <p>Request entities, which may be chunked, are buffered up to a configured size before
+ * they are deserialized, and response entities are serialized into memory before
+ * they are written, so blocking serializers never block the selector threads on
+ * the network.
+ */
+public final class NioConnector implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(NioConnector.class);
+
+    /**
+     * Returns a new NioConnectorBuilder.
+     */
+    public static NioConnectorBuilder builder() {
+        return new NioConnectorBuilder();
+    }
+
+    private final Function<Request, ? extends BioApplication> applicationSupplier;
+    private final SocketAddress address;
+    private final int backlog;
+    private final int eventLoopCount;
+    private final Executor executor;
+    private final long idleTimeoutMillis;
+    private final int maxEntitySize;
+    private final int maxHeaderSize;
+    private final String uriScheme;
+
+    // Guarded by this.
+    private ServerSocketChannel serverChannel = null;
+    private List<NioEventLoop> eventLoops = ImmutableList.of();
+
+    // Only accessed by the first event loop, which accepts connections.
+    private int nextEventLoop = 0;
+
+    NioConnector(final NioConnectorBuilder builder) {
+        this.applicationSupplier = builder.applicationSupplier;
+        this.address = builder.address;
+        this.backlog = builder.backlog;
+        this.eventLoopCount = builder.eventLoops;
+        this.executor = builder.executor;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.maxEntitySize = builder.maxEntitySize;
+        this.maxHeaderSize = builder.maxHeaderSize;
+        this.uriScheme = builder.uriScheme;
+    }
+
+    void accept() {
+        while (true) {
+            final SocketChannel channel;
+            try {
+                channel = this.serverChannel.accept();
+                if (channel == null) {
+                    return;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+            } catch (final IOException e) {
+                logger.error("", e);
+                return;
+            }
+
+            this.eventLoops.get(this.nextEventLoop).register(channel);
+            this.nextEventLoop = (this.nextEventLoop + 1) % this.eventLoops.size();
+        }
+    }
+
+    Function<Request, ? extends BioApplication> applicationSupplier() {
+        return this.applicationSupplier;
+    }
+
+    /**
+     * Stops accepting connections and closes all open connections.
+     * Does nothing if the connector is not started.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.serverChannel == null) {
+            return;
+        }
+
+        for (final NioEventLoop eventLoop : this.eventLoops) {
+            eventLoop.shutdown();
+        }
+        this.serverChannel.close();
+        this.serverChannel = null;
+        this.eventLoops = ImmutableList.of();
+    }
+
+    Executor executor() {
+        return this.executor;
+    }
+
+    long idleTimeoutMillis() {
+        return this.idleTimeoutMillis;
+    }
+
+    /**
+     * Returns the address the connector is listening on.
+     * @throws IllegalStateException if the connector is not started.
+     */
+    public synchronized InetSocketAddress localAddress() {
+        Preconditions.checkState(this.serverChannel != null);
+        return (InetSocketAddress) this.serverChannel.socket().getLocalSocketAddress();
+    }
+
+    int maxEntitySize() {
+        return this.maxEntitySize;
+    }
+
+    int maxHeaderSize() {
+        return this.maxHeaderSize;
+    }
+
+    /**
+     * Binds the connector's address and starts its event loops.
+     * @throws IllegalStateException if the connector is already started.
+     * @throws IOException if the address can not be bound.
+     */
+    public synchronized NioConnector start() throws IOException {
+        Preconditions.checkState(this.serverChannel == null);
+
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(this.address, this.backlog);
+
+            final ImmutableList.Builder<NioEventLoop> eventLoops = ImmutableList.builder();
+            for (int i = 0; i < this.eventLoopCount; i++) {
+                eventLoops.add(new NioEventLoop(this));
+            }
+            this.eventLoops = eventLoops.build();
+            this.serverChannel = serverChannel;
+
+            // The first event loop also accepts connections. Registration must happen
+            // before its thread starts selecting.
+            serverChannel.register(this.eventLoops.get(0).selector(), SelectionKey.OP_ACCEPT);
+        } catch (final IOException e) {
+            serverChannel.close();
+            this.serverChannel = null;
+            this.eventLoops = ImmutableList.of();
+            throw e;
+        }
+
+        final ThreadFactory threadFactory =
+                new ThreadFactoryBuilder().setNameFormat("restlib-nio-%d").build();
+        for (final NioEventLoop eventLoop : this.eventLoops) {
+            threadFactory.newThread(eventLoop).start();
+        }
+
+        return this;
+    }
+
+    String uriScheme() {
+        return this.uriScheme;
+    }
+}
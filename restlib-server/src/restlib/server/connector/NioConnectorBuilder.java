@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import restlib.Request;
+import restlib.net.UriSchemes;
+import restlib.server.bio.BioApplication;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public final class NioConnectorBuilder {
+    Function<Request, ? extends BioApplication> applicationSupplier = null;
+    SocketAddress address = new InetSocketAddress(8080);
+    int backlog = 1024;
+    int eventLoops = Runtime.getRuntime().availableProcessors();
+    Executor executor = MoreExecutors.sameThreadExecutor();
+    long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+    int maxEntitySize = 8 * 1024 * 1024;
+    int maxHeaderSize = 16 * 1024;
+    String uriScheme = UriSchemes.HTTP;
+
+    NioConnectorBuilder() {}
+
+    /**
+     * Returns a new NioConnector. The connector does not accept connections until it is started.
+     * @throws IllegalStateException if the application supplier has not been set.
+     */
+    public NioConnector build() {
+        Preconditions.checkState(this.applicationSupplier != null);
+        return new NioConnector(this);
+    }
+
+    /**
+     * Sets the address the connector listens on. The default is port 8080 of the wildcard address.
+     * @throws NullPointerException if {@code address} is null.
+     */
+    public NioConnectorBuilder setAddress(final SocketAddress address) {
+        this.address = Preconditions.checkNotNull(address);
+        return this;
+    }
+
+    /**
+     * Sets the function used to choose the application which handles each request.
+     * @throws NullPointerException if {@code applicationSupplier} is null.
+     */
+    public NioConnectorBuilder setApplicationSupplier(final Function<Request, ? extends BioApplication> applicationSupplier) {
+        this.applicationSupplier = Preconditions.checkNotNull(applicationSupplier);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pending connections queued by the listening socket. The default is 1024.
+     * @throws IllegalArgumentException if {@code backlog} is not positive.
+     */
+    public NioConnectorBuilder setBacklog(final int backlog) {
+        Preconditions.checkArgument(backlog > 0);
+        this.backlog = backlog;
+        return this;
+    }
+
+    /**
+     * Sets the number of selector threads which perform network IO. The default
+     * is the number of available processors.
+     * @throws IllegalArgumentException if {@code eventLoops} is not positive.
+     */
+    public NioConnectorBuilder setEventLoops(final int eventLoops) {
+        Preconditions.checkArgument(eventLoops > 0);
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    /**
+     * Sets the executor which runs application code: request and response filters, resource
+     * handlers, deserializers and serializers. By default application code runs on the event loop
+     * which owns the connection, so resources must not block. Applications which block should
+     * provide a thread pool, or {@link ConnectorExecutors#threadPerTask(int)}.
+     * @throws NullPointerException if {@code executor} is null.
+     */
+    public NioConnectorBuilder setExecutor(final Executor executor) {
+        this.executor = Preconditions.checkNotNull(executor);
+        return this;
+    }
+
+    /**
+     * Sets the time after which a connection which is not processing a request is closed.
+     * The default is 60 seconds. A timeout of 0 disables closing idle connections.
+     * @throws NullPointerException if {@code unit} is null.
+     * @throws IllegalArgumentException if {@code timeout} is negative.
+     */
+    public NioConnectorBuilder setIdleTimeout(final long timeout, final TimeUnit unit) {
+        Preconditions.checkNotNull(unit);
+        Preconditions.checkArgument(timeout >= 0);
+        this.idleTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the maximum size in bytes of a request entity. Requests with larger entities
+     * receive a 413 response. The default is 8 MiB.
+     * @throws IllegalArgumentException if {@code maxEntitySize} is negative.
+     */
+    public NioConnectorBuilder setMaxEntitySize(final int maxEntitySize) {
+        Preconditions.checkArgument(maxEntitySize >= 0);
+        this.maxEntitySize = maxEntitySize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size in bytes of a request line and header section. Requests with
+     * larger headers receive a 400 response. The default is 16 KiB.
+     * @throws IllegalArgumentException if {@code maxHeaderSize} is not positive.
+     */
+    public NioConnectorBuilder setMaxHeaderSize(final int maxHeaderSize) {
+        Preconditions.checkArgument(maxHeaderSize > 0);
+        this.maxHeaderSize = maxHeaderSize;
+        return this;
+    }
+
+    /**
+     * Sets the URI scheme of requests received by the connector. The default is http.
+     * @throws NullPointerException if {@code uriScheme} is null.
+     */
+    public NioConnectorBuilder setUriScheme(final String uriScheme) {
+        this.uriScheme = Preconditions.checkNotNull(uriScheme);
+        return this;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.nio.ByteBuffer;
+
+import restlib.data.Header;
+import restlib.data.Protocol;
+import restlib.data.Status;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Renders the status line and header section of an HTTP/1.1 response into a buffer.
+ */
+final class NioConnectorResponse extends ConnectorResponse {
+    private final StringBuilder headers = new StringBuilder(256);
+    private Protocol protocolVersion = Protocol.HTTP_1_1;
+    private Status status = Status.SUCCESS_OK;
+
+    @Override
+    protected NioConnectorResponse addHeader(final Header header, final Object value) {
+        this.headers.append(header).append(": ").append(value).append("\r\n");
+        return this;
+    }
+
+    @Override
+    protected NioConnectorResponse setProtocolVersion(final Protocol protocolVersion) {
+        this.protocolVersion = protocolVersion;
+        return this;
+    }
+
+    @Override
+    protected NioConnectorResponse setStatus(final Status status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Returns the status line and header fields of this response, followed by the empty line
+     * which terminates the header section.
+     */
+    ByteBuffer toByteBuffer() {
+        final String head =
+                new StringBuilder(this.headers.length() + 64)
+                    .append(this.protocolVersion).append(' ')
+                    .append(this.status.code()).append(' ')
+                    .append(this.status.reason()).append("\r\n")
+                    .append(this.headers)
+                    .append("\r\n")
+                    .toString();
+        return ByteBuffer.wrap(head.getBytes(Charsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single threaded selector loop which owns the connections registered with it.
+ * Every read, write and state change of a connection is performed by the loop's thread.
+ * Other threads hand work to the loop with {@link #execute(Runnable)}.
+ */
+final class NioEventLoop implements Executor, Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    private final NioConnector connector;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    // Shared by every connection of this loop. Connections only retain the bytes they have not consumed.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    // Accessed only by the loop's thread.
+    private long lastIdleScanMillis = 0;
+
+    private volatile Thread thread = null;
+    private volatile boolean running = true;
+
+    NioEventLoop(final NioConnector connector) throws IOException {
+        this.connector = connector;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Closes the connections which have been idle for longer than the connector's idle timeout.
+     * Visiting every connection is linear in the number of connections, so the scan runs at most
+     * once per select timeout, or per idle timeout if shorter, rather than on every wakeup.
+     */
+    private void closeIdleConnections() {
+        final long idleTimeout = this.connector.idleTimeoutMillis();
+        if (idleTimeout <= 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if ((now - this.lastIdleScanMillis) < Math.min(idleTimeout, SELECT_TIMEOUT_MILLIS)) {
+            return;
+        }
+        this.lastIdleScanMillis = now;
+
+        for (final SelectionKey key : this.selector.keys()) {
+            final Object attachment = key.attachment();
+            if (attachment instanceof NioConnection) {
+                ((NioConnection) attachment).closeIfIdle(now, idleTimeout);
+            }
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        this.tasks.add(task);
+        if (Thread.currentThread() != this.thread) {
+            this.selector.wakeup();
+        }
+    }
+
+    ByteBuffer readBuffer() {
+        return this.readBuffer;
+    }
+
+    /**
+     * Registers {@code channel} with this loop. May be called from any thread.
+     */
+    void register(final SocketChannel channel) {
+        this.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final NioConnection connection = new NioConnection(connector, NioEventLoop.this, channel);
+                    connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                } catch (final IOException e) {
+                    logger.debug("", e);
+                    closeQuietly(channel);
+                }
+            }
+        });
+    }
+
+    private static void closeQuietly(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            logger.debug("", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        this.thread = Thread.currentThread();
+
+        while (this.running) {
+            try {
+                // Tasks queued by this thread do not wake up the selector.
+                if (this.tasks.isEmpty()) {
+                    this.selector.select(SELECT_TIMEOUT_MILLIS);
+                } else {
+                    this.selector.selectNow();
+                }
+            } catch (final IOException e) {
+                logger.error("", e);
+            }
+
+            this.runTasks();
+
+            final Iterator<SelectionKey> selected = this.selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                final SelectionKey key = selected.next();
+                selected.remove();
+
+                try {
+                    if (key.isAcceptable()) {
+                        this.connector.accept();
+                    } else {
+                        ((NioConnection) key.attachment()).onReady(key);
+                    }
+                } catch (final CancelledKeyException e) {
+                    // The connection was closed by an earlier task.
+                }
+            }
+
+            this.closeIdleConnections();
+        }
+
+        for (final SelectionKey key : this.selector.keys()) {
+            final Object attachment = key.attachment();
+            if (attachment instanceof NioConnection) {
+                ((NioConnection) attachment).close();
+            }
+        }
+
+        try {
+            this.selector.close();
+        } catch (final IOException e) {
+            logger.debug("", e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    Selector selector() {
+        return this.selector;
+    }
+
+    void shutdown() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+
+public final class BeanUtilsTest {
+    static final class Bean {
+        private boolean enabled = false;
+        private String id = "";
+        private long count = 0;
+        private List<String> tags = ImmutableList.of();
+
+        public long getCount() {
+            return count;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public boolean getEnabled() {
+            return enabled;
+        }
+
+        public Bean setCount(final long count) {
+            this.count = count;
+            return this;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setId(final String id) {
+            this.id = id;
+        }
+
+        public void setTags(final List<String> tags) {
+            this.tags = tags;
+        }
+
+        public String getFailure() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void getProperty() throws Exception {
+        final Bean bean = new Bean();
+        bean.setId("abc");
+        bean.setCount(5);
+
+        assertEquals("abc", BeanUtils.getProperty(bean, "id"));
+        assertEquals("abc", BeanUtils.getProperty(bean, "Id"));
+        assertEquals(5L, BeanUtils.getProperty(bean, "count"));
+        assertEquals("5", BeanUtils.getPropertyAsString(bean, "count"));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void getProperty_withMissingProperty() throws Exception {
+        BeanUtils.getProperty(new Bean(), "missing");
+    }
+
+    @Test(expected = InvocationTargetException.class)
+    public void getProperty_withThrowingGetter() throws Exception {
+        BeanUtils.getProperty(new Bean(), "failure");
+    }
+
+    @Test
+    public void populateObject() {
+        final Bean bean = new Bean();
+        BeanUtils.populateObject(
+                ImmutableMap.of("id", "abc", "count", "12", "enabled", "true", "missing", "a"), bean);
+
+        assertEquals("abc", bean.getId());
+        assertEquals(12L, bean.getCount());
+        assertEquals(true, bean.getEnabled());
+    }
+
+    @Test
+    public void multiMapToObject() {
+        final Bean bean =
+                BeanUtils.multiMapToObject(
+                        ImmutableListMultimap.of("tags", "a", "tags", "b", "count", "x"), Bean.class);
+
+        assertEquals(ImmutableList.of("a", "b"), bean.getTags());
+        assertEquals(0L, bean.getCount());
+    }
+}
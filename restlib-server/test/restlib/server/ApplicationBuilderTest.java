@@ -34,6 +34,7 @@ import restlib.data.Preference;
 import restlib.net.Uri;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -220,4 +221,39 @@ public final class ApplicationBuilderTest {
                     .build().getResource(
                             Request.builder().setUri(Uri.parse("http://www.example.com")).build()));
     }
+    
+    @Test
+    public void setRecordFilterStatisticsTest() {
+        final Function<Request, Request> requestFilter = Functions.<Request> identity();
+        final Function<Response, Response> responseFilter = Functions.<Response> identity();
+        
+        final Application application =
+                ApplicationBuilder.newInstance()
+                    .addRequestFilter(requestFilter)
+                    .addResponseFilter(responseFilter)
+                    .setRecordFilterStatistics(true)
+                    .build();
+        
+        application.requestFilter().apply(
+                Request.builder().setUri(Uri.parse("http://www.example.com")).build());
+        application.responseFilter().apply(Response.builder().build());
+        
+        assertEquals(1, ((FilterPipeline<Request>) application.requestFilter()).invocations(0));
+        assertEquals(1, ((FilterPipeline<Response>) application.responseFilter()).invocations(0));
+    }
+    
+    @Test
+    public void build_withoutRecordFilterStatistics_recordsNoStatistics() {
+        final Function<Request, Request> requestFilter = Functions.<Request> identity();
+        
+        final Application application =
+                ApplicationBuilder.newInstance()
+                    .addRequestFilter(requestFilter)
+                    .build();
+        
+        application.requestFilter().apply(
+                Request.builder().setUri(Uri.parse("http://www.example.com")).build());
+        
+        assertEquals(0, ((FilterPipeline<Request>) application.requestFilter()).invocations(0));
+    }
 }
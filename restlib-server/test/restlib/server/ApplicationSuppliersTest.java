@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import restlib.Request;
+import restlib.net.Uri;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InternetDomainName;
+
+public final class ApplicationSuppliersTest {
+    private static final Application DEFAULT = ApplicationBuilder.newInstance().build();
+    private static final Application EXAMPLE = ApplicationBuilder.newInstance().build();
+    private static final Application TEST = ApplicationBuilder.newInstance().build();
+
+    private static Request request(final String uri) {
+        return Request.builder().setUri(Uri.parse(uri)).build();
+    }
+
+    @Test
+    public void virtualHosts() {
+        for (final int cacheSize : new int[] { 0, 1, 1024 }) {
+            final Function<Request, Application> applications =
+                    ApplicationSuppliers.virtualHosts(
+                            ImmutableMap.of(
+                                    InternetDomainName.from("www.example.com"), EXAMPLE,
+                                    InternetDomainName.from("WWW.TEST.COM"), TEST),
+                            DEFAULT, cacheSize);
+
+            for (int i = 0; i < 2; i++) {
+                assertSame(EXAMPLE, applications.apply(request("http://www.example.com/a")));
+                assertSame(EXAMPLE, applications.apply(request("http://WWW.Example.com:8080/a")));
+                assertSame(TEST, applications.apply(request("http://www.test.com/")));
+                assertSame(DEFAULT, applications.apply(request("http://www.other.com/")));
+                assertSame(DEFAULT, applications.apply(request("http://127.0.0.1/")));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void virtualHosts_withNegativeCacheSize() {
+        ApplicationSuppliers.virtualHosts(
+                ImmutableMap.<InternetDomainName, Application> of(), DEFAULT, -1);
+    }
+}
@@ -37,7 +37,9 @@ import restlib.data.Preference;
 import restlib.data.Status;
 import restlib.net.Uri;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
 
@@ -174,6 +176,71 @@ public final class ConnegResourceDecoratorTest {
         assertTrue(isValidConnegResponse(response));
     }
     
+    @Test
+    public void handle_getRequestsWithDifferentPreferences_negotiatedSeparately() throws InterruptedException, ExecutionException {
+        final ConnegResourceDecorator resource = new MockConnegResource();
+        final Request acceptJson =
+                Request.builder()
+                    .setUri(Uri.parse("http://www.example.com"))
+                    .setMethod(Method.GET)
+                    .setPreferences(
+                            ClientPreferences.builder()
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_JSON, 1000))
+                                .build())
+                    .build();
+        final Request acceptXml =
+                Request.builder()
+                    .setUri(Uri.parse("http://www.example.com"))
+                    .setMethod(Method.GET)
+                    .setPreferences(
+                            ClientPreferences.builder()
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_XML, 1000))
+                                .build())
+                    .build();
+        
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Status.SUCCESS_OK, resource.handle(acceptJson).get().status());
+            assertEquals(Status.CLIENT_ERROR_NOT_ACCEPTABLE, resource.handle(acceptXml).get().status());
+        }
+        assertEquals(ImmutableSet.of(HttpHeaders.ACCEPT), resource.vary());
+    }
+    
+    @Test
+    public void responseMediaRange_tiedPreferencesInDifferentOrder_negotiatedSeparately() {
+        final ConnegResourceDecorator resource = new MockConnegResource();
+        final Request jsonFirst =
+                Request.builder()
+                    .setUri(Uri.parse("http://www.example.com"))
+                    .setMethod(Method.GET)
+                    .setPreferences(
+                            ClientPreferences.builder()
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_JSON, 1000))
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_ATOM, 1000))
+                                .build())
+                    .build();
+        final Request atomFirst =
+                Request.builder()
+                    .setUri(Uri.parse("http://www.example.com"))
+                    .setMethod(Method.GET)
+                    .setPreferences(
+                            ClientPreferences.builder()
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_ATOM, 1000))
+                                .addAcceptedMediaRange(
+                                        Preference.create(MediaRanges.APPLICATION_JSON, 1000))
+                                .build())
+                    .build();
+        
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Optional.of(MediaRanges.APPLICATION_JSON), resource.responseMediaRange(jsonFirst));
+            assertEquals(Optional.of(MediaRanges.APPLICATION_ATOM), resource.responseMediaRange(atomFirst));
+        }
+    }
+    
     @Test
     public void handle_getRequestNotFoundResource_notFound() throws InterruptedException, ExecutionException {
         final ConnegResource resource = new ConnegResourceDecorator(Resources.NOT_FOUND) {
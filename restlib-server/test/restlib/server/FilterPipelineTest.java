@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import restlib.Request;
+import restlib.data.ExtensionHeaders;
+import restlib.data.Method;
+import restlib.net.Uri;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+public final class FilterPipelineTest {
+    private static final Function<String, String> APPEND_A =
+            new Function<String, String>() {
+                @Override
+                public String apply(final String input) {
+                    return input + "a";
+                }
+            };
+
+    private static final GuardedFilter<String> APPEND_B_TO_EMPTY =
+            new GuardedFilter<String>() {
+                @Override
+                public boolean appliesTo(final String input) {
+                    return input.isEmpty();
+                }
+
+                @Override
+                public String apply(final String input) {
+                    return input + "b";
+                }
+            };
+
+    @Test
+    public void apply_appliesFiltersInOrder() {
+        final FilterPipeline<String> pipeline =
+                FilterPipeline.of(ImmutableList.of(APPEND_B_TO_EMPTY, APPEND_A, APPEND_A), true);
+        assertEquals("baa", pipeline.apply(""));
+        assertEquals(1, pipeline.invocations(0));
+        assertEquals(0, pipeline.skips(0));
+        assertEquals(1, pipeline.invocations(1));
+        assertEquals(1, pipeline.invocations(2));
+    }
+
+    @Test
+    public void apply_withGuardNotApplying_skipsFilter() {
+        final FilterPipeline<String> pipeline =
+                FilterPipeline.of(ImmutableList.of(APPEND_A, APPEND_B_TO_EMPTY), true);
+        assertEquals("a", pipeline.apply(""));
+        assertEquals(0, pipeline.invocations(1));
+        assertEquals(1, pipeline.skips(1));
+    }
+
+    @Test
+    public void apply_withoutStatistics_appliesFilters() {
+        final FilterPipeline<String> pipeline =
+                FilterPipeline.of(ImmutableList.of(APPEND_A, APPEND_B_TO_EMPTY, APPEND_A));
+        assertEquals("aa", pipeline.apply(""));
+        assertEquals("ba", FilterPipeline.of(ImmutableList.of(APPEND_B_TO_EMPTY, APPEND_A)).apply(""));
+        assertEquals(0, pipeline.invocations(0));
+        assertEquals(0, pipeline.skips(1));
+        assertEquals(0, pipeline.totalNanos(2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invocations_withInvalidIndex_throwsIndexOutOfBoundsException() {
+        FilterPipeline.of(ImmutableList.of(APPEND_A)).invocations(1);
+    }
+
+    @Test
+    public void apply_withNoFilters_returnsInput() {
+        final FilterPipeline<String> pipeline = FilterPipeline.of(ImmutableList.<Function<String, String>> of());
+        final String input = "test";
+        assertSame(input, pipeline.apply(input));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void of_withNullFilter_throwsNullPointerException() {
+        FilterPipeline.of(ImmutableList.of(APPEND_A, null));
+    }
+
+    @Test
+    public void requestFilter_withNonApplicableFilters_returnsRequest() {
+        final Application application =
+                ApplicationBuilder.newInstance()
+                    .addRequestFilter(RequestFilters.DEFAULT_EXTENSION_FILTER)
+                    .addRequestFilter(RequestFilters.METHOD_OVERRIDE)
+                    .addRequestFilter(RequestFilters.queryFilter(ImmutableList.of(ExtensionHeaders.X_HTTP_METHOD_OVERRIDE)))
+                    .build();
+        final Request request =
+                Request.builder()
+                    .setMethod(Method.GET)
+                    .setUri(Uri.parse("http://www.example.com/a/b?c=d"))
+                    .build();
+
+        assertSame(application.requestFilter(), application.requestFilter());
+        assertSame(request, application.requestFilter().apply(request));
+    }
+}
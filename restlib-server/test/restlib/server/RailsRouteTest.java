@@ -17,6 +17,9 @@
 
 package restlib.server;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -102,4 +105,100 @@ public class RailsRouteTest {
         for(final String route : routes)
             Route.parse(route);
      }
+    
+    @Test
+    public void tryMatch() {
+        assertEquals(
+                ImmutableMap.of("b", "b", "c", "c/d/e/f", "g", "g", "h", "h"),
+                Route.parse("/a/:b/*c/:g/:h/i").tryMatch(Path.parse("/a/b/c/d/e/f/g/h/i")).parameters());
+        assertEquals(
+                ImmutableMap.of("b", "b", "d", "d"),
+                Route.parse("/a/:b/c/:d").tryMatch(Path.parse("/a/b//c/d/")).parameters());
+        assertEquals(
+                ImmutableMap.of(),
+                Route.startsWith("/a").tryMatch(Path.parse("/a/b/c")).parameters());
+    }
+    
+    @Test
+    public void tryMatch_withTypedAccessors() {
+        final RouteMatch match = 
+                Route.parse("/blog/:year/entries/:id/*rest").tryMatch(
+                        Path.parse("/blog/2012/entries/9876543210/a/b"));
+        
+        assertEquals(2012, match.getInt("year"));
+        assertEquals(9876543210L, match.getLong("id"));
+        assertEquals("a/b", match.get("rest").get());
+        assertFalse(match.get("missing").isPresent());
+        
+        try {
+            match.getInt("id");
+            fail();
+        } catch (final NumberFormatException e) {}
+        
+        try {
+            match.getLong("missing");
+            fail();
+        } catch (final IllegalArgumentException e) {}
+    }
+    
+    @Test
+    public void tryMatch_withTypedAccessors_parsesBoundaryValues() {
+        final Route route = Route.parse("/:a/:b/:c/:d");
+        final RouteMatch match = route.tryMatch(
+                Path.parse("/-2147483648/2147483647/-9223372036854775808/+9223372036854775807"));
+        
+        assertEquals(Integer.MIN_VALUE, match.getInt("a"));
+        assertEquals(Integer.MAX_VALUE, match.getInt("b"));
+        assertEquals(Long.MIN_VALUE, match.getLong("c"));
+        assertEquals(Long.MAX_VALUE, match.getLong("d"));
+        
+        for (final String invalid : new String[] {
+                "/2147483648/0/0/0", "/-2147483649/0/0/0", "/-/0/0/0", "/+/0/0/0", "/1a/0/0/0" }) {
+            try {
+                route.tryMatch(Path.parse(invalid)).getInt("a");
+                fail("expected NumberFormatException: " + invalid);
+            } catch (final NumberFormatException expected) {}
+        }
+        
+        for (final String invalid : new String[] { 
+                "/0/0/9223372036854775808/0", "/0/0/-9223372036854775809/0", "/0/0/99999999999999999999/0" }) {
+            try {
+                route.tryMatch(Path.parse(invalid)).getLong("c");
+                fail("expected NumberFormatException: " + invalid);
+            } catch (final NumberFormatException expected) {}
+        }
+        
+        try {
+            Route.parse("/*rest").tryMatch(Path.parse("/1/2")).getInt("rest");
+            fail("expected NumberFormatException");
+        } catch (final NumberFormatException expected) {}
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void get_withNoMatch() {
+        RouteMatch.NO_MATCH.get("a");
+    }
+    
+    @Test
+    public void tryMatch_withNonMatchingPaths() {
+        final ImmutableMap<String, String> tests =
+                ImmutableMap.<String, String> builder()
+                    .put("/a/:b/*c/:g/:h/i", "/a/b/g/h/i")
+                    .put("/a/:b/c/:d", "/a/b/c")
+                    .put("/a/*b", "/a")
+                    .put("/a/b/c/d", "/a/b/c/e")
+                    .build();
+        
+        for (final Map.Entry<String, String> test : tests.entrySet()) {
+            final Route route = Route.parse(test.getKey());          
+            final Path path = Path.parse(test.getValue());
+            
+            assertSame(route + " " + path, RouteMatch.NO_MATCH, route.tryMatch(path));
+            assertFalse(route + " " + path, route.match(path));
+        }
+        
+        assertSame(RouteMatch.NO_MATCH, Route.NONE.tryMatch(Path.parse("/a")));
+        assertSame(RouteMatch.NO_MATCH, 
+                Route.startsWith("/a").exclude(Route.parse("/a/b")).tryMatch(Path.parse("/a/b")));
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import restlib.Request;
+import restlib.Response;
+import restlib.net.Uri;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public final class RouterTest {
+    private static Resource resource(final Route route) {
+        return new Resource() {
+            @Override
+            public ListenableFuture<Response> acceptMessage(final Request request, final Object message) {
+                return FutureResponses.SUCCESS_OK;
+            }
+
+            @Override
+            public ListenableFuture<Response> handle(final Request request) {
+                return FutureResponses.SUCCESS_OK;
+            }
+
+            @Override
+            public Route route() {
+                return route;
+            }
+
+            @Override
+            public String toString() {
+                return route.toString();
+            }
+        };
+    }
+
+    private static Request request(final String path) {
+        return Request.builder().setUri(Uri.parse("http://www.example.com" + path)).build();
+    }
+
+    @Test
+    public void getResource() {
+        final Resource entries = resource(Route.parse("/blog/entries/:id"));
+        final Resource newEntry = resource(Route.parse("/blog/entries/new"));
+        final Resource files = resource(Route.parse("/files/*path/raw"));
+        final Resource static_ = resource(Route.startsWith("/static"));
+        final Resource root = resource(Route.parse("/"));
+
+        final Router router =
+                Router.of(ImmutableList.of(entries, newEntry, files, static_, root), Resources.NOT_FOUND);
+
+        assertEquals(entries, router.getResource(request("/blog/entries/1234")));
+        assertEquals(entries, router.getResource(request("/blog/entries/1234/")));
+        assertEquals(newEntry, router.getResource(request("/blog/entries/new")));
+        assertEquals(files, router.getResource(request("/files/a/b/c/raw")));
+        assertEquals(files, router.getResource(request("/files/a/raw/raw")));
+        assertEquals(static_, router.getResource(request("/static")));
+        assertEquals(static_, router.getResource(request("/static/css/main.css")));
+        assertEquals(root, router.getResource(request("/")));
+        assertEquals(root, router.getResource(request("")));
+
+        assertEquals(Resources.NOT_FOUND, router.getResource(request("/blog")));
+        assertEquals(Resources.NOT_FOUND, router.getResource(request("/blog/entries/1234/edit")));
+        assertEquals(Resources.NOT_FOUND, router.getResource(request("/files/raw")));
+    }
+
+    @Test
+    public void getResource_withExcludedRoute() {
+        final Resource echo =
+                resource(Route.startsWith("/echo").exclude(Route.parse("/echo/private/*")));
+        final Resource fallback = resource(Route.parse("/echo/:a/:b"));
+
+        final Router router =
+                Router.of(ImmutableList.of(echo, fallback), Resources.NOT_FOUND);
+
+        assertEquals(echo, router.getResource(request("/echo/public")));
+        assertEquals(echo, router.getResource(request("/echo/public/a/b")));
+        assertEquals(fallback, router.getResource(request("/echo/public/a")));
+        assertEquals(fallback, router.getResource(request("/echo/private/a")));
+        assertEquals(Resources.NOT_FOUND, router.getResource(request("/echo/private/a/b")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void of_withAmbiguousRoutes() {
+        Router.of(
+                ImmutableList.of(
+                        resource(Route.parse("/a/:b/c")),
+                        resource(Route.parse("/a/:d/c/"))),
+                Resources.NOT_FOUND);
+    }
+
+    @Test
+    public void of_withSameResourceTwice() {
+        final Resource resource = resource(Route.parse("/a/:b"));
+        final Router router =
+                Router.of(ImmutableList.of(resource, resource), Resources.NOT_FOUND);
+        assertEquals(resource, router.getResource(request("/a/b")));
+    }
+}
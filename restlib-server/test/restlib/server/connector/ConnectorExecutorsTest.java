@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public final class ConnectorExecutorsTest {
+    @Test
+    public void bounded_withInvalidArguments_throwsException() {
+        try {
+            ConnectorExecutors.bounded(null, 1);
+            fail("expected NullPointerException");
+        } catch (final NullPointerException expected) {}
+
+        for (final int maxConcurrency : new int[] { 0, -1 }) {
+            try {
+                ConnectorExecutors.bounded(MoreExecutors.sameThreadExecutor(), maxConcurrency);
+                fail("expected IllegalArgumentException");
+            } catch (final IllegalArgumentException expected) {}
+        }
+
+        try {
+            ConnectorExecutors.bounded(MoreExecutors.sameThreadExecutor(), 1, -1);
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {}
+    }
+
+    @Test
+    public void bounded_withFullQueue_rejectsTask() {
+        final Queue<Runnable> submitted = new ArrayDeque<Runnable>();
+        final Executor executor = ConnectorExecutors.bounded(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                submitted.add(command);
+            }
+        }, 1, 1);
+        final AtomicInteger count = new AtomicInteger();
+        final Runnable increment = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+
+        executor.execute(increment);
+        executor.execute(increment);
+        try {
+            executor.execute(increment);
+            fail("expected RejectedExecutionException");
+        } catch (final RejectedExecutionException expected) {}
+
+        assertEquals(1, submitted.size());
+        submitted.poll().run();
+        assertEquals(2, count.get());
+
+        executor.execute(increment);
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    public void bounded_releasesSlotWhenTaskThrowsError() {
+        final Executor executor = ConnectorExecutors.bounded(MoreExecutors.sameThreadExecutor(), 1, 0);
+        final AtomicInteger count = new AtomicInteger();
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    throw new LinkageError();
+                }
+            });
+            fail("expected LinkageError");
+        } catch (final LinkageError expected) {}
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        });
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void bounded_keepsQueuedTaskWhenRejectedAfterError() {
+        final Queue<Runnable> submitted = new ArrayDeque<Runnable>();
+        final AtomicInteger accepted = new AtomicInteger(1);
+        final Executor executor = ConnectorExecutors.bounded(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                if (accepted.getAndDecrement() <= 0) {
+                    throw new RejectedExecutionException();
+                }
+                submitted.add(command);
+            }
+        }, 1, 1);
+        final AtomicInteger count = new AtomicInteger();
+        final Runnable increment = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new LinkageError();
+            }
+        });
+        executor.execute(increment);
+        try {
+            submitted.poll().run();
+            fail("expected LinkageError");
+        } catch (final LinkageError expected) {}
+        assertEquals(0, count.get());
+
+        accepted.set(1);
+        executor.execute(increment);
+        submitted.poll().run();
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void threadPerTask_neverExceedsMaxConcurrency() throws InterruptedException {
+        final int maxConcurrency = 3;
+        final int tasks = 50;
+
+        final Executor executor = ConnectorExecutors.threadPerTask(maxConcurrency);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final int current = running.incrementAndGet();
+                    while (true) {
+                        final int max = maxRunning.get();
+                        if (current <= max || maxRunning.compareAndSet(max, current)) {
+                            break;
+                        }
+                    }
+
+                    try {
+                        Thread.sleep(2);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= maxConcurrency);
+    }
+
+    @Test
+    public void bounded_continuesAfterTaskThrows() {
+        final Executor executor = ConnectorExecutors.bounded(MoreExecutors.sameThreadExecutor(), 1);
+        final AtomicInteger count = new AtomicInteger();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException();
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, count.get());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2012 David Bordoley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package restlib.server.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import restlib.ContentInfo;
+import restlib.Request;
+import restlib.Response;
+import restlib.bio.InputStreamDeserializer;
+import restlib.bio.InputStreamDeserializers;
+import restlib.bio.OutputStreamSerializer;
+import restlib.bio.OutputStreamSerializers;
+import restlib.data.Charset;
+import restlib.data.MediaRanges;
+import restlib.data.Method;
+import restlib.data.Status;
+import restlib.server.ApplicationSuppliers;
+import restlib.server.FutureResponses;
+import restlib.server.Route;
+import restlib.server.bio.BioApplication;
+import restlib.server.bio.BioApplicationBuilder;
+import restlib.server.bio.BioResource;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public final class NioConnectorTest {
+    private static final BioResource<String> ECHO_RESOURCE =
+            new BioResource<String>() {
+                private final Route route = Route.parse("/echo");
+
+                @Override
+                public ListenableFuture<Response> acceptMessage(final Request request, final Object message) {
+                    return Futures.immediateFuture(
+                            Response.builder().setStatus(Status.SUCCESS_OK).setEntity(message).build());
+                }
+
+                @Override
+                public ListenableFuture<Response> handle(final Request request) {
+                    if (request.method().equals(Method.POST)) {
+                        return FutureResponses.INFORMATIONAL_CONTINUE;
+                    }
+                    return Futures.immediateFuture(
+                            Response.builder().setStatus(Status.SUCCESS_OK).setEntity("hello").build());
+                }
+
+                @Override
+                public Route route() {
+                    return this.route;
+                }
+
+                @Override
+                public InputStreamDeserializer<String> getRequestEntityDeserializer(final Request request) {
+                    return InputStreamDeserializers.stringDeserializer(Charset.UTF_8);
+                }
+
+                @Override
+                public OutputStreamSerializer getResponseEntitySerializer(final Request request, final Response response) {
+                    return OutputStreamSerializers.stringSerializer(
+                            response.entity().or("").toString(),
+                            ContentInfo.builder().setMediaRange(MediaRanges.TEXT_PLAIN).build());
+                }
+            };
+
+    private NioConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        final BioApplication application =
+                BioApplicationBuilder.newInstance().addResource(ECHO_RESOURCE).build();
+        this.connector =
+                NioConnector.builder()
+                    .setAddress(new InetSocketAddress("127.0.0.1", 0))
+                    .setApplicationSupplier(ApplicationSuppliers.constant(application))
+                    .setEventLoops(1)
+                    .build()
+                    .start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.connector.close();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket();
+        socket.setSoTimeout(5000);
+        socket.connect(this.connector.localAddress());
+        return socket;
+    }
+
+    private static String readResponse(final InputStream in) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("ISO-8859-1").endsWith("\r\n\r\n")) {
+            final int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            head.write(b);
+        }
+
+        final String headString = head.toString("ISO-8859-1");
+        final String lowerCaseHead = headString.toLowerCase();
+        final int contentLength = lowerCaseHead.indexOf("content-length: ");
+        if (contentLength < 0) {
+            return headString;
+        }
+
+        final int length =
+                Integer.parseInt(
+                        lowerCaseHead.substring(
+                                contentLength + 16, lowerCaseHead.indexOf("\r\n", contentLength)));
+        final byte[] body = new byte[length];
+        for (int read = 0; read < length;) {
+            final int count = in.read(body, read, length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return headString + new String(body, Charsets.ISO_8859_1);
+    }
+
+    private static void write(final OutputStream out, final String data) throws IOException {
+        out.write(data.getBytes(Charsets.ISO_8859_1));
+        out.flush();
+    }
+
+    @Test
+    public void get_keepAlive_reusesConnection() throws IOException {
+        final Socket socket = this.connect();
+        try {
+            for (int i = 0; i < 2; i++) {
+                write(socket.getOutputStream(), "GET /echo HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                final String response = readResponse(socket.getInputStream());
+                assertTrue(response, response.startsWith("HTTP/1.1 200"));
+                assertTrue(response, response.endsWith("\r\n\r\nhello"));
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void get_pipelined_respondsInOrder() throws IOException {
+        final Socket socket = this.connect();
+        try {
+            write(socket.getOutputStream(),
+                    "GET /echo HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /missing HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            final String first = readResponse(socket.getInputStream());
+            final String second = readResponse(socket.getInputStream());
+            assertTrue(first, first.startsWith("HTTP/1.1 200"));
+            assertTrue(second, second.startsWith("HTTP/1.1 404"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void post_chunkedWithExpectContinue_readsEntity() throws IOException {
+        final Socket socket = this.connect();
+        try {
+            write(socket.getOutputStream(),
+                    "POST /echo HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Content-Type: text/plain\r\n" +
+                    "Transfer-Encoding: chunked\r\n" +
+                    "Expect: 100-continue\r\n\r\n");
+
+            final String interim = readResponse(socket.getInputStream());
+            assertTrue(interim, interim.startsWith("HTTP/1.1 100"));
+
+            write(socket.getOutputStream(), "5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n");
+            final String response = readResponse(socket.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("\r\n\r\nhello world"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void post_entityTooLarge_returns413() throws IOException {
+        this.connector.close();
+        this.connector =
+                NioConnector.builder()
+                    .setAddress(new InetSocketAddress("127.0.0.1", 0))
+                    .setApplicationSupplier(
+                            ApplicationSuppliers.constant(
+                                    BioApplicationBuilder.newInstance().addResource(ECHO_RESOURCE).build()))
+                    .setEventLoops(1)
+                    .setMaxEntitySize(4)
+                    .build()
+                    .start();
+
+        final Socket socket = this.connect();
+        try {
+            write(socket.getOutputStream(),
+                    "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello");
+            final String response = readResponse(socket.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 413"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void malformedRequest_returns400AndCloses() throws IOException {
+        final Socket socket = this.connect();
+        try {
+            write(socket.getOutputStream(), "NOT A REQUEST\r\n\r\n");
+            final String response = readResponse(socket.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 400"));
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+    }
+}